@@ -18,6 +18,8 @@ cd "$(dirname "$0")"
 # Configuration
 JAR_NAME="demo-0.0.1-SNAPSHOT.jar"
 JAR_PATH="target/${JAR_NAME}"
+APP_DIR="target/app"
+CDS_ARCHIVE="${APP_DIR}/app.jsa"
 SERVER_PORT="${SERVER_PORT:-9000}"
 
 # Print banner
@@ -34,6 +36,7 @@ show_usage() {
     echo "Options:"
     echo "  -d, --dev       Run in development mode (mvn spring-boot:run)"
     echo "  -j, --jar       Run from JAR file (default)"
+    echo "  -p, --production Run the AOT + CDS build (mvn -Pproduction package)"
     echo "  -b, --build     Force rebuild before running"
     echo "  -h, --help      Show this help message"
     echo ""
@@ -59,6 +62,18 @@ build_project() {
     echo ""
 }
 
+# Function to build the production layout (AOT + extracted jar + CDS archive)
+build_production() {
+    echo -e "${YELLOW}🔨 Building production layout (AOT + CDS training run)...${NC}"
+    mvn clean package -Pproduction -DskipTests -q
+    if [ $? -ne 0 ]; then
+        echo -e "${RED}❌ Build failed!${NC}"
+        exit 1
+    fi
+    echo -e "${GREEN}✅ Build successful!${NC}"
+    echo ""
+}
+
 # Function to check prerequisites
 check_prerequisites() {
     # Check Java
@@ -111,6 +126,20 @@ run_jar() {
     java -jar "$JAR_PATH"
 }
 
+# Function to run the production layout
+run_production() {
+    # Check if CDS archive exists
+    if [ ! -f "$CDS_ARCHIVE" ]; then
+        echo -e "${YELLOW}⚠️  CDS archive not found. Building production layout...${NC}"
+        build_production
+    fi
+    
+    show_server_info
+    echo -e "${GREEN}🚀 Starting with Spring AOT and CDS...${NC}"
+    echo ""
+    java -XX:SharedArchiveFile="$CDS_ARCHIVE" -Dspring.aot.enabled=true -jar "${APP_DIR}/${JAR_NAME}"
+}
+
 # Parse arguments
 MODE="jar"
 FORCE_BUILD=false
@@ -125,6 +154,10 @@ while [[ $# -gt 0 ]]; do
             MODE="jar"
             shift
             ;;
+        -p|--production)
+            MODE="production"
+            shift
+            ;;
         -b|--build)
             FORCE_BUILD=true
             shift
@@ -145,7 +178,11 @@ done
 check_prerequisites
 
 if [ "$FORCE_BUILD" = true ]; then
-    build_project
+    if [ "$MODE" = "production" ]; then
+        build_production
+    else
+        build_project
+    fi
 fi
 
 case $MODE in
@@ -155,5 +192,8 @@ case $MODE in
     jar)
         run_jar
         ;;
+    production)
+        run_production
+        ;;
 esac
 
@@ -0,0 +1,43 @@
+-- OAuth2 Authorization table with BYTEA attributes / *_metadata columns (opt-in)
+-- Schema: poc_spring_authorization_server
+--
+-- 供 authorization-store.codec=binary 或 json 使用；預設的 text 使用 DDL.sql 中的 TEXT 欄位
+-- 新建環境：先執行本檔再執行 DDL.sql（DDL.sql 的 CREATE TABLE IF NOT EXISTS 會略過已存在的表）
+-- 既有環境：改用 migration/oauth2_authorization_text_to_bytea.sql
+
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_authorization (
+    id VARCHAR(100) NOT NULL,
+    registered_client_id VARCHAR(100) NOT NULL,
+    principal_name VARCHAR(200) NOT NULL,
+    authorization_grant_type VARCHAR(100) NOT NULL,
+    authorized_scopes VARCHAR(1000),
+    attributes BYTEA,
+    state VARCHAR(500),
+    authorization_code_value TEXT,
+    authorization_code_issued_at TIMESTAMP,
+    authorization_code_expires_at TIMESTAMP,
+    authorization_code_metadata BYTEA,
+    access_token_value TEXT,
+    access_token_issued_at TIMESTAMP,
+    access_token_expires_at TIMESTAMP,
+    access_token_metadata BYTEA,
+    access_token_type VARCHAR(100),
+    access_token_scopes VARCHAR(1000),
+    oidc_id_token_value TEXT,
+    oidc_id_token_issued_at TIMESTAMP,
+    oidc_id_token_expires_at TIMESTAMP,
+    oidc_id_token_metadata BYTEA,
+    refresh_token_value TEXT,
+    refresh_token_issued_at TIMESTAMP,
+    refresh_token_expires_at TIMESTAMP,
+    refresh_token_metadata BYTEA,
+    user_code_value TEXT,
+    user_code_issued_at TIMESTAMP,
+    user_code_expires_at TIMESTAMP,
+    user_code_metadata BYTEA,
+    device_code_value TEXT,
+    device_code_issued_at TIMESTAMP,
+    device_code_expires_at TIMESTAMP,
+    device_code_metadata BYTEA,
+    PRIMARY KEY (id)
+);
@@ -61,6 +61,155 @@ CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_authorization
     PRIMARY KEY (id)
 );
 
+-- attributes 與 *_metadata 欄位為 Spring SAS 原生格式（TEXT，Jackson JSON；authorization-store.codec=text）
+-- 改用 binary / json codec 時欄位須為 BYTEA：新建請先執行 DDL-authorization-bytea.sql，
+-- 既有資料表以 migration/oauth2_authorization_text_to_bytea.sql 轉換
+
+-- Token 查詢索引（findByToken 依 token 值等值查詢）
+-- 使用 HASH 索引：只需等值比對，索引大小與 token 長度無關（reference token 為 43 字元隨機字串）
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_state
+    ON poc_spring_authorization_server.oauth2_authorization USING hash (state);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_code
+    ON poc_spring_authorization_server.oauth2_authorization USING hash (authorization_code_value);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_access_token
+    ON poc_spring_authorization_server.oauth2_authorization USING hash (access_token_value);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_refresh_token
+    ON poc_spring_authorization_server.oauth2_authorization USING hash (refresh_token_value);
+
+-- 已撤銷的 JWT access token（依 jti），供各節點重建本機 bloom filter
+-- 本機 JWT introspection 只在 bloom filter 命中時才查 DB；token 原本到期後即可刪除
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_revoked_token (
+    jti        VARCHAR(100) NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (jti)
+);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_revoked_token_expiry
+    ON poc_spring_authorization_server.oauth2_revoked_token (expires_at);
+
+-- 正規化授權儲存（authorization-store.layout=normalized 時使用）
+-- 授權本身只存精簡的 header，每種 token 各一張表、每個授權最多一列
+-- 儲存時只改寫內容有變動的列（ON CONFLICT ... WHERE ... IS DISTINCT FROM），
+-- 發 token / refresh 不再整列重寫約 30 個欄位（含 TOAST）並產生新的 MVCC tuple
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_authorization_header (
+    id VARCHAR(100) NOT NULL,
+    registered_client_id VARCHAR(100) NOT NULL,
+    principal_name VARCHAR(200) NOT NULL,
+    authorization_grant_type VARCHAR(100) NOT NULL,
+    authorized_scopes VARCHAR(1000),
+    attributes BYTEA,
+    state VARCHAR(500),
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_header_state
+    ON poc_spring_authorization_server.oauth2_authorization_header USING hash (state);
+
+-- Authorization code
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_authorization_code (
+    authorization_id VARCHAR(100) NOT NULL
+        REFERENCES poc_spring_authorization_server.oauth2_authorization_header (id) ON DELETE CASCADE,
+    token_value TEXT NOT NULL,
+    issued_at TIMESTAMP,
+    expires_at TIMESTAMP,
+    metadata BYTEA,
+    PRIMARY KEY (authorization_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_code_value
+    ON poc_spring_authorization_server.oauth2_authorization_code USING hash (token_value);
+
+-- Access token
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_access_token (
+    authorization_id VARCHAR(100) NOT NULL
+        REFERENCES poc_spring_authorization_server.oauth2_authorization_header (id) ON DELETE CASCADE,
+    token_value TEXT NOT NULL,
+    issued_at TIMESTAMP,
+    expires_at TIMESTAMP,
+    metadata BYTEA,
+    token_type VARCHAR(100),
+    scopes VARCHAR(1000),
+    PRIMARY KEY (authorization_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_access_token_value
+    ON poc_spring_authorization_server.oauth2_access_token USING hash (token_value);
+
+-- OIDC ID token
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_oidc_id_token (
+    authorization_id VARCHAR(100) NOT NULL
+        REFERENCES poc_spring_authorization_server.oauth2_authorization_header (id) ON DELETE CASCADE,
+    token_value TEXT NOT NULL,
+    issued_at TIMESTAMP,
+    expires_at TIMESTAMP,
+    metadata BYTEA,
+    PRIMARY KEY (authorization_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_oidc_id_token_value
+    ON poc_spring_authorization_server.oauth2_oidc_id_token USING hash (token_value);
+
+-- Refresh token
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_refresh_token (
+    authorization_id VARCHAR(100) NOT NULL
+        REFERENCES poc_spring_authorization_server.oauth2_authorization_header (id) ON DELETE CASCADE,
+    token_value TEXT NOT NULL,
+    issued_at TIMESTAMP,
+    expires_at TIMESTAMP,
+    metadata BYTEA,
+    PRIMARY KEY (authorization_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_refresh_token_value
+    ON poc_spring_authorization_server.oauth2_refresh_token USING hash (token_value);
+
+-- Device flow user code
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_user_code (
+    authorization_id VARCHAR(100) NOT NULL
+        REFERENCES poc_spring_authorization_server.oauth2_authorization_header (id) ON DELETE CASCADE,
+    token_value TEXT NOT NULL,
+    issued_at TIMESTAMP,
+    expires_at TIMESTAMP,
+    metadata BYTEA,
+    PRIMARY KEY (authorization_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_user_code_value
+    ON poc_spring_authorization_server.oauth2_user_code USING hash (token_value);
+
+-- Device flow device code
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_device_code (
+    authorization_id VARCHAR(100) NOT NULL
+        REFERENCES poc_spring_authorization_server.oauth2_authorization_header (id) ON DELETE CASCADE,
+    token_value TEXT NOT NULL,
+    issued_at TIMESTAMP,
+    expires_at TIMESTAMP,
+    metadata BYTEA,
+    PRIMARY KEY (authorization_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_device_code_value
+    ON poc_spring_authorization_server.oauth2_device_code USING hash (token_value);
+
+-- 授權分片（authorization-shards.enabled=true 時使用）
+-- 授權依 slot（0..1023）分散到各 shard；token 前綴帶 slot，查詢時直接找到所屬 shard
+-- slot 對應表只存在主資料庫；previous_shard 非 NULL 表示該 slot 正在搬移（讀取時兩邊都查）
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_authorization_slot (
+    slot INT NOT NULL,
+    shard VARCHAR(100) NOT NULL,
+    previous_shard VARCHAR(100),
+    PRIMARY KEY (slot)
+);
+
+-- 每個 shard 的 schema 需有與 authorization-store.layout 相同的授權資料表，例如 single-row：
+--   CREATE SCHEMA IF NOT EXISTS authz_shard_1;
+--   CREATE TABLE IF NOT EXISTS authz_shard_1.oauth2_authorization
+--       (LIKE poc_spring_authorization_server.oauth2_authorization INCLUDING ALL);
+-- normalized 需保留外鍵，請將上方正規化段落的 schema 名稱替換後執行
+
 -- OAuth2 Authorization Consent table (Spring SAS 原生表，本專案不使用)
 -- 保留此表以相容 Spring SAS，但實際 consent 記錄存於 oauth2_consent_history
 CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.oauth2_authorization_consent (
@@ -97,6 +246,42 @@ CREATE INDEX IF NOT EXISTS idx_consent_history_client
 CREATE INDEX IF NOT EXISTS idx_consent_history_time 
     ON poc_spring_authorization_server.oauth2_consent_history (consent_time);
 
+-- ============================================================================
+-- HTTP Session tables (session-store.type=jdbc 時使用，多節點共享 Session)
+-- ============================================================================
+-- 特性：
+--   1. version 於 Session 內容變更時遞增，節點以此驗證本機 near-cache 是否仍有效
+--   2. 屬性分表儲存，每次請求只寫入變更的屬性
+--   3. 過期 Session 由應用程式分批刪除（FOR UPDATE SKIP LOCKED，多節點可同時清理）
+--   4. ID 為 22 字元 URL-safe 隨機字串（SecureIdGenerator），使用 VARCHAR 避免 CHAR 補空白
+--      既有資料表：ALTER TABLE ... ALTER COLUMN primary_id TYPE VARCHAR(36) 等三個欄位
+-- ============================================================================
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.http_session (
+    primary_id            VARCHAR(36) NOT NULL,
+    session_id            VARCHAR(36) NOT NULL,
+    version               BIGINT NOT NULL,
+    creation_time         BIGINT NOT NULL,
+    last_access_time      BIGINT NOT NULL,
+    max_inactive_interval INT NOT NULL,
+    expiry_time           BIGINT NOT NULL,
+    PRIMARY KEY (primary_id)
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_http_session_id
+    ON poc_spring_authorization_server.http_session (session_id);
+
+CREATE INDEX IF NOT EXISTS idx_http_session_expiry
+    ON poc_spring_authorization_server.http_session (expiry_time);
+
+CREATE TABLE IF NOT EXISTS poc_spring_authorization_server.http_session_attribute (
+    session_primary_id VARCHAR(36) NOT NULL,
+    attribute_name     VARCHAR(200) NOT NULL,
+    attribute_bytes    BYTEA NOT NULL,
+    PRIMARY KEY (session_primary_id, attribute_name),
+    FOREIGN KEY (session_primary_id)
+        REFERENCES poc_spring_authorization_server.http_session (primary_id) ON DELETE CASCADE
+);
+
 -- ============================================================================
 -- 定期清理範例（PostgreSQL pg_cron 或外部排程執行）
 -- ============================================================================
@@ -64,7 +64,7 @@ INSERT INTO poc_spring_authorization_server.oauth2_registered_client (
     'client_credentials',
     '',
     'api.read,api.write,api.delete',
-    '{"@class":"java.util.Collections$UnmodifiableMap","settings.client.require-proof-key":false,"settings.client.require-authorization-consent":false}',
+    '{"@class":"java.util.Collections$UnmodifiableMap","settings.client.require-proof-key":false,"settings.client.require-authorization-consent":false,"settings.client.custom.token-rate-limit-per-second":20,"settings.client.custom.token-rate-limit-burst":40}',
     '{"@class":"java.util.Collections$UnmodifiableMap","settings.token.reuse-refresh-tokens":true,"settings.token.id-token-signature-algorithm":["org.springframework.security.oauth2.jose.jws.SignatureAlgorithm","RS256"],"settings.token.access-token-time-to-live":["java.time.Duration",3600.000000000],"settings.token.access-token-format":{"@class":"org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat","value":"self-contained"},"settings.token.refresh-token-time-to-live":["java.time.Duration",7200.000000000],"settings.token.authorization-code-time-to-live":["java.time.Duration",300.000000000],"settings.token.device-code-time-to-live":["java.time.Duration",300.000000000]}'
 )
 ON CONFLICT (id) DO NOTHING;
@@ -96,3 +96,32 @@ INSERT INTO poc_spring_authorization_server.oauth2_registered_client (
     '{"@class":"java.util.Collections$UnmodifiableMap","settings.token.reuse-refresh-tokens":true,"settings.token.id-token-signature-algorithm":["org.springframework.security.oauth2.jose.jws.SignatureAlgorithm","RS256"],"settings.token.access-token-time-to-live":["java.time.Duration",3600.000000000],"settings.token.access-token-format":{"@class":"org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat","value":"self-contained"},"settings.token.refresh-token-time-to-live":["java.time.Duration",7200.000000000],"settings.token.authorization-code-time-to-live":["java.time.Duration",300.000000000],"settings.token.device-code-time-to-live":["java.time.Duration",300.000000000]}'
 )
 ON CONFLICT (id) DO NOTHING;
+
+-- Client 4: Internal service client with opaque reference tokens (Client Credentials Flow)
+-- access-token-format=reference：不簽 JWT，資源伺服器透過 /oauth2/introspect 驗證
+INSERT INTO poc_spring_authorization_server.oauth2_registered_client (
+    id,
+    client_id,
+    client_id_issued_at,
+    client_secret,
+    client_name,
+    client_authentication_methods,
+    authorization_grant_types,
+    redirect_uris,
+    scopes,
+    client_settings,
+    token_settings
+) VALUES (
+    'client-4',
+    'internal-client',
+    CURRENT_TIMESTAMP,
+    '{noop}internal-secret',  -- ⚠️ TEST ONLY: Use {bcrypt}... in production
+    'Internal Service Client',
+    'client_secret_basic,client_secret_post',
+    'client_credentials',
+    '',
+    'internal.read,internal.write',
+    '{"@class":"java.util.Collections$UnmodifiableMap","settings.client.require-proof-key":false,"settings.client.require-authorization-consent":false}',
+    '{"@class":"java.util.Collections$UnmodifiableMap","settings.token.reuse-refresh-tokens":true,"settings.token.id-token-signature-algorithm":["org.springframework.security.oauth2.jose.jws.SignatureAlgorithm","RS256"],"settings.token.access-token-time-to-live":["java.time.Duration",3600.000000000],"settings.token.access-token-format":{"@class":"org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat","value":"reference"},"settings.token.refresh-token-time-to-live":["java.time.Duration",7200.000000000],"settings.token.authorization-code-time-to-live":["java.time.Duration",300.000000000],"settings.token.device-code-time-to-live":["java.time.Duration",300.000000000]}'
+)
+ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,22 @@
+-- Migrate oauth2_authorization attributes / *_metadata from TEXT to BYTEA
+-- Schema: poc_spring_authorization_server
+--
+-- 在切換 authorization-store.codec 為 binary 或 json 之前執行（停機或所有節點仍為 text 時皆可，
+-- 但轉換後仍以 text 執行的節點無法寫入，請於同一次部署切換設定）
+-- 既有資料保留為 UTF-8 的 JSON bytes，binary / json codec 皆可讀取
+-- ALTER COLUMN TYPE 會重寫整張表並持有 ACCESS EXCLUSIVE 鎖，請在維護時段執行
+--
+-- 注意：以 binary 格式寫入的資料無法轉回 TEXT；回復為 text 前須等這些授權到期並刪除
+
+BEGIN;
+
+ALTER TABLE poc_spring_authorization_server.oauth2_authorization
+    ALTER COLUMN attributes TYPE BYTEA USING convert_to(attributes, 'UTF8'),
+    ALTER COLUMN authorization_code_metadata TYPE BYTEA USING convert_to(authorization_code_metadata, 'UTF8'),
+    ALTER COLUMN access_token_metadata TYPE BYTEA USING convert_to(access_token_metadata, 'UTF8'),
+    ALTER COLUMN oidc_id_token_metadata TYPE BYTEA USING convert_to(oidc_id_token_metadata, 'UTF8'),
+    ALTER COLUMN refresh_token_metadata TYPE BYTEA USING convert_to(refresh_token_metadata, 'UTF8'),
+    ALTER COLUMN user_code_metadata TYPE BYTEA USING convert_to(user_code_metadata, 'UTF8'),
+    ALTER COLUMN device_code_metadata TYPE BYTEA USING convert_to(device_code_metadata, 'UTF8');
+
+COMMIT;
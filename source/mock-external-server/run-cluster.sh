@@ -0,0 +1,49 @@
+#!/bin/bash
+
+# Mock External Server Cluster Script
+# Starts several mock instances sharing one token secret, the last one slow,
+# to exercise the authorization server's multi-endpoint balancing and hedging.
+#
+# Usage: ./run-cluster.sh [instances] [base-port]
+# Environment:
+#   MOCK_FAST_LATENCY_MEAN  userinfo mean latency of the regular instances (default 20ms)
+#   MOCK_SLOW_LATENCY_MEAN  userinfo mean latency of the last instance (default 400ms)
+
+INSTANCES=${1:-3}
+BASE_PORT=${2:-8888}
+SECRET=${MOCK_TOKEN_SECRET:-mock-cluster-secret}
+
+cd "$(dirname "$0")"
+
+JAR="target/mock-external-server-1.0.0.jar"
+if [ ! -f "$JAR" ]; then
+    echo "⚠️  JAR file not found. Building project..."
+    mvn clean package -DskipTests || { echo "❌ Build failed!"; exit 1; }
+fi
+
+PIDS=()
+URLS=()
+for ((i = 0; i < INSTANCES; i++)); do
+    PORT=$((BASE_PORT + i))
+    if [ $i -eq $((INSTANCES - 1)) ] && [ "$INSTANCES" -gt 1 ]; then
+        MEAN=${MOCK_SLOW_LATENCY_MEAN:-400ms}
+    else
+        MEAN=${MOCK_FAST_LATENCY_MEAN:-20ms}
+    fi
+    echo "🔄 Instance $i: http://localhost:$PORT (userinfo exponential latency, mean $MEAN)"
+    MOCK_PORT=$PORT MOCK_TOKEN_SECRET=$SECRET MOCK_VIRTUAL_THREADS=true \
+    MOCK_FAULTS_ENABLED=true MOCK_USERINFO_LATENCY=exponential MOCK_USERINFO_LATENCY_MEAN=$MEAN \
+        java -jar "$JAR" > "target/mock-$PORT.log" 2>&1 &
+    PIDS+=($!)
+    URLS+=("http://localhost:$PORT")
+done
+
+echo ""
+echo "📋 Authorization Server settings:"
+echo "   EXTERNAL_AUTH_SERVER_URLS=$(IFS=,; echo "${URLS[*]}")"
+echo "   EXTERNAL_AUTH_HEDGE_ENABLED=true"
+echo ""
+echo "Press Ctrl+C to stop all instances"
+
+trap 'kill "${PIDS[@]}" 2>/dev/null; exit 0' INT TERM
+wait
@@ -0,0 +1,127 @@
+package com.example.mock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mock Server Configuration Properties
+ *
+ * Binds to mock.* properties in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "mock")
+@Data
+public class MockServerProperties {
+
+    /**
+     * Session / token store settings
+     */
+    private Store store = new Store();
+
+    /**
+     * Fault injection settings
+     */
+    private Faults faults = new Faults();
+
+    @Data
+    public static class Store {
+
+        /**
+         * Time to live of a login session entry
+         */
+        private Duration sessionTtl = Duration.ofMinutes(10);
+
+        /**
+         * Time to live of an issued token
+         */
+        private Duration tokenTtl = Duration.ofMinutes(10);
+
+        /**
+         * Maximum entries per store; the soonest-expiring entries are evicted beyond this
+         */
+        private int maxEntries = 100_000;
+
+        /**
+         * Timer wheel tick (expiry resolution)
+         */
+        private Duration tick = Duration.ofSeconds(1);
+
+        /**
+         * Shared secret for signed tokens; instances started with the same secret accept
+         * each other's tokens (multi-instance testing). Empty: tokens are only known locally.
+         */
+        private String tokenSecret = "";
+    }
+
+    @Data
+    public static class Faults {
+
+        /**
+         * Master switch for fault injection
+         */
+        private boolean enabled = false;
+
+        /**
+         * Fault settings per endpoint (keys: userinfo, login)
+         */
+        private Map<String, Endpoint> endpoints = new HashMap<>();
+    }
+
+    @Data
+    public static class Endpoint {
+
+        /**
+         * Added latency
+         */
+        private Latency latency = new Latency();
+
+        /**
+         * Probability (0.0 - 1.0) of answering with error-status
+         */
+        private double errorRate = 0.0;
+
+        /**
+         * HTTP status of injected errors
+         */
+        private int errorStatus = 500;
+
+        /**
+         * Probability (0.0 - 1.0) of hanging for timeout before answering
+         */
+        private double timeoutRate = 0.0;
+
+        /**
+         * Hang duration of an injected timeout (should exceed the client read timeout)
+         */
+        private Duration timeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Latency {
+
+        /**
+         * Distribution: none, fixed, uniform or exponential
+         */
+        private String distribution = "none";
+
+        /**
+         * Delay for fixed, and mean for exponential
+         */
+        private Duration mean = Duration.ZERO;
+
+        /**
+         * Lower bound for uniform
+         */
+        private Duration min = Duration.ZERO;
+
+        /**
+         * Upper bound for uniform, and cap for exponential
+         */
+        private Duration max = Duration.ofSeconds(5);
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.mock.controller;
 
+import com.example.mock.dto.UserInfoBatchRequest;
 import com.example.mock.dto.UserInfoResponse;
+import com.example.mock.service.FaultInjector;
 import com.example.mock.service.MockAuthService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,23 +14,31 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Mock Authentication Controller
  *
- * Simulates an external authentication system with login page and user info API
+ * Simulates an external authentication system with login page and user info API.
+ * Login submission and user info API pass through {@link FaultInjector}.
  */
 @Controller
 public class MockAuthController {
 
     private static final Logger logger = LoggerFactory.getLogger(MockAuthController.class);
+
+    private static final int MAX_BATCH_SIZE = 100;
     
     private final MockAuthService authService;
+    private final FaultInjector faultInjector;
 
-    public MockAuthController(MockAuthService authService) {
+    public MockAuthController(MockAuthService authService, FaultInjector faultInjector) {
         this.authService = authService;
+        this.faultInjector = faultInjector;
     }
 
     /**
@@ -67,6 +78,7 @@ public class MockAuthController {
             @RequestParam("customer_id") String customerId) {
 
         logger.info("Mock login submitted for session");
+        faultInjector.inject("login");
 
         String token = authService.registerSession(session, customerId);
         String data = authService.buildCallbackData("0000", "OK", session, token);
@@ -87,6 +99,7 @@ public class MockAuthController {
             @RequestParam(value = "customer_id", defaultValue = "test123") String customerId) {
 
         logger.info("Test login (auto) for session");
+        faultInjector.inject("login");
 
         String token = authService.registerSession(session, customerId);
         String data = authService.buildCallbackData("0000", "OK", session, token);
@@ -109,19 +122,47 @@ public class MockAuthController {
         String token = request.get("token");
 
         logger.info("User info requested for platformId: {}", platformId);
+        faultInjector.inject("userinfo");
 
         if (platformId == null || token == null) {
             logger.error("Missing platformId or token");
             return new UserInfoResponse("9001", "缺少必要參數", null);
         }
 
-        String customerId = authService.getCustomerIdByToken(token);
+        logger.info("Returning user info");
+        return lookupUserInfo(token);
+    }
+
+    /**
+     * Batch user info API endpoint
+     *
+     * Request: {"platformId":"authserver","tokens":["...","..."]}
+     * Response: [{"statusCode":"0000|...","statusDesc":"...","customerId":"..."}, ...] in token order
+     */
+    @PostMapping("/api/userinfo/batch")
+    @ResponseBody
+    public List<UserInfoResponse> getUserInfoBatch(@RequestBody UserInfoBatchRequest request) {
+        List<String> tokens = request.getTokens();
+        if (tokens == null || tokens.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "tokens is required, at most " + MAX_BATCH_SIZE);
+        }
+
+        logger.info("User info batch of {} requested for platformId: {}", tokens.size(), request.getPlatformId());
+        faultInjector.inject("userinfo");
+
+        if (request.getPlatformId() == null) {
+            logger.error("Missing platformId");
+            return tokens.stream().map(token -> new UserInfoResponse("9001", "缺少必要參數", null)).toList();
+        }
+        return tokens.stream().map(this::lookupUserInfo).toList();
+    }
+
+    private UserInfoResponse lookupUserInfo(String token) {
+        String customerId = token != null ? authService.getCustomerIdByToken(token) : null;
         if (customerId == null) {
             logger.error("Token not found or expired");
             return new UserInfoResponse("9002", "無效的 token", null);
         }
-
-        logger.info("Returning user info successfully");
         return new UserInfoResponse("0000", "OK", customerId);
     }
 
@@ -131,6 +172,9 @@ public class MockAuthController {
     @GetMapping("/health")
     @ResponseBody
     public Map<String, String> health() {
-        return Map.of("status", "UP", "service", "mock-external-server");
+        Map<String, String> health = new HashMap<>(authService.storeStats());
+        health.put("status", "UP");
+        health.put("service", "mock-external-server");
+        return health;
     }
 }
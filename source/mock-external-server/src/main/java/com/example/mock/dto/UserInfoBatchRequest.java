@@ -0,0 +1,26 @@
+package com.example.mock.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * User Info Batch Request DTO
+ *
+ * Looks up several tokens of one platform in a single call
+ */
+@Data
+@NoArgsConstructor
+public class UserInfoBatchRequest {
+
+    /**
+     * Platform identifier
+     */
+    private String platformId;
+
+    /**
+     * Tokens to look up; results are returned in the same order
+     */
+    private List<String> tokens;
+}
@@ -0,0 +1,144 @@
+package com.example.mock.service;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expiring, size-bounded key/value store
+ *
+ * Entries expire after a fixed TTL. Expiry is driven by a hashed timer wheel with one slot
+ * per tick of the TTL: a background sweeper clears one slot per tick, so the cost is
+ * proportional to the entries actually expiring rather than to the store size.
+ * When the store is full, entries closest to expiry are evicted first.
+ */
+public class ExpiringStore<K, V> implements AutoCloseable {
+
+    private record Entry<V>(V value, long expiresAtTick) {
+    }
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<K>[] wheel;
+    private final long tickMillis;
+    private final long ttlTicks;
+    private final int maxEntries;
+    private final ScheduledExecutorService sweeper;
+    private final AtomicLong evictions = new AtomicLong();
+    private long lastSweptTick;
+
+    @SuppressWarnings("unchecked")
+    public ExpiringStore(String name, Duration ttl, Duration tick, int maxEntries) {
+        this.tickMillis = Math.max(1, tick.toMillis());
+        this.ttlTicks = Math.max(1, (ttl.toMillis() + tickMillis - 1) / tickMillis);
+        this.maxEntries = maxEntries;
+        this.wheel = new Queue[(int) ttlTicks + 1];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.lastSweptTick = currentTick();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void put(K key, V value) {
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            evictSoonest();
+        }
+        long expiresAtTick = currentTick() + ttlTicks;
+        entries.put(key, new Entry<>(value, expiresAtTick));
+        wheel[slot(expiresAtTick)].add(key);
+    }
+
+    /**
+     * @return value, or null if absent or expired
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtTick() <= currentTick()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry != null ? entry.value() : null;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Clear the slots of every tick elapsed since the previous run
+     */
+    synchronized void sweep() {
+        long now = currentTick();
+        // After a long pause every slot is due at most once
+        long from = Math.max(lastSweptTick + 1, now - wheel.length + 1);
+        for (long tick = from; tick <= now; tick++) {
+            Queue<K> slot = wheel[slot(tick)];
+            for (int pending = slot.size(); pending > 0; pending--) {
+                K key = slot.poll();
+                if (key == null) {
+                    break;
+                }
+                Entry<V> entry = entries.get(key);
+                if (entry != null && entry.expiresAtTick() <= now) {
+                    entries.remove(key, entry);
+                } else if (entry != null && slot(entry.expiresAtTick()) == slot(tick)) {
+                    // Re-put in a later round of the same slot
+                    slot.add(key);
+                }
+                // Otherwise the key was removed or re-put into another slot
+            }
+        }
+        lastSweptTick = now;
+    }
+
+    private void evictSoonest() {
+        long tick = currentTick();
+        for (int i = 0; i < wheel.length && entries.size() >= maxEntries; i++) {
+            int slotIndex = slot(tick + i);
+            Queue<K> slot = wheel[slotIndex];
+            K key;
+            while (entries.size() >= maxEntries && (key = slot.poll()) != null) {
+                Entry<V> entry = entries.get(key);
+                // Skip stale references: the key was removed or re-put into another slot since
+                if (entry != null && slot(entry.expiresAtTick()) == slotIndex && entries.remove(key, entry)) {
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private long currentTick() {
+        return System.currentTimeMillis() / tickMillis;
+    }
+
+    private int slot(long tick) {
+        return (int) (tick % wheel.length);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.mock.service;
+
+import com.example.mock.config.MockServerProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Fault Injector
+ *
+ * Adds configurable latency, errors and timeouts to mock endpoints so the
+ * authorization server can be soak-tested against a realistic external system.
+ */
+@Component
+public class FaultInjector {
+
+    private static final Logger logger = LoggerFactory.getLogger(FaultInjector.class);
+
+    private final MockServerProperties.Faults faults;
+
+    public FaultInjector(MockServerProperties properties) {
+        this.faults = properties.getFaults();
+    }
+
+    /**
+     * Apply the faults configured for an endpoint
+     *
+     * @param endpoint Endpoint key (userinfo, login)
+     * @throws ResponseStatusException when an error is injected
+     */
+    public void inject(String endpoint) {
+        if (!faults.isEnabled()) {
+            return;
+        }
+        MockServerProperties.Endpoint config = faults.getEndpoints().get(endpoint);
+        if (config == null) {
+            return;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < config.getTimeoutRate()) {
+            logger.debug("Injecting timeout on {}", endpoint);
+            sleep(config.getTimeout());
+            return;
+        }
+
+        sleep(sampleLatency(config.getLatency(), random));
+
+        if (random.nextDouble() < config.getErrorRate()) {
+            logger.debug("Injecting error on {}", endpoint);
+            throw new ResponseStatusException(HttpStatus.valueOf(config.getErrorStatus()), "Injected fault");
+        }
+    }
+
+    private static Duration sampleLatency(MockServerProperties.Latency latency, ThreadLocalRandom random) {
+        return switch (latency.getDistribution()) {
+            case "fixed" -> latency.getMean();
+            case "uniform" -> {
+                long min = latency.getMin().toMillis();
+                long max = latency.getMax().toMillis();
+                yield Duration.ofMillis(max > min ? random.nextLong(min, max + 1) : min);
+            }
+            case "exponential" -> {
+                double sample = -latency.getMean().toMillis() * Math.log(1.0 - random.nextDouble());
+                yield Duration.ofMillis(Math.min((long) sample, latency.getMax().toMillis()));
+            }
+            default -> Duration.ZERO;
+        };
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,23 +1,32 @@
 package com.example.mock.service;
 
+import com.example.mock.config.MockServerProperties;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Mock Authentication Service
  * 
  * Business logic for mock authentication operations.
  * Manages session and token storage for the mock authentication flow.
+ * Both stores expire entries after their TTL and are bounded in size (mock.store.*).
+ * With mock.store.token-secret, tokens are HMAC-signed so every instance sharing the
+ * secret can resolve them; signed tokens carry their expiry and are rejected after the
+ * token TTL like stored ones.
  */
 @Service
 public class MockAuthService {
@@ -27,10 +36,33 @@ public class MockAuthService {
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     // In-memory session storage (session -> customer_id mapping)
-    private final Map<String, String> sessionStore = new ConcurrentHashMap<>();
+    private final ExpiringStore<String, String> sessionStore;
     
     // Token store (token -> customer_id) for API contract
-    private final Map<String, String> tokenStore = new ConcurrentHashMap<>();
+    private final ExpiringStore<String, String> tokenStore;
+
+    // Signing key for tokens shared across instances (null: local tokens only)
+    private final SecretKeySpec tokenKey;
+
+    private final Duration tokenTtl;
+
+    public MockAuthService(MockServerProperties properties) {
+        MockServerProperties.Store store = properties.getStore();
+        this.sessionStore = new ExpiringStore<>(
+                "session-store", store.getSessionTtl(), store.getTick(), store.getMaxEntries());
+        this.tokenStore = new ExpiringStore<>(
+                "token-store", store.getTokenTtl(), store.getTick(), store.getMaxEntries());
+        this.tokenKey = store.getTokenSecret() == null || store.getTokenSecret().isEmpty()
+                ? null
+                : new SecretKeySpec(store.getTokenSecret().getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.tokenTtl = store.getTokenTtl();
+    }
+
+    @PreDestroy
+    public void close() {
+        sessionStore.close();
+        tokenStore.close();
+    }
 
     /**
      * Register a user session and generate a token
@@ -42,7 +74,7 @@ public class MockAuthService {
     public String registerSession(String session, String customerId) {
         sessionStore.put(session, customerId);
         
-        String token = UUID.randomUUID().toString();
+        String token = tokenKey != null ? signedToken(customerId) : SecureIdGenerator.newId();
         tokenStore.put(token, customerId);
         
         logger.debug("Session registered: session={}", session);
@@ -56,7 +88,62 @@ public class MockAuthService {
      * @return Customer ID or null if not found
      */
     public String getCustomerIdByToken(String token) {
-        return tokenStore.get(token);
+        String customerId = tokenStore.get(token);
+        if (customerId == null && tokenKey != null && token != null) {
+            customerId = verifySignedToken(token);
+        }
+        return customerId;
+    }
+
+    /**
+     * Token format: {random id}.{expiry epoch ms}.{base64url(customerId)}.{base64url(hmac(payload))}
+     */
+    private String signedToken(String customerId) {
+        long expiresAt = System.currentTimeMillis() + tokenTtl.toMillis();
+        String payload = SecureIdGenerator.newId() + "." + expiresAt + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(customerId.getBytes(StandardCharsets.UTF_8));
+        return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(hmac(payload));
+    }
+
+    private String verifySignedToken(String token) {
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        try {
+            String payload = token.substring(0, token.lastIndexOf('.'));
+            byte[] signature = Base64.getUrlDecoder().decode(parts[3]);
+            if (!MessageDigest.isEqual(hmac(payload), signature)) {
+                return null;
+            }
+            if (Long.parseLong(parts[1]) <= System.currentTimeMillis()) {
+                return null;
+            }
+            return new String(Base64.getUrlDecoder().decode(parts[2]), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] hmac(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(tokenKey);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign token", e);
+        }
+    }
+
+    /**
+     * Current store sizes and evictions, for soak test monitoring
+     */
+    public Map<String, String> storeStats() {
+        return Map.of(
+                "sessions", String.valueOf(sessionStore.size()),
+                "tokens", String.valueOf(tokenStore.size()),
+                "evictions", String.valueOf(sessionStore.evictions() + tokenStore.evictions())
+        );
     }
 
     /**
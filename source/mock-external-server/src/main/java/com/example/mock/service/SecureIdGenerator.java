@@ -0,0 +1,78 @@
+package com.example.mock.service;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Random token identifiers without a shared lock
+ *
+ * Same scheme as the authorization server's generator: one DRBG (256-bit strength) per
+ * platform thread drawn from in 512-byte blocks, and a striped set of generators for
+ * virtual threads. Identifiers carry 128 random bits, encoded as 22 URL-safe characters.
+ */
+final class SecureIdGenerator {
+
+    private static final int ID_BYTES = 16;
+    private static final int BUFFER_SIZE = 512;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final ThreadLocal<Source> PER_THREAD = ThreadLocal.withInitial(Source::new);
+
+    private static final Source[] SHARED = new Source[Runtime.getRuntime().availableProcessors() * 2];
+
+    static {
+        for (int i = 0; i < SHARED.length; i++) {
+            SHARED[i] = new Source();
+        }
+    }
+
+    private SecureIdGenerator() {
+    }
+
+    static String newId() {
+        byte[] bytes = new byte[ID_BYTES];
+        Thread thread = Thread.currentThread();
+        if (!thread.isVirtual()) {
+            PER_THREAD.get().nextBytes(bytes);
+        } else {
+            Source source = SHARED[(int) (thread.threadId() % SHARED.length)];
+            source.lock.lock();
+            try {
+                source.nextBytes(bytes);
+            } finally {
+                source.lock.unlock();
+            }
+        }
+        return ENCODER.encodeToString(bytes);
+    }
+
+    private static final class Source {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final SecureRandom random;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position = BUFFER_SIZE;
+
+        Source() {
+            try {
+                random = SecureRandom.getInstance("DRBG",
+                        DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("DRBG is not available", e);
+            }
+        }
+
+        void nextBytes(byte[] bytes) {
+            if (position + bytes.length > BUFFER_SIZE) {
+                random.nextBytes(buffer);
+                position = 0;
+            }
+            System.arraycopy(buffer, position, bytes, 0, bytes.length);
+            position += bytes.length;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.mock.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MockAuthControllerTest {
+
+	private static final String CALLBACK_URL = "http://localhost:9000/oauth2/callback";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Test
+	void testLoginRedirectsToCallbackWithSessionAndToken() throws Exception {
+		JsonNode data = login("session-1_client-web", "customer-1");
+
+		assertThat(data.get("statusCode").asText()).isEqualTo("0000");
+		assertThat(data.get("session").asText()).isEqualTo("session-1_client-web");
+		assertThat(data.get("token").asText()).isNotBlank();
+	}
+
+	@Test
+	void formLoginRedirectsToCallback() throws Exception {
+		String location = mockMvc.perform(post("/login")
+						.param("session", "session-2_client-web")
+						.param("callback_url", CALLBACK_URL)
+						.param("customer_id", "customer-2"))
+				.andExpect(status().is3xxRedirection())
+				.andReturn().getResponse().getRedirectedUrl();
+
+		assertThat(location).startsWith(CALLBACK_URL + "?data=");
+	}
+
+	@Test
+	void userInfoResolvesIssuedToken() throws Exception {
+		String token = login("session-3_client-web", "customer-3").get("token").asText();
+
+		mockMvc.perform(post("/api/userinfo")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"platformId\":\"authserver\",\"token\":\"" + token + "\"}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.statusCode").value("0000"))
+				.andExpect(jsonPath("$.customerId").value("customer-3"));
+	}
+
+	@Test
+	void userInfoRejectsUnknownTokenAndMissingParameters() throws Exception {
+		mockMvc.perform(post("/api/userinfo")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"platformId\":\"authserver\",\"token\":\"unknown\"}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.statusCode").value("9002"));
+
+		mockMvc.perform(post("/api/userinfo")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"token\":\"unknown\"}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.statusCode").value("9001"));
+	}
+
+	@Test
+	void batchUserInfoAnswersInTokenOrder() throws Exception {
+		String first = login("session-4_client-web", "customer-4").get("token").asText();
+		String second = login("session-5_client-web", "customer-5").get("token").asText();
+
+		mockMvc.perform(post("/api/userinfo/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"platformId\":\"authserver\",\"tokens\":[\"" + second + "\",\"unknown\",\"" + first + "\"]}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].customerId").value("customer-5"))
+				.andExpect(jsonPath("$[1].statusCode").value("9002"))
+				.andExpect(jsonPath("$[2].customerId").value("customer-4"));
+	}
+
+	@Test
+	void oversizedBatchIsRejected() throws Exception {
+		String tokens = objectMapper.writeValueAsString(Collections.nCopies(101, "token"));
+
+		mockMvc.perform(post("/api/userinfo/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"platformId\":\"authserver\",\"tokens\":" + tokens + "}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void healthReportsStoreStats() throws Exception {
+		mockMvc.perform(get("/health"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.status").value("UP"))
+				.andExpect(jsonPath("$.sessions").exists())
+				.andExpect(jsonPath("$.tokens").exists());
+	}
+
+	private JsonNode login(String session, String customerId) throws Exception {
+		String location = mockMvc.perform(get("/test-login")
+						.param("session", session)
+						.param("callback_url", CALLBACK_URL)
+						.param("customer_id", customerId))
+				.andExpect(status().is3xxRedirection())
+				.andReturn().getResponse().getRedirectedUrl();
+
+		assertThat(location).startsWith(CALLBACK_URL);
+		String data = UriUtils.decode(
+				UriComponentsBuilder.fromUriString(location).build().getQueryParams().getFirst("data"),
+				StandardCharsets.UTF_8);
+		return objectMapper.readTree(Base64.getDecoder().decode(data));
+	}
+}
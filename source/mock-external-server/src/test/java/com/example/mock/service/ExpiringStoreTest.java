@@ -0,0 +1,60 @@
+package com.example.mock.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpiringStoreTest {
+
+	@Test
+	void expiredEntriesAreNotReturned() throws InterruptedException {
+		try (ExpiringStore<String, String> store =
+				new ExpiringStore<>("test", Duration.ofMillis(100), Duration.ofMillis(10), 10)) {
+			store.put("a", "1");
+			assertThat(store.get("a")).isEqualTo("1");
+
+			Thread.sleep(250);
+
+			assertThat(store.get("a")).isNull();
+			assertThat(store.size()).isZero();
+		}
+	}
+
+	@Test
+	void fullStoreEvictsTheSoonestExpiringEntry() throws InterruptedException {
+		try (ExpiringStore<String, String> store =
+				new ExpiringStore<>("test", Duration.ofSeconds(10), Duration.ofMillis(100), 2)) {
+			store.put("a", "1");
+			Thread.sleep(150);
+			store.put("b", "2");
+			Thread.sleep(150);
+			store.put("c", "3");
+
+			assertThat(store.get("a")).isNull();
+			assertThat(store.get("b")).isEqualTo("2");
+			assertThat(store.get("c")).isEqualTo("3");
+			assertThat(store.evictions()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void rePutKeyIsNotEvictedThroughItsStaleSlot() throws InterruptedException {
+		try (ExpiringStore<String, String> store =
+				new ExpiringStore<>("test", Duration.ofSeconds(10), Duration.ofMillis(100), 2)) {
+			store.put("a", "1");
+			Thread.sleep(150);
+			store.put("b", "2");
+			Thread.sleep(150);
+			// "a" now expires after "b"; its first slot still holds a stale reference
+			store.put("a", "1'");
+			store.put("c", "3");
+
+			assertThat(store.get("a")).isEqualTo("1'");
+			assertThat(store.get("b")).isNull();
+			assertThat(store.get("c")).isEqualTo("3");
+			assertThat(store.evictions()).isEqualTo(1);
+		}
+	}
+}
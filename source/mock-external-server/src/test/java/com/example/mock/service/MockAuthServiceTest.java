@@ -0,0 +1,50 @@
+package com.example.mock.service;
+
+import com.example.mock.config.MockServerProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MockAuthServiceTest {
+
+	@Test
+	void signedTokenResolvesOnAnotherInstance() {
+		MockAuthService issuer = service(Duration.ofMinutes(10));
+		MockAuthService other = service(Duration.ofMinutes(10));
+		try {
+			String token = issuer.registerSession("session-1", "customer-1");
+
+			assertThat(other.getCustomerIdByToken(token)).isEqualTo("customer-1");
+			assertThat(other.getCustomerIdByToken(token + "x")).isNull();
+		} finally {
+			issuer.close();
+			other.close();
+		}
+	}
+
+	@Test
+	void signedTokenExpiresAfterTokenTtl() throws InterruptedException {
+		MockAuthService issuer = service(Duration.ofMillis(100));
+		MockAuthService other = service(Duration.ofMillis(100));
+		try {
+			String token = issuer.registerSession("session-1", "customer-1");
+
+			Thread.sleep(150);
+
+			assertThat(other.getCustomerIdByToken(token)).isNull();
+		} finally {
+			issuer.close();
+			other.close();
+		}
+	}
+
+	private static MockAuthService service(Duration tokenTtl) {
+		MockServerProperties properties = new MockServerProperties();
+		properties.getStore().setTokenSecret("shared-secret");
+		properties.getStore().setTokenTtl(tokenTtl);
+		properties.getStore().setTick(Duration.ofMillis(10));
+		return new MockAuthService(properties);
+	}
+}
@@ -0,0 +1,119 @@
+package com.example.demo.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive concurrency limit (AIMD on latency)
+ *
+ * Admission is a single increment of the in-flight counter. On completion the limit grows
+ * by about one per limit-worth of fast completions while the limit is actually in use, and
+ * shrinks multiplicatively (at most once per no-load round trip) when a request was slow or
+ * failed. "Slow" is relative to the no-load latency: the minimum latency seen over a
+ * sliding window, so the limit follows queueing in the DB pool or external API rather than
+ * a fixed timeout. Only successful requests are latency samples: a fast failure (an exhausted
+ * connection budget, a DB error) would otherwise set the baseline so low that every normal
+ * request counts as slow.
+ */
+public final class AdaptiveConcurrencyLimit {
+
+    private static final long NO_LOAD_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final long latencySlackNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+
+    // Guarded by this
+    private long noLoadLatencyNanos = Long.MAX_VALUE;
+    private long windowMinLatencyNanos = Long.MAX_VALUE;
+    private long windowStartNanos;
+    private long lastDecreaseNanos;
+
+    public AdaptiveConcurrencyLimit(
+            int initialLimit, int minLimit, int maxLimit,
+            double latencyTolerance, long latencySlackNanos, double backoffRatio) {
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.latencySlackNanos = latencySlackNanos;
+        this.backoffRatio = backoffRatio;
+        this.windowStartNanos = System.nanoTime();
+        this.lastDecreaseNanos = windowStartNanos - NO_LOAD_WINDOW_NANOS;
+    }
+
+    /**
+     * @return true if admitted; the caller must then call {@link #release}
+     */
+    public boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > (int) limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record a completed request
+     *
+     * @param latencyNanos request latency
+     * @param failed true if the request failed in a way that indicates overload
+     * @param nowNanos current {@link System#nanoTime()}
+     */
+    public void release(long latencyNanos, boolean failed, long nowNanos) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (!failed) {
+                trackNoLoadLatency(latencyNanos, nowNanos);
+            }
+            long threshold = Math.max(
+                    (long) (noLoadLatencyNanos * latencyTolerance), noLoadLatencyNanos + latencySlackNanos);
+            if (failed || latencyNanos > threshold) {
+                // Latency slack floors the interval for endpoints whose no-load latency is tiny,
+                // and stands in for it until a successful request has been sampled
+                long interval = noLoadLatencyNanos == Long.MAX_VALUE
+                        ? latencySlackNanos
+                        : Math.max(noLoadLatencyNanos, latencySlackNanos);
+                if (nowNanos - lastDecreaseNanos >= interval) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = nowNanos;
+                }
+            } else if (inFlightAtCompletion * 2 >= limit) {
+                // Only grow while the limit is actually being used
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+    }
+
+    /**
+     * Record a completed request that says nothing about load (e.g. a fast client error):
+     * frees its slot without a latency sample
+     */
+    public void releaseWithoutSample() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void trackNoLoadLatency(long latencyNanos, long nowNanos) {
+        windowMinLatencyNanos = Math.min(windowMinLatencyNanos, latencyNanos);
+        noLoadLatencyNanos = Math.min(noLoadLatencyNanos, latencyNanos);
+        if (nowNanos - windowStartNanos >= NO_LOAD_WINDOW_NANOS) {
+            // Let the baseline rise again if the environment got permanently slower
+            noLoadLatencyNanos = windowMinLatencyNanos;
+            windowMinLatencyNanos = Long.MAX_VALUE;
+            windowStartNanos = nowNanos;
+        }
+    }
+}
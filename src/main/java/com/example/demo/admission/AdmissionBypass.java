@@ -0,0 +1,50 @@
+package com.example.demo.admission;
+
+import com.example.demo.util.SecureIdGenerator;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Lets the application's own warm-up requests through the admission filters untouched
+ *
+ * Warm-up runs before the node reports ready, with everything still cold: its slow samples
+ * would skew the adaptive concurrency limits, and it would take lane slots and rate-limit
+ * tokens. While warm-up runs, requests presenting the per-process value of {@link #HEADER}
+ * skip load shedding, lanes and the client rate limit. The value is random, never leaves
+ * the process and is discarded once warm-up ends, so other requests cannot use the bypass.
+ */
+public final class AdmissionBypass {
+
+    public static final String HEADER = "X-Warm-Up";
+
+    private static volatile byte[] value;
+
+    private AdmissionBypass() {
+    }
+
+    /**
+     * Allow the bypass until {@link #close()}
+     *
+     * @return value to send in {@link #HEADER}
+     */
+    public static String open() {
+        String opened = SecureIdGenerator.newId();
+        value = opened.getBytes(StandardCharsets.US_ASCII);
+        return opened;
+    }
+
+    public static void close() {
+        value = null;
+    }
+
+    static boolean matches(HttpServletRequest request) {
+        byte[] expected = value;
+        if (expected == null) {
+            return false;
+        }
+        String presented = request.getHeader(HEADER);
+        return presented != null && MessageDigest.isEqual(expected, presented.getBytes(StandardCharsets.US_ASCII));
+    }
+}
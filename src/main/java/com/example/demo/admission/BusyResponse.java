@@ -0,0 +1,58 @@
+package com.example.demo.admission;
+
+import com.example.demo.exception.ErrorCode;
+import com.example.demo.exception.ErrorPageCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 503 response for requests rejected by admission control or out of deadline budget
+ *
+ * Browser navigations get the pre-rendered error page, other clients an OAuth2-style
+ * JSON error; both with Retry-After.
+ */
+final class BusyResponse {
+
+    private static final byte[] BUSY_BODY =
+            "{\"error\":\"temporarily_unavailable\",\"error_description\":\"Server is busy, please retry\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TIMEOUT_BODY =
+            "{\"error\":\"temporarily_unavailable\",\"error_description\":\"Request timed out, please retry\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+    private static final String TEXT_HTML_UTF8 = MediaType.TEXT_HTML_VALUE + ";charset=UTF-8";
+
+    private BusyResponse() {
+    }
+
+    static void write(HttpServletRequest request, HttpServletResponse response, ErrorPageCache errorPageCache)
+            throws IOException {
+        write(request, response, errorPageCache, ErrorCode.SERVER_BUSY, BUSY_BODY);
+    }
+
+    static void writeTimeout(HttpServletRequest request, HttpServletResponse response, ErrorPageCache errorPageCache)
+            throws IOException {
+        write(request, response, errorPageCache, ErrorCode.REQUEST_TIMEOUT, TIMEOUT_BODY);
+    }
+
+    private static void write(HttpServletRequest request, HttpServletResponse response, ErrorPageCache errorPageCache,
+            ErrorCode errorCode, byte[] jsonBody) throws IOException {
+        boolean browser = acceptsHtml(request);
+        byte[] body = browser ? errorPageCache.page(errorCode) : jsonBody;
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(browser ? TEXT_HTML_UTF8 : MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static boolean acceptsHtml(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return accept != null && accept.contains(MediaType.TEXT_HTML_VALUE);
+    }
+}
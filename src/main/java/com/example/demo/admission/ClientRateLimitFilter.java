@@ -0,0 +1,137 @@
+package com.example.demo.admission;
+
+import com.example.demo.config.RateLimitProperties;
+import com.example.demo.constant.ClientSettingKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-client rate limiting for the token endpoint
+ *
+ * Runs after client authentication, so the limit applies to the authenticated client_id.
+ * Limits come from the client's ClientSettings ({@link ClientSettingKeys}) and fall back
+ * to rate-limit.* defaults. Rejected requests get 429 with Retry-After before any
+ * database or signing work is done. Warm-up requests ({@link AdmissionBypass}) are not counted.
+ *
+ * Metrics: oauth2.token.rate_limit{client_id, outcome=allowed|rejected}
+ */
+public class ClientRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientRateLimitFilter.class);
+
+    private static final byte[] REJECTED_BODY =
+            "{\"error\":\"too_many_requests\",\"error_description\":\"Client rate limit exceeded\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    private final RequestMatcher tokenEndpointMatcher;
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ClientLimiter> limiters = new ConcurrentHashMap<>();
+
+    public ClientRateLimitFilter(
+            RequestMatcher tokenEndpointMatcher,
+            RateLimitProperties properties,
+            MeterRegistry meterRegistry) {
+        this.tokenEndpointMatcher = tokenEndpointMatcher;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || !tokenEndpointMatcher.matches(request) || AdmissionBypass.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!(authentication instanceof OAuth2ClientAuthenticationToken clientAuthentication)
+                || clientAuthentication.getRegisteredClient() == null) {
+            // Client authentication failed or is pending: the token endpoint rejects it anyway
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        ClientLimiter limiter = limiterFor(clientAuthentication.getRegisteredClient());
+        long waitNanos = limiter.bucket().tryAcquire(System.nanoTime());
+        if (waitNanos == 0) {
+            limiter.allowed().increment();
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        limiter.rejected().increment();
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        logger.debug("Token request rate limited: retry after {}s", retryAfterSeconds);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(REJECTED_BODY.length);
+        response.getOutputStream().write(REJECTED_BODY);
+    }
+
+    private ClientLimiter limiterFor(RegisteredClient registeredClient) {
+        double configuredPerSecond = setting(registeredClient, ClientSettingKeys.TOKEN_RATE_LIMIT_PER_SECOND,
+                properties.getTokenPerSecond()).doubleValue();
+        int configuredBurst = setting(registeredClient, ClientSettingKeys.TOKEN_RATE_LIMIT_BURST,
+                properties.getTokenBurst()).intValue();
+        // A zero or negative client override falls back to the defaults
+        boolean valid = configuredPerSecond > 0 && configuredBurst >= 1;
+        double perSecond = valid ? configuredPerSecond : properties.getTokenPerSecond();
+        int burst = valid ? configuredBurst : properties.getTokenBurst();
+
+        ClientLimiter limiter = limiters.get(registeredClient.getId());
+        if (limiter != null && limiter.bucket().hasLimit(perSecond, burst)) {
+            return limiter;
+        }
+        // First request, or the client's limit was changed
+        return limiters.compute(registeredClient.getId(), (id, existing) ->
+                existing != null && existing.bucket().hasLimit(perSecond, burst)
+                        ? existing
+                        : newLimiter(registeredClient.getClientId(), perSecond, burst));
+    }
+
+    private ClientLimiter newLimiter(String clientId, double perSecond, int burst) {
+        return new ClientLimiter(
+                new TokenBucket(perSecond, burst, properties.getStripes()),
+                counter(clientId, "allowed"),
+                counter(clientId, "rejected"));
+    }
+
+    private Counter counter(String clientId, String outcome) {
+        return Counter.builder("oauth2.token.rate_limit")
+                .description("Token endpoint requests by rate limit outcome")
+                .tag("client_id", clientId)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Number setting(RegisteredClient registeredClient, String key, Number defaultValue) {
+        Object value = registeredClient.getClientSettings().getSetting(key);
+        return value instanceof Number number ? number : defaultValue;
+    }
+
+    private record ClientLimiter(TokenBucket bucket, Counter allowed, Counter rejected) {
+    }
+}
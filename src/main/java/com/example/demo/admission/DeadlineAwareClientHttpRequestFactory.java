@@ -0,0 +1,33 @@
+package com.example.demo.admission;
+
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * HTTP request factory whose connect and read timeouts never exceed the remaining
+ * deadline of the current request
+ *
+ * Without a deadline the configured timeouts apply unchanged. Once the deadline has
+ * passed, no connection is opened and {@link DeadlineExceededException} is thrown.
+ */
+public class DeadlineAwareClientHttpRequestFactory extends SimpleClientHttpRequestFactory {
+
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    public DeadlineAwareClientHttpRequestFactory(int connectTimeoutMs, int readTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        setConnectTimeout(connectTimeoutMs);
+        setReadTimeout(readTimeoutMs);
+    }
+
+    @Override
+    protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+        super.prepareConnection(connection, httpMethod);
+        connection.setConnectTimeout(RequestDeadline.timeoutMillis(connectTimeoutMs));
+        connection.setReadTimeout(RequestDeadline.timeoutMillis(readTimeoutMs));
+    }
+}
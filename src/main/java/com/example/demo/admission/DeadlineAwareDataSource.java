@@ -0,0 +1,107 @@
+package com.example.demo.admission;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataSource that bounds JDBC work by the deadline of the current request
+ *
+ * A connection is not even requested once the deadline has passed, waiting for a pooled
+ * Hikari connection is cut to the remaining budget when that is shorter than the pool's
+ * connection-timeout, and every statement created for a request gets a query timeout no
+ * longer than the remaining budget (JDBC query timeouts have second granularity, so it is
+ * rounded up). Work outside any deadline (startup, scheduled jobs) is unchanged.
+ */
+public class DeadlineAwareDataSource extends DelegatingDataSource {
+
+    public DeadlineAwareDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (RequestDeadline.current() == null) {
+            return super.getConnection();
+        }
+        checkDeadline();
+        return bounded(obtainConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (RequestDeadline.current() == null) {
+            return super.getConnection(username, password);
+        }
+        checkDeadline();
+        return bounded(super.getConnection(username, password));
+    }
+
+    /**
+     * Borrow from the Hikari pool with a wait no longer than the remaining budget
+     */
+    private Connection obtainConnection() throws SQLException {
+        RequestDeadline deadline = RequestDeadline.current();
+        if (deadline != null && obtainTargetDataSource() instanceof HikariDataSource hikari
+                && hikari.getHikariPoolMXBean() instanceof HikariPool pool) {
+            long remainingMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos()));
+            if (remainingMillis < hikari.getConnectionTimeout()) {
+                return pool.getConnection(remainingMillis);
+            }
+        }
+        return super.getConnection();
+    }
+
+    private static void checkDeadline() throws SQLTimeoutException {
+        if (RequestDeadline.isCurrentExpired()) {
+            throw new SQLTimeoutException("Request deadline exceeded before JDBC access");
+        }
+    }
+
+    /**
+     * Apply the remaining budget to statements created while a deadline is bound
+     */
+    private static Connection bounded(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                DeadlineAwareDataSource.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                    if (result instanceof Statement statement) {
+                        applyTimeout(statement);
+                    }
+                    return result;
+                });
+    }
+
+    private static void applyTimeout(Statement statement) throws SQLException {
+        RequestDeadline deadline = RequestDeadline.current();
+        if (deadline == null) {
+            return;
+        }
+        long remainingNanos = deadline.remainingNanos();
+        if (remainingNanos <= 0) {
+            statement.close();
+            throw new SQLTimeoutException("Request deadline exceeded before query execution");
+        }
+        int seconds = (int) Math.max(1, (remainingNanos + 999_999_999L) / 1_000_000_000L);
+        int current = statement.getQueryTimeout();
+        if (current == 0 || seconds < current) {
+            statement.setQueryTimeout(seconds);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.demo.admission;
+
+/**
+ * The current request has used up its deadline budget
+ *
+ * Stackless: it is an expected outcome under load, not a bug to debug.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String endpoint) {
+        super("Deadline of '" + endpoint + "' exceeded", null, false, false);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.admission;
+
+import com.example.demo.config.DeadlineProperties;
+import com.example.demo.exception.ErrorPageCache;
+import com.example.demo.exception.RateLimitedLogger;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Starts the deadline clock of each request
+ *
+ * Runs first among the admission filters so that time spent waiting for a lane slot
+ * already counts against the budget. Deadline failures that escape the filter chain
+ * (the authorization server endpoints run inside Spring Security filters, out of reach
+ * of the controller advice) are answered with 503 and Retry-After here.
+ */
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineFilter.class);
+
+    private final List<Endpoint> endpoints;
+    private final ErrorPageCache errorPageCache;
+    private final RateLimitedLogger timeoutLogger = new RateLimitedLogger(logger, Duration.ofSeconds(10));
+
+    public DeadlineFilter(DeadlineProperties properties, ErrorPageCache errorPageCache) {
+        this.endpoints = properties.getEndpoints().entrySet().stream()
+                .map(entry -> new Endpoint(entry.getKey(), entry.getValue()))
+                .toList();
+        this.errorPageCache = errorPageCache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Endpoint endpoint = endpointFor(request);
+        if (endpoint == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        RequestDeadline.bind(new RequestDeadline(endpoint.name, System.nanoTime() + endpoint.budgetNanos));
+        try {
+            filterChain.doFilter(request, response);
+        } catch (ServletException | IOException | RuntimeException e) {
+            if (response.isCommitted() || !RequestDeadline.isDeadlineFailure(e)) {
+                throw e;
+            }
+            timeoutLogger.warn(endpoint.name, "Deadline of '" + endpoint.name + "' exceeded: " + e.getMessage());
+            response.reset();
+            BusyResponse.writeTimeout(request, response, errorPageCache);
+        } finally {
+            RequestDeadline.unbind();
+        }
+    }
+
+    private Endpoint endpointFor(HttpServletRequest request) {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.matcher.matches(request)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    private static final class Endpoint {
+
+        private final String name;
+        private final RequestMatcher matcher;
+        private final long budgetNanos;
+
+        Endpoint(String name, DeadlineProperties.Endpoint config) {
+            this.name = name;
+            List<RequestMatcher> matchers = config.getPaths().stream()
+                    .map(path -> (RequestMatcher) new AntPathRequestMatcher(path))
+                    .toList();
+            this.matcher = matchers.isEmpty() ? request -> false : new OrRequestMatcher(matchers);
+            this.budgetNanos = config.getBudget().toNanos();
+        }
+    }
+}
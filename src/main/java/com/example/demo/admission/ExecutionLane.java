@@ -0,0 +1,136 @@
+package com.example.demo.admission;
+
+import com.example.demo.config.LaneProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution lane (bulkhead)
+ *
+ * A class of traffic with its own budget of request threads and DB connections.
+ * The lane of the current request is bound to the thread by {@link LaneFilter} so that
+ * {@link LaneAwareDataSource} can charge connections to it.
+ *
+ * Requests waiting for a worker slot block their container thread, so at most max-waiting of
+ * them wait and the rest are rejected at once: a lane holds no more than max-concurrent plus
+ * max-waiting container threads.
+ */
+public final class ExecutionLane {
+
+    private static final ThreadLocal<ExecutionLane> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final RequestMatcher matcher;
+    private final int maxConcurrent;
+    private final int dbConnections;
+    private final long maxWaitNanos;
+    private final int maxWaiting;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Semaphore workers;
+    private final Semaphore connections;
+    private Counter workerRejections;
+    private Counter connectionRejections;
+
+    ExecutionLane(String name, LaneProperties.Lane config) {
+        this.name = name;
+        List<RequestMatcher> matchers = config.getPaths().stream()
+                .map(path -> (RequestMatcher) new AntPathRequestMatcher(path))
+                .toList();
+        // A lane without paths receives no traffic
+        this.matcher = matchers.isEmpty() ? request -> false : new OrRequestMatcher(matchers);
+        this.maxConcurrent = config.getMaxConcurrent();
+        this.dbConnections = config.getDbConnections();
+        this.maxWaitNanos = config.getMaxWait().toNanos();
+        this.maxWaiting = config.getMaxWaiting();
+        this.workers = new Semaphore(maxConcurrent);
+        this.connections = new Semaphore(dbConnections);
+    }
+
+    /**
+     * Lane of the request running on this thread, or null
+     */
+    public static ExecutionLane current() {
+        return CURRENT.get();
+    }
+
+    static void bind(ExecutionLane lane) {
+        CURRENT.set(lane);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    RequestMatcher getMatcher() {
+        return matcher;
+    }
+
+    boolean acquireWorker() throws InterruptedException {
+        if (workers.tryAcquire()) {
+            return true;
+        }
+        if (waiting.incrementAndGet() <= maxWaiting) {
+            try {
+                if (workers.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                    return true;
+                }
+            } finally {
+                waiting.decrementAndGet();
+            }
+        } else {
+            waiting.decrementAndGet();
+        }
+        workerRejections.increment();
+        return false;
+    }
+
+    void releaseWorker() {
+        workers.release();
+    }
+
+    boolean acquireConnection() throws InterruptedException {
+        if (connections.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+            return true;
+        }
+        connectionRejections.increment();
+        return false;
+    }
+
+    void releaseConnection() {
+        connections.release();
+    }
+
+    void bindMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("lane.workers.active", workers, semaphore -> maxConcurrent - semaphore.availablePermits())
+                .description("Request threads in use by the lane")
+                .tag("lane", name)
+                .register(meterRegistry);
+        Gauge.builder("lane.connections.active", connections, semaphore -> dbConnections - semaphore.availablePermits())
+                .description("DB connections in use by the lane")
+                .tag("lane", name)
+                .register(meterRegistry);
+        workerRejections = rejectionCounter(meterRegistry, "worker");
+        connectionRejections = rejectionCounter(meterRegistry, "connection");
+    }
+
+    private Counter rejectionCounter(MeterRegistry meterRegistry, String resource) {
+        return Counter.builder("lane.rejected")
+                .description("Requests rejected because the lane budget was exhausted")
+                .tag("lane", name)
+                .tag("resource", resource)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.admission;
+
+import com.example.demo.config.LaneProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.List;
+
+/**
+ * Configured execution lanes, matched in declaration order
+ *
+ * Metrics: lane.workers.active{lane}, lane.connections.active{lane}, lane.rejected{lane,resource}
+ */
+public class ExecutionLanes implements MeterBinder {
+
+    private final List<ExecutionLane> lanes;
+
+    public ExecutionLanes(LaneProperties properties) {
+        this.lanes = properties.getLanes().entrySet().stream()
+                .map(entry -> new ExecutionLane(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    /**
+     * @return lane for the request, or null if it belongs to no lane
+     */
+    public ExecutionLane laneFor(HttpServletRequest request) {
+        for (ExecutionLane lane : lanes) {
+            if (lane.getMatcher().matches(request)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        lanes.forEach(lane -> lane.bindMetrics(registry));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.admission;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * DataSource that charges pooled connections to the current execution lane
+ *
+ * A lane can hold at most its db-connections budget of the shared pool, so a slow lane
+ * cannot starve the others of connections. Work outside any lane (startup, scheduled
+ * jobs) is not limited.
+ */
+public class LaneAwareDataSource extends DelegatingDataSource {
+
+    public LaneAwareDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ExecutionLane lane = ExecutionLane.current();
+        if (lane == null) {
+            return super.getConnection();
+        }
+        acquire(lane);
+        try {
+            return track(super.getConnection(), lane);
+        } catch (SQLException | RuntimeException e) {
+            lane.releaseConnection();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        ExecutionLane lane = ExecutionLane.current();
+        if (lane == null) {
+            return super.getConnection(username, password);
+        }
+        acquire(lane);
+        try {
+            return track(super.getConnection(username, password), lane);
+        } catch (SQLException | RuntimeException e) {
+            lane.releaseConnection();
+            throw e;
+        }
+    }
+
+    private static void acquire(ExecutionLane lane) throws SQLException {
+        try {
+            if (lane.acquireConnection()) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new SQLTransientConnectionException(
+                "Connection budget of lane '" + lane.getName() + "' exhausted");
+    }
+
+    /**
+     * Release the lane slot exactly once when the connection is closed
+     */
+    private static Connection track(Connection connection, ExecutionLane lane) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                LaneAwareDataSource.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                        lane.releaseConnection();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.admission;
+
+import com.example.demo.exception.ErrorPageCache;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Routes each request to its execution lane
+ *
+ * The request holds one of the lane's worker slots while it runs, and its lane is bound to the
+ * thread for DB connection accounting. A request that cannot get a slot within the lane's
+ * max-wait, or finds max-waiting requests already waiting, is rejected with 503. Waiting
+ * happens on the container thread, so a lane occupies at most max-concurrent plus max-waiting
+ * container threads; the rest of the pool stays available to other lanes. Warm-up requests ({@link AdmissionBypass}) run outside
+ * any lane.
+ */
+public class LaneFilter extends OncePerRequestFilter {
+
+    private final ExecutionLanes lanes;
+    private final ErrorPageCache errorPageCache;
+
+    public LaneFilter(ExecutionLanes lanes, ErrorPageCache errorPageCache) {
+        this.lanes = lanes;
+        this.errorPageCache = errorPageCache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ExecutionLane lane = lanes.laneFor(request);
+        if (lane == null || AdmissionBypass.matches(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean acquired;
+        try {
+            acquired = lane.acquireWorker();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            BusyResponse.write(request, response, errorPageCache);
+            return;
+        }
+
+        ExecutionLane.bind(lane);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ExecutionLane.unbind();
+            lane.releaseWorker();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.admission;
+
+import com.example.demo.config.LoadSheddingProperties;
+import com.example.demo.exception.ErrorPageCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adaptive load shedding in front of the servlet chain
+ *
+ * Each configured group (token endpoint, external callback, pages) has its own
+ * {@link AdaptiveConcurrencyLimit}. Requests beyond the current limit are rejected at once
+ * with 503 and Retry-After (an error page for browsers), instead of queueing for a DB
+ * connection or the external API until the user has given up.
+ *
+ * Only 2xx/3xx responses are latency samples for the no-load baseline; a fast 4xx rejection
+ * says nothing about queueing, so it only frees its slot. 5xx and exceptions count as overload.
+ * Warm-up requests ({@link AdmissionBypass}) are neither limited nor sampled.
+ *
+ * Metrics: http.server.load_shedding{group, outcome=accepted|shed},
+ * http.server.load_shedding.limit{group}, http.server.load_shedding.in_flight{group}
+ */
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    private final List<LimitGroup> groups = new ArrayList<>();
+    private final ErrorPageCache errorPageCache;
+
+    public LoadSheddingFilter(
+            LoadSheddingProperties properties, MeterRegistry meterRegistry, ErrorPageCache errorPageCache) {
+        this.errorPageCache = errorPageCache;
+        for (Map.Entry<String, LoadSheddingProperties.Group> entry : properties.getGroups().entrySet()) {
+            groups.add(LimitGroup.create(entry.getKey(), entry.getValue(), meterRegistry));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        LimitGroup group = groupFor(request);
+        if (group == null || AdmissionBypass.matches(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        AdaptiveConcurrencyLimit limit = group.limit();
+        if (!limit.tryAcquire()) {
+            group.shed().increment();
+            BusyResponse.write(request, response, errorPageCache);
+            return;
+        }
+
+        group.accepted().increment();
+        long start = System.nanoTime();
+        int status = HttpStatus.INTERNAL_SERVER_ERROR.value();
+        try {
+            filterChain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            long now = System.nanoTime();
+            if (status >= 400 && status < 500) {
+                limit.releaseWithoutSample();
+            } else {
+                limit.release(now - start, status >= 500, now);
+            }
+        }
+    }
+
+    private LimitGroup groupFor(HttpServletRequest request) {
+        for (LimitGroup group : groups) {
+            if (group.matcher().matches(request)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private record LimitGroup(
+            RequestMatcher matcher, AdaptiveConcurrencyLimit limit, Counter accepted, Counter shed) {
+
+        static LimitGroup create(String name, LoadSheddingProperties.Group config, MeterRegistry meterRegistry) {
+            List<RequestMatcher> matchers = config.getPaths().stream()
+                    .map(path -> (RequestMatcher) new AntPathRequestMatcher(path))
+                    .toList();
+            AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(
+                    config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(),
+                    config.getLatencyTolerance(), config.getLatencySlack().toNanos(), config.getBackoffRatio());
+
+            Gauge.builder("http.server.load_shedding.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("group", name)
+                    .register(meterRegistry);
+            Gauge.builder("http.server.load_shedding.in_flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("Requests currently admitted")
+                    .tag("group", name)
+                    .register(meterRegistry);
+            // A group without paths receives no traffic
+            RequestMatcher matcher = matchers.isEmpty() ? request -> false : new OrRequestMatcher(matchers);
+            return new LimitGroup(matcher, limit,
+                    counter(meterRegistry, name, "accepted"), counter(meterRegistry, name, "shed"));
+        }
+
+        private static Counter counter(MeterRegistry meterRegistry, String group, String outcome) {
+            return Counter.builder("http.server.load_shedding")
+                    .description("Requests by load shedding decision")
+                    .tag("group", group)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.demo.admission;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline of the request running on this thread
+ *
+ * Bound by {@link DeadlineFilter}. Downstream calls (external HTTP, JDBC) size their
+ * timeouts from the remaining budget instead of their fixed per-hop values, and a request
+ * that has run out of time fails fast at the next call instead of stacking timeouts.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String endpoint;
+    private final long deadlineNanos;
+
+    RequestDeadline(String endpoint, long deadlineNanos) {
+        this.endpoint = endpoint;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Deadline of the request running on this thread, or null
+     */
+    public static RequestDeadline current() {
+        return CURRENT.get();
+    }
+
+    static void bind(RequestDeadline deadline) {
+        CURRENT.set(deadline);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Deadline the given budget from now, for work started outside {@link DeadlineFilter}
+     */
+    public static RequestDeadline after(String endpoint, Duration budget) {
+        return new RequestDeadline(endpoint, System.nanoTime() + budget.toNanos());
+    }
+
+    /**
+     * The earlier of two deadlines, null standing for none
+     */
+    public static RequestDeadline earliest(RequestDeadline first, RequestDeadline second) {
+        if (first == null || second == null) {
+            return first != null ? first : second;
+        }
+        return first.deadlineNanos - second.deadlineNanos <= 0 ? first : second;
+    }
+
+    /**
+     * Carry the caller's deadline into a task run on another thread
+     */
+    public static Runnable propagate(Runnable task) {
+        RequestDeadline deadline = current();
+        if (deadline == null) {
+            return task;
+        }
+        return () -> runWithin(deadline, task);
+    }
+
+    /**
+     * Run a task on this thread under the given deadline (none if null), then restore the previous one
+     */
+    public static void runWithin(RequestDeadline deadline, Runnable task) {
+        RequestDeadline previous = current();
+        if (deadline == null) {
+            unbind();
+        } else {
+            bind(deadline);
+        }
+        try {
+            task.run();
+        } finally {
+            if (previous == null) {
+                unbind();
+            } else {
+                bind(previous);
+            }
+        }
+    }
+
+    /**
+     * Fail fast when the current request is out of time
+     *
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public static void checkpoint() {
+        RequestDeadline deadline = current();
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException(deadline.endpoint);
+        }
+    }
+
+    /**
+     * Timeout for the next downstream call: the configured value, capped by the remaining budget
+     *
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public static int timeoutMillis(int configuredMillis) {
+        RequestDeadline deadline = current();
+        if (deadline == null) {
+            return configuredMillis;
+        }
+        long remaining = deadline.remainingNanos();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException(deadline.endpoint);
+        }
+        // Round up so that a call timing out on the budget finds the deadline expired
+        long remainingMillis = (remaining + MILLIS - 1) / MILLIS;
+        return configuredMillis > 0 ? (int) Math.min(configuredMillis, remainingMillis) : (int) remainingMillis;
+    }
+
+    /**
+     * Whether a failure means the request ran out of time rather than something broke
+     *
+     * True for deadline checkpoints and JDBC timeouts anywhere in the cause chain, and for
+     * any JDBC failure (e.g. a connection wait cut short by the budget) once the current
+     * deadline has passed.
+     */
+    public static boolean isDeadlineFailure(Throwable failure) {
+        boolean jdbc = false;
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeadlineExceededException || cause instanceof SQLTimeoutException
+                    || cause instanceof QueryTimeoutException) {
+                return true;
+            }
+            jdbc |= cause instanceof SQLException || cause instanceof DataAccessException;
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return jdbc && isCurrentExpired();
+    }
+
+    /**
+     * Whether the current request has a deadline that has passed
+     */
+    public static boolean isCurrentExpired() {
+        RequestDeadline deadline = current();
+        return deadline != null && deadline.isExpired();
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+}
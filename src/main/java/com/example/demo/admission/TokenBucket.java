@@ -0,0 +1,70 @@
+package com.example.demo.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, striped token bucket
+ *
+ * Each stripe is a GCRA cell (the "virtual scheduling" form of a token bucket): a single
+ * theoretical arrival time updated by CAS, so admission is one read and one CAS with no
+ * refill bookkeeping. The rate and burst are split evenly across stripes, and callers pick
+ * a stripe by thread, so a hot client does not serialize all threads on one cache line.
+ */
+final class TokenBucket {
+
+    // Keep stripes on separate cache lines
+    private static final int PADDING = 8;
+    private static final long MAX_EMISSION_INTERVAL_NANOS = TimeUnit.DAYS.toNanos(1);
+
+    private final double perSecond;
+    private final int burst;
+    private final int stripes;
+    private final long emissionIntervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLongArray arrivalTimes;
+
+    TokenBucket(double perSecond, int burst, int stripes) {
+        if (!(perSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Token bucket needs a positive rate and burst");
+        }
+        this.perSecond = perSecond;
+        this.burst = burst;
+        // Every stripe must hold at least one token
+        this.stripes = Math.max(1, Math.min(stripes, burst));
+        // Capped so that arrival time arithmetic cannot overflow
+        this.emissionIntervalNanos = (long) Math.min(
+                TimeUnit.SECONDS.toNanos(1) * (double) this.stripes / perSecond, MAX_EMISSION_INTERVAL_NANOS);
+        // Each stripe holds burst / stripes tokens, fractions included
+        this.toleranceNanos = (long) ((double) burst * emissionIntervalNanos / this.stripes) - emissionIntervalNanos;
+        this.arrivalTimes = new AtomicLongArray(this.stripes * PADDING);
+        for (int i = 0; i < this.stripes; i++) {
+            arrivalTimes.set(i * PADDING, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Take one token
+     *
+     * @param nowNanos current {@link System#nanoTime()}
+     * @return 0 if admitted, otherwise nanoseconds until a token becomes available
+     */
+    long tryAcquire(long nowNanos) {
+        int index = (int) (Thread.currentThread().threadId() % stripes) * PADDING;
+        while (true) {
+            long arrivalTime = arrivalTimes.get(index);
+            long scheduled = Math.max(arrivalTime, nowNanos);
+            long wait = scheduled - nowNanos - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrivalTimes.compareAndSet(index, arrivalTime, scheduled + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    boolean hasLimit(double perSecond, int burst) {
+        return this.perSecond == perSecond && this.burst == burst;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo.config;
+
+import com.example.demo.admission.DeadlineAwareDataSource;
+import com.example.demo.admission.DeadlineFilter;
+import com.example.demo.admission.ExecutionLanes;
+import com.example.demo.admission.LaneAwareDataSource;
+import com.example.demo.admission.LaneFilter;
+import com.example.demo.admission.LoadSheddingFilter;
+import com.example.demo.datasource.ReplicaRoutingDataSource;
+import com.example.demo.exception.ErrorPageCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Admission Control Configuration
+ *
+ * Servlet filters that decide whether a request is accepted at all, registered ahead of
+ * the Spring Security filter chain so rejected requests cost almost nothing.
+ */
+@Configuration
+public class AdmissionConfig {
+
+    private static final String PRIMARY_DATA_SOURCE = "dataSource";
+    private static final int DEFAULT_POOL_SIZE = 10;
+    private static final int DEFAULT_CONTAINER_THREADS = 200;
+
+    /**
+     * Per-request deadlines, first so that admission waits count against the budget
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "deadlines", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<DeadlineFilter> deadlineFilter(
+            DeadlineProperties properties, ErrorPageCache errorPageCache) {
+        FilterRegistrationBean<DeadlineFilter> registration =
+                new FilterRegistrationBean<>(new DeadlineFilter(properties, errorPageCache));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+
+    /**
+     * Adaptive load shedding per endpoint group
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "load-shedding", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<LoadSheddingFilter> loadSheddingFilter(
+            LoadSheddingProperties properties, MeterRegistry meterRegistry, ErrorPageCache errorPageCache) {
+        FilterRegistrationBean<LoadSheddingFilter> registration =
+                new FilterRegistrationBean<>(new LoadSheddingFilter(properties, meterRegistry, errorPageCache));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    /**
+     * Execution lanes (bulkheads for machine and browser traffic)
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "lanes", name = "enabled", havingValue = "true")
+    public ExecutionLanes executionLanes(LaneProperties properties, Environment environment) {
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class,
+                DEFAULT_POOL_SIZE);
+        int budgets = properties.getLanes().values().stream().mapToInt(LaneProperties.Lane::getDbConnections).sum();
+        if (budgets >= poolSize) {
+            throw new IllegalStateException("lanes.*.db-connections add up to " + budgets
+                    + ", which must stay below the Hikari pool size (" + poolSize
+                    + ") to leave connections for work outside any lane");
+        }
+        int threads = environment.getProperty("server.tomcat.threads.max", Integer.class, DEFAULT_CONTAINER_THREADS);
+        int workers = properties.getLanes().values().stream()
+                .mapToInt(lane -> lane.getMaxConcurrent() + lane.getMaxWaiting())
+                .sum();
+        if (workers >= threads) {
+            throw new IllegalStateException("lanes.*.max-concurrent plus max-waiting add up to " + workers
+                    + ", which must stay below server.tomcat.threads.max (" + threads
+                    + ") so that no lane can take the threads of another");
+        }
+        return new ExecutionLanes(properties);
+    }
+
+    /**
+     * Lane routing, after load shedding so shed requests never take a lane slot
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "lanes", name = "enabled", havingValue = "true")
+    public FilterRegistrationBean<LaneFilter> laneFilter(ExecutionLanes executionLanes, ErrorPageCache errorPageCache) {
+        FilterRegistrationBean<LaneFilter> registration =
+                new FilterRegistrationBean<>(new LaneFilter(executionLanes, errorPageCache));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+
+    /**
+     * Bound JDBC work of the primary pool by the request deadline and charge its connections
+     * to the current lane
+     *
+     * Only the application DataSource bean is wrapped; with read replicas enabled the pools
+     * inside the routing DataSource are wrapped by ReadReplicaConfig, so replica connections
+     * are never charged to a lane.
+     */
+    @Bean
+    public static BeanPostProcessor admissionDataSourcePostProcessor(Environment environment) {
+        boolean deadlines = environment.getProperty("deadlines.enabled", Boolean.class, true);
+        boolean lanes = environment.getProperty("lanes.enabled", Boolean.class, false);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (PRIMARY_DATA_SOURCE.equals(beanName) && bean instanceof DataSource dataSource
+                        && !(bean instanceof ReplicaRoutingDataSource)) {
+                    return admissionDataSource(dataSource, deadlines, lanes);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Deadline bound innermost, since it borrows from the Hikari pool directly; lane
+     * accounting around it
+     */
+    static DataSource admissionDataSource(DataSource pool, boolean deadlines, boolean lanes) {
+        DataSource dataSource = deadlines ? new DeadlineAwareDataSource(pool) : pool;
+        return lanes ? new LaneAwareDataSource(dataSource) : dataSource;
+    }
+}
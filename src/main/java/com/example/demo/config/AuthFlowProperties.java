@@ -0,0 +1,45 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Authorization Flow Configuration Properties
+ *
+ * Binds to auth-flow.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "auth-flow")
+@Data
+public class AuthFlowProperties {
+
+    /**
+     * Maximum serialized size of the flow state kept in the HTTP session (bytes)
+     */
+    private int maxStateBytes = 2048;
+
+    /**
+     * Stateless mode: carry the flow state in an encrypted token instead of the HTTP session,
+     * so any node can complete the external login callback
+     */
+    private boolean stateless = false;
+
+    /**
+     * Base64 AES key (128/192/256 bit) shared by all nodes for sealing flow state tokens
+     */
+    private String stateTokenKey;
+
+    /**
+     * Validity of a sealed flow state token
+     */
+    private Duration stateTokenTtl = Duration.ofMinutes(10);
+
+    /**
+     * Resume the authorization request directly in /oauth2/callback instead of redirecting
+     * the browser back to /oauth2/authorize (saves one round trip per login)
+     */
+    private boolean resumeInCallback = false;
+}
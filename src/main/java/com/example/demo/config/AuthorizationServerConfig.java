@@ -1,38 +1,90 @@
 package com.example.demo.config;
 
+import com.example.demo.admission.ClientRateLimitFilter;
+import com.example.demo.admission.DeadlineAwareClientHttpRequestFactory;
+import com.example.demo.controller.PageSkeletonCache;
+import com.example.demo.datasource.RecentAuthorizationChanges;
+import com.example.demo.datasource.ReplicaReadOAuth2AuthorizationService;
+import com.example.demo.datasource.ReplicaReadRegisteredClientRepository;
+import com.example.demo.session.AuthFlowCompletionHandler;
+import com.example.demo.session.AuthorizationRequestResumer;
+import com.example.demo.shard.AuthorizationShards;
+import com.example.demo.shard.ShardedOAuth2AuthorizationService;
+import com.example.demo.shard.SlotTable;
+import com.example.demo.shard.SlotTaggingTokenGenerator;
+import com.example.demo.token.AuthorizationCodeGenerator;
+import com.example.demo.token.AuthorizationCodeRedemptionFilter;
+import com.example.demo.token.AuthorizationInvalidationChannel;
+import com.example.demo.token.BinaryOAuth2AuthorizationCodec;
+import com.example.demo.token.CachingOAuth2AuthorizationService;
+import com.example.demo.token.CachingRegisteredClientRepository;
+import com.example.demo.token.ClientIdFilteringRegisteredClientRepository;
+import com.example.demo.token.CodecJdbcOAuth2AuthorizationService;
+import com.example.demo.token.GroupCommitOAuth2AuthorizationService;
+import com.example.demo.token.IntrospectionCache;
+import com.example.demo.token.JsonOAuth2AuthorizationCodec;
+import com.example.demo.token.JwtIntrospectionAuthenticationProvider;
+import com.example.demo.token.KnownClientIds;
+import com.example.demo.token.NormalizedJdbcOAuth2AuthorizationService;
+import com.example.demo.token.OAuth2AuthorizationCodec;
+import com.example.demo.token.ReferenceAccessTokenGenerator;
+import com.example.demo.token.RefreshTokenGenerator;
+import com.example.demo.token.RevokedTokenFilter;
+import com.example.demo.token.SaveNotifyingRegisteredClientRepository;
+import com.example.demo.util.SecureIdGenerator;
 import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jose.jwk.RSAKey;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.security.oauth2.core.OAuth2Token;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
 import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationCodeRequestAuthenticationProvider;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationConsentAuthenticationProvider;
 import org.springframework.security.oauth2.server.authorization.client.JdbcRegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
 import org.springframework.security.oauth2.server.authorization.config.annotation.web.configurers.OAuth2AuthorizationServerConfigurer;
 import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.token.DelegatingOAuth2TokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.JwtGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 import org.springframework.security.web.authentication.LoginUrlAuthenticationEntryPoint;
+import org.springframework.security.web.savedrequest.CookieRequestCache;
 import org.springframework.security.web.savedrequest.HttpSessionRequestCache;
+import org.springframework.security.web.savedrequest.RequestCache;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.RestTemplate;
 
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
-import java.time.Duration;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Configuration for Spring Authorization Server
@@ -41,13 +93,28 @@ import java.util.UUID;
 @Configuration
 public class AuthorizationServerConfig {
 
+    /**
+     * Custom consent (terms) page
+     */
+    public static final String CONSENT_PAGE_URI = "/terms";
+
     @Value("${authorization-server.issuer}")
     private String issuer;
 
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    @Value("${management.server.port:}")
+    private Integer managementPort;
+
     private final ExternalAuthProperties externalAuthProperties;
+    private final AuthFlowCompletionHandler authFlowCompletionHandler;
 
-    public AuthorizationServerConfig(ExternalAuthProperties externalAuthProperties) {
+    public AuthorizationServerConfig(
+            ExternalAuthProperties externalAuthProperties,
+            AuthFlowCompletionHandler authFlowCompletionHandler) {
         this.externalAuthProperties = externalAuthProperties;
+        this.authFlowCompletionHandler = authFlowCompletionHandler;
     }
 
     /**
@@ -56,16 +123,44 @@ public class AuthorizationServerConfig {
      */
     @Bean
     @Order(1)
-    public SecurityFilterChain authorizationServerSecurityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain authorizationServerSecurityFilterChain(
+            HttpSecurity http,
+            RequestCache authorizationRequestCache,
+            RateLimitProperties rateLimitProperties,
+            MeterRegistry meterRegistry,
+            AuthorizationRequestResumer authorizationRequestResumer,
+            JwtDecoder jwtDecoder,
+            ObjectProvider<RevokedTokenFilter> revokedTokenFilter,
+            AuthorizationShardProperties authorizationShardProperties) throws Exception {
         OAuth2AuthorizationServerConfiguration.applyDefaultSecurity(http);
         http.getConfigurer(OAuth2AuthorizationServerConfigurer.class)
             .oidc(Customizer.withDefaults())   // Enable OpenID Connect 1.0
-            .authorizationEndpoint(auth -> auth.consentPage("/terms"));
+            .authorizationEndpoint(auth -> auth
+                .consentPage(CONSENT_PAGE_URI)
+                // Clear the session flow state once consent completes and the code is issued
+                .authorizationResponseHandler(authFlowCompletionHandler)
+                // Codes from SecureIdGenerator, tagged with the authorization's slot when sharded
+                // so redemption finds its shard
+                .authenticationProviders(providers -> providers.forEach(provider -> setAuthorizationCodeGenerator(
+                    provider, authorizationShardProperties.isEnabled()
+                        ? SlotTaggingTokenGenerator.authorizationCodes()
+                        : new AuthorizationCodeGenerator()))))
+            // Introspect JWT access tokens locally, ahead of the database lookup
+            .tokenIntrospectionEndpoint(introspection -> revokedTokenFilter.ifAvailable(filter ->
+                introspection.authenticationProviders(providers -> providers.add(0,
+                    new JwtIntrospectionAuthenticationProvider(jwtDecoder, filter, meterRegistry)))));
 
-        // Only cache /oauth2/authorize requests (avoid robots/error pages)
-        HttpSessionRequestCache requestCache = new HttpSessionRequestCache();
-        requestCache.setRequestMatcher(new AntPathRequestMatcher("/oauth2/authorize"));
-        http.requestCache(cache -> cache.requestCache(requestCache));
+        http.requestCache(cache -> cache.requestCache(authorizationRequestCache));
+
+        // Per-client token rate limit: after client authentication, before the token endpoint
+        http.addFilterBefore(
+            new ClientRateLimitFilter(
+                new AntPathRequestMatcher("/oauth2/token", "POST"), rateLimitProperties, meterRegistry),
+            AuthorizationFilter.class);
+        // A code looked up by a failed redemption must not linger on the pooled thread
+        http.addFilterBefore(
+            new AuthorizationCodeRedemptionFilter(new AntPathRequestMatcher("/oauth2/token", "POST")),
+            AuthorizationFilter.class);
         
         http
             // Redirect unauthenticated users hitting protected endpoints to external-login
@@ -73,7 +168,20 @@ public class AuthorizationServerConfig {
                 .authenticationEntryPoint(new LoginUrlAuthenticationEntryPoint("/external-login"))
             );
         
-        return http.build();
+        SecurityFilterChain chain = http.build();
+        // Let the external login callback resume authorization requests with this chain's providers
+        authorizationRequestResumer.bind(
+            http.getSharedObject(AuthenticationManager.class), http.getSharedObject(SessionRegistry.class));
+        return chain;
+    }
+
+    private static void setAuthorizationCodeGenerator(
+            AuthenticationProvider provider, OAuth2TokenGenerator<OAuth2AuthorizationCode> codeGenerator) {
+        if (provider instanceof OAuth2AuthorizationCodeRequestAuthenticationProvider requestProvider) {
+            requestProvider.setAuthorizationCodeGenerator(codeGenerator);
+        } else if (provider instanceof OAuth2AuthorizationConsentAuthenticationProvider consentProvider) {
+            consentProvider.setAuthorizationCodeGenerator(codeGenerator);
+        }
     }
 
     /**
@@ -90,6 +198,12 @@ public class AuthorizationServerConfig {
                             "/oauth2/callback",
                             "/external-login"
                         ).permitAll()
+                        // Health probes
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                        // Metrics carry client_id tags: only on a dedicated management port (internal network)
+                        .requestMatchers(new AndRequestMatcher(
+                            new AntPathRequestMatcher("/actuator/metrics/**"), this::isManagementPort)).permitAll()
+                        .requestMatchers("/actuator/metrics/**").denyAll()
                         // Allow access to static resources
                         .requestMatchers("/css/**", "/js/**", "/images/**", "/favicon.ico").permitAll()
                         // All other requests require authentication
@@ -111,45 +225,197 @@ public class AuthorizationServerConfig {
         return http.build();
     }
 
+    private boolean isManagementPort(HttpServletRequest request) {
+        return managementPort != null && managementPort > 0 && managementPort != serverPort
+                && request.getLocalPort() == managementPort;
+    }
+
     /**
-     * Shared HttpSessionRequestCache bean
-     * Used by multiple controllers to access saved OAuth2 authorization requests
+     * Shared RequestCache bean
+     * Used by the authorization server chain and controllers to access saved OAuth2 authorization requests.
+     * Stateless mode keeps the saved request in a cookie so any node can read it.
      */
     @Bean
-    public HttpSessionRequestCache httpSessionRequestCache() {
-        return new HttpSessionRequestCache();
+    public RequestCache authorizationRequestCache(AuthFlowProperties authFlowProperties) {
+        if (authFlowProperties.isStateless()) {
+            CookieRequestCache requestCache = new CookieRequestCache();
+            // Only cache /oauth2/authorize requests (avoid robots/error pages)
+            requestCache.setRequestMatcher(new AntPathRequestMatcher("/oauth2/authorize"));
+            return requestCache;
+        }
+        HttpSessionRequestCache requestCache = new HttpSessionRequestCache();
+        // Only cache /oauth2/authorize requests (avoid robots/error pages)
+        requestCache.setRequestMatcher(new AntPathRequestMatcher("/oauth2/authorize"));
+        return requestCache;
     }
 
     /**
      * RestTemplate for external API calls
-     * Configured with connection and read timeouts from ExternalAuthProperties
+     * Configured with connection and read timeouts from ExternalAuthProperties,
+     * capped by the remaining deadline of the current request
      */
     @Bean
     public RestTemplate restTemplate(RestTemplateBuilder builder) {
         return builder
-                .setConnectTimeout(Duration.ofMillis(externalAuthProperties.getConnectTimeoutMs()))
-                .setReadTimeout(Duration.ofMillis(externalAuthProperties.getReadTimeoutMs()))
+                .requestFactory(() -> new DeadlineAwareClientHttpRequestFactory(
+                        externalAuthProperties.getConnectTimeoutMs(), externalAuthProperties.getReadTimeoutMs()))
                 .build();
     }
 
     /**
      * Registered Client Repository
-     * Uses JDBC to store and retrieve OAuth2 client registrations
+     * Uses JDBC to store and retrieve OAuth2 client registrations, read from a replica
+     * when read replicas are enabled, held in memory for a short TTL when the
+     * introspection cache is enabled, and with unregistered client_ids answered from
+     * memory when the client ID filter is enabled; saves evict the client's pre-rendered pages
      */
     @Bean
-    public RegisteredClientRepository registeredClientRepository(JdbcTemplate jdbcTemplate) {
-        return new JdbcRegisteredClientRepository(jdbcTemplate);
+    public RegisteredClientRepository registeredClientRepository(
+            JdbcTemplate jdbcTemplate,
+            IntrospectionCacheProperties introspectionCacheProperties,
+            ReadReplicaProperties readReplicaProperties,
+            ObjectProvider<KnownClientIds> knownClientIds,
+            PageSkeletonCache pageSkeletonCache,
+            MeterRegistry meterRegistry) {
+        RegisteredClientRepository repository = new JdbcRegisteredClientRepository(jdbcTemplate);
+        if (readReplicaProperties.isEnabled()) {
+            repository = new ReplicaReadRegisteredClientRepository(repository);
+        }
+        if (introspectionCacheProperties.isEnabled()) {
+            repository = new CachingRegisteredClientRepository(repository, introspectionCacheProperties.getClientTtl());
+        }
+        repository = new SaveNotifyingRegisteredClientRepository(
+                repository, client -> pageSkeletonCache.evictClient(client.getClientId()));
+        KnownClientIds known = knownClientIds.getIfAvailable();
+        if (known == null) {
+            return repository;
+        }
+        return new ClientIdFilteringRegisteredClientRepository(repository, known, meterRegistry);
     }
 
     /**
      * OAuth2 Authorization Service
-     * Uses JDBC to store and retrieve authorizations
+     * Uses JDBC to store and retrieve authorizations in the table layout selected by
+     * authorization-store.layout, with attributes and token metadata in the format
+     * selected by authorization-store.codec, spread over shards when authorization
+     * shards are enabled, and concurrent saves committed together when group commit is enabled;
+     * lookups by the read-only endpoints may be answered by a replica when read replicas
+     * are enabled, and access token lookups from the introspection cache when it is enabled
      */
     @Bean
     public OAuth2AuthorizationService authorizationService(
             JdbcTemplate jdbcTemplate,
-            RegisteredClientRepository registeredClientRepository) {
-        return new JdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository);
+            RegisteredClientRepository registeredClientRepository,
+            AuthorizationStoreProperties authorizationStoreProperties,
+            MeterRegistry meterRegistry,
+            PlatformTransactionManager transactionManager,
+            ObjectProvider<IntrospectionCache> introspectionCache,
+            ObjectProvider<RevokedTokenFilter> revokedTokenFilter,
+            ObjectProvider<AuthorizationInvalidationChannel> invalidationChannel,
+            ObjectProvider<RecentAuthorizationChanges> recentAuthorizationChanges,
+            ObjectProvider<AuthorizationShards> authorizationShards,
+            ObjectProvider<SlotTable> slotTable) {
+        OAuth2AuthorizationService authorizationService;
+        AuthorizationShards shards = authorizationShards.getIfAvailable();
+        if (shards != null) {
+            // Shards have their own pools: replica reads do not apply
+            authorizationService = new ShardedOAuth2AuthorizationService(shards, slotTable.getObject(), meterRegistry);
+        } else {
+            authorizationService = groupCommit(
+                    jdbcAuthorizationService(jdbcTemplate, registeredClientRepository, authorizationStoreProperties),
+                    new TransactionTemplate(transactionManager), authorizationStoreProperties, meterRegistry);
+            RecentAuthorizationChanges recentChanges = recentAuthorizationChanges.getIfAvailable();
+            if (recentChanges != null) {
+                authorizationService = new ReplicaReadOAuth2AuthorizationService(authorizationService, recentChanges);
+            }
+        }
+        IntrospectionCache cache = introspectionCache.getIfAvailable();
+        if (cache == null) {
+            return authorizationService;
+        }
+        return new CachingOAuth2AuthorizationService(
+                authorizationService, cache, revokedTokenFilter.getIfAvailable(), invalidationChannel.getObject());
+    }
+
+    /**
+     * JDBC authorization service in the configured layout and codec, also used per shard
+     */
+    static OAuth2AuthorizationService jdbcAuthorizationService(
+            JdbcOperations jdbcOperations,
+            RegisteredClientRepository registeredClientRepository,
+            AuthorizationStoreProperties authorizationStoreProperties) {
+        OAuth2AuthorizationCodec codec = authorizationCodec(authorizationStoreProperties);
+        if ("normalized".equalsIgnoreCase(authorizationStoreProperties.getLayout())) {
+            // Normalized tables are new and always BYTEA: text falls back to the binary format
+            return new NormalizedJdbcOAuth2AuthorizationService(jdbcOperations, registeredClientRepository,
+                    codec != null ? codec : new BinaryOAuth2AuthorizationCodec());
+        }
+        return codec != null
+                ? new CodecJdbcOAuth2AuthorizationService(jdbcOperations, registeredClientRepository, codec)
+                : new CodecJdbcOAuth2AuthorizationService(jdbcOperations, registeredClientRepository);
+    }
+
+    /**
+     * Codec of the map-valued authorization columns, per authorization-store.codec
+     *
+     * @return null for text: Spring Authorization Server's own mappers on TEXT columns
+     */
+    static OAuth2AuthorizationCodec authorizationCodec(AuthorizationStoreProperties authorizationStoreProperties) {
+        String codec = authorizationStoreProperties.getCodec();
+        if ("binary".equalsIgnoreCase(codec)) {
+            return new BinaryOAuth2AuthorizationCodec();
+        }
+        if ("json".equalsIgnoreCase(codec)) {
+            return new JsonOAuth2AuthorizationCodec();
+        }
+        if (!"text".equalsIgnoreCase(codec)) {
+            throw new IllegalStateException("authorization-store.codec must be text, binary or json: " + codec);
+        }
+        return null;
+    }
+
+    /**
+     * Saves committed in batches when authorization-store.group-commit-enabled, also used per shard
+     */
+    static OAuth2AuthorizationService groupCommit(
+            OAuth2AuthorizationService authorizationService,
+            TransactionOperations transactionOperations,
+            AuthorizationStoreProperties authorizationStoreProperties,
+            MeterRegistry meterRegistry) {
+        if (!authorizationStoreProperties.isGroupCommitEnabled()) {
+            return authorizationService;
+        }
+        return new GroupCommitOAuth2AuthorizationService(authorizationService, transactionOperations,
+                authorizationStoreProperties.getGroupCommitWindow(), authorizationStoreProperties.getGroupCommitMaxSize(),
+                meterRegistry);
+    }
+
+    /**
+     * Token Generator
+     * Signed JWTs for self-contained clients, compact opaque tokens for reference clients
+     * (settings.token.access-token-format = reference), and refresh tokens; all random
+     * values (jti, token values) come from SecureIdGenerator and are tagged with the
+     * authorization's slot when authorization shards are enabled
+     */
+    @Bean
+    public OAuth2TokenGenerator<OAuth2Token> tokenGenerator(
+            JWKSource<SecurityContext> jwkSource,
+            AuthorizationShardProperties authorizationShardProperties) {
+        JwtGenerator jwtGenerator = new JwtGenerator(new NimbusJwtEncoder(jwkSource));
+        OAuth2TokenGenerator<OAuth2Token> tokenGenerator = new DelegatingOAuth2TokenGenerator(
+                jwtGenerator,
+                new ReferenceAccessTokenGenerator(),
+                new RefreshTokenGenerator());
+        if (!authorizationShardProperties.isEnabled()) {
+            jwtGenerator.setJwtCustomizer(context -> {
+                if (OAuth2TokenType.ACCESS_TOKEN.equals(context.getTokenType())) {
+                    context.getClaims().id(SecureIdGenerator.newId());
+                }
+            });
+            return tokenGenerator;
+        }
+        jwtGenerator.setJwtCustomizer(SlotTaggingTokenGenerator.jwtCustomizer());
+        return new SlotTaggingTokenGenerator(tokenGenerator);
     }
 
     // Note: OAuth2AuthorizationConsentService is provided by AuditableConsentService
@@ -161,22 +427,26 @@ public class AuthorizationServerConfig {
      * Generates RSA key pair for JWT signing
      * The public key is exposed via JWKS endpoint at /.well-known/jwks.json
      * 
+     * The key pair is generated on a background thread while the rest of the context starts;
+     * the first signature or JWKS request waits for it if it is not ready yet.
+     * 
      * NOTE: Keys are regenerated on each restart. For production, persist keys to KeyStore.
      * See README.md for planned improvements.
      */
     @Bean
     public JWKSource<SecurityContext> jwkSource() {
-        KeyPair keyPair = generateRsaKey();
-        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
-        RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
-        
-        RSAKey rsaKey = new RSAKey.Builder(publicKey)
-                .privateKey(privateKey)
-                .keyID(UUID.randomUUID().toString())
-                .build();
-        
-        JWKSet jwkSet = new JWKSet(rsaKey);
-        return new ImmutableJWKSet<>(jwkSet);
+        CompletableFuture<JWKSet> jwkSet = CompletableFuture.supplyAsync(() -> {
+            KeyPair keyPair = generateRsaKey();
+            RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+            RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
+
+            RSAKey rsaKey = new RSAKey.Builder(publicKey)
+                    .privateKey(privateKey)
+                    .keyID(SecureIdGenerator.newId())
+                    .build();
+            return new JWKSet(rsaKey);
+        });
+        return (jwkSelector, securityContext) -> jwkSelector.select(jwkSet.join());
     }
 
     /**
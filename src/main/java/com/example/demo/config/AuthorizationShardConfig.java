@@ -0,0 +1,124 @@
+package com.example.demo.config;
+
+import com.example.demo.shard.AuthorizationShard;
+import com.example.demo.shard.AuthorizationShards;
+import com.example.demo.shard.AuthorizationShardsEndpoint;
+import com.example.demo.shard.ShardRebalancer;
+import com.example.demo.shard.SlotTable;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Authorization Shard Configuration
+ *
+ * Enabled with authorization-shards.enabled: authorizations are stored in the shards'
+ * schemas, each behind its own pool, instead of spring.datasource; the slot table stays
+ * in spring.datasource. Registered clients, consents and sessions are not sharded.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "authorization-shards", name = "enabled", havingValue = "true")
+@EnableScheduling
+public class AuthorizationShardConfig {
+
+    /**
+     * Pools are not beans: request deadlines and lanes apply to spring.datasource only
+     */
+    @Bean
+    public AuthorizationShards authorizationShards(AuthorizationShardProperties properties,
+            DataSourceProperties dataSourceProperties, Environment environment,
+            RegisteredClientRepository registeredClientRepository,
+            AuthorizationStoreProperties authorizationStoreProperties, MeterRegistry meterRegistry) {
+        String authorizationTable = "normalized".equalsIgnoreCase(authorizationStoreProperties.getLayout())
+                ? "oauth2_authorization_header"
+                : "oauth2_authorization";
+        List<AuthorizationShard> shards = new ArrayList<>();
+        List<AutoCloseable> pools = new ArrayList<>();
+        for (AuthorizationShardProperties.Shard shard : properties.getShards()) {
+            HikariDataSource pool = ReadReplicaConfig.hikari(dataSourceProperties, environment);
+            pool.setPoolName("authorization-shard-" + shard.getName());
+            if (StringUtils.hasText(shard.getUrl())) {
+                pool.setJdbcUrl(shard.getUrl());
+            }
+            if (StringUtils.hasText(shard.getSchema())) {
+                pool.setSchema(shard.getSchema());
+            }
+            if (StringUtils.hasText(shard.getUsername())) {
+                pool.setUsername(shard.getUsername());
+                pool.setPassword(shard.getPassword());
+            }
+            pool.setMaximumPoolSize(shard.getPoolSize());
+            pool.setMinimumIdle(Math.min(pool.getMinimumIdle(), shard.getPoolSize()));
+            pools.add(pool);
+
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(pool);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(pool));
+            shards.add(new AuthorizationShard(shard.getName(),
+                    AuthorizationServerConfig.groupCommit(
+                            AuthorizationServerConfig.jdbcAuthorizationService(
+                                    jdbcTemplate, registeredClientRepository, authorizationStoreProperties),
+                            transactionTemplate, authorizationStoreProperties, meterRegistry),
+                    jdbcTemplate, transactionTemplate, authorizationTable, meterRegistry));
+        }
+        return new AuthorizationShards(shards, pools, meterRegistry);
+    }
+
+    @Bean
+    public SlotTable slotTable(JdbcTemplate jdbcTemplate, AuthorizationShardProperties properties,
+            MeterRegistry meterRegistry) {
+        Map<String, Integer> weights = weights(properties);
+        String legacyShard = StringUtils.hasText(properties.getLegacyShard()) ? properties.getLegacyShard() : null;
+        if (legacyShard != null && !weights.containsKey(legacyShard)) {
+            throw new IllegalStateException("authorization-shards.legacy-shard " + legacyShard + " is not configured");
+        }
+        SlotTable slotTable = new SlotTable(jdbcTemplate, properties.getSlotRefreshInterval());
+        slotTable.initialize(weights, legacyShard);
+        for (String shard : weights.keySet()) {
+            Gauge.builder("oauth2.authorization.shard.slots", slotTable,
+                            table -> table.slotCounts().getOrDefault(shard, 0))
+                    .description("Slots owned by the shard")
+                    .tag("shard", shard)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("oauth2.authorization.shard.moving", slotTable, table -> table.moving().size())
+                .description("Slots moving between shards")
+                .register(meterRegistry);
+        return slotTable;
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(AuthorizationShards authorizationShards, SlotTable slotTable,
+            AuthorizationShardProperties properties) {
+        return new ShardRebalancer(authorizationShards, slotTable, weights(properties));
+    }
+
+    @Bean
+    public AuthorizationShardsEndpoint authorizationShardsEndpoint(SlotTable slotTable, ShardRebalancer shardRebalancer) {
+        return new AuthorizationShardsEndpoint(slotTable, shardRebalancer);
+    }
+
+    private static Map<String, Integer> weights(AuthorizationShardProperties properties) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        properties.getShards().forEach(shard -> weights.put(shard.getName(), shard.getWeight()));
+        if (weights.isEmpty()) {
+            throw new IllegalStateException("authorization-shards.shards is empty");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Authorization Shard Configuration Properties
+ *
+ * Binds to authorization-shards.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "authorization-shards")
+@Data
+public class AuthorizationShardProperties {
+
+    /**
+     * Spread authorizations over the shards below by slot (see ShardSlots)
+     */
+    private boolean enabled = false;
+
+    private List<Shard> shards = new ArrayList<>();
+
+    /**
+     * Shard holding the authorizations written before sharding was enabled; it owns every
+     * slot until the first rebalance. Empty: slots start spread by weight.
+     */
+    private String legacyShard;
+
+    /**
+     * How often each node re-reads the slot table
+     */
+    private Duration slotRefreshInterval = Duration.ofSeconds(5);
+
+    @Data
+    public static class Shard {
+
+        /**
+         * Name stored in the slot table; never rename a shard that owns slots
+         */
+        private String name;
+
+        /**
+         * JDBC URL; empty means the spring.datasource one
+         */
+        private String url;
+
+        /**
+         * Schema holding this shard's authorization tables
+         */
+        private String schema;
+
+        /**
+         * Credentials; empty means the spring.datasource ones
+         */
+        private String username;
+
+        private String password;
+
+        /**
+         * Connection pool size
+         */
+        private int poolSize = 5;
+
+        /**
+         * Relative share of the slots after a rebalance; 0 drains the shard
+         */
+        private int weight = 1;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Authorization Store Configuration Properties
+ *
+ * Binds to authorization-store.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "authorization-store")
+@Data
+public class AuthorizationStoreProperties {
+
+    /**
+     * Format of the oauth2_authorization attributes and *_metadata columns: text (Spring
+     * Authorization Server's own TEXT columns), or binary (compact, versioned) / json
+     * (Jackson format) on BYTEA columns, see source/db/DDL-authorization-bytea.sql.
+     * With binary or json, rows in either of the two formats are readable.
+     */
+    private String codec = "text";
+
+    /**
+     * Table layout: single-row (Spring Authorization Server's oauth2_authorization) or
+     * normalized (oauth2_authorization_header plus one table per token kind)
+     */
+    private String layout = "single-row";
+
+    /**
+     * Commit concurrent authorization saves in one transaction
+     */
+    private boolean groupCommitEnabled = false;
+
+    /**
+     * How long the first save of a batch waits for others
+     */
+    private Duration groupCommitWindow = Duration.ofMillis(2);
+
+    /**
+     * Saves per transaction; a full batch is committed without waiting for the window
+     */
+    private int groupCommitMaxSize = 64;
+}
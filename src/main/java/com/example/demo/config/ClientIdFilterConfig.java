@@ -0,0 +1,43 @@
+package com.example.demo.config;
+
+import com.example.demo.token.KnownClientIds;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Client ID Filter Configuration
+ *
+ * Enabled with client-id-filter.enabled (default): AuthorizationServerConfig puts
+ * lookups by client_id behind the set of registered client_ids.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "client-id-filter", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableScheduling
+public class ClientIdFilterConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientIdFilterConfig.class);
+
+    @Bean
+    public KnownClientIds knownClientIds(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        KnownClientIds knownClientIds = new KnownClientIds(jdbcTemplate);
+        // Off the startup path: until the first load completes every client_id is looked up
+        CompletableFuture.runAsync(knownClientIds::reload).exceptionally(e -> {
+            logger.warn("Could not load registered client_ids, every client_id is looked up until the next reload: {}",
+                    e.getMessage());
+            return null;
+        });
+        Gauge.builder("oauth2.client.known", knownClientIds, KnownClientIds::size)
+                .description("Registered client_ids known to this node, -1 before the first load")
+                .register(meterRegistry);
+        return knownClientIds;
+    }
+}
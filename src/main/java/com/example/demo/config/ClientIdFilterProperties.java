@@ -0,0 +1,29 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Client ID Filter Configuration Properties
+ *
+ * Binds to client-id-filter.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "client-id-filter")
+@Data
+public class ClientIdFilterProperties {
+
+    /**
+     * Answer lookups of unregistered client_ids from memory
+     */
+    private boolean enabled = true;
+
+    /**
+     * How often the registered client_ids are reloaded; clients registered through
+     * another node are turned away until then
+     */
+    private Duration refreshInterval = Duration.ofSeconds(30);
+}
@@ -0,0 +1,46 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request Deadline Configuration Properties
+ *
+ * Binds to deadlines.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "deadlines")
+@Data
+public class DeadlineProperties {
+
+    /**
+     * Enable per-request deadlines
+     */
+    private boolean enabled = true;
+
+    /**
+     * Deadline settings by endpoint name; requests matching none have no deadline
+     */
+    private Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    @Data
+    public static class Endpoint {
+
+        /**
+         * Ant path patterns this deadline applies to
+         */
+        private List<String> paths = new ArrayList<>();
+
+        /**
+         * Total time the request may take, shared by all downstream calls
+         */
+        private Duration budget = Duration.ofSeconds(5);
+    }
+}
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * External Authentication System Configuration Properties
  * 
@@ -18,6 +21,12 @@ public class ExternalAuthProperties {
      * External authentication system base URL
      */
     private String serverUrl = "http://localhost:8888";
+
+    /**
+     * Equivalent external auth instances for API calls (empty: serverUrl only).
+     * The browser login page always uses serverUrl.
+     */
+    private List<String> serverUrls = new ArrayList<>();
     
     /**
      * Login endpoint path
@@ -43,7 +52,59 @@ public class ExternalAuthProperties {
      * HTTP read timeout (milliseconds)
      */
     private int readTimeoutMs = 5000;
+
+    /**
+     * Coalesce concurrent user info lookups into batch API calls
+     */
+    private boolean batchEnabled = false;
+
+    /**
+     * Batch user info API endpoint
+     */
+    private String batchApiEndpoint = "/api/userinfo/batch";
+
+    /**
+     * How long the first lookup of a batch waits for others (milliseconds)
+     */
+    private int batchWindowMs = 2;
+
+    /**
+     * Maximum tokens per batch call
+     */
+    private int batchMaxSize = 32;
+
+    /**
+     * Callback data longer than this (Base64 characters) is rejected before decoding
+     */
+    private int maxCallbackDataLength = 4096;
+
+    /**
+     * Fire a second API call on another endpoint when the first is slower than the recent p95
+     */
+    private boolean hedgeEnabled = false;
+
+    /**
+     * Lower bound of the hedge delay (milliseconds)
+     */
+    private int hedgeMinDelayMs = 10;
+
+    /**
+     * Consecutive failures before an endpoint is taken out of rotation
+     */
+    private int endpointFailureThreshold = 3;
+
+    /**
+     * How long a failing endpoint stays out of rotation (milliseconds)
+     */
+    private int endpointCooldownMs = 5000;
     
+    /**
+     * Base URLs used for API calls
+     */
+    public List<String> getApiServerUrls() {
+        return serverUrls.isEmpty() ? List.of(serverUrl) : serverUrls;
+    }
+
     /**
      * Get full login URL
      */
@@ -57,5 +118,12 @@ public class ExternalAuthProperties {
     public String getFullApiUrl() {
         return serverUrl + apiEndpoint;
     }
+
+    /**
+     * Get full batch API URL
+     */
+    public String getFullBatchApiUrl() {
+        return serverUrl + batchApiEndpoint;
+    }
 }
 
@@ -0,0 +1,67 @@
+package com.example.demo.config;
+
+import com.example.demo.token.AuthorizationInvalidationChannel;
+import com.example.demo.token.AuthorizationInvalidationListener;
+import com.example.demo.token.IntrospectionCache;
+import com.example.demo.token.RevokedTokenFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.List;
+
+/**
+ * Introspection Cache Configuration
+ *
+ * Enabled with introspection-cache.enabled (default): access token lookups are answered
+ * from a per-node {@link IntrospectionCache}, and with jwt-fast-path (default) JWT access
+ * tokens are introspected locally against a {@link RevokedTokenFilter}. Both are kept
+ * consistent across nodes by {@link AuthorizationInvalidationChannel}.
+ * AuthorizationServerConfig wraps the authorization service and registers the local
+ * introspection provider when these beans exist.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "introspection-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableScheduling
+public class IntrospectionCacheConfig {
+
+    @Bean
+    public IntrospectionCache introspectionCache(IntrospectionCacheProperties properties, MeterRegistry meterRegistry) {
+        IntrospectionCache cache = new IntrospectionCache(
+                properties.getShards(), properties.getMaxEntries(), properties.getMaxTtl());
+        Gauge.builder("oauth2.introspection.cache.size", cache, IntrospectionCache::size)
+                .register(meterRegistry);
+        FunctionCounter.builder("oauth2.introspection.cache.requests", cache, IntrospectionCache::getHits)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("oauth2.introspection.cache.requests", cache, IntrospectionCache::getMisses)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        return cache;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "introspection-cache", name = "jwt-fast-path", havingValue = "true", matchIfMissing = true)
+    public RevokedTokenFilter revokedTokenFilter(JdbcTemplate jdbcTemplate, IntrospectionCacheProperties properties) {
+        return new RevokedTokenFilter(
+                jdbcTemplate, properties.getRevokedExpectedEntries(), properties.getRevokedFalsePositiveRate());
+    }
+
+    @Bean
+    public AuthorizationInvalidationChannel authorizationInvalidationChannel(
+            JdbcTemplate jdbcTemplate,
+            List<AuthorizationInvalidationListener> listeners,
+            IntrospectionCacheProperties properties,
+            DataSourceProperties dataSourceProperties) {
+        return new AuthorizationInvalidationChannel(jdbcTemplate, listeners, properties.getChannel(),
+                dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(),
+                dataSourceProperties.determinePassword());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Introspection Cache Configuration Properties
+ *
+ * Binds to introspection-cache.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "introspection-cache")
+@Data
+public class IntrospectionCacheProperties {
+
+    /**
+     * Serve access token lookups (introspection, userinfo) from memory
+     */
+    private boolean enabled = true;
+
+    /**
+     * Number of independently locked shards (rounded up to a power of two)
+     */
+    private int shards = 16;
+
+    /**
+     * Maximum cached access tokens per node
+     */
+    private int maxEntries = 100000;
+
+    /**
+     * Upper bound on how long an entry is kept, even if the token lives longer
+     */
+    private Duration maxTtl = Duration.ofMinutes(5);
+
+    /**
+     * PostgreSQL NOTIFY channel used to invalidate entries on all nodes
+     */
+    private String channel = "oauth2_authorization_invalidated";
+
+    /**
+     * How long registered clients are kept in memory
+     */
+    private Duration clientTtl = Duration.ofSeconds(30);
+
+    /**
+     * Answer introspection of self-contained (JWT) access tokens locally:
+     * signature check plus a bloom filter of revoked token ids
+     */
+    private boolean jwtFastPath = true;
+
+    /**
+     * Unexpired revocations the bloom filter is sized for
+     */
+    private int revokedExpectedEntries = 100000;
+
+    /**
+     * Bloom filter false positive rate (a false positive only costs a database lookup)
+     */
+    private double revokedFalsePositiveRate = 0.001;
+
+    /**
+     * Interval between full rebuilds of the bloom filter, which drop expired revocations
+     */
+    private Duration revokedRebuildInterval = Duration.ofMinutes(10);
+}
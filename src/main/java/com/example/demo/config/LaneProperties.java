@@ -0,0 +1,62 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Execution Lane Configuration Properties
+ *
+ * Binds to lanes.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "lanes")
+@Data
+public class LaneProperties {
+
+    /**
+     * Enable execution lanes (off by default: lanes cap threads and connections per path)
+     */
+    private boolean enabled = false;
+
+    /**
+     * Lanes by name (e.g. machine, browser); requests matching no lane are not limited
+     */
+    private Map<String, Lane> lanes = new LinkedHashMap<>();
+
+    @Data
+    public static class Lane {
+
+        /**
+         * Ant path patterns routed to this lane
+         */
+        private List<String> paths = new ArrayList<>();
+
+        /**
+         * Maximum request threads the lane may occupy at once
+         */
+        private int maxConcurrent = 50;
+
+        /**
+         * Maximum pooled DB connections the lane may hold at once
+         */
+        private int dbConnections = 5;
+
+        /**
+         * How long a request may wait for a worker or connection slot before it is rejected
+         */
+        private Duration maxWait = Duration.ofMillis(200);
+
+        /**
+         * Requests that may wait for a worker slot at once; a waiting request holds a container
+         * thread too, so beyond this the lane rejects at once
+         */
+        private int maxWaiting = 5;
+    }
+}
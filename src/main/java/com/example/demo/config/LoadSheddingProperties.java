@@ -0,0 +1,71 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load Shedding Configuration Properties
+ *
+ * Binds to load-shedding.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "load-shedding")
+@Data
+public class LoadSheddingProperties {
+
+    /**
+     * Enable adaptive concurrency limits
+     */
+    private boolean enabled = true;
+
+    /**
+     * Limit groups by name (e.g. token, callback, pages); each has its own adaptive limit
+     */
+    private Map<String, Group> groups = new LinkedHashMap<>();
+
+    @Data
+    public static class Group {
+
+        /**
+         * Ant path patterns routed to this group
+         */
+        private List<String> paths = new ArrayList<>();
+
+        /**
+         * Concurrency limit at startup
+         */
+        private int initialLimit = 20;
+
+        /**
+         * Lower bound of the limit
+         */
+        private int minLimit = 2;
+
+        /**
+         * Upper bound of the limit
+         */
+        private int maxLimit = 200;
+
+        /**
+         * A request is slow when its latency exceeds the no-load latency times this factor...
+         */
+        private double latencyTolerance = 2.0;
+
+        /**
+         * ...and also by at least this much, so jitter on fast endpoints is not overload
+         */
+        private Duration latencySlack = Duration.ofMillis(50);
+
+        /**
+         * Multiplicative decrease applied to the limit on overload
+         */
+        private double backoffRatio = 0.9;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Page Cache Configuration Properties
+ *
+ * Binds to page-cache.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "page-cache")
+@Data
+public class PageCacheProperties {
+
+    /**
+     * Keep the pre-rendered external login and consent pages per client, scopes and locale
+     */
+    private boolean enabled = true;
+
+    /**
+     * How long a pre-rendered page is kept; a client updated through another node shows its
+     * new name after at most this long (saves through this node evict at once)
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+    /**
+     * Upper bound on pre-rendered pages; beyond it the least recently used page is dropped
+     */
+    private int maxEntries = 1000;
+
+    /**
+     * Locales pages are rendered in; a request's locale is matched against these, and a
+     * request matching none gets the first
+     */
+    private List<Locale> locales = List.of(Locale.TAIWAN);
+}
@@ -0,0 +1,48 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rate Limit Configuration Properties
+ *
+ * Binds to rate-limit.* properties in application.yaml.
+ * Per-client overrides are read from ClientSettings (see ClientSettingKeys).
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+@Data
+public class RateLimitProperties implements InitializingBean {
+
+    /**
+     * Enable per-client rate limiting on the token endpoint
+     */
+    private boolean enabled = true;
+
+    /**
+     * Default token requests per second per client
+     */
+    private double tokenPerSecond = 50;
+
+    /**
+     * Default burst (bucket capacity) per client
+     */
+    private int tokenBurst = 100;
+
+    /**
+     * Independent stripes per client bucket, reducing contention on hot clients
+     */
+    private int stripes = 4;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!(tokenPerSecond > 0)) {
+            throw new IllegalStateException("rate-limit.token-per-second must be greater than 0");
+        }
+        if (stripes < 1 || tokenBurst < stripes) {
+            throw new IllegalStateException("rate-limit.token-burst must be at least rate-limit.stripes (>= 1)");
+        }
+    }
+}
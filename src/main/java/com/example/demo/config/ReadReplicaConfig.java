@@ -0,0 +1,119 @@
+package com.example.demo.config;
+
+import com.example.demo.datasource.RecentAuthorizationChanges;
+import com.example.demo.datasource.ReplicaReadFilter;
+import com.example.demo.datasource.ReplicaRoutingDataSource;
+import com.example.demo.datasource.ReplicaSet;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read Replica Configuration
+ *
+ * Enabled with read-replicas.enabled: the application DataSource becomes a
+ * {@link ReplicaRoutingDataSource} over the spring.datasource pool (primary) and one pool
+ * per replica URL. Everything is written and read on the primary except read-only
+ * transactions, registered client lookups, and authorization lookups made by the
+ * read-only endpoints (see AuthorizationServerConfig).
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "read-replicas", name = "enabled", havingValue = "true")
+@EnableScheduling
+public class ReadReplicaConfig {
+
+    @Bean
+    public ReplicaSet replicaSet(ReadReplicaProperties properties, DataSourceProperties dataSourceProperties,
+            Environment environment, MeterRegistry meterRegistry, DeadlineProperties deadlineProperties) {
+        List<ReplicaSet.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.getUrls().size(); i++) {
+            HikariDataSource pool = hikari(dataSourceProperties, environment);
+            pool.setPoolName("replica-" + i);
+            pool.setJdbcUrl(properties.getUrls().get(i));
+            if (StringUtils.hasText(properties.getUsername())) {
+                pool.setUsername(properties.getUsername());
+                pool.setPassword(properties.getPassword());
+            }
+            pool.setMaximumPoolSize(properties.getPoolSize());
+            pool.setMinimumIdle(Math.min(pool.getMinimumIdle(), properties.getPoolSize()));
+            pool.setReadOnly(true);
+            replicas.add(new ReplicaSet.Replica(pool.getPoolName(),
+                    AdmissionConfig.admissionDataSource(pool, deadlineProperties.isEnabled(), false)));
+        }
+        ReplicaSet replicaSet = new ReplicaSet(replicas, properties.getMaxLag());
+        for (ReplicaSet.Replica replica : replicaSet.getReplicas()) {
+            Gauge.builder("datasource.replica.lag", replica, ReplicaSet.Replica::getLagMillis)
+                    .description("Last sampled replay lag in milliseconds, -1 if unknown")
+                    .baseUnit("milliseconds")
+                    .tag("replica", replica.getName())
+                    .register(meterRegistry);
+            Gauge.builder("datasource.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                    .tag("replica", replica.getName())
+                    .register(meterRegistry);
+        }
+        FunctionCounter.builder("datasource.replica.fallbacks", replicaSet, ReplicaSet::getFallbacks)
+                .description("Read-only connections served by the primary because no replica was healthy")
+                .register(meterRegistry);
+        return replicaSet;
+    }
+
+    /**
+     * Replaces the auto-configured pool; spring.datasource.* and spring.datasource.hikari.*
+     * still configure the primary. Request deadlines bound every pool; with execution lanes
+     * enabled only the primary pool is charged to lanes.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, Environment environment,
+            ReplicaSet replicaSet, DeadlineProperties deadlineProperties, LaneProperties laneProperties) {
+        HikariDataSource pool = hikari(dataSourceProperties, environment);
+        if (!StringUtils.hasText(pool.getPoolName())) {
+            pool.setPoolName("primary");
+        }
+        return new ReplicaRoutingDataSource(
+                AdmissionConfig.admissionDataSource(pool, deadlineProperties.isEnabled(), laneProperties.isEnabled()),
+                replicaSet);
+    }
+
+    @Bean
+    public RecentAuthorizationChanges recentAuthorizationChanges(ReadReplicaProperties properties) {
+        return new RecentAuthorizationChanges(properties.getMaxLag().plus(properties.getLagCheckInterval()));
+    }
+
+    /**
+     * Ahead of the Spring Security filter chain, where introspection and userinfo are answered
+     */
+    @Bean
+    public FilterRegistrationBean<ReplicaReadFilter> replicaReadFilter(ReadReplicaProperties properties) {
+        FilterRegistrationBean<ReplicaReadFilter> registration =
+                new FilterRegistrationBean<>(new ReplicaReadFilter(properties.getReadOnlyPaths()));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 30);
+        return registration;
+    }
+
+    /**
+     * Pool configured like the spring.datasource one
+     */
+    static HikariDataSource hikari(DataSourceProperties dataSourceProperties, Environment environment) {
+        HikariDataSource pool = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        return pool;
+    }
+}
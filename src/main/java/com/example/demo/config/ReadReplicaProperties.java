@@ -0,0 +1,57 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read Replica Configuration Properties
+ *
+ * Binds to read-replicas.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "read-replicas")
+@Data
+public class ReadReplicaProperties {
+
+    /**
+     * Route read-only work to streaming replicas of spring.datasource
+     */
+    private boolean enabled = false;
+
+    /**
+     * JDBC URLs of the replicas
+     */
+    private List<String> urls = new ArrayList<>();
+
+    /**
+     * Replica credentials; empty means the spring.datasource ones
+     */
+    private String username;
+
+    private String password;
+
+    /**
+     * Connection pool size per replica
+     */
+    private int poolSize = 5;
+
+    /**
+     * Replicas lagging further behind the primary get no reads
+     */
+    private Duration maxLag = Duration.ofSeconds(1);
+
+    /**
+     * How often replica lag is sampled
+     */
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+
+    /**
+     * Endpoints whose authorization lookups may be answered by a replica
+     */
+    private List<String> readOnlyPaths = new ArrayList<>(List.of("/oauth2/introspect", "/userinfo"));
+}
@@ -0,0 +1,35 @@
+package com.example.demo.config;
+
+import com.example.demo.session.JdbcSessionRepository;
+import com.example.demo.session.SessionAttributeRuntimeHints;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Shared HTTP Session Store Configuration
+ *
+ * Enabled with session-store.type=jdbc: replaces the servlet container session with
+ * {@link JdbcSessionRepository}, so any node can continue an authorization flow.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "session-store", name = "type", havingValue = "jdbc")
+@EnableSpringHttpSession
+@EnableScheduling
+@ImportRuntimeHints(SessionAttributeRuntimeHints.class)
+public class SessionStoreConfig {
+
+    @Bean
+    public JdbcSessionRepository sessionRepository(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            SessionStoreProperties properties) {
+        return new JdbcSessionRepository(jdbcTemplate, new TransactionTemplate(transactionManager), properties);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * HTTP Session Store Configuration Properties
+ *
+ * Binds to session-store.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "session-store")
+@Data
+public class SessionStoreProperties {
+
+    /**
+     * Session store type: container (servlet container memory) or jdbc (shared PostgreSQL tables)
+     */
+    private String type = "container";
+
+    /**
+     * Session timeout
+     */
+    private Duration maxInactiveInterval = Duration.ofMinutes(30);
+
+    /**
+     * Only persist a last-access change when it moved by at least this much
+     */
+    private Duration touchWriteInterval = Duration.ofSeconds(60);
+
+    /**
+     * Interval between expired session cleanup runs
+     */
+    private Duration cleanupInterval = Duration.ofMinutes(1);
+
+    /**
+     * Maximum sessions deleted per cleanup statement
+     */
+    private int cleanupBatchSize = 500;
+
+    /**
+     * Per-node near-cache settings
+     */
+    private NearCache nearCache = new NearCache();
+
+    @Data
+    public static class NearCache {
+
+        /**
+         * Maximum number of sessions kept in the near-cache (0 disables it)
+         */
+        private int maxSize = 10000;
+
+        /**
+         * Serve a cached session without a version check if it was validated within this window.
+         * Zero always checks the version (one primary-key lookup, no attribute transfer).
+         */
+        private Duration trustWindow = Duration.ZERO;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.config;
+
+import com.example.demo.service.ExternalAuthService;
+import com.example.demo.token.JsonOAuth2AuthorizationCodec;
+import com.example.demo.token.OAuth2AuthorizationCodec;
+import com.example.demo.warmup.WarmUpRunner;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+import org.thymeleaf.ITemplateEngine;
+
+/**
+ * Warm-up Configuration
+ *
+ * Enabled with warm-up.enabled (default): {@link WarmUpRunner} exercises the request paths
+ * before the application reports ready.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "warm-up", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class WarmUpConfig {
+
+    @Bean
+    public WarmUpRunner warmUpRunner(
+            OAuth2TokenGenerator<OAuth2Token> tokenGenerator,
+            JwtDecoder jwtDecoder,
+            ExternalAuthService externalAuthService,
+            ITemplateEngine templateEngine,
+            AuthorizationStoreProperties authorizationStoreProperties,
+            AuthorizationServerSettings authorizationServerSettings,
+            Environment environment,
+            WarmUpProperties properties,
+            MeterRegistry meterRegistry) {
+        OAuth2AuthorizationCodec codec = AuthorizationServerConfig.authorizationCodec(authorizationStoreProperties);
+        return new WarmUpRunner(tokenGenerator, jwtDecoder, externalAuthService, templateEngine,
+                // text columns go through the same Jackson modules as the json codec
+                codec != null ? codec : new JsonOAuth2AuthorizationCodec(),
+                authorizationServerSettings, environment, properties, meterRegistry);
+    }
+}
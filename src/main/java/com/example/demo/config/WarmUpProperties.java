@@ -0,0 +1,35 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Warm-up Configuration Properties
+ *
+ * Binds to warm-up.* properties in application.yaml
+ */
+@Component
+@ConfigurationProperties(prefix = "warm-up")
+@Data
+public class WarmUpProperties {
+
+    /**
+     * Run synthetic in-process traffic before the application reports ready
+     */
+    private boolean enabled = true;
+
+    /**
+     * Iterations of each warm-up step (token minting, callback parsing, template rendering,
+     * authorization mapping, local HTTP requests)
+     */
+    private int iterations = 2000;
+
+    /**
+     * Upper bound on the whole warm-up; the application reports ready when it is reached even if
+     * iterations remain
+     */
+    private Duration maxDuration = Duration.ofSeconds(30);
+}
@@ -0,0 +1,21 @@
+package com.example.demo.constant;
+
+/**
+ * 自訂 ClientSettings 設定 key
+ * 
+ * 存於 oauth2_registered_client.client_settings（JSON），未設定時使用全域預設值。
+ */
+public final class ClientSettingKeys {
+    
+    private ClientSettingKeys() {
+        // 禁止實例化
+    }
+    
+    // ========== /oauth2/token 限流 ==========
+    
+    /** 每秒允許的 token 請求數（未設定時使用 rate-limit.token-per-second） */
+    public static final String TOKEN_RATE_LIMIT_PER_SECOND = "settings.client.custom.token-rate-limit-per-second";
+    
+    /** 可瞬間使用的 token 請求數，即 bucket 容量（未設定時使用 rate-limit.token-burst） */
+    public static final String TOKEN_RATE_LIMIT_BURST = "settings.client.custom.token-rate-limit-burst";
+}
@@ -13,30 +13,10 @@ public final class SessionKeys {
     
     // ========== OAuth2 授權流程相關 ==========
     
-    /** OAuth2 Client ID */
-    public static final String CLIENT_ID = "oauth2_client_id";
-    
-    /** OAuth2 Redirect URI */
-    public static final String REDIRECT_URI = "oauth2_redirect_uri";
-    
-    /** OAuth2 Scope */
-    public static final String SCOPE = "oauth2_scope";
-    
-    /** OAuth2 State */
-    public static final String STATE = "oauth2_state";
-    
-    /** 外部認證 Session ID */
-    public static final String EXTERNAL_SESSION = "oauth2_external_session";
-    
-    // ========== 使用者認證相關 ==========
-    
-    /** 使用者 Customer ID */
-    public static final String CUSTOMER_ID = "customer_id";
-    
-    /** 認證時間 */
-    public static final String AUTH_TIME = "auth_time";
-    
-    /** 外部系統 Token */
-    public static final String EXTERNAL_TOKEN = "external_token";
+    /** 授權流程狀態（AuthFlowState：client、redirect URI、scope、state、外部 session、登入結果） */
+    public static final String AUTH_FLOW_STATE = "oauth2_auth_flow_state";
+
+    /** 無狀態模式下綁定瀏覽器的 cookie（其 HMAC 封存在授權流程狀態 token 內） */
+    public static final String AUTH_FLOW_BINDING_COOKIE = "AUTH_FLOW_BINDING";
 }
 
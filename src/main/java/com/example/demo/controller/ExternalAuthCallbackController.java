@@ -1,21 +1,26 @@
 package com.example.demo.controller;
 
-import com.example.demo.constant.SessionKeys;
+import com.example.demo.admission.RequestDeadline;
+import com.example.demo.config.AuthFlowProperties;
 import com.example.demo.dto.ExternalAuthCallbackDto;
 import com.example.demo.dto.ExternalUserInfoResponse;
 import com.example.demo.exception.AuthException;
 import com.example.demo.exception.ErrorCode;
 import com.example.demo.service.ExternalAuthService;
+import com.example.demo.session.AuthFlowState;
+import com.example.demo.session.AuthFlowStateStore;
+import com.example.demo.session.AuthorizationRequestResumer;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
-import org.springframework.security.web.savedrequest.HttpSessionRequestCache;
+import org.springframework.security.web.savedrequest.RequestCache;
 import org.springframework.security.web.savedrequest.SavedRequest;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -37,83 +42,113 @@ public class ExternalAuthCallbackController {
 
     private static final Logger logger = LoggerFactory.getLogger(ExternalAuthCallbackController.class);
 
+    /** statusDesc comes from the caller; only this much of it is logged */
+    private static final int STATUS_DESC_LOG_LIMIT = 100;
+
     private final ExternalAuthService externalAuthService;
-    private final HttpSessionRequestCache requestCache;
+    private final RequestCache requestCache;
+    private final AuthFlowStateStore flowStateStore;
+    private final AuthorizationRequestResumer authorizationRequestResumer;
+    private final AuthFlowProperties authFlowProperties;
 
     public ExternalAuthCallbackController(
             ExternalAuthService externalAuthService,
-            HttpSessionRequestCache requestCache) {
+            RequestCache requestCache,
+            AuthFlowStateStore flowStateStore,
+            AuthorizationRequestResumer authorizationRequestResumer,
+            AuthFlowProperties authFlowProperties) {
         this.externalAuthService = externalAuthService;
         this.requestCache = requestCache;
+        this.flowStateStore = flowStateStore;
+        this.authorizationRequestResumer = authorizationRequestResumer;
+        this.authFlowProperties = authFlowProperties;
     }
 
     @GetMapping("/oauth2/callback")
     public String handleCallback(
-            @RequestParam("data") String base64Data,
+            @RequestParam(name = "data", required = false) String base64Data,
             HttpServletRequest request,
-            HttpServletResponse response,
-            HttpSession session) {
+            HttpServletResponse response) {
 
         logger.info("Received callback from external auth system");
 
-        // Step 1: Parse and validate callback data
+        // Step 1: Parse and validate callback data (no session is touched before this passes)
         ExternalAuthCallbackDto callbackDto = parseAndValidateCallback(base64Data);
 
-        // Step 2: Validate session
-        SessionContext sessionContext = validateSession(session, callbackDto);
+        // Step 2: Validate session, then the external auth status
+        AuthFlowState flowState = validateSession(request, response, callbackDto);
+        checkExternalStatus(callbackDto);
 
-        // Step 3: Get user info from external API
+        // Step 3: Get user info from external API (within the remaining deadline)
+        RequestDeadline.checkpoint();
         String customerId = fetchUserInfo(callbackDto.token());
 
         // Step 4: Establish authentication
-        establishAuthentication(session, callbackDto, customerId, request, response);
+        RequestDeadline.checkpoint();
+        establishAuthentication(flowState, customerId, request, response);
 
         // Step 5: Redirect to original request
-        return buildRedirectUrl(sessionContext, request, response);
+        return buildRedirectUrl(flowState, request, response);
     }
 
     /**
-     * Parse Base64 callback data and validate external auth status
+     * Parse Base64 callback data; a successful status must carry a token
      */
     private ExternalAuthCallbackDto parseAndValidateCallback(String base64Data) {
         ExternalAuthCallbackDto callbackDto = externalAuthService.parseCallbackData(base64Data);
         logger.debug("Parsed callback data successfully");
 
-        if (!externalAuthService.isSuccessStatusCode(callbackDto.statusCode())) {
-            throw new AuthException(ErrorCode.EXTERNAL_AUTH_FAILED, 
-                    "外部認證失敗：" + callbackDto.statusDesc());
-        }
-
-        if (callbackDto.token() == null || callbackDto.token().isBlank()) {
-            throw new AuthException(ErrorCode.EXTERNAL_AUTH_FAILED, "外部認證缺少 token");
+        if (externalAuthService.isSuccessStatusCode(callbackDto.statusCode())
+                && (callbackDto.token() == null || callbackDto.token().isBlank())) {
+            throw AuthException.rejected(ErrorCode.EXTERNAL_AUTH_FAILED);
         }
 
         return callbackDto;
     }
 
     /**
-     * Validate session consistency between stored and callback data
+     * Validate session consistency between stored and callback data.
+     * In stateless mode the flow state is unsealed from the callback session itself,
+     * provided it was started by this browser. An existing HTTP session is used but never created.
      */
-    private SessionContext validateSession(HttpSession session, ExternalAuthCallbackDto callbackDto) {
-        String clientId = (String) session.getAttribute(SessionKeys.CLIENT_ID);
-        String redirectUri = (String) session.getAttribute(SessionKeys.REDIRECT_URI);
-        String scope = (String) session.getAttribute(SessionKeys.SCOPE);
-        String state = (String) session.getAttribute(SessionKeys.STATE);
-        String expectedSession = (String) session.getAttribute(SessionKeys.EXTERNAL_SESSION);
+    private AuthFlowState validateSession(HttpServletRequest request, HttpServletResponse response,
+            ExternalAuthCallbackDto callbackDto) {
+        AuthFlowState flowState = flowStateStore.resume(
+                request, response, request.getSession(false), callbackDto.session());
+        if (flowState == null) {
+            throw AuthException.rejected(ErrorCode.AUTH_FLOW_EXPIRED);
+        }
+
+        String clientId = flowState.clientId();
+        String expectedSession = flowState.externalSession();
 
         if (clientId == null || clientId.isBlank() || expectedSession == null || expectedSession.isBlank()) {
-            throw new AuthException(ErrorCode.AUTH_FLOW_EXPIRED, "授權流程已過期或無效");
+            throw AuthException.rejected(ErrorCode.AUTH_FLOW_EXPIRED);
         }
 
         if (!externalAuthService.validateSession(callbackDto.session(), clientId)) {
-            throw new AuthException(ErrorCode.SESSION_VALIDATION_FAILED, "Session 格式不正確");
+            throw AuthException.rejected(ErrorCode.SESSION_VALIDATION_FAILED);
         }
 
         if (!expectedSession.equals(callbackDto.session())) {
-            throw new AuthException(ErrorCode.SESSION_VALIDATION_FAILED, "Session 不符合預期");
+            throw AuthException.rejected(ErrorCode.SESSION_VALIDATION_FAILED);
         }
 
-        return new SessionContext(clientId, redirectUri, scope, state);
+        return flowState;
+    }
+
+    /**
+     * Reject a failed external authentication; only called for a validated session,
+     * so the caller-supplied statusDesc is not logged for junk callbacks
+     */
+    private void checkExternalStatus(ExternalAuthCallbackDto callbackDto) {
+        if (!externalAuthService.isSuccessStatusCode(callbackDto.statusCode())) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("External auth failed: {}", StringUtils.abbreviate(
+                        StringUtils.normalizeSpace(callbackDto.statusDesc()), STATUS_DESC_LOG_LIMIT));
+            }
+            throw AuthException.rejected(ErrorCode.EXTERNAL_AUTH_FAILED);
+        }
     }
 
     /**
@@ -123,13 +158,12 @@ public class ExternalAuthCallbackController {
         ExternalUserInfoResponse userInfo = externalAuthService.getUserInfo(token);
         
         if (!externalAuthService.isSuccessStatusCode(userInfo.statusCode())) {
-            throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, 
-                    "外部 API 失敗：" + userInfo.statusDesc());
+            throw AuthException.rejected(ErrorCode.EXTERNAL_API_FAILED);
         }
 
         String customerId = userInfo.customerId();
         if (customerId == null || customerId.isBlank()) {
-            throw new AuthException(ErrorCode.MISSING_CUSTOMER_ID, "外部 API 未回傳使用者代號");
+            throw AuthException.rejected(ErrorCode.MISSING_CUSTOMER_ID);
         }
 
         logger.info("User authenticated successfully");
@@ -140,17 +174,16 @@ public class ExternalAuthCallbackController {
      * Establish Spring Security authentication context
      */
     private void establishAuthentication(
-            HttpSession session,
-            ExternalAuthCallbackDto callbackDto,
+            AuthFlowState flowState,
             String customerId,
             HttpServletRequest request,
             HttpServletResponse response) {
 
-        // Store user info in session
-        session.setAttribute(SessionKeys.CUSTOMER_ID, customerId);
-        session.setAttribute(SessionKeys.AUTH_TIME, Instant.now());
-        session.setAttribute(SessionKeys.EXTERNAL_SESSION, callbackDto.session());
-        session.setAttribute(SessionKeys.EXTERNAL_TOKEN, callbackDto.token());
+        // Store user info in the flow state; this also drops the consumed external session.
+        // The external token is not kept: it is only needed for the user info call above.
+        // In session mode the flow state was loaded from the existing session (no-op when stateless).
+        HttpSession session = request.getSession(false);
+        flowStateStore.save(session, flowState.authenticated(customerId, Instant.now()));
 
         // Create and persist authentication
         Authentication authentication =
@@ -158,25 +191,32 @@ public class ExternalAuthCallbackController {
         SecurityContextHolder.getContext().setAuthentication(authentication);
         new HttpSessionSecurityContextRepository()
                 .saveContext(SecurityContextHolder.getContext(), request, response);
-
-        // Clean up the expected session after successful validation
-        session.removeAttribute(SessionKeys.EXTERNAL_SESSION);
     }
 
     /**
-     * Build redirect URL to continue OAuth2 flow
+     * Build redirect URL to continue OAuth2 flow.
+     * With auth-flow.resume-in-callback the saved authorization request is processed here
+     * and the browser goes straight to the consent page (or back to the client).
      */
     private String buildRedirectUrl(
-            SessionContext sessionContext,
+            AuthFlowState flowState,
             HttpServletRequest request,
             HttpServletResponse response) {
 
         SavedRequest savedRequest = requestCache.getRequest(request, response);
         requestCache.removeRequest(request, response);
 
+        if (authFlowProperties.isResumeInCallback()) {
+            String resumed = authorizationRequestResumer.resume(request, response, savedRequest);
+            if (resumed != null) {
+                logger.info("Authorization request resumed in callback");
+                return "redirect:" + resumed;
+            }
+        }
+
         String target = savedRequest != null ? savedRequest.getRedirectUrl() : null;
         if (target == null || target.contains("/error")) {
-            target = rebuildAuthorizeUrl(sessionContext);
+            target = rebuildAuthorizeUrl(flowState);
             logger.warn("Saved request missing/invalid. Rebuilt authorize URL");
         } else {
             logger.info("Redirecting back to saved request");
@@ -186,19 +226,19 @@ public class ExternalAuthCallbackController {
     }
 
     /**
-     * Rebuild OAuth2 authorize URL from session context
+     * Rebuild OAuth2 authorize URL from flow state
      */
-    private String rebuildAuthorizeUrl(SessionContext ctx) {
+    private String rebuildAuthorizeUrl(AuthFlowState ctx) {
         StringBuilder sb = new StringBuilder("/oauth2/authorize?response_type=code");
-        sb.append("&client_id=").append(urlEncode(ctx.clientId));
-        if (ctx.redirectUri != null && !ctx.redirectUri.isBlank()) {
-            sb.append("&redirect_uri=").append(urlEncode(ctx.redirectUri));
+        sb.append("&client_id=").append(urlEncode(ctx.clientId()));
+        if (ctx.redirectUri() != null && !ctx.redirectUri().isBlank()) {
+            sb.append("&redirect_uri=").append(urlEncode(ctx.redirectUri()));
         }
-        if (ctx.scope != null && !ctx.scope.isBlank()) {
-            sb.append("&scope=").append(urlEncode(ctx.scope));
+        if (ctx.scope() != null && !ctx.scope().isBlank()) {
+            sb.append("&scope=").append(urlEncode(ctx.scope()));
         }
-        if (ctx.state != null && !ctx.state.isBlank()) {
-            sb.append("&state=").append(urlEncode(ctx.state));
+        if (ctx.state() != null && !ctx.state().isBlank()) {
+            sb.append("&state=").append(urlEncode(ctx.state()));
         }
         return sb.toString();
     }
@@ -206,9 +246,4 @@ public class ExternalAuthCallbackController {
     private String urlEncode(String value) {
         return URLEncoder.encode(value, StandardCharsets.UTF_8);
     }
-
-    /**
-     * Internal record to hold session context data
-     */
-    private record SessionContext(String clientId, String redirectUri, String scope, String state) {}
 }
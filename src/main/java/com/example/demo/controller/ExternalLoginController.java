@@ -1,76 +1,83 @@
 package com.example.demo.controller;
 
-import com.example.demo.constant.SessionKeys;
 import com.example.demo.exception.AuthException;
 import com.example.demo.exception.ErrorCode;
 import com.example.demo.service.ExternalAuthService;
+import com.example.demo.session.AuthFlowState;
+import com.example.demo.session.AuthFlowStateStore;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
-import org.springframework.security.web.savedrequest.HttpSessionRequestCache;
+import org.springframework.security.web.savedrequest.RequestCache;
 import org.springframework.security.web.savedrequest.SavedRequest;
 import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
 
-import java.util.UUID;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * External login entry point.
  * Users are sent here by Spring Security when unauthenticated during /oauth2/authorize.
+ * The page is pre-rendered per client and locale by {@link PageSkeletonCache}.
  */
 @Controller
 public class ExternalLoginController {
 
     private static final Logger logger = LoggerFactory.getLogger(ExternalLoginController.class);
+    private static final MediaType TEXT_HTML_UTF8 = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+    private static final String TEMPLATE = "auth-home-page";
+    private static final String EXTERNAL_LOGIN_URL_SLOT = "externalLoginUrl";
 
     private final RegisteredClientRepository clientRepository;
     private final ExternalAuthService externalAuthService;
-    private final HttpSessionRequestCache requestCache;
+    private final RequestCache requestCache;
+    private final AuthFlowStateStore flowStateStore;
+    private final PageSkeletonCache pageSkeletonCache;
 
     public ExternalLoginController(
             RegisteredClientRepository clientRepository, 
             ExternalAuthService externalAuthService,
-            HttpSessionRequestCache requestCache) {
+            RequestCache requestCache,
+            AuthFlowStateStore flowStateStore,
+            PageSkeletonCache pageSkeletonCache) {
         this.clientRepository = clientRepository;
         this.externalAuthService = externalAuthService;
         this.requestCache = requestCache;
+        this.flowStateStore = flowStateStore;
+        this.pageSkeletonCache = pageSkeletonCache;
     }
 
     @GetMapping("/external-login")
-    public String showExternalLogin(HttpServletRequest request, HttpServletResponse response, Model model) {
+    public ResponseEntity<String> showExternalLogin(HttpServletRequest request, HttpServletResponse response, Locale locale) {
         SavedRequest savedRequest = requestCache.getRequest(request, response);
         if (savedRequest == null) {
             logger.warn("No saved request found in session for /external-login");
-            throw new AuthException(ErrorCode.MISSING_AUTH_REQUEST, "找不到授權請求");
+            throw AuthException.rejected(ErrorCode.MISSING_AUTH_REQUEST);
         }
 
         String clientId = getFirstParam(savedRequest, "client_id");
         if (clientId == null) {
-            throw new AuthException(ErrorCode.MISSING_CLIENT_ID, "授權請求缺少 client_id");
+            throw AuthException.rejected(ErrorCode.MISSING_CLIENT_ID);
         }
 
         String redirectUri = getFirstParam(savedRequest, "redirect_uri");
         String scope = getFirstParam(savedRequest, "scope");
         String state = getFirstParam(savedRequest, "state");
 
-        RegisteredClient client = clientRepository.findByClientId(clientId);
-        String clientName = client != null && client.getClientName() != null ? client.getClientName() : clientId;
-
-        String authSession = UUID.randomUUID().toString();
-        String externalSession = authSession + "_" + clientId;
-
-        HttpSession session = request.getSession(true);
-        session.setAttribute(SessionKeys.EXTERNAL_SESSION, externalSession);
-        session.setAttribute(SessionKeys.CLIENT_ID, clientId);
-        session.setAttribute(SessionKeys.REDIRECT_URI, redirectUri);
-        session.setAttribute(SessionKeys.SCOPE, scope);
-        session.setAttribute(SessionKeys.STATE, state);
+        AuthFlowState flowState = flowStateStore.start(request, response, clientId, redirectUri, scope, state);
+        String externalSession = flowState.externalSession();
 
         String callbackUrl = ServletUriComponentsBuilder
                 .fromRequestUri(request)
@@ -82,18 +89,43 @@ public class ExternalLoginController {
 
         logger.info("Redirecting to external login for client: {}", clientId);
 
-        model.addAttribute("clientName", clientName);
-        model.addAttribute("clientId", clientId);
-        model.addAttribute("externalSession", externalSession);
-        model.addAttribute("externalLoginUrl", externalLoginUrl);
-        return "auth-home-page";
+        PageSkeletonCache.Key key = pageSkeletonCache.key(TEMPLATE, clientId, null, locale, false);
+        PageSkeleton skeleton = pageSkeletonCache.get(key);
+        if (skeleton == null) {
+            skeleton = compile(key);
+        }
+        return ResponseEntity.ok()
+                .contentType(TEXT_HTML_UTF8)
+                .body(skeleton.fill(Map.of(EXTERNAL_LOGIN_URL_SLOT, externalLoginUrl)));
+    }
+
+    /**
+     * Render the page for a client; kept only for a registered client
+     */
+    private PageSkeleton compile(PageSkeletonCache.Key key) {
+        RegisteredClient client = clientRepository.findByClientId(key.clientId());
+        String clientName = client != null && client.getClientName() != null ? client.getClientName() : key.clientId();
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("clientName", clientName);
+        variables.put("clientId", key.clientId());
+        PageSkeleton skeleton = pageSkeletonCache.compile(key, variables, Set.of(EXTERNAL_LOGIN_URL_SLOT));
+        if (client != null) {
+            pageSkeletonCache.put(key, skeleton);
+        }
+        return skeleton;
     }
 
     private String getFirstParam(SavedRequest savedRequest, String name) {
         String[] values = savedRequest.getParameterValues(name);
-        if (values == null || values.length == 0) {
-            return null;
+        if (values != null && values.length > 0) {
+            return values[0];
         }
-        return values[0];
+        // CookieRequestCache (stateless mode) only keeps the redirect URL, not the parameter map
+        String value = UriComponentsBuilder.fromUriString(savedRequest.getRedirectUrl())
+                .build()
+                .getQueryParams()
+                .getFirst(name);
+        return value != null ? UriUtils.decode(value, StandardCharsets.UTF_8) : null;
     }
 }
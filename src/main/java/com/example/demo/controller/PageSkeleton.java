@@ -0,0 +1,69 @@
+package com.example.demo.controller;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A rendered page split around its per-request values
+ *
+ * The template is rendered once with a unique marker in place of each per-request value;
+ * the output is cut at the markers. Filling it is string concatenation, with each value
+ * HTML-escaped as Thymeleaf would have escaped it in th:text and th:value.
+ */
+final class PageSkeleton {
+
+    private final String[] literals;
+    private final String[] slots;
+
+    private PageSkeleton(String[] literals, String[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    /**
+     * @param html Template output rendered with {@code markers} as the per-request values
+     * @param markers Marker per slot name; markers must not occur in the template itself
+     */
+    static PageSkeleton compile(String html, Map<String, String> markers) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int next = -1;
+            String slot = null;
+            for (Map.Entry<String, String> marker : markers.entrySet()) {
+                int index = html.indexOf(marker.getValue(), position);
+                if (index >= 0 && (next < 0 || index < next)) {
+                    next = index;
+                    slot = marker.getKey();
+                }
+            }
+            if (next < 0) {
+                literals.add(html.substring(position));
+                return new PageSkeleton(literals.toArray(String[]::new), slots.toArray(String[]::new));
+            }
+            literals.add(html.substring(position, next));
+            slots.add(slot);
+            position = next + markers.get(slot).length();
+        }
+    }
+
+    /**
+     * @param values Value per slot name; every slot of the skeleton must have one
+     */
+    String fill(Map<String, String> values) {
+        StringBuilder html = new StringBuilder(literals[0].length() * 2);
+        html.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            String value = values.get(slots[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("No value for slot " + slots[i]);
+            }
+            html.append(HtmlUtils.htmlEscape(value, "UTF-8")).append(literals[i + 1]);
+        }
+        return html.toString();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.PageCacheProperties;
+import com.example.demo.util.SecureIdGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Pre-rendered external login and consent pages
+ *
+ * Both pages depend on the client, the requested scopes and the locale, plus a few values
+ * that change with every request (state, CSRF token, customer ID, external login URL). Each
+ * combination is rendered once into a {@link PageSkeleton}; a request then only looks the
+ * skeleton up and inserts its own values, without a client lookup, scope parsing or a
+ * Thymeleaf pass.
+ *
+ * Keys are normalized so request parameters cannot multiply them: scopes become a sorted set
+ * and the locale one of page-cache.locales. Skeletons are only kept for registered clients
+ * (the callers decide), for page-cache.ttl, and at most page-cache.max-entries of them, the
+ * least recently used dropped first. Saving a client through this node evicts its skeletons
+ * at once, see {@link #evictClient}.
+ */
+@Component
+public class PageSkeletonCache {
+
+    private final ITemplateEngine templateEngine;
+    private final PageCacheProperties properties;
+    private final String markerPrefix;
+    private final Map<Key, Cached> skeletons;
+    private final Counter hits;
+    private final Counter misses;
+
+    public PageSkeletonCache(ITemplateEngine templateEngine, PageCacheProperties properties, MeterRegistry meterRegistry) {
+        this.templateEngine = templateEngine;
+        this.properties = properties;
+        this.skeletons = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+                return size() > properties.getMaxEntries();
+            }
+        });
+        byte[] nonce = new byte[8];
+        SecureIdGenerator.nextBytes(nonce);
+        this.markerPrefix = "slot" + HexFormat.of().formatHex(nonce);
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("pages.skeleton.lookups")
+                .description("Pre-rendered page lookups")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Key of a page, with the scopes as a sorted set and the locale one of page-cache.locales
+     *
+     * @param scope Requested scopes, space separated; null or blank for none
+     * @param csrf Whether the request carries a CSRF token the page must include
+     */
+    Key key(String template, String clientId, String scope, Locale locale, boolean csrf) {
+        List<String> scopes = scope == null || scope.isBlank()
+                ? List.of()
+                : List.copyOf(new TreeSet<>(Arrays.asList(scope.trim().split("\\s+"))));
+        return new Key(template, clientId, scopes, supportedLocale(locale), csrf);
+    }
+
+    private Locale supportedLocale(Locale requested) {
+        List<Locale> locales = properties.getLocales();
+        if (locales.isEmpty()) {
+            return Locale.ROOT;
+        }
+        Locale match = requested != null
+                ? Locale.lookup(List.of(new Locale.LanguageRange(requested.toLanguageTag())), locales)
+                : null;
+        return match != null ? match : locales.get(0);
+    }
+
+    /**
+     * @return the skeleton rendered for this key, or null
+     */
+    PageSkeleton get(Key key) {
+        Cached cached = properties.isEnabled() ? skeletons.get(key) : null;
+        if (cached == null || cached.expiresAtMillis() <= System.currentTimeMillis()) {
+            if (cached != null) {
+                skeletons.remove(key, cached);
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.skeleton();
+    }
+
+    /**
+     * Value to render in place of a slot; for variables the template reads a slot through,
+     * such as the CSRF token's fields
+     */
+    String marker(String slot) {
+        return markerPrefix + slot + "x";
+    }
+
+    /**
+     * Render the template with {@code variables} plus a marker for each slot
+     */
+    PageSkeleton compile(Key key, Map<String, Object> variables, Set<String> slots) {
+        Map<String, String> markers = new LinkedHashMap<>();
+        Context context = new Context(key.locale(), variables);
+        for (String slot : slots) {
+            markers.put(slot, marker(slot));
+            if (!context.containsVariable(slot)) {
+                context.setVariable(slot, marker(slot));
+            }
+        }
+        return PageSkeleton.compile(templateEngine.process(key.template(), context), markers);
+    }
+
+    void put(Key key, PageSkeleton skeleton) {
+        if (properties.isEnabled()) {
+            skeletons.put(key, new Cached(skeleton, System.currentTimeMillis() + properties.getTtl().toMillis()));
+        }
+    }
+
+    /**
+     * Drop the pages of a client whose registration changed
+     */
+    public void evictClient(String clientId) {
+        synchronized (skeletons) {
+            skeletons.keySet().removeIf(key -> key.clientId().equals(clientId));
+        }
+    }
+
+    /**
+     * Built by {@link #key}
+     *
+     * @param scopes Requested scopes, sorted and without duplicates
+     * @param locale One of page-cache.locales
+     */
+    record Key(String template, String clientId, List<String> scopes, Locale locale, boolean csrf) {
+    }
+
+    private record Cached(PageSkeleton skeleton, long expiresAtMillis) {
+    }
+}
@@ -1,83 +1,145 @@
 package com.example.demo.controller;
 
-import com.example.demo.constant.SessionKeys;
 import com.example.demo.exception.AuthException;
 import com.example.demo.exception.ErrorCode;
+import com.example.demo.session.AuthFlowState;
+import com.example.demo.session.AuthFlowStateStore;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
 import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Renders the custom terms/consent page used by Spring Authorization Server.
  * This is invoked via consentPage("/terms") in AuthorizationServerConfig.
+ * The page is pre-rendered per client, scopes and locale by {@link PageSkeletonCache}.
  */
 @Controller
 public class TermsController {
 
     private static final Logger logger = LoggerFactory.getLogger(TermsController.class);
+    private static final MediaType TEXT_HTML_UTF8 = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+    private static final String TEMPLATE = "terms";
+    private static final String CSRF_PARAMETER_SLOT = "csrfParameter";
+    private static final String CSRF_TOKEN_SLOT = "csrfToken";
+
     private final RegisteredClientRepository clientRepository;
+    private final AuthFlowStateStore flowStateStore;
+    private final AuthorizationServerSettings authorizationServerSettings;
+    private final PageSkeletonCache pageSkeletonCache;
 
-    public TermsController(RegisteredClientRepository clientRepository) {
+    public TermsController(
+            RegisteredClientRepository clientRepository,
+            AuthFlowStateStore flowStateStore,
+            AuthorizationServerSettings authorizationServerSettings,
+            PageSkeletonCache pageSkeletonCache) {
         this.clientRepository = clientRepository;
+        this.flowStateStore = flowStateStore;
+        this.authorizationServerSettings = authorizationServerSettings;
+        this.pageSkeletonCache = pageSkeletonCache;
     }
 
     @GetMapping("/terms")
-    public String termsPage(
+    public ResponseEntity<String> termsPage(
             @RequestParam(name = "client_id", required = false) String clientIdParam,
             @RequestParam(name = "state", required = false) String stateParam,
             @RequestParam(name = "scope", required = false) String scopeParam,
+            HttpServletRequest request,
             HttpSession session,
             Authentication authentication,
-            Model model) {
+            Locale locale) {
 
         if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
-            throw new AuthException(ErrorCode.NOT_AUTHENTICATED, "需要先完成登入");
+            throw AuthException.rejected(ErrorCode.NOT_AUTHENTICATED);
         }
 
+        AuthFlowState flowState = flowStateStore.load(session);
+
         // Use Apache Commons StringUtils.firstNonBlank for cleaner code
-        String clientId = StringUtils.firstNonBlank(clientIdParam, (String) session.getAttribute(SessionKeys.CLIENT_ID));
-        String state = StringUtils.firstNonBlank(stateParam, (String) session.getAttribute(SessionKeys.STATE));
-        String scope = StringUtils.firstNonBlank(scopeParam, (String) session.getAttribute(SessionKeys.SCOPE));
+        String clientId = StringUtils.firstNonBlank(clientIdParam, flowState != null ? flowState.clientId() : null);
+        String state = StringUtils.firstNonBlank(stateParam, flowState != null ? flowState.state() : null);
+        String scope = StringUtils.firstNonBlank(scopeParam, flowState != null ? flowState.scope() : null);
 
         if (StringUtils.isBlank(clientId)) {
             logger.warn("Missing client_id on /terms");
-            throw new AuthException(ErrorCode.MISSING_CLIENT_ID, "授權請求資訊遺失（client_id）");
+            throw AuthException.rejected(ErrorCode.MISSING_CLIENT_ID);
         }
         if (StringUtils.isBlank(state)) {
             logger.warn("Missing state on /terms");
-            throw new AuthException(ErrorCode.MISSING_STATE, "授權請求資訊遺失（state）");
+            throw AuthException.rejected(ErrorCode.MISSING_STATE);
         }
 
-        RegisteredClient client = clientRepository.findByClientId(clientId);
-        String clientName = client != null ? client.getClientName() : clientId;
+        // The callback signs the user in with the customer ID as the principal name
+        String customerId = flowState != null && flowState.customerId() != null
+                ? flowState.customerId()
+                : authentication.getName();
+        CsrfToken csrfToken = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
 
-        model.addAttribute("clientId", clientId);
-        model.addAttribute("clientName", clientName);
-        model.addAttribute("state", state);
+        Map<String, String> values = new HashMap<>();
+        values.put("state", state);
+        values.put("customerId", customerId);
+        if (csrfToken != null) {
+            values.put(CSRF_PARAMETER_SLOT, csrfToken.getParameterName());
+            values.put(CSRF_TOKEN_SLOT, csrfToken.getToken());
+        }
 
-        if (StringUtils.isNotBlank(scope)) {
-            List<String> scopes = Arrays.asList(scope.trim().split("\\s+"));
-            model.addAttribute("scopes", scopes);
-        } else {
-            model.addAttribute("scopes", List.of());
+        PageSkeletonCache.Key key = pageSkeletonCache.key(TEMPLATE, clientId, scope, locale, csrfToken != null);
+        PageSkeleton skeleton = pageSkeletonCache.get(key);
+        if (skeleton == null) {
+            skeleton = compile(key, request, values.keySet());
         }
 
-        model.addAttribute("customerId", session.getAttribute(SessionKeys.CUSTOMER_ID));
-        model.addAttribute("redirectUri", session.getAttribute(SessionKeys.REDIRECT_URI));
-        
         logger.info("Showing terms page for client: {}", clientId);
-        return "terms";
+        return ResponseEntity.ok()
+                .contentType(TEXT_HTML_UTF8)
+                .body(skeleton.fill(values));
+    }
+
+    /**
+     * Render the page for a client and scopes; kept only for a registered client requesting
+     * scopes it is registered for, so arbitrary request parameters cannot fill the cache
+     */
+    private PageSkeleton compile(PageSkeletonCache.Key key, HttpServletRequest request, Set<String> slots) {
+        RegisteredClient client = clientRepository.findByClientId(key.clientId());
+        String clientName = client != null ? client.getClientName() : key.clientId();
+        List<String> scopes = key.scopes();
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("clientId", key.clientId());
+        variables.put("clientName", clientName);
+        variables.put("scopes", scopes);
+        // Resolved here rather than with @{...}, so the template also renders outside a request
+        variables.put("authorizationEndpoint",
+                request.getContextPath() + authorizationServerSettings.getAuthorizationEndpoint());
+        if (key.csrf()) {
+            variables.put("_csrf", new DefaultCsrfToken("X-CSRF-TOKEN",
+                    pageSkeletonCache.marker(CSRF_PARAMETER_SLOT), pageSkeletonCache.marker(CSRF_TOKEN_SLOT)));
+        }
+
+        PageSkeleton skeleton = pageSkeletonCache.compile(key, variables, slots);
+        if (client != null && client.getScopes().containsAll(scopes)) {
+            pageSkeletonCache.put(key, skeleton);
+        }
+        return skeleton;
     }
 }
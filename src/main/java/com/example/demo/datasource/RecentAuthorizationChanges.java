@@ -0,0 +1,61 @@
+package com.example.demo.datasource;
+
+import com.example.demo.token.AuthorizationInvalidationListener;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Authorizations changed on any node within the last replica lag window
+ *
+ * A replica may not have replayed such a change yet, so a replica read of one of them is
+ * repeated on the primary. Fed by the invalidation channel, which delivers every save
+ * that can change what introspection answers; while the channel is down (and for one
+ * window after it comes back, since changes in between were missed) nothing is settled.
+ */
+public class RecentAuthorizationChanges implements AuthorizationInvalidationListener {
+
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final long windowNanos;
+    private final Map<String, Long> changedAt = new ConcurrentHashMap<>();
+    private volatile boolean receiving;
+    private volatile long trustedFromNanos;
+
+    public RecentAuthorizationChanges(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    /**
+     * Has every replica within the lag threshold seen the latest change to this authorization?
+     */
+    public boolean isSettled(String authorizationId) {
+        long now = System.nanoTime();
+        if (!receiving || now - trustedFromNanos < 0) {
+            return false;
+        }
+        Long changed = changedAt.get(authorizationId);
+        return changed == null || now - changed > windowNanos;
+    }
+
+    @Override
+    public void authorizationInvalidated(String authorizationId, String revokedJti) {
+        long now = System.nanoTime();
+        changedAt.put(authorizationId, now);
+        if (changedAt.size() > PURGE_THRESHOLD) {
+            changedAt.values().removeIf(changed -> now - changed > windowNanos);
+        }
+    }
+
+    @Override
+    public void invalidationsSuspended() {
+        receiving = false;
+    }
+
+    @Override
+    public void invalidationsResumed() {
+        trustedFromNanos = System.nanoTime() + windowNanos;
+        receiving = true;
+    }
+}
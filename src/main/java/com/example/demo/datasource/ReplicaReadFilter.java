@@ -0,0 +1,43 @@
+package com.example.demo.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs requests to read-only endpoints (introspection, userinfo) inside {@link ReplicaReads#replica}
+ */
+public class ReplicaReadFilter extends OncePerRequestFilter {
+
+    private final RequestMatcher matcher;
+
+    public ReplicaReadFilter(List<String> paths) {
+        List<RequestMatcher> matchers = paths.stream()
+                .map(path -> (RequestMatcher) new AntPathRequestMatcher(path))
+                .toList();
+        this.matcher = matchers.isEmpty() ? request -> false : new OrRequestMatcher(matchers);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!matcher.matches(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        Boolean previous = ReplicaReads.enter(true);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaReads.restore(previous);
+        }
+    }
+}
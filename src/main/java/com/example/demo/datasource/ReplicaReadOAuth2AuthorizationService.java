@@ -0,0 +1,64 @@
+package com.example.demo.datasource;
+
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+/**
+ * Authorization lookups that may read from a replica without missing recent writes
+ *
+ * Inside {@link ReplicaReads#replica} (the read-only endpoints), a lookup is answered by a
+ * replica only if it finds the authorization and that authorization has not changed within
+ * the lag window; otherwise it is repeated on the primary. A token issued a moment ago is
+ * therefore still found, and a token revoked a moment ago is not reported active. Writes,
+ * and lookups outside a replica scope such as code redemption, always use the primary.
+ */
+public class ReplicaReadOAuth2AuthorizationService implements OAuth2AuthorizationService {
+
+    private final OAuth2AuthorizationService delegate;
+    private final RecentAuthorizationChanges recentChanges;
+
+    public ReplicaReadOAuth2AuthorizationService(
+            OAuth2AuthorizationService delegate, RecentAuthorizationChanges recentChanges) {
+        this.delegate = delegate;
+        this.recentChanges = recentChanges;
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        ReplicaReads.primary(() -> {
+            delegate.save(authorization);
+            return null;
+        });
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        ReplicaReads.primary(() -> {
+            delegate.remove(authorization);
+            return null;
+        });
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        if (ReplicaReads.isPreferred() && recentChanges.isSettled(id)) {
+            OAuth2Authorization authorization = delegate.findById(id);
+            if (authorization != null) {
+                return authorization;
+            }
+        }
+        return ReplicaReads.primary(() -> delegate.findById(id));
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        if (ReplicaReads.isPreferred()) {
+            OAuth2Authorization authorization = delegate.findByToken(token, tokenType);
+            if (authorization != null && recentChanges.isSettled(authorization.getId())) {
+                return authorization;
+            }
+        }
+        return ReplicaReads.primary(() -> delegate.findByToken(token, tokenType));
+    }
+}
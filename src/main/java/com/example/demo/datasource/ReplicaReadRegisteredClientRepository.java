@@ -0,0 +1,37 @@
+package com.example.demo.datasource;
+
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+/**
+ * Registered client lookups from a replica
+ *
+ * Client registrations change rarely and lookups are already served from a TTL cache,
+ * so a client saved a moment ago may be unknown for up to the lag threshold longer.
+ */
+public class ReplicaReadRegisteredClientRepository implements RegisteredClientRepository {
+
+    private final RegisteredClientRepository delegate;
+
+    public ReplicaReadRegisteredClientRepository(RegisteredClientRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void save(RegisteredClient registeredClient) {
+        ReplicaReads.primary(() -> {
+            delegate.save(registeredClient);
+            return null;
+        });
+    }
+
+    @Override
+    public RegisteredClient findById(String id) {
+        return ReplicaReads.replica(() -> delegate.findById(id));
+    }
+
+    @Override
+    public RegisteredClient findByClientId(String clientId) {
+        return ReplicaReads.replica(() -> delegate.findByClientId(clientId));
+    }
+}
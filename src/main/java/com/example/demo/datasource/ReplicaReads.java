@@ -0,0 +1,60 @@
+package com.example.demo.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Whether JDBC work on this thread may read from a replica
+ *
+ * Everything goes to the primary unless it runs inside {@link #replica}; connections are
+ * routed by {@link ReplicaRoutingDataSource} when they are obtained, so a transaction that
+ * already holds a primary connection keeps it. Read-only transactions
+ * (@Transactional(readOnly = true)) are routed to replicas as well.
+ */
+public final class ReplicaReads {
+
+    private static final ThreadLocal<Boolean> PREFERRED = new ThreadLocal<>();
+
+    private ReplicaReads() {
+    }
+
+    /**
+     * Run reads that tolerate replica lag
+     */
+    public static <T> T replica(Supplier<T> reads) {
+        return call(true, reads);
+    }
+
+    /**
+     * Run work that must see the latest writes, also inside {@link #replica}
+     */
+    public static <T> T primary(Supplier<T> work) {
+        return call(false, work);
+    }
+
+    public static boolean isPreferred() {
+        return Boolean.TRUE.equals(PREFERRED.get());
+    }
+
+    static Boolean enter(boolean preferred) {
+        Boolean previous = PREFERRED.get();
+        PREFERRED.set(preferred);
+        return previous;
+    }
+
+    static void restore(Boolean previous) {
+        if (previous == null) {
+            PREFERRED.remove();
+        } else {
+            PREFERRED.set(previous);
+        }
+    }
+
+    private static <T> T call(boolean preferred, Supplier<T> work) {
+        Boolean previous = enter(preferred);
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.datasource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * DataSource that sends read-only work to a replica and everything else to the primary
+ *
+ * Built on {@link LazyConnectionDataSourceProxy}: the physical connection is only fetched
+ * on the first statement, after a read-only transaction has called setReadOnly(true), and
+ * read-only connections come from {@link ReplicaSet}. Connections obtained inside
+ * {@link ReplicaReads#replica} are marked read-only up front. When no replica is within
+ * the lag threshold, read-only work falls back to the primary.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy {
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaSet replicas) {
+        super(primary);
+        setReadOnlyDataSource(new ReplicaOrPrimary(primary, replicas));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        if (ReplicaReads.isPreferred()) {
+            connection.setReadOnly(true);
+        }
+        return connection;
+    }
+
+    private static class ReplicaOrPrimary extends AbstractDataSource {
+
+        private final DataSource primary;
+        private final ReplicaSet replicas;
+
+        ReplicaOrPrimary(DataSource primary, ReplicaSet replicas) {
+            this.primary = primary;
+            this.replicas = replicas;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = replicas.getConnection();
+            if (connection != null) {
+                return connection;
+            }
+            connection = primary.getConnection();
+            connection.setReadOnly(true);
+            return connection;
+        }
+
+        /**
+         * Replicas only know the configured credentials, so explicit ones go to the primary,
+         * read-only as when no replica is healthy
+         */
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            Connection connection = primary.getConnection(username, password);
+            connection.setReadOnly(true);
+            return connection;
+        }
+    }
+}
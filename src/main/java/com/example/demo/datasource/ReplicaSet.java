@@ -0,0 +1,143 @@
+package com.example.demo.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PostgreSQL streaming replicas, used round robin while their replay lag is within bounds
+ *
+ * Lag is sampled on every replica at a fixed interval: zero when everything received has
+ * been replayed, otherwise the age of the last replayed transaction. A replica that is
+ * lagging, has not been sampled yet, or failed its sample or a connection attempt gets no
+ * reads until a later sample finds it healthy; when none is healthy,
+ * {@link #getConnection()} returns null and the caller reads from the primary.
+ */
+public class ReplicaSet implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaSet.class);
+
+    static final String LAG_SQL = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN NULL "
+            + "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE (EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint END";
+
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public ReplicaSet(List<Replica> replicas, Duration maxLag) {
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMillis = maxLag.toMillis();
+    }
+
+    /**
+     * Connection to the next healthy replica, or null if none is healthy
+     */
+    public Connection getConnection() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.healthy = false;
+                logger.warn("Replica {} unavailable, reads fall back until its next lag check: {}",
+                        replica.name, e.getMessage());
+            }
+        }
+        fallbacks.incrementAndGet();
+        return null;
+    }
+
+    @Scheduled(fixedDelayString = "#{@readReplicaProperties.lagCheckInterval.toMillis()}")
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            boolean wasHealthy = replica.healthy;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                rs.next();
+                long lag = rs.getLong(1);
+                if (rs.wasNull()) {
+                    // Promoted or misconfigured: not following the primary any more
+                    replica.lagMillis = -1;
+                    replica.healthy = false;
+                } else {
+                    replica.lagMillis = lag;
+                    replica.healthy = lag <= maxLagMillis;
+                }
+            } catch (SQLException e) {
+                replica.lagMillis = -1;
+                replica.healthy = false;
+            }
+            if (wasHealthy != replica.healthy) {
+                logger.info("Replica {} {} (lag {} ms)", replica.name,
+                        replica.healthy ? "serving reads" : "removed from reads", replica.lagMillis);
+            }
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Read-only connections served by the primary because no replica was healthy
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            // Pools may be wrapped for request deadlines
+            if (replica.dataSource.isWrapperFor(AutoCloseable.class)) {
+                replica.dataSource.unwrap(AutoCloseable.class).close();
+            }
+        }
+    }
+
+    public static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+        private volatile long lagMillis = -1;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /**
+         * Last sampled replay lag, -1 if unknown
+         */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+    }
+}
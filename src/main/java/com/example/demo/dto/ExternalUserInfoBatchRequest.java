@@ -0,0 +1,25 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * External User Information Batch API Request
+ * 
+ * Request payload for looking up several tokens in one call.
+ * Results are returned as a list in the same order as the tokens.
+ * 
+ * @param platformId Platform identifier (e.g., "authserver")
+ * @param tokens Tokens returned by external authentication system
+ */
+public record ExternalUserInfoBatchRequest(
+    String platformId,
+    List<String> tokens
+) {
+    @Override
+    public String toString() {
+        return "ExternalUserInfoBatchRequest{" +
+                "platformId='" + platformId + '\'' +
+                ", tokens=" + tokens.size() +
+                '}';
+    }
+}
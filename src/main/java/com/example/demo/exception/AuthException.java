@@ -1,12 +1,27 @@
 package com.example.demo.exception;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 /**
  * 認證相關例外
  * 
  * 用於標識認證流程中的各種錯誤情況。
+ * 
+ * 可預期的拒絕（例如機器人送來的垃圾 callback）請使用 {@link #rejected(ErrorCode)}：
+ * 回傳預先建立、不含 stack trace 的共用實例，拒絕時不需建立例外與擷取堆疊。
  */
 public class AuthException extends RuntimeException {
     
+    /** 每個 ErrorCode 一個預先建立的無堆疊實例 */
+    private static final Map<ErrorCode, AuthException> REJECTIONS = new EnumMap<>(ErrorCode.class);
+    
+    static {
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            REJECTIONS.put(errorCode, new AuthException(errorCode, errorCode.getUserMessage(), false));
+        }
+    }
+    
     private final ErrorCode errorCode;
     
     public AuthException(ErrorCode errorCode) {
@@ -24,6 +39,18 @@ public class AuthException extends RuntimeException {
         this.errorCode = errorCode;
     }
     
+    private AuthException(ErrorCode errorCode, String detailMessage, boolean writableStackTrace) {
+        super(detailMessage, null, false, writableStackTrace);
+        this.errorCode = errorCode;
+    }
+    
+    /**
+     * 取得預先建立的無堆疊例外（共用實例，不可附加 cause 或 suppressed）
+     */
+    public static AuthException rejected(ErrorCode errorCode) {
+        return REJECTIONS.get(errorCode);
+    }
+    
     public ErrorCode getErrorCode() {
         return errorCode;
     }
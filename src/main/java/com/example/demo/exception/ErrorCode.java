@@ -25,6 +25,9 @@ public enum ErrorCode {
     /** 授權流程過期 */
     AUTH_FLOW_EXPIRED("授權流程已過期或無效，請重新發起授權流程"),
     
+    /** 授權流程資料過大 */
+    AUTH_FLOW_TOO_LARGE("授權請求參數過長，請重新發起授權流程"),
+    
     /** 外部 API 呼叫失敗 */
     EXTERNAL_API_FAILED("外部服務暫時無法使用，請稍後再試"),
     
@@ -37,6 +40,12 @@ public enum ErrorCode {
     /** 回調資料解析失敗 */
     CALLBACK_PARSE_FAILED("回調資料格式錯誤，請重新發起授權流程"),
     
+    /** 請求處理時間超過期限 */
+    REQUEST_TIMEOUT("系統處理逾時，請稍後再試"),
+    
+    /** 系統忙碌，請求被准入控制拒絕 */
+    SERVER_BUSY("系統忙碌中，請稍後再試"),
+    
     /** 未知錯誤 */
     UNKNOWN("系統發生錯誤，請稍後再試");
 
@@ -0,0 +1,41 @@
+package com.example.demo.exception;
+
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 錯誤頁快取
+ * 
+ * error 樣板只依賴錯誤訊息，而每個 ErrorCode 的訊息固定，因此每個 ErrorCode 只渲染一次，
+ * 之後直接回傳快取的 HTML，拒絕請求時不再經過 Thymeleaf。
+ */
+@Component
+public class ErrorPageCache {
+    
+    private static final String ERROR_TEMPLATE = "error";
+    
+    private final ITemplateEngine templateEngine;
+    private final Map<ErrorCode, byte[]> pages = new ConcurrentHashMap<>();
+    
+    public ErrorPageCache(ITemplateEngine templateEngine) {
+        this.templateEngine = templateEngine;
+    }
+    
+    /**
+     * 取得錯誤碼對應的 HTML（UTF-8）
+     */
+    public byte[] page(ErrorCode errorCode) {
+        return pages.computeIfAbsent(errorCode, this::render);
+    }
+    
+    private byte[] render(ErrorCode errorCode) {
+        Context context = new Context();
+        context.setVariable("error", errorCode.getUserMessage());
+        return templateEngine.process(ERROR_TEMPLATE, context).getBytes(StandardCharsets.UTF_8);
+    }
+}
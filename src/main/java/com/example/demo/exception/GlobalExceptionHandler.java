@@ -1,11 +1,21 @@
 package com.example.demo.exception;
 
+import com.example.demo.admission.DeadlineExceededException;
+import com.example.demo.admission.RequestDeadline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
 /**
  * 全域例外處理器
  * 
@@ -16,16 +26,60 @@ public class GlobalExceptionHandler {
     
     private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
     
+    private static final MediaType TEXT_HTML_UTF8 = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+    
+    private final RateLimitedLogger authErrorLogger = new RateLimitedLogger(logger, Duration.ofSeconds(10));
+    private final ErrorPageCache errorPageCache;
+    
+    public GlobalExceptionHandler(ErrorPageCache errorPageCache) {
+        this.errorPageCache = errorPageCache;
+    }
+    
     /**
      * 處理認證相關例外
+     * 
+     * 回傳預先渲染的錯誤頁；日誌依 ErrorCode 限速且不含 stack trace，避免垃圾流量放大成本。
      */
     @ExceptionHandler(AuthException.class)
-    public String handleAuthException(AuthException ex, Model model) {
-        logger.warn("Authentication error [{}]: {}", ex.getErrorCode().name(), ex.getMessage());
+    public ResponseEntity<byte[]> handleAuthException(AuthException ex) {
+        String code = ex.getErrorCode().name();
+        authErrorLogger.warn(code, "Authentication error [" + code + "]: " + ex.getMessage());
         
         // 使用 enum 中定義的使用者友善訊息
-        model.addAttribute("error", ex.getErrorCode().getUserMessage());
-        return "error";
+        return ResponseEntity.ok()
+                .contentType(TEXT_HTML_UTF8)
+                .body(errorPageCache.page(ex.getErrorCode()));
+    }
+    
+    /**
+     * 處理請求期限用盡
+     * 
+     * 屬於負載下的預期結果：503 + Retry-After、快取錯誤頁、限速日誌（不含 stack trace）。
+     */
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<byte[]> handleDeadlineExceeded(DeadlineExceededException ex) {
+        return deadlineExceeded(ex);
+    }
+    
+    /**
+     * 處理資料庫存取例外
+     * 
+     * 因請求期限而逾時（query timeout、取得連線逾時）與期限用盡相同處理，其餘視為未預期錯誤。
+     */
+    @ExceptionHandler(DataAccessException.class)
+    public Object handleDataAccessException(DataAccessException ex, Model model) {
+        if (RequestDeadline.isDeadlineFailure(ex)) {
+            return deadlineExceeded(ex);
+        }
+        return handleGenericException(ex, model);
+    }
+    
+    private ResponseEntity<byte[]> deadlineExceeded(RuntimeException ex) {
+        authErrorLogger.warn(ErrorCode.REQUEST_TIMEOUT.name(), "Request timed out: " + ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .contentType(TEXT_HTML_UTF8)
+                .body(errorPageCache.page(ErrorCode.REQUEST_TIMEOUT));
     }
     
     /**
@@ -0,0 +1,63 @@
+package com.example.demo.exception;
+
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 限速日誌
+ * 
+ * 同一個 key 每個時間區間最多輸出一行，其餘只累計次數，並在下一次輸出時附上被略過的筆數。
+ * 用於可能被垃圾流量大量觸發的 warn 日誌。key 必須是有限集合（例如 ErrorCode 名稱）。
+ */
+public final class RateLimitedLogger {
+    
+    private final Logger logger;
+    private final long intervalNanos;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    
+    public RateLimitedLogger(Logger logger, Duration interval) {
+        this.logger = logger;
+        this.intervalNanos = interval.toNanos();
+    }
+    
+    /**
+     * 輸出 warn 日誌（不含 stack trace），超過頻率時略過
+     */
+    public void warn(String key, String message) {
+        if (!logger.isWarnEnabled()) {
+            return;
+        }
+        long suppressed = windows.computeIfAbsent(key, k -> new Window()).tryAcquire(System.nanoTime(), intervalNanos);
+        if (suppressed < 0) {
+            return;
+        }
+        if (suppressed > 0) {
+            logger.warn("{} ({} similar messages suppressed)", message, suppressed);
+        } else {
+            logger.warn(message);
+        }
+    }
+    
+    private static final class Window {
+        
+        private final AtomicLong nextAllowedNanos = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong suppressed = new AtomicLong();
+        
+        /**
+         * @return 可輸出時回傳先前略過的筆數，否則回傳 -1
+         */
+        long tryAcquire(long nowNanos, long intervalNanos) {
+            long next = nextAllowedNanos.get();
+            if (next != Long.MIN_VALUE && nowNanos - next < 0
+                    || !nextAllowedNanos.compareAndSet(next, nowNanos + intervalNanos)) {
+                suppressed.incrementAndGet();
+                return -1;
+            }
+            return suppressed.getAndSet(0);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.List;
@@ -14,8 +15,10 @@ import java.util.List;
  * Consent History Repository
  * 
  * 用於操作 oauth2_consent_history 表。
+ * 查詢為唯讀交易，啟用 read-replicas 時由 replica 執行。
  */
 @Repository
+@Transactional(readOnly = true)
 public interface ConsentHistoryRepository extends JpaRepository<ConsentHistory, Long> {
 
     /**
@@ -41,6 +44,7 @@ public interface ConsentHistoryRepository extends JpaRepository<ConsentHistory,
      * @return 刪除的記錄數
      */
     @Modifying
+    @Transactional
     @Query("DELETE FROM ConsentHistory c WHERE c.consentTime < :cutoffTime")
     int deleteByConsentTimeBefore(@Param("cutoffTime") Instant cutoffTime);
 
@@ -1,16 +1,24 @@
 package com.example.demo.service;
 
+import com.example.demo.admission.DeadlineExceededException;
+import com.example.demo.admission.RequestDeadline;
 import com.example.demo.config.ExternalAuthProperties;
 import com.example.demo.dto.ExternalAuthCallbackDto;
+import com.example.demo.dto.ExternalUserInfoBatchRequest;
 import com.example.demo.dto.ExternalUserInfoRequest;
 import com.example.demo.dto.ExternalUserInfoResponse;
 import com.example.demo.exception.AuthException;
 import com.example.demo.exception.ErrorCode;
+import com.example.demo.exception.RateLimitedLogger;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -19,20 +27,53 @@ import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * External Authentication Service.
+ *
+ * With external-auth.batch-enabled, concurrent user info lookups are coalesced into
+ * batch API calls; lookups fall back to single calls while the batch API is unavailable.
+ *
+ * API calls are spread over external-auth.server-urls by ExternalEndpointSelector. With
+ * external-auth.hedge-enabled, a call still running after the recent p95 latency is also
+ * sent to a second endpoint; the first answer wins and the other attempt is interrupted
+ * (attempts run on virtual threads, whose blocking socket reads abort on interrupt).
+ *
+ * Within a request deadline (RequestDeadline), every wait and HTTP timeout is capped by the
+ * remaining budget, and running out of it surfaces as DeadlineExceededException.
  */
 @Service
 public class ExternalAuthService {
 
     private static final Logger logger = LoggerFactory.getLogger(ExternalAuthService.class);
 
+    private static final RateLimitedLogger rejectionLogger = new RateLimitedLogger(logger, Duration.ofSeconds(10));
+
+    private static final long BATCH_RETRY_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private static final ParameterizedTypeReference<List<ExternalUserInfoResponse>> BATCH_RESPONSE_TYPE =
+            new ParameterizedTypeReference<>() {
+            };
+
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
     private final ExternalAuthProperties properties;
+    private final RequestCoalescer<String, ExternalUserInfoResponse> userInfoCoalescer;
+    private final ExternalEndpointSelector endpointSelector;
+    private final ExecutorService hedgeExecutor;
+    private volatile long batchDisabledUntilNanos;
 
     public ExternalAuthService(
             RestTemplate restTemplate, 
@@ -41,23 +82,71 @@ public class ExternalAuthService {
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
         this.properties = properties;
+        this.userInfoCoalescer = properties.isBatchEnabled()
+                ? new RequestCoalescer<>(this::fetchUserInfoBatch,
+                        Duration.ofMillis(properties.getBatchWindowMs()), properties.getBatchMaxSize())
+                : null;
+        this.endpointSelector = new ExternalEndpointSelector(properties.getApiServerUrls(),
+                properties.getEndpointFailureThreshold(), properties.getEndpointCooldownMs(),
+                properties.getHedgeMinDelayMs());
+        this.hedgeExecutor = properties.isHedgeEnabled() && endpointSelector.size() > 1
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("external-auth-", 0).factory())
+                : null;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (userInfoCoalescer != null) {
+            userInfoCoalescer.close();
+        }
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
     }
 
     /**
      * Parse Base64 encoded callback data from external authentication system
      */
     public ExternalAuthCallbackDto parseCallbackData(String base64Data) {
+        // Cheap shape checks first: junk never reaches the decoder or the JSON parser
+        if (!isWellFormedBase64(base64Data, properties.getMaxCallbackDataLength())) {
+            rejectionLogger.warn("callback-shape", "Rejected malformed callback data");
+            throw AuthException.rejected(ErrorCode.CALLBACK_PARSE_FAILED);
+        }
         try {
             byte[] decodedBytes = Base64.getDecoder().decode(base64Data);
-            String jsonString = new String(decodedBytes, StandardCharsets.UTF_8);
             logger.debug("Decoded callback JSON");
-            return objectMapper.readValue(jsonString, ExternalAuthCallbackDto.class);
+            return objectMapper.readValue(decodedBytes, ExternalAuthCallbackDto.class);
         } catch (Exception e) {
-            logger.error("Failed to parse callback data", e);
-            throw new AuthException(ErrorCode.CALLBACK_PARSE_FAILED, "回調資料解析失敗", e);
+            rejectionLogger.warn("callback-parse", "Failed to parse callback data: " + e.getClass().getSimpleName());
+            throw AuthException.rejected(ErrorCode.CALLBACK_PARSE_FAILED);
         }
     }
 
+    /**
+     * Non-empty, bounded, standard Base64 alphabet with at most two trailing '=' characters
+     */
+    static boolean isWellFormedBase64(String data, int maxLength) {
+        if (data == null || data.isEmpty() || data.length() > maxLength) {
+            return false;
+        }
+        int end = data.length();
+        int padding = 0;
+        while (end > 0 && data.charAt(end - 1) == '=' && padding < 2) {
+            end--;
+            padding++;
+        }
+        for (int i = 0; i < end; i++) {
+            char c = data.charAt(i);
+            boolean valid = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '+' || c == '/';
+            if (!valid) {
+                return false;
+            }
+        }
+        return end > 0;
+    }
+
     /**
      * Check if status code indicates success
      */
@@ -97,25 +186,187 @@ public class ExternalAuthService {
      * Response: {"statusCode":"0000|...","statusDesc":"...","customerId":"..."}
      */
     public ExternalUserInfoResponse getUserInfo(String externalToken) {
-        ExternalUserInfoRequest request = new ExternalUserInfoRequest(properties.getPlatformId(), externalToken);
+        if (userInfoCoalescer == null || System.nanoTime() - batchDisabledUntilNanos < 0) {
+            return fetchUserInfo(externalToken);
+        }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<ExternalUserInfoRequest> entity = new HttpEntity<>(request, headers);
+        long timeoutMs = RequestDeadline.timeoutMillis(
+                properties.getBatchWindowMs() + properties.getConnectTimeoutMs() + properties.getReadTimeoutMs());
+        try {
+            return userInfoCoalescer.submit(externalToken).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BatchUnavailableException) {
+                return fetchUserInfo(externalToken);
+            }
+            if (e.getCause() instanceof AuthException authException) {
+                throw authException;
+            }
+            throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, 
+                    "External API call failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            RequestDeadline.checkpoint();
+            throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, "External API batch call timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, "External API call interrupted", e);
+        }
+    }
 
-        String apiUrl = properties.getFullApiUrl();
+    private ExternalUserInfoResponse fetchUserInfo(String externalToken) {
+        ExternalUserInfoRequest request = new ExternalUserInfoRequest(properties.getPlatformId(), externalToken);
         logger.debug("Calling external API");
+        return callEndpoint(baseUrl -> post(baseUrl + properties.getApiEndpoint(), request, ExternalUserInfoResponse.class));
+    }
+
+    /**
+     * Batch API contract:
+     * Request: {"platformId":"authserver","tokens":["...","..."]}
+     * Response: [{"statusCode":"...","statusDesc":"...","customerId":"..."}, ...] in token order
+     */
+    private List<ExternalUserInfoResponse> fetchUserInfoBatch(List<String> externalTokens) {
+        if (externalTokens.size() == 1) {
+            return List.of(fetchUserInfo(externalTokens.get(0)));
+        }
+
+        ExternalUserInfoBatchRequest request = new ExternalUserInfoBatchRequest(properties.getPlatformId(), externalTokens);
+        logger.debug("Calling external batch API for {} tokens", externalTokens.size());
+        try {
+            List<ExternalUserInfoResponse> body = callEndpoint(baseUrl -> restTemplate.exchange(
+                    baseUrl + properties.getBatchApiEndpoint(), HttpMethod.POST, jsonEntity(request),
+                    BATCH_RESPONSE_TYPE).getBody());
+            if (body == null || body.size() != externalTokens.size()) {
+                throw disableBatch("unexpected batch response size");
+            }
+            return body;
+        } catch (HttpStatusCodeException e) {
+            if (e.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND)
+                    || e.getStatusCode().isSameCodeAs(HttpStatus.METHOD_NOT_ALLOWED)
+                    || e.getStatusCode().isSameCodeAs(HttpStatus.NOT_IMPLEMENTED)) {
+                throw disableBatch("status " + e.getStatusCode());
+            }
+            logger.error("External batch API returned error status: {}", e.getStatusCode());
+            throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, 
+                    "External API returned error status: " + e.getStatusCode(), e);
+        } catch (RestClientException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, "External API call abandoned", e);
+            }
+            RequestDeadline.checkpoint();
+            logger.error("External batch API call failed", e);
+            throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, 
+                    "External API call failed: " + e.getMessage(), e);
+        }
+    }
+
+    private BatchUnavailableException disableBatch(String reason) {
+        logger.warn("External batch API unavailable ({}), using single calls for the next 5 minutes", reason);
+        batchDisabledUntilNanos = System.nanoTime() + BATCH_RETRY_INTERVAL_NANOS;
+        return new BatchUnavailableException();
+    }
+
+    /**
+     * Run an API call against the selected endpoint, hedged when enabled
+     */
+    private <T> T callEndpoint(Function<String, T> call) {
+        ExternalEndpointSelector.Endpoint primary = endpointSelector.choose(null);
+        if (hedgeExecutor == null) {
+            return attempt(primary, call);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        Future<?> first = hedgeExecutor.submit(RequestDeadline.propagate(() -> attempt(primary, call, result, pending)));
+        Future<?> second = null;
+        try {
+            try {
+                long hedgeDelayNanos = Math.min(endpointSelector.hedgeDelayNanos(),
+                        TimeUnit.MILLISECONDS.toNanos(RequestDeadline.timeoutMillis(properties.getReadTimeoutMs())));
+                return result.get(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                ExternalEndpointSelector.Endpoint secondary = endpointSelector.choose(primary);
+                if (secondary != null && !result.isDone()) {
+                    logger.debug("Hedging external API call from {} to {}", primary, secondary);
+                    pending.incrementAndGet();
+                    second = hedgeExecutor.submit(RequestDeadline.propagate(() -> attempt(secondary, call, result, pending)));
+                }
+            }
+            return result.get(RequestDeadline.timeoutMillis(properties.getConnectTimeoutMs() + properties.getReadTimeoutMs()),
+                    TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new AuthException(ErrorCode.EXTERNAL_API_FAILED,
+                    "External API call failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            RequestDeadline.checkpoint();
+            throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, "External API call timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, "External API call interrupted", e);
+        } finally {
+            // The loser (if any) is interrupted; its socket read aborts
+            first.cancel(true);
+            if (second != null) {
+                second.cancel(true);
+            }
+        }
+    }
+
+    private <T> T attempt(ExternalEndpointSelector.Endpoint endpoint, Function<String, T> call) {
+        endpoint.start();
+        long start = System.nanoTime();
+        try {
+            T value = call.apply(endpoint.getBaseUrl());
+            endpointSelector.record(endpoint, System.nanoTime() - start, true);
+            return value;
+        } catch (RuntimeException e) {
+            recordFailure(endpoint, System.nanoTime() - start, e);
+            throw e;
+        }
+    }
 
+    private <T> void attempt(ExternalEndpointSelector.Endpoint endpoint, Function<String, T> call,
+            CompletableFuture<T> result, AtomicInteger pending) {
+        endpoint.start();
+        long start = System.nanoTime();
         try {
-            ResponseEntity<ExternalUserInfoResponse> responseEntity =
-                    restTemplate.postForEntity(apiUrl, entity, ExternalUserInfoResponse.class);
+            T value = call.apply(endpoint.getBaseUrl());
+            endpointSelector.record(endpoint, System.nanoTime() - start, true);
+            result.complete(value);
+        } catch (RuntimeException e) {
+            if (result.isDone()) {
+                endpointSelector.recordAbandoned(endpoint, System.nanoTime() - start);
+                return;
+            }
+            recordFailure(endpoint, System.nanoTime() - start, e);
+            // Fail only once every attempt has failed; otherwise the other attempt may still answer
+            if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void recordFailure(ExternalEndpointSelector.Endpoint endpoint, long elapsedNanos, RuntimeException e) {
+        if (e instanceof DeadlineExceededException) {
+            // Our budget ran out; says nothing about the endpoint's health
+            endpointSelector.recordAbandoned(endpoint, elapsedNanos);
+        } else {
+            // BatchUnavailableException: the endpoint answered, it just has no batch API
+            endpointSelector.record(endpoint, elapsedNanos, e instanceof BatchUnavailableException);
+        }
+    }
+
+    private <T> T post(String apiUrl, Object request, Class<T> responseType) {
+        try {
+            ResponseEntity<T> responseEntity = restTemplate.postForEntity(apiUrl, jsonEntity(request), responseType);
 
             if (!responseEntity.getStatusCode().is2xxSuccessful()) {
                 throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, 
                         "External API returned non-2xx status: " + responseEntity.getStatusCode());
             }
 
-            ExternalUserInfoResponse body = responseEntity.getBody();
+            T body = responseEntity.getBody();
             if (body == null) {
                 throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, "External API returned empty body");
             }
@@ -127,12 +378,24 @@ public class ExternalAuthService {
             throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, 
                     "External API returned error status: " + e.getStatusCode(), e);
         } catch (RestClientException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Losing hedged attempt, interrupted on purpose
+                throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, "External API call abandoned", e);
+            }
+            // Timed out on the request budget rather than on the configured timeout
+            RequestDeadline.checkpoint();
             logger.error("External API call failed", e);
             throw new AuthException(ErrorCode.EXTERNAL_API_FAILED, 
                     "External API call failed: " + e.getMessage(), e);
         }
     }
 
+    private static HttpEntity<Object> jsonEntity(Object request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(request, headers);
+    }
+
     /**
      * Build external login URL with session and callback parameters
      */
@@ -146,4 +409,14 @@ public class ExternalAuthService {
         logger.debug("Built external login URL");
         return url;
     }
+
+    /**
+     * Batch API is not offered by the external system; callers retry with single calls
+     */
+    private static class BatchUnavailableException extends RuntimeException {
+
+        BatchUnavailableException() {
+            super(null, null, false, false);
+        }
+    }
 }
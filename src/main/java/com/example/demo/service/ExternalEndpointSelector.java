@@ -0,0 +1,187 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency-aware selection among equivalent external auth endpoints
+ *
+ * Each endpoint keeps an exponentially weighted moving average of its latency and its
+ * in-flight count; a call goes to the better scored of two random healthy endpoints
+ * (power of two choices), which steers load away from a slow instance without the herding
+ * of always picking the single best one. Consecutive failures take an endpoint out of
+ * rotation for a cooldown. Recent latencies across all endpoints give the hedge delay (p95).
+ */
+public class ExternalEndpointSelector {
+
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int P95_REFRESH_INTERVAL = 32;
+
+    private final Endpoint[] endpoints;
+    private final int failureThreshold;
+    private final long cooldownNanos;
+    private final long minHedgeDelayNanos;
+
+    private final long[] samples = new long[LATENCY_SAMPLES];
+    private int nextSample;
+    private int sampleCount;
+    private int samplesSinceRefresh;
+    private volatile long p95Nanos;
+
+    public ExternalEndpointSelector(
+            List<String> baseUrls, int failureThreshold, long cooldownMs, long minHedgeDelayMs) {
+        if (baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one external auth endpoint is required");
+        }
+        this.endpoints = baseUrls.stream().map(Endpoint::new).toArray(Endpoint[]::new);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMs);
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMs);
+    }
+
+    public int size() {
+        return endpoints.length;
+    }
+
+    /**
+     * Pick an endpoint, never {@code exclude} (used for the hedged attempt)
+     *
+     * @return null only when {@code exclude} is the sole endpoint
+     */
+    public Endpoint choose(Endpoint exclude) {
+        return choose(exclude, System.nanoTime());
+    }
+
+    Endpoint choose(Endpoint exclude, long now) {
+        int candidates = 0;
+        Endpoint[] healthy = new Endpoint[endpoints.length];
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint != exclude && endpoint.isAvailable(now)) {
+                healthy[candidates++] = endpoint;
+            }
+        }
+        if (candidates == 0) {
+            // Everything is cooling down: rather try the one that failed longest ago than nothing
+            Endpoint oldest = null;
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint != exclude && (oldest == null || endpoint.downUntilNanos - oldest.downUntilNanos < 0)) {
+                    oldest = endpoint;
+                }
+            }
+            return oldest;
+        }
+        if (candidates == 1) {
+            return healthy[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates);
+        int second = random.nextInt(candidates - 1);
+        if (second >= first) {
+            second++;
+        }
+        return healthy[first].score() <= healthy[second].score() ? healthy[first] : healthy[second];
+    }
+
+    /**
+     * Record the outcome of a call started with {@link Endpoint#start()}
+     */
+    public void record(Endpoint endpoint, long latencyNanos, boolean success) {
+        record(endpoint, latencyNanos, success, System.nanoTime());
+    }
+
+    void record(Endpoint endpoint, long latencyNanos, boolean success, long now) {
+        endpoint.inFlight.decrementAndGet();
+        if (success) {
+            // Failures often return fast (refused, 5xx) and would make a broken endpoint look best
+            endpoint.observe(latencyNanos);
+            endpoint.consecutiveFailures.set(0);
+            addSample(latencyNanos);
+        } else if (endpoint.consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            endpoint.downUntilNanos = now + cooldownNanos;
+            endpoint.consecutiveFailures.set(0);
+        }
+    }
+
+    /**
+     * Record an attempt abandoned because the other attempt won; it took at least this long
+     */
+    public void recordAbandoned(Endpoint endpoint, long elapsedNanos) {
+        endpoint.inFlight.decrementAndGet();
+        if (elapsedNanos > endpoint.ewmaNanos) {
+            endpoint.observe(elapsedNanos);
+        }
+    }
+
+    /**
+     * Delay before firing the hedged attempt: recent p95 latency, never below the minimum
+     */
+    public long hedgeDelayNanos() {
+        return Math.max(minHedgeDelayNanos, p95Nanos);
+    }
+
+    private synchronized void addSample(long latencyNanos) {
+        samples[nextSample] = latencyNanos;
+        nextSample = (nextSample + 1) % LATENCY_SAMPLES;
+        if (sampleCount < LATENCY_SAMPLES) {
+            sampleCount++;
+        }
+        samplesSinceRefresh++;
+        if (samplesSinceRefresh >= P95_REFRESH_INTERVAL || sampleCount < P95_REFRESH_INTERVAL) {
+            samplesSinceRefresh = 0;
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+        }
+    }
+
+    /**
+     * One external auth base URL and its running statistics
+     */
+    public static final class Endpoint {
+
+        private final String baseUrl;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile double ewmaNanos;
+        private volatile long downUntilNanos;
+
+        Endpoint(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * Mark a call as in flight; pair with record or recordAbandoned
+         */
+        public void start() {
+            inFlight.incrementAndGet();
+        }
+
+        boolean isAvailable(long now) {
+            return downUntilNanos == 0 || now - downUntilNanos >= 0;
+        }
+
+        /**
+         * Expected cost of one more call: latency estimate scaled by queued work
+         */
+        double score() {
+            return ewmaNanos * (inFlight.get() + 1);
+        }
+
+        private synchronized void observe(long latencyNanos) {
+            ewmaNanos = ewmaNanos == 0 ? latencyNanos : ewmaNanos + EWMA_WEIGHT * (latencyNanos - ewmaNanos);
+        }
+
+        @Override
+        public String toString() {
+            return baseUrl;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Request Coalescer
+ *
+ * Groups requests submitted concurrently into one batch call. A batch is sent when the
+ * window since its first request has elapsed or when it reaches the maximum size, and the
+ * results (one per key, in order) are fanned back out to the waiting callers.
+ *
+ * @param <K> request key
+ * @param <V> result
+ */
+public class RequestCoalescer<K, V> implements AutoCloseable {
+
+    private record Pending<K, V>(K key, CompletableFuture<V> result) {
+    }
+
+    private final Function<List<K>, List<V>> batchFunction;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Guarded by this
+    private List<Pending<K, V>> current = new ArrayList<>();
+
+    public RequestCoalescer(Function<List<K>, List<V>> batchFunction, Duration window, int maxBatchSize) {
+        this.batchFunction = batchFunction;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "request-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Add a request to the open batch
+     *
+     * @return future completed with the result for this key, or with the batch failure
+     */
+    public CompletableFuture<V> submit(K key) {
+        Pending<K, V> pending = new Pending<>(key, new CompletableFuture<>());
+        List<Pending<K, V>> full = null;
+        synchronized (this) {
+            List<Pending<K, V>> batch = current;
+            batch.add(pending);
+            if (batch.size() >= maxBatchSize) {
+                full = batch;
+                current = new ArrayList<>();
+            } else if (batch.size() == 1) {
+                timer.schedule(() -> flushIfCurrent(batch), windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return pending.result();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        dispatcher.shutdown();
+    }
+
+    private void flushIfCurrent(List<Pending<K, V>> batch) {
+        synchronized (this) {
+            if (current != batch) {
+                // Already sent because it filled up
+                return;
+            }
+            current = new ArrayList<>();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(List<Pending<K, V>> batch) {
+        dispatcher.execute(() -> {
+            try {
+                List<V> results = batchFunction.apply(batch.stream().map(Pending::key).toList());
+                if (results.size() != batch.size()) {
+                    throw new IllegalStateException(
+                            "Batch returned " + results.size() + " results for " + batch.size() + " requests");
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result().complete(results.get(i));
+                }
+            } catch (Throwable e) {
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            }
+        });
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.session;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationCodeRequestAuthenticationToken;
+import org.springframework.security.web.DefaultRedirectStrategy;
+import org.springframework.security.web.RedirectStrategy;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Authorization response handler that ends the flow
+ *
+ * Registered as the authorization endpoint's response handler. Once consent has
+ * completed and an authorization code was issued, the flow state is removed from
+ * the session, then the client is redirected exactly like the SAS default handler.
+ */
+@Component
+public class AuthFlowCompletionHandler implements AuthenticationSuccessHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthFlowCompletionHandler.class);
+
+    private final AuthFlowStateStore flowStateStore;
+    private final RedirectStrategy redirectStrategy = new DefaultRedirectStrategy();
+
+    public AuthFlowCompletionHandler(AuthFlowStateStore flowStateStore) {
+        this.flowStateStore = flowStateStore;
+    }
+
+    @Override
+    public void onAuthenticationSuccess(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Authentication authentication) throws IOException {
+
+        redirectStrategy.sendRedirect(request, response,
+                complete(request, (OAuth2AuthorizationCodeRequestAuthenticationToken) authentication));
+    }
+
+    /**
+     * End the flow and build the client redirect carrying the issued code
+     *
+     * @return redirect URI (redirect_uri?code=...&state=...)
+     */
+    public String complete(
+            HttpServletRequest request,
+            OAuth2AuthorizationCodeRequestAuthenticationToken authorizationCodeRequestAuthentication) {
+        flowStateStore.clear(request.getSession(false));
+        logger.debug("Authorization flow completed, flow state cleared");
+
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder
+                .fromUriString(authorizationCodeRequestAuthentication.getRedirectUri())
+                .queryParam("code", authorizationCodeRequestAuthentication.getAuthorizationCode().getTokenValue());
+        if (StringUtils.hasText(authorizationCodeRequestAuthentication.getState())) {
+            uriBuilder.queryParam("state",
+                    UriUtils.encode(authorizationCodeRequestAuthentication.getState(), StandardCharsets.UTF_8));
+        }
+        return uriBuilder.build(true).toUriString();
+    }
+}
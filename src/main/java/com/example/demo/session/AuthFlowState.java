@@ -0,0 +1,106 @@
+package com.example.demo.session;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Authorization flow state
+ *
+ * Single immutable session payload for one pending /oauth2/authorize → /external-login
+ * → /oauth2/callback → /terms flow. Replaces the former scattered session attributes.
+ *
+ * Java serialization (session persistence / replication) goes through {@link SerializedForm},
+ * which writes the compact {@link AuthFlowStateSerializer} format instead of the default
+ * record serialization.
+ *
+ * @param clientId OAuth2 client_id of the pending authorization request
+ * @param redirectUri redirect_uri of the pending authorization request
+ * @param scope Space separated scopes of the pending authorization request
+ * @param state Client state of the pending authorization request
+ * @param externalSession Expected external session ({authSession}_{clientId}), cleared after callback
+ * @param customerId Authenticated customer ID, set after callback
+ * @param authTime Authentication time, set after callback
+ */
+public record AuthFlowState(
+    String clientId,
+    String redirectUri,
+    String scope,
+    String state,
+    String externalSession,
+    String customerId,
+    Instant authTime
+) implements Serializable {
+
+    /**
+     * Create the state for a flow that is waiting for external authentication
+     */
+    public static AuthFlowState started(
+            String clientId, String redirectUri, String scope, String state, String externalSession) {
+        return new AuthFlowState(clientId, redirectUri, scope, state, externalSession, null, null);
+    }
+
+    /**
+     * Return a copy marked as authenticated; the external session is no longer needed
+     */
+    public AuthFlowState authenticated(String customerId, Instant authTime) {
+        return new AuthFlowState(clientId, redirectUri, scope, state, null, customerId, authTime);
+    }
+
+    /**
+     * Check if the external authentication step has completed
+     */
+    public boolean isAuthenticated() {
+        return customerId != null;
+    }
+
+    @Serial
+    private Object writeReplace() {
+        return new SerializedForm(this);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("SerializedForm required");
+    }
+
+    /**
+     * Serialization proxy writing the compact binary form
+     */
+    static final class SerializedForm implements Externalizable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private AuthFlowState value;
+
+        public SerializedForm() {
+            // Required by Externalizable
+        }
+
+        SerializedForm(AuthFlowState value) {
+            this.value = value;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            AuthFlowStateSerializer.write(value, out);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            this.value = AuthFlowStateSerializer.read(in);
+        }
+
+        @Serial
+        private Object readResolve() {
+            return value;
+        }
+    }
+}
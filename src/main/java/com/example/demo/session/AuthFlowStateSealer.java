@@ -0,0 +1,213 @@
+package com.example.demo.session;
+
+import com.example.demo.config.AuthFlowProperties;
+import com.example.demo.exception.AuthException;
+import com.example.demo.exception.ErrorCode;
+import com.example.demo.util.SecureIdGenerator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Authorization flow state token sealer (stateless mode)
+ *
+ * Seals an {@link AuthFlowState} into an AES-GCM authenticated-encrypted, URL-safe token
+ * that travels through the external system as the session parameter, so the callback can
+ * be verified on any node without a server-side lookup.
+ *
+ * The token is bound to the browser that started the flow: it carries an HMAC of a random
+ * binding value that is also kept in a cookie, so a sealed state (and the callback carrying
+ * it) cannot be fed to another browser. Each token opens once per node; a replayed nonce
+ * is rejected until the token would have expired anyway.
+ *
+ * Token layout (before Base64URL):
+ * <pre>
+ * byte      version
+ * byte[12]  GCM IV
+ * byte[]    ciphertext + 16 byte tag of:
+ *           long expiresAt (epoch s) | byte[16] nonce | byte[32] HMAC(binding) | AuthFlowState
+ * </pre>
+ */
+@Component
+public class AuthFlowStateSealer {
+
+    private static final byte VERSION = 2;
+    private static final int IV_LENGTH = 12;
+    private static final int NONCE_LENGTH = 16;
+    private static final int TAG_BITS = 128;
+    private static final int BINDING_MAC_LENGTH = 32;
+    private static final int PURGE_THRESHOLD = 10_000;
+    private static final byte[] AAD = "auth-flow-state".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BINDING_KEY_LABEL = "auth-flow-binding".getBytes(StandardCharsets.US_ASCII);
+
+    private final AuthFlowProperties properties;
+    private final SecretKey key;
+    private final SecretKey bindingKey;
+    private final Map<String, Long> usedNonces = new ConcurrentHashMap<>();
+
+    public AuthFlowStateSealer(AuthFlowProperties properties) {
+        this.properties = properties;
+        this.key = resolveKey(properties);
+        this.bindingKey = key != null ? deriveBindingKey(key) : null;
+    }
+
+    /**
+     * Seal the flow state into a URL-safe token valid for auth-flow.state-token-ttl
+     *
+     * @param binding random value kept by the browser (cookie); required to open the token
+     */
+    public String seal(AuthFlowState flowState, String binding) {
+        requireKey();
+        byte[] state = AuthFlowStateSerializer.serialize(flowState);
+        byte[] nonce = new byte[NONCE_LENGTH];
+        byte[] iv = new byte[IV_LENGTH];
+        SecureIdGenerator.nextBytes(nonce);
+        SecureIdGenerator.nextBytes(iv);
+
+        ByteBuffer plaintext = ByteBuffer.allocate(Long.BYTES + NONCE_LENGTH + BINDING_MAC_LENGTH + state.length)
+                .putLong(Instant.now().plus(properties.getStateTokenTtl()).getEpochSecond())
+                .put(nonce)
+                .put(bindingMac(binding))
+                .put(state);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(AAD);
+            byte[] ciphertext = cipher.doFinal(plaintext.array());
+
+            ByteBuffer token = ByteBuffer.allocate(1 + IV_LENGTH + ciphertext.length)
+                    .put(VERSION)
+                    .put(iv)
+                    .put(ciphertext);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(token.array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to seal auth flow state", e);
+        }
+    }
+
+    /**
+     * Verify and open a sealed token; a token opens only once
+     *
+     * @param binding value of the browser's binding cookie, null if absent
+     * @throws AuthException SESSION_VALIDATION_FAILED if tampered, replayed or opened by another
+     *         browser, AUTH_FLOW_EXPIRED if expired
+     */
+    public AuthFlowState unseal(String token, String binding) {
+        requireKey();
+        if (binding == null || binding.isEmpty()) {
+            throw AuthException.rejected(ErrorCode.SESSION_VALIDATION_FAILED);
+        }
+        byte[] data;
+        try {
+            data = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw AuthException.rejected(ErrorCode.SESSION_VALIDATION_FAILED);
+        }
+        if (data.length <= 1 + IV_LENGTH || data[0] != VERSION) {
+            throw AuthException.rejected(ErrorCode.SESSION_VALIDATION_FAILED);
+        }
+
+        byte[] plaintext;
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key,
+                    new GCMParameterSpec(TAG_BITS, Arrays.copyOfRange(data, 1, 1 + IV_LENGTH)));
+            cipher.updateAAD(AAD);
+            plaintext = cipher.doFinal(data, 1 + IV_LENGTH, data.length - 1 - IV_LENGTH);
+        } catch (AEADBadTagException e) {
+            throw AuthException.rejected(ErrorCode.SESSION_VALIDATION_FAILED);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to unseal auth flow state", e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(plaintext);
+        long expiresAt = buffer.getLong();
+        if (Instant.now().getEpochSecond() > expiresAt) {
+            throw AuthException.rejected(ErrorCode.AUTH_FLOW_EXPIRED);
+        }
+        byte[] nonce = new byte[NONCE_LENGTH];
+        byte[] expectedMac = new byte[BINDING_MAC_LENGTH];
+        buffer.get(nonce).get(expectedMac);
+        if (!MessageDigest.isEqual(expectedMac, bindingMac(binding))) {
+            throw AuthException.rejected(ErrorCode.SESSION_VALIDATION_FAILED);
+        }
+        if (!markUsed(nonce, expiresAt)) {
+            throw AuthException.rejected(ErrorCode.SESSION_VALIDATION_FAILED);
+        }
+        int offset = Long.BYTES + NONCE_LENGTH + BINDING_MAC_LENGTH;
+        return AuthFlowStateSerializer.deserialize(Arrays.copyOfRange(plaintext, offset, plaintext.length));
+    }
+
+    /**
+     * Record a nonce as used until its token expires
+     *
+     * @return false if the nonce was already used
+     */
+    private boolean markUsed(byte[] nonce, long expiresAt) {
+        long now = Instant.now().getEpochSecond();
+        if (usedNonces.putIfAbsent(Base64.getEncoder().encodeToString(nonce), expiresAt) != null) {
+            return false;
+        }
+        if (usedNonces.size() > PURGE_THRESHOLD) {
+            usedNonces.values().removeIf(expiry -> now > expiry);
+        }
+        return true;
+    }
+
+    private byte[] bindingMac(String binding) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(bindingKey);
+            return mac.doFinal(binding.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to bind auth flow state", e);
+        }
+    }
+
+    private void requireKey() {
+        if (key == null) {
+            throw new IllegalStateException("auth-flow.state-token-key is not set");
+        }
+    }
+
+    private static SecretKey deriveBindingKey(SecretKey key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key.getEncoded(), "HmacSHA256"));
+            return new SecretKeySpec(mac.doFinal(BINDING_KEY_LABEL), "HmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to derive auth flow binding key", e);
+        }
+    }
+
+    private static SecretKey resolveKey(AuthFlowProperties properties) {
+        if (StringUtils.hasText(properties.getStateTokenKey())) {
+            byte[] keyBytes = Base64.getDecoder().decode(properties.getStateTokenKey());
+            if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
+                throw new IllegalStateException("auth-flow.state-token-key must be a Base64 AES-128/192/256 key");
+            }
+            return new SecretKeySpec(keyBytes, "AES");
+        }
+        if (properties.isStateless()) {
+            // A per-node key would only verify callbacks on the node that started the flow
+            throw new IllegalStateException(
+                    "auth-flow.state-token-key must be set (shared by all nodes) when auth-flow.stateless=true");
+        }
+        return null;
+    }
+}
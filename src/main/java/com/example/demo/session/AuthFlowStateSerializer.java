@@ -0,0 +1,114 @@
+package com.example.demo.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+
+/**
+ * Compact binary serializer for {@link AuthFlowState}
+ *
+ * Layout (version 1):
+ * <pre>
+ * byte    version
+ * byte    presence bitmask (bit i set = field i present)
+ * UTF...  present string fields in declaration order
+ * long    authTime epoch millis (only if present)
+ * </pre>
+ * An authenticated flow with typical values serializes to about half the bytes of the
+ * former eight session attributes (see AuthFlowStateFootprintBenchmark).
+ */
+public final class AuthFlowStateSerializer {
+
+    static final byte VERSION = 1;
+
+    private static final int CLIENT_ID = 1;
+    private static final int REDIRECT_URI = 1 << 1;
+    private static final int SCOPE = 1 << 2;
+    private static final int STATE = 1 << 3;
+    private static final int EXTERNAL_SESSION = 1 << 4;
+    private static final int CUSTOMER_ID = 1 << 5;
+    private static final int AUTH_TIME = 1 << 6;
+
+    private AuthFlowStateSerializer() {
+        // 禁止實例化
+    }
+
+    /**
+     * Serialize to a standalone byte array
+     */
+    public static byte[] serialize(AuthFlowState value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(value, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserialize from a byte array produced by {@link #serialize(AuthFlowState)}
+     */
+    public static AuthFlowState deserialize(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void write(AuthFlowState value, DataOutput out) throws IOException {
+        int mask = (value.clientId() != null ? CLIENT_ID : 0)
+                | (value.redirectUri() != null ? REDIRECT_URI : 0)
+                | (value.scope() != null ? SCOPE : 0)
+                | (value.state() != null ? STATE : 0)
+                | (value.externalSession() != null ? EXTERNAL_SESSION : 0)
+                | (value.customerId() != null ? CUSTOMER_ID : 0)
+                | (value.authTime() != null ? AUTH_TIME : 0);
+
+        out.writeByte(VERSION);
+        out.writeByte(mask);
+        writeIfPresent(out, value.clientId());
+        writeIfPresent(out, value.redirectUri());
+        writeIfPresent(out, value.scope());
+        writeIfPresent(out, value.state());
+        writeIfPresent(out, value.externalSession());
+        writeIfPresent(out, value.customerId());
+        if (value.authTime() != null) {
+            out.writeLong(value.authTime().toEpochMilli());
+        }
+    }
+
+    static AuthFlowState read(DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new InvalidObjectException("Unsupported AuthFlowState version: " + version);
+        }
+        int mask = in.readUnsignedByte();
+        return new AuthFlowState(
+                readIfPresent(in, mask, CLIENT_ID),
+                readIfPresent(in, mask, REDIRECT_URI),
+                readIfPresent(in, mask, SCOPE),
+                readIfPresent(in, mask, STATE),
+                readIfPresent(in, mask, EXTERNAL_SESSION),
+                readIfPresent(in, mask, CUSTOMER_ID),
+                (mask & AUTH_TIME) != 0 ? Instant.ofEpochMilli(in.readLong()) : null);
+    }
+
+    private static void writeIfPresent(DataOutput out, String value) throws IOException {
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readIfPresent(DataInput in, int mask, int bit) throws IOException {
+        return (mask & bit) != 0 ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.demo.session;
+
+import com.example.demo.config.AuthFlowProperties;
+import com.example.demo.constant.SessionKeys;
+import com.example.demo.exception.AuthException;
+import com.example.demo.exception.ErrorCode;
+import com.example.demo.util.SecureIdGenerator;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.WebUtils;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+/**
+ * Authorization flow state store
+ *
+ * Keeps the {@link AuthFlowState} as a single session attribute and enforces
+ * the per-session size budget (auth-flow.max-state-bytes) before writing.
+ *
+ * In stateless mode (auth-flow.stateless=true) nothing is written to the session:
+ * the state is sealed into the external session identifier by {@link AuthFlowStateSealer}
+ * and restored from the callback on whichever node receives it. The sealed state is bound
+ * to the starting browser through the {@link SessionKeys#AUTH_FLOW_BINDING_COOKIE} cookie.
+ */
+@Component
+public class AuthFlowStateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthFlowStateStore.class);
+
+    private final AuthFlowProperties properties;
+    private final AuthFlowStateSealer sealer;
+
+    public AuthFlowStateStore(AuthFlowProperties properties, AuthFlowStateSealer sealer) {
+        this.properties = properties;
+        this.sealer = sealer;
+    }
+
+    /**
+     * Start a flow waiting for external authentication
+     *
+     * @return the started flow state; externalSession is the value to send to the external system
+     */
+    public AuthFlowState start(HttpServletRequest request, HttpServletResponse response,
+            String clientId, String redirectUri, String scope, String state) {
+        if (properties.isStateless()) {
+            AuthFlowState flowState = AuthFlowState.started(clientId, redirectUri, scope, state, null);
+            checkBudget(flowState);
+            String binding = SecureIdGenerator.newId();
+            String externalSession = sealer.seal(flowState, binding) + "_" + clientId;
+            writeBindingCookie(request, response, binding, properties.getStateTokenTtl());
+            return AuthFlowState.started(clientId, redirectUri, scope, state, externalSession);
+        }
+
+        String externalSession = SecureIdGenerator.newId() + "_" + clientId;
+        AuthFlowState flowState = AuthFlowState.started(clientId, redirectUri, scope, state, externalSession);
+        save(request.getSession(true), flowState);
+        return flowState;
+    }
+
+    /**
+     * Resume the flow for an external authentication callback
+     *
+     * @param externalSession session value echoed back by the external system
+     * @return flow state, or null if no flow is pending
+     * @throws AuthException SESSION_VALIDATION_FAILED in stateless mode if the sealed state was
+     *         started by another browser or was already used
+     */
+    public AuthFlowState resume(HttpServletRequest request, HttpServletResponse response,
+            HttpSession session, String externalSession) {
+        if (!properties.isStateless()) {
+            return load(session);
+        }
+        if (externalSession == null) {
+            return null;
+        }
+        int separator = externalSession.lastIndexOf('_');
+        if (separator <= 0) {
+            throw AuthException.rejected(ErrorCode.SESSION_VALIDATION_FAILED);
+        }
+        Cookie bindingCookie = WebUtils.getCookie(request, SessionKeys.AUTH_FLOW_BINDING_COOKIE);
+        AuthFlowState sealed = sealer.unseal(
+                externalSession.substring(0, separator), bindingCookie != null ? bindingCookie.getValue() : null);
+        writeBindingCookie(request, response, "", Duration.ZERO);
+        return AuthFlowState.started(
+                sealed.clientId(), sealed.redirectUri(), sealed.scope(), sealed.state(), externalSession);
+    }
+
+    /**
+     * Load the flow state of the session
+     *
+     * @return flow state, or null if no flow is pending
+     */
+    public AuthFlowState load(HttpSession session) {
+        if (session == null) {
+            return null;
+        }
+        return (AuthFlowState) session.getAttribute(SessionKeys.AUTH_FLOW_STATE);
+    }
+
+    /**
+     * Save the flow state, replacing any previous one (no-op in stateless mode)
+     *
+     * @throws AuthException if the serialized state exceeds the configured budget
+     */
+    public void save(HttpSession session, AuthFlowState flowState) {
+        if (properties.isStateless()) {
+            return;
+        }
+        checkBudget(flowState);
+        session.setAttribute(SessionKeys.AUTH_FLOW_STATE, flowState);
+    }
+
+    /**
+     * Remove the flow state once the flow has completed
+     */
+    public void clear(HttpSession session) {
+        if (session != null) {
+            session.removeAttribute(SessionKeys.AUTH_FLOW_STATE);
+        }
+    }
+
+    private static void writeBindingCookie(
+            HttpServletRequest request, HttpServletResponse response, String value, Duration maxAge) {
+        // Lax: the callback arrives as a top-level redirect from the external system
+        ResponseCookie cookie = ResponseCookie.from(SessionKeys.AUTH_FLOW_BINDING_COOKIE, value)
+                .path("/oauth2/callback")
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite("Lax")
+                .maxAge(maxAge)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private void checkBudget(AuthFlowState flowState) {
+        int size = serializedSize(flowState);
+        if (size > properties.getMaxStateBytes()) {
+            logger.warn("Auth flow state rejected: {} bytes exceeds budget of {} bytes",
+                    size, properties.getMaxStateBytes());
+            throw new AuthException(ErrorCode.AUTH_FLOW_TOO_LARGE, "授權流程資料超過大小限制");
+        }
+    }
+
+    private int serializedSize(AuthFlowState flowState) {
+        try {
+            return AuthFlowStateSerializer.serialize(flowState).length;
+        } catch (UncheckedIOException e) {
+            // Modified UTF-8 strings are limited to 64 KB, which is far beyond any budget
+            return Integer.MAX_VALUE;
+        }
+    }
+}
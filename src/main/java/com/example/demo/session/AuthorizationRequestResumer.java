@@ -0,0 +1,226 @@
+package com.example.demo.session;
+
+import com.example.demo.config.AuthorizationServerConfig;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.oidc.OidcScopes;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationCodeRequestAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationConsentAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContextHolder;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.web.authentication.OAuth2AuthorizationCodeRequestAuthenticationConverter;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.savedrequest.SavedRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resumes the saved authorization request inside the external login callback
+ *
+ * Instead of redirecting the browser back to /oauth2/authorize, the callback replays the
+ * saved request through the same converter and the authorization server chain's own
+ * AuthenticationManager (same providers, validators and services), then answers with what
+ * the authorization endpoint would have sent: the consent page redirect, or the client
+ * redirect with the code. This saves one browser round trip and the repeated client,
+ * request and consent lookups.
+ *
+ * Returns null whenever the endpoint would not simply redirect (invalid request,
+ * unauthenticated principal), so the caller falls back to the classic redirect and the
+ * authorization endpoint produces the standard response.
+ */
+@Component
+public class AuthorizationRequestResumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthorizationRequestResumer.class);
+
+    private final AuthorizationServerSettings authorizationServerSettings;
+    private final AuthFlowCompletionHandler completionHandler;
+    private final OAuth2AuthorizationCodeRequestAuthenticationConverter converter =
+            new OAuth2AuthorizationCodeRequestAuthenticationConverter();
+    private final WebAuthenticationDetailsSource detailsSource = new WebAuthenticationDetailsSource();
+
+    private volatile AuthenticationManager authenticationManager;
+    private volatile SessionRegistry sessionRegistry;
+
+    public AuthorizationRequestResumer(
+            AuthorizationServerSettings authorizationServerSettings,
+            AuthFlowCompletionHandler completionHandler) {
+        this.authorizationServerSettings = authorizationServerSettings;
+        this.completionHandler = completionHandler;
+    }
+
+    /**
+     * Called by AuthorizationServerConfig once the authorization server chain is built
+     */
+    public void bind(AuthenticationManager authenticationManager, SessionRegistry sessionRegistry) {
+        this.authenticationManager = authenticationManager;
+        this.sessionRegistry = sessionRegistry;
+    }
+
+    /**
+     * @return redirect target for the browser, or null to fall back to /oauth2/authorize
+     */
+    public String resume(HttpServletRequest request, HttpServletResponse response, SavedRequest savedRequest) {
+        AuthenticationManager manager = authenticationManager;
+        if (manager == null || savedRequest == null) {
+            return null;
+        }
+        UriComponents savedUri = UriComponentsBuilder.fromUriString(savedRequest.getRedirectUrl()).build();
+        if (!authorizationServerSettings.getAuthorizationEndpoint().equals(savedUri.getPath())) {
+            return null;
+        }
+
+        HttpServletRequest authorizationRequest = new SavedAuthorizationRequest(request, savedUri);
+        AuthorizationServerContextHolder.setContext(new StaticAuthorizationServerContext(authorizationServerSettings));
+        try {
+            Authentication authentication = converter.convert(authorizationRequest);
+            if (authentication instanceof AbstractAuthenticationToken token) {
+                token.setDetails(detailsSource.buildDetails(authorizationRequest));
+            }
+            Authentication result = manager.authenticate(authentication);
+            if (!result.isAuthenticated()) {
+                return null;
+            }
+
+            if (result instanceof OAuth2AuthorizationConsentAuthenticationToken consent) {
+                logger.debug("Authorization request resumed in callback, consent required");
+                return UriComponentsBuilder.fromPath(AuthorizationServerConfig.CONSENT_PAGE_URI)
+                        .queryParam("scope", String.join(" ",
+                                ((OAuth2AuthorizationCodeRequestAuthenticationToken) authentication).getScopes()))
+                        .queryParam("client_id", consent.getClientId())
+                        .queryParam("state", consent.getState())
+                        .toUriString();
+            }
+
+            OAuth2AuthorizationCodeRequestAuthenticationToken codeRequest =
+                    (OAuth2AuthorizationCodeRequestAuthenticationToken) result;
+            registerOidcSession(request, codeRequest);
+            logger.debug("Authorization request resumed in callback, code issued");
+            return completionHandler.complete(request, codeRequest);
+        } catch (OAuth2AuthenticationException e) {
+            logger.debug("Resumed authorization request rejected ({}), falling back to redirect",
+                    e.getError().getErrorCode());
+            return null;
+        } finally {
+            AuthorizationServerContextHolder.resetContext();
+        }
+    }
+
+    /**
+     * Same as the authorization endpoint's session strategy when OpenID Connect is enabled
+     */
+    private void registerOidcSession(
+            HttpServletRequest request, OAuth2AuthorizationCodeRequestAuthenticationToken codeRequest) {
+        SessionRegistry registry = sessionRegistry;
+        if (registry == null || !codeRequest.getScopes().contains(OidcScopes.OPENID)) {
+            return;
+        }
+        String sessionId = request.getSession().getId();
+        if (registry.getSessionInformation(sessionId) == null) {
+            registry.registerNewSession(sessionId, ((Authentication) codeRequest.getPrincipal()).getPrincipal());
+        }
+    }
+
+    private record StaticAuthorizationServerContext(AuthorizationServerSettings settings)
+            implements AuthorizationServerContext {
+
+        @Override
+        public String getIssuer() {
+            return settings.getIssuer();
+        }
+
+        @Override
+        public AuthorizationServerSettings getAuthorizationServerSettings() {
+            return settings;
+        }
+    }
+
+    /**
+     * The saved GET /oauth2/authorize request, as seen by the authorization endpoint
+     */
+    private static final class SavedAuthorizationRequest extends HttpServletRequestWrapper {
+
+        private final UriComponents savedUri;
+        private final Map<String, String[]> parameters = new LinkedHashMap<>();
+
+        SavedAuthorizationRequest(HttpServletRequest request, UriComponents savedUri) {
+            super(request);
+            this.savedUri = savedUri;
+            // Decode like the servlet container decodes a query string ('+' is a space)
+            savedUri.getQueryParams().forEach((name, values) -> parameters.put(
+                    URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    values.stream()
+                            .map(value -> value != null ? URLDecoder.decode(value, StandardCharsets.UTF_8) : "")
+                            .toArray(String[]::new)));
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public String getRequestURI() {
+            return savedUri.getPath();
+        }
+
+        @Override
+        public StringBuffer getRequestURL() {
+            return new StringBuffer(UriComponentsBuilder.newInstance()
+                    .uriComponents(savedUri).replaceQuery(null).fragment(null).toUriString());
+        }
+
+        @Override
+        public String getServletPath() {
+            return savedUri.getPath();
+        }
+
+        @Override
+        public String getPathInfo() {
+            return null;
+        }
+
+        @Override
+        public String getQueryString() {
+            return savedUri.getQuery();
+        }
+
+        @Override
+        public String getParameter(String name) {
+            String[] values = parameters.get(name);
+            return values != null && values.length > 0 ? values[0] : null;
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            return Collections.unmodifiableMap(parameters);
+        }
+
+        @Override
+        public Enumeration<String> getParameterNames() {
+            return Collections.enumeration(parameters.keySet());
+        }
+
+        @Override
+        public String[] getParameterValues(String name) {
+            return parameters.get(name);
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package com.example.demo.session;
+
+import com.example.demo.config.SessionStoreProperties;
+import com.example.demo.util.SecureIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionIdGenerator;
+import org.springframework.session.SessionRepository;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JDBC HttpSession repository with a per-node near-cache
+ *
+ * Sessions are shared through the http_session / http_session_attribute tables, so requests
+ * of one authorization flow can land on any node. To keep session I/O low:
+ * <ul>
+ *   <li>Near-cache: recently touched sessions stay on the node as serialized attributes, deserialized
+ *       into private objects for every request. Every content change bumps http_session.version;
+ *       a cached copy is reused after a version probe (one primary-key lookup without attribute
+ *       transfer), or without any lookup inside the trust window.</li>
+ *   <li>Delta writes: only attributes whose serialized form differs from the persisted one are
+ *       written. Attributes read during the request are compared too, so in-place changes to a
+ *       mutable attribute are not lost.</li>
+ *   <li>Touch coalescing: a pure last-access change is persisted at most once per touch-write-interval.</li>
+ *   <li>Batched cleanup: expired sessions are deleted in bounded batches using SKIP LOCKED,
+ *       so several nodes can clean up concurrently.</li>
+ * </ul>
+ */
+public class JdbcSessionRepository implements SessionRepository<JdbcSessionRepository.JdbcSession> {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcSessionRepository.class);
+
+    private static final SessionIdGenerator SESSION_ID_GENERATOR = SecureIdGenerator::newId;
+
+    private static final String SESSION_TABLE = "poc_spring_authorization_server.http_session";
+    private static final String ATTRIBUTE_TABLE = "poc_spring_authorization_server.http_session_attribute";
+
+    private static final String INSERT_SESSION_SQL =
+            "INSERT INTO " + SESSION_TABLE + " (primary_id, session_id, version, creation_time, last_access_time, "
+            + "max_inactive_interval, expiry_time) VALUES (?, ?, 1, ?, ?, ?, ?)";
+    private static final String UPDATE_SESSION_SQL =
+            "UPDATE " + SESSION_TABLE + " SET session_id = ?, version = version + 1, last_access_time = ?, "
+            + "max_inactive_interval = ?, expiry_time = ? WHERE primary_id = ? AND version = ?";
+    private static final String FORCE_UPDATE_SESSION_SQL =
+            "UPDATE " + SESSION_TABLE + " SET session_id = ?, version = version + 1, last_access_time = ?, "
+            + "max_inactive_interval = ?, expiry_time = ? WHERE primary_id = ?";
+    private static final String TOUCH_SESSION_SQL =
+            "UPDATE " + SESSION_TABLE + " SET last_access_time = ?, expiry_time = ? WHERE primary_id = ?";
+    private static final String UPSERT_ATTRIBUTE_SQL =
+            "INSERT INTO " + ATTRIBUTE_TABLE + " (session_primary_id, attribute_name, attribute_bytes) "
+            + "VALUES (?, ?, ?) ON CONFLICT (session_primary_id, attribute_name) "
+            + "DO UPDATE SET attribute_bytes = EXCLUDED.attribute_bytes";
+    private static final String DELETE_ATTRIBUTE_SQL =
+            "DELETE FROM " + ATTRIBUTE_TABLE + " WHERE session_primary_id = ? AND attribute_name = ?";
+    private static final String PROBE_SESSION_SQL =
+            "SELECT version, last_access_time FROM " + SESSION_TABLE + " WHERE session_id = ?";
+    private static final String LOAD_SESSION_SQL =
+            "SELECT s.primary_id, s.version, s.creation_time, s.last_access_time, s.max_inactive_interval, "
+            + "a.attribute_name, a.attribute_bytes FROM " + SESSION_TABLE + " s "
+            + "LEFT JOIN " + ATTRIBUTE_TABLE + " a ON a.session_primary_id = s.primary_id "
+            + "WHERE s.session_id = ?";
+    private static final String DELETE_SESSION_SQL =
+            "DELETE FROM " + SESSION_TABLE + " WHERE session_id = ?";
+    private static final String DELETE_EXPIRED_SESSIONS_SQL =
+            "DELETE FROM " + SESSION_TABLE + " WHERE primary_id IN (SELECT primary_id FROM " + SESSION_TABLE + " "
+            + "WHERE expiry_time < ? ORDER BY expiry_time LIMIT ? FOR UPDATE SKIP LOCKED)";
+
+    private final JdbcOperations jdbcOperations;
+    private final TransactionOperations transactionOperations;
+    private final SessionStoreProperties properties;
+    private final Map<String, CachedSession> nearCache;
+    private final SerializingConverter serializer = new SerializingConverter();
+    private final DeserializingConverter deserializer =
+            new DeserializingConverter(JdbcSessionRepository.class.getClassLoader());
+
+    public JdbcSessionRepository(
+            JdbcOperations jdbcOperations,
+            TransactionOperations transactionOperations,
+            SessionStoreProperties properties) {
+        this.jdbcOperations = jdbcOperations;
+        this.transactionOperations = transactionOperations;
+        this.properties = properties;
+        int maxSize = properties.getNearCache().getMaxSize();
+        this.nearCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSession> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    @Override
+    public JdbcSession createSession() {
+        MapSession delegate = new MapSession(SESSION_ID_GENERATOR);
+        delegate.setMaxInactiveInterval(properties.getMaxInactiveInterval());
+        return new JdbcSession(delegate, SecureIdGenerator.newId(), 0, null, new HashMap<>(), true);
+    }
+
+    @Override
+    public void save(JdbcSession session) {
+        Map<String, byte[]> changes = session.isNew
+                ? serializeAll(session.delegate)
+                : session.attributeChanges(serializer);
+        if (session.isNew) {
+            transactionOperations.executeWithoutResult(status -> insert(session, changes));
+        } else if (!changes.isEmpty() || session.hasHeaderChanges()) {
+            transactionOperations.executeWithoutResult(status -> update(session, changes));
+        } else if (session.isTouchDue(properties.getTouchWriteInterval())) {
+            touch(session);
+        }
+        session.markSaved(changes);
+        if (session.version > 0) {
+            cache(session);
+        }
+    }
+
+    @Override
+    public JdbcSession findById(String id) {
+        CachedSession cached = nearCache.get(id);
+        if (cached != null) {
+            JdbcSession session = revalidate(id, cached);
+            if (session != null) {
+                return expiredOrNull(session);
+            }
+        }
+        JdbcSession session = load(id);
+        if (session == null) {
+            return null;
+        }
+        cache(session);
+        return expiredOrNull(session);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        nearCache.remove(id);
+        jdbcOperations.update(DELETE_SESSION_SQL, id);
+    }
+
+    /**
+     * Delete expired sessions in bounded batches
+     */
+    @Scheduled(fixedDelayString = "#{@sessionStoreProperties.cleanupInterval.toMillis()}")
+    public void cleanUpExpiredSessions() {
+        // Grace period covers last-access writes skipped by touch coalescing
+        long cutoff = Instant.now().minus(properties.getTouchWriteInterval()).toEpochMilli();
+        int batchSize = properties.getCleanupBatchSize();
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcOperations.update(DELETE_EXPIRED_SESSIONS_SQL, cutoff, batchSize);
+            total += deleted;
+        } while (deleted == batchSize);
+        if (total > 0) {
+            logger.debug("Cleaned up {} expired sessions", total);
+        }
+    }
+
+    private void insert(JdbcSession session, Map<String, byte[]> attributes) {
+        MapSession delegate = session.delegate;
+        jdbcOperations.update(INSERT_SESSION_SQL,
+                session.primaryId,
+                delegate.getId(),
+                delegate.getCreationTime().toEpochMilli(),
+                delegate.getLastAccessedTime().toEpochMilli(),
+                (int) delegate.getMaxInactiveInterval().getSeconds(),
+                expiryTime(delegate));
+        writeAttributes(session, attributes);
+        session.version = 1;
+    }
+
+    private void update(JdbcSession session, Map<String, byte[]> changes) {
+        MapSession delegate = session.delegate;
+        Object[] header = {
+                delegate.getId(),
+                delegate.getLastAccessedTime().toEpochMilli(),
+                (int) delegate.getMaxInactiveInterval().getSeconds(),
+                expiryTime(delegate),
+                session.primaryId
+        };
+        Object[] optimistic = Arrays.copyOf(header, header.length + 1);
+        optimistic[header.length] = session.version;
+        if (jdbcOperations.update(UPDATE_SESSION_SQL, optimistic) == 1) {
+            session.version++;
+        } else {
+            // Changed by another node since it was loaded: attribute deltas still apply
+            // (last writer wins per attribute), but our snapshot is incomplete
+            if (jdbcOperations.update(FORCE_UPDATE_SESSION_SQL, header) == 0) {
+                logger.debug("Session was removed concurrently, skipping save");
+                session.version = 0;
+                return;
+            }
+            session.version = 0;
+        }
+        writeAttributes(session, changes);
+    }
+
+    private void touch(JdbcSession session) {
+        MapSession delegate = session.delegate;
+        jdbcOperations.update(TOUCH_SESSION_SQL,
+                delegate.getLastAccessedTime().toEpochMilli(), expiryTime(delegate), session.primaryId);
+    }
+
+    /**
+     * Write serialized attributes; a null value deletes the attribute
+     */
+    private void writeAttributes(JdbcSession session, Map<String, byte[]> attributes) {
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        attributes.forEach((name, bytes) -> {
+            if (bytes != null) {
+                upserts.add(new Object[] {session.primaryId, name, bytes});
+            } else {
+                deletes.add(new Object[] {session.primaryId, name});
+            }
+        });
+        if (!upserts.isEmpty()) {
+            jdbcOperations.batchUpdate(UPSERT_ATTRIBUTE_SQL, upserts);
+        }
+        if (!deletes.isEmpty()) {
+            jdbcOperations.batchUpdate(DELETE_ATTRIBUTE_SQL, deletes);
+        }
+    }
+
+    private Map<String, byte[]> serializeAll(MapSession delegate) {
+        Map<String, byte[]> attributes = new HashMap<>();
+        for (String name : delegate.getAttributeNames()) {
+            attributes.put(name, serializer.convert(delegate.getAttribute(name)));
+        }
+        return attributes;
+    }
+
+    private JdbcSession revalidate(String id, CachedSession cached) {
+        Instant now = Instant.now();
+        Duration trustWindow = properties.getNearCache().getTrustWindow();
+        if (!trustWindow.isZero() && cached.validatedAt.plus(trustWindow).isAfter(now)) {
+            return cached.toSession(deserializer);
+        }
+
+        List<long[]> rows = jdbcOperations.query(PROBE_SESSION_SQL,
+                (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)}, id);
+        if (rows.isEmpty() || rows.get(0)[0] != cached.version) {
+            nearCache.remove(id);
+            return null;
+        }
+        Instant persistedLastAccess = Instant.ofEpochMilli(rows.get(0)[1]);
+        if (persistedLastAccess.isAfter(cached.lastAccessedTime)) {
+            // Touched (but not changed) on another node
+            cached.lastAccessedTime = persistedLastAccess;
+            cached.persistedLastAccess = persistedLastAccess;
+        }
+        cached.validatedAt = now;
+        return cached.toSession(deserializer);
+    }
+
+    private JdbcSession load(String id) {
+        List<JdbcSession> sessions = jdbcOperations.query(LOAD_SESSION_SQL, rs -> {
+            List<JdbcSession> result = new ArrayList<>(1);
+            JdbcSession session = null;
+            while (rs.next()) {
+                if (session == null) {
+                    MapSession delegate = new MapSession(id);
+                    delegate.setCreationTime(Instant.ofEpochMilli(rs.getLong("creation_time")));
+                    Instant lastAccess = Instant.ofEpochMilli(rs.getLong("last_access_time"));
+                    delegate.setLastAccessedTime(lastAccess);
+                    delegate.setMaxInactiveInterval(Duration.ofSeconds(rs.getInt("max_inactive_interval")));
+                    session = new JdbcSession(delegate, rs.getString("primary_id"),
+                            rs.getLong("version"), lastAccess, new HashMap<>(), false);
+                    result.add(session);
+                }
+                String attributeName = rs.getString("attribute_name");
+                if (attributeName != null) {
+                    byte[] bytes = rs.getBytes("attribute_bytes");
+                    session.delegate.setAttribute(attributeName, deserializer.convert(bytes));
+                    session.persistedAttributes.put(attributeName, bytes);
+                }
+            }
+            return result;
+        }, id);
+        return sessions == null || sessions.isEmpty() ? null : sessions.get(0);
+    }
+
+    private JdbcSession expiredOrNull(JdbcSession session) {
+        if (session.isExpired()) {
+            deleteById(session.getId());
+            return null;
+        }
+        return session;
+    }
+
+    private void cache(JdbcSession session) {
+        if (properties.getNearCache().getMaxSize() <= 0) {
+            return;
+        }
+        if (session.version == 0) {
+            // Unknown version after a concurrent modification: force a reload next time
+            nearCache.remove(session.getId());
+            return;
+        }
+        nearCache.put(session.getId(), new CachedSession(session));
+    }
+
+    private static long expiryTime(MapSession session) {
+        return session.getLastAccessedTime().plus(session.getMaxInactiveInterval()).toEpochMilli();
+    }
+
+    /**
+     * Near-cache entry: the persisted form of a session, deserialized into new objects for
+     * every request so that requests never share mutable attribute values
+     */
+    private static final class CachedSession {
+
+        private final String id;
+        private final String primaryId;
+        private final long version;
+        private final Instant creationTime;
+        private final Duration maxInactiveInterval;
+        private final Map<String, byte[]> attributes;
+        private Instant lastAccessedTime;
+        private Instant persistedLastAccess;
+        private Instant validatedAt = Instant.now();
+
+        private CachedSession(JdbcSession session) {
+            this.id = session.getId();
+            this.primaryId = session.primaryId;
+            this.version = session.version;
+            this.creationTime = session.getCreationTime();
+            this.maxInactiveInterval = session.getMaxInactiveInterval();
+            // byte[] values are never modified once serialized, so a shallow copy is enough
+            this.attributes = Map.copyOf(session.persistedAttributes);
+            this.lastAccessedTime = session.getLastAccessedTime();
+            this.persistedLastAccess = session.persistedLastAccess;
+        }
+
+        private JdbcSession toSession(DeserializingConverter deserializer) {
+            MapSession delegate = new MapSession(id);
+            delegate.setCreationTime(creationTime);
+            delegate.setLastAccessedTime(lastAccessedTime);
+            delegate.setMaxInactiveInterval(maxInactiveInterval);
+            attributes.forEach((name, bytes) -> delegate.setAttribute(name, deserializer.convert(bytes)));
+            return new JdbcSession(delegate, primaryId, version, persistedLastAccess, new HashMap<>(attributes), false);
+        }
+    }
+
+    /**
+     * Session tracking the attributes and header fields touched during the current request
+     */
+    public static final class JdbcSession implements Session {
+
+        private MapSession delegate;
+        private final String primaryId;
+        private long version;
+        private Instant persistedLastAccess;
+        private boolean isNew;
+        private boolean maxInactiveIntervalChanged;
+        private final Map<String, byte[]> persistedAttributes;
+        private final Set<String> touchedAttributes = new HashSet<>();
+
+        private JdbcSession(MapSession delegate, String primaryId, long version,
+                            Instant persistedLastAccess, Map<String, byte[]> persistedAttributes, boolean isNew) {
+            this.delegate = delegate;
+            this.delegate.setSessionIdGenerator(SESSION_ID_GENERATOR);
+            this.primaryId = primaryId;
+            this.version = version;
+            this.persistedLastAccess = persistedLastAccess;
+            this.persistedAttributes = persistedAttributes;
+            this.isNew = isNew;
+        }
+
+        /**
+         * Serialized form of every touched attribute that differs from the persisted one
+         * (null for a removed attribute)
+         */
+        private Map<String, byte[]> attributeChanges(SerializingConverter serializer) {
+            Map<String, byte[]> changes = new HashMap<>();
+            for (String name : touchedAttributes) {
+                Object value = delegate.getAttribute(name);
+                byte[] persisted = persistedAttributes.get(name);
+                if (value == null) {
+                    if (persisted != null) {
+                        changes.put(name, null);
+                    }
+                    continue;
+                }
+                byte[] bytes = serializer.convert(value);
+                if (!Arrays.equals(bytes, persisted)) {
+                    changes.put(name, bytes);
+                }
+            }
+            return changes;
+        }
+
+        private boolean hasHeaderChanges() {
+            return maxInactiveIntervalChanged || !delegate.getId().equals(delegate.getOriginalId());
+        }
+
+        private boolean isTouchDue(Duration touchWriteInterval) {
+            return persistedLastAccess == null
+                    || !delegate.getLastAccessedTime().isBefore(persistedLastAccess.plus(touchWriteInterval));
+        }
+
+        private void markSaved(Map<String, byte[]> changes) {
+            if (isNew || !changes.isEmpty() || hasHeaderChanges() || isTouchDue(Duration.ZERO)) {
+                persistedLastAccess = delegate.getLastAccessedTime();
+            }
+            changes.forEach((name, bytes) -> {
+                if (bytes != null) {
+                    persistedAttributes.put(name, bytes);
+                } else {
+                    persistedAttributes.remove(name);
+                }
+            });
+            isNew = false;
+            maxInactiveIntervalChanged = false;
+            touchedAttributes.clear();
+            // Reset the original id after a persisted session id change
+            delegate = new MapSession(delegate);
+            delegate.setSessionIdGenerator(SESSION_ID_GENERATOR);
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            return delegate.changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            // The caller may change the returned object in place
+            touchedAttributes.add(attributeName);
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            delegate.setAttribute(attributeName, attributeValue);
+            touchedAttributes.add(attributeName);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            delegate.removeAttribute(attributeName);
+            touchedAttributes.add(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            delegate.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            delegate.setMaxInactiveInterval(interval);
+            maxInactiveIntervalChanged = true;
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return delegate.isExpired();
+        }
+    }
+}
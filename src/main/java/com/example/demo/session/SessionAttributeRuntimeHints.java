@@ -0,0 +1,20 @@
+package com.example.demo.session;
+
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Native image hints for session attributes this application writes
+ *
+ * {@link JdbcSessionRepository} stores attributes with Java serialization, which a native
+ * image only supports for types registered ahead of time.
+ */
+public class SessionAttributeRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.serialization()
+                .registerType(AuthFlowState.class)
+                .registerType(AuthFlowState.SerializedForm.class);
+    }
+}
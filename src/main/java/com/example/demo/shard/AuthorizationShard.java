@@ -0,0 +1,93 @@
+package com.example.demo.shard;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * One shard: an authorization service over its own schema, in the configured table layout
+ */
+public class AuthorizationShard {
+
+    static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(hashtext(?))";
+
+    private final String name;
+    private final OAuth2AuthorizationService authorizationService;
+    private final JdbcOperations jdbcOperations;
+    private final TransactionOperations transactionOperations;
+    private final String idsSql;
+    private final Timer findTimer;
+    private final Timer saveTimer;
+    private final Timer removeTimer;
+
+    /**
+     * @param authorizationTable oauth2_authorization or, for the normalized layout, oauth2_authorization_header
+     */
+    public AuthorizationShard(String name, OAuth2AuthorizationService authorizationService,
+            JdbcOperations jdbcOperations, TransactionOperations transactionOperations,
+            String authorizationTable, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.authorizationService = authorizationService;
+        this.jdbcOperations = jdbcOperations;
+        this.transactionOperations = transactionOperations;
+        this.idsSql = "SELECT id FROM " + authorizationTable + " WHERE id > ? ORDER BY id LIMIT ?";
+        this.findTimer = timer(meterRegistry, name, "find");
+        this.saveTimer = timer(meterRegistry, name, "save");
+        this.removeTimer = timer(meterRegistry, name, "remove");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OAuth2Authorization findById(String id) {
+        return findTimer.record(() -> authorizationService.findById(id));
+    }
+
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        return findTimer.record(() -> authorizationService.findByToken(token, tokenType));
+    }
+
+    public void save(OAuth2Authorization authorization) {
+        saveTimer.record(() -> authorizationService.save(authorization));
+    }
+
+    public void remove(OAuth2Authorization authorization) {
+        removeTimer.record(() -> authorizationService.remove(authorization));
+    }
+
+    /**
+     * Runs {@code work} in a transaction on this shard holding a lock on the authorization
+     * id, so moves of the same authorization from another shard are serialized
+     */
+    public <T> T locked(String id, Supplier<T> work) {
+        return transactionOperations.execute(status -> {
+            jdbcOperations.query(LOCK_SQL, (ResultSetExtractor<Boolean>) ResultSet::next, id);
+            return work.get();
+        });
+    }
+
+    /**
+     * Ids stored here, in id order after {@code after} ("" for the first page)
+     */
+    public List<String> findIds(String after, int limit) {
+        return jdbcOperations.queryForList(idsSql, String.class, after, limit);
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String shard, String operation) {
+        return Timer.builder("oauth2.authorization.shard")
+                .description("Authorization store calls per shard")
+                .tag("shard", shard)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
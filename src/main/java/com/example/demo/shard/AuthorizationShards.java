@@ -0,0 +1,71 @@
+package com.example.demo.shard;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The configured shards by name, and their connection pools
+ */
+public class AuthorizationShards implements AutoCloseable {
+
+    private final Map<String, AuthorizationShard> shards = new LinkedHashMap<>();
+    private final List<AutoCloseable> pools;
+    private final Counter moved;
+
+    public AuthorizationShards(List<AuthorizationShard> shards, List<AutoCloseable> pools, MeterRegistry meterRegistry) {
+        shards.forEach(shard -> this.shards.put(shard.getName(), shard));
+        this.pools = List.copyOf(pools);
+        this.moved = Counter.builder("oauth2.authorization.shard.moved")
+                .description("Authorizations moved to the owner of their slot")
+                .register(meterRegistry);
+    }
+
+    public AuthorizationShard get(String name) {
+        AuthorizationShard shard = shards.get(name);
+        if (shard == null) {
+            throw new IllegalStateException("Unknown authorization shard " + name);
+        }
+        return shard;
+    }
+
+    public Collection<AuthorizationShard> getShards() {
+        return shards.values();
+    }
+
+    /**
+     * Moves an authorization still on {@code previous} to {@code owner}, overwriting any copy
+     * there: a row left on the previous shard once every node writes to the owner was
+     * written by a node that had not seen the move yet, so it is the newer one
+     *
+     * @return false if it was gone meanwhile
+     */
+    public boolean move(String id, AuthorizationShard previous, AuthorizationShard owner) {
+        return owner.locked(id, () -> {
+            OAuth2Authorization authorization = previous.findById(id);
+            if (authorization == null) {
+                return false;
+            }
+            owner.save(authorization);
+            previous.remove(authorization);
+            moved.increment();
+            return true;
+        });
+    }
+
+    void moved() {
+        moved.increment();
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (AutoCloseable pool : pools) {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.shard;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * /actuator/authorizationshards: slots per shard and rebalance progress;
+ * POST starts (or resumes) a rebalance to the configured weights
+ */
+@Endpoint(id = "authorizationshards")
+public class AuthorizationShardsEndpoint {
+
+    private final SlotTable slotTable;
+    private final ShardRebalancer rebalancer;
+
+    public AuthorizationShardsEndpoint(SlotTable slotTable, ShardRebalancer rebalancer) {
+        this.slotTable = slotTable;
+        this.rebalancer = rebalancer;
+    }
+
+    @ReadOperation
+    public Map<String, Object> shards() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("slots", slotTable.slotCounts());
+        body.put("movingSlots", slotTable.moving().size());
+        body.put("rebalance", rebalancer.getStatus());
+        return body;
+    }
+
+    @WriteOperation
+    public ShardRebalancer.Status rebalance() {
+        return rebalancer.start();
+    }
+}
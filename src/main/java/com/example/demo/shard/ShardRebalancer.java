@@ -0,0 +1,138 @@
+package com.example.demo.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves slots between shards while the server keeps serving
+ *
+ * <ol>
+ *   <li>Plan: the fewest slot moves giving every shard its weighted share (weight 0 drains a
+ *       shard). A rebalance interrupted earlier is resumed instead.</li>
+ *   <li>Point the slots at their new owner, keeping the old one as previous shard, and wait
+ *       until every node has seen it: from then on, reads fall back to the previous shard and
+ *       writes move the authorization they save.</li>
+ *   <li>Scan the previous shards and move every authorization of a moving slot.</li>
+ *   <li>Clear the previous shards.</li>
+ * </ol>
+ * One rebalance runs at a time per node; run it on one node only.
+ */
+public class ShardRebalancer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    static final int PAGE_SIZE = 500;
+
+    private final AuthorizationShards shards;
+    private final SlotTable slotTable;
+    private final Map<String, Integer> weights;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-rebalancer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Status status = new Status("idle", 0, 0, null, null, null);
+
+    public ShardRebalancer(AuthorizationShards shards, SlotTable slotTable,
+            Map<String, Integer> weights) {
+        this.shards = shards;
+        this.slotTable = slotTable;
+        this.weights = new LinkedHashMap<>(weights);
+    }
+
+    /**
+     * Starts a rebalance unless one is running
+     */
+    public synchronized Status start() {
+        if (isRunning()) {
+            return status;
+        }
+        status = new Status("planning", 0, 0, Instant.now(), null, null);
+        executor.execute(this::run);
+        return status;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    private boolean isRunning() {
+        return status.startedAt() != null && status.finishedAt() == null;
+    }
+
+    private void run() {
+        Instant startedAt = status.startedAt();
+        long movedRows = 0;
+        int slots = 0;
+        try {
+            Map<Integer, SlotTable.Route> moving = slotTable.moving();
+            if (moving.isEmpty()) {
+                Map<Integer, String> plan = slotTable.plan(weights);
+                if (plan.isEmpty()) {
+                    status = new Status("done", 0, 0, startedAt, Instant.now(), null);
+                    return;
+                }
+                slotTable.beginMoves(plan);
+                moving = slotTable.moving();
+            }
+            slots = moving.size();
+            logger.info("Moving {} slots, waiting {} for every node to see them", slots, slotTable.getSettleTime());
+            status = new Status("waiting", slots, 0, startedAt, null, null);
+            Thread.sleep(slotTable.getSettleTime().toMillis());
+
+            status = new Status("moving", slots, 0, startedAt, null, null);
+            for (AuthorizationShard previous : shards.getShards()) {
+                if (moving.values().stream().noneMatch(route -> previous.getName().equals(route.previous()))) {
+                    continue;
+                }
+                String after = "";
+                List<String> ids;
+                do {
+                    ids = previous.findIds(after, PAGE_SIZE);
+                    for (String id : ids) {
+                        OAuth2Authorization authorization = previous.findById(id);
+                        SlotTable.Route route =
+                                authorization != null ? moving.get(ShardSlots.slotOf(authorization)) : null;
+                        if (route != null && previous.getName().equals(route.previous())
+                                && shards.move(id, previous, shards.get(route.shard()))) {
+                            movedRows++;
+                        }
+                    }
+                    if (!ids.isEmpty()) {
+                        after = ids.get(ids.size() - 1);
+                    }
+                    status = new Status("moving", slots, movedRows, startedAt, null, null);
+                } while (ids.size() == PAGE_SIZE);
+            }
+            slotTable.finishMoves(moving);
+            logger.info("Moved {} slots, {} authorizations", slots, movedRows);
+            status = new Status("done", slots, movedRows, startedAt, Instant.now(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = new Status("interrupted", slots, movedRows, startedAt, Instant.now(), null);
+        } catch (RuntimeException e) {
+            logger.error("Rebalance failed; start it again to resume", e);
+            status = new Status("failed", slots, movedRows, startedAt, Instant.now(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param state idle, planning, waiting, moving, done, interrupted or failed
+     */
+    public record Status(String state, int slots, long movedAuthorizations, Instant startedAt,
+            Instant finishedAt, String error) {
+    }
+}
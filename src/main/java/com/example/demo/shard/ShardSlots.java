@@ -0,0 +1,145 @@
+package com.example.demo.shard;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Slots: the unit of authorization placement and rebalancing
+ *
+ * Every authorization belongs to one of {@link #SLOTS} slots, and every slot to one shard
+ * ({@link SlotTable}). The slot is tagged into the tokens issued for the authorization, as
+ * a two character base36 prefix and '~' ("0k~..."), which base64url token values never
+ * contain; JWT access tokens carry it in their jti. A token lookup is therefore routed
+ * without a directory. An authorization whose first tokens were issued without it (no
+ * authorization in the token context) gets a random slot; one saved before any tagged
+ * token exists (consent state), and rows from before sharding, use a hash of its id.
+ */
+public final class ShardSlots {
+
+    /**
+     * Fixed forever: tagged tokens outlive any shard layout
+     */
+    public static final int SLOTS = 1024;
+
+    private static final char TAG_SEPARATOR = '~';
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private ShardSlots() {
+    }
+
+    /**
+     * Slot of an authorization with no tagged token
+     */
+    public static int slotOfId(String authorizationId) {
+        int h = authorizationId.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h & (SLOTS - 1);
+    }
+
+    public static int randomSlot() {
+        return ThreadLocalRandom.current().nextInt(SLOTS);
+    }
+
+    /**
+     * Slot of the authorization, from its tagged tokens or else its id
+     */
+    public static int slotOf(OAuth2Authorization authorization) {
+        OAuth2Authorization.Token<OAuth2AuthorizationCode> code = authorization.getToken(OAuth2AuthorizationCode.class);
+        if (code != null) {
+            int slot = slotOfTag(code.getToken().getTokenValue());
+            if (slot >= 0) {
+                return slot;
+            }
+        }
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+        if (accessToken != null) {
+            int slot = slotOfTag(accessToken.getToken().getTokenValue());
+            if (slot < 0 && accessToken.getClaims() != null && accessToken.getClaims().get(JwtClaimNames.JTI) != null) {
+                slot = slotOfTag(accessToken.getClaims().get(JwtClaimNames.JTI).toString());
+            }
+            if (slot >= 0) {
+                return slot;
+            }
+        }
+        OAuth2Authorization.Token<OAuth2RefreshToken> refreshToken = authorization.getRefreshToken();
+        if (refreshToken != null) {
+            int slot = slotOfTag(refreshToken.getToken().getTokenValue());
+            if (slot >= 0) {
+                return slot;
+            }
+        }
+        return slotOfId(authorization.getId());
+    }
+
+    /**
+     * Slot a presented token value was issued for, -1 if it carries none
+     */
+    public static int slotOfToken(String tokenValue) {
+        int slot = slotOfTag(tokenValue);
+        if (slot < 0 && tokenValue.chars().filter(c -> c == '.').count() == 2) {
+            String jti = jwtId(tokenValue);
+            slot = jti != null ? slotOfTag(jti) : -1;
+        }
+        return slot;
+    }
+
+    public static String tag(int slot, String value) {
+        String prefix = Integer.toString(slot, 36);
+        return (prefix.length() == 1 ? "0" + prefix : prefix) + TAG_SEPARATOR + value;
+    }
+
+    static int slotOfTag(String value) {
+        if (value == null || value.length() < 4 || value.charAt(2) != TAG_SEPARATOR) {
+            return -1;
+        }
+        int high = Character.digit(value.charAt(0), 36);
+        int low = Character.digit(value.charAt(1), 36);
+        int slot = high * 36 + low;
+        return high < 0 || low < 0 || slot >= SLOTS ? -1 : slot;
+    }
+
+    /**
+     * jti from the unverified payload: only used to route, the stored token decides
+     */
+    private static String jwtId(String jwt) {
+        int start = jwt.indexOf('.') + 1;
+        int end = jwt.indexOf('.', start);
+        if (end <= start) {
+            return null;
+        }
+        byte[] payload;
+        try {
+            payload = Base64.getUrlDecoder().decode(jwt.substring(start, end));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        try (JsonParser parser = JSON.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (JwtClaimNames.JTI.equals(name)) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
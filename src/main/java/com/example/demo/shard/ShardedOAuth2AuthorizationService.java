@@ -0,0 +1,142 @@
+package com.example.demo.shard;
+
+import com.example.demo.token.AuthorizationCodeReplayException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+import java.util.List;
+
+/**
+ * Authorizations spread over shards by slot
+ *
+ * A token carrying a slot ({@link ShardSlots}) is looked up on the slot's owner only, or
+ * while the slot moves, on the owner and then the shard it moves from. Lookups without a
+ * slot (state, device codes, ID tokens, tokens issued before sharding) and by id try the
+ * shard of the id's hash first and then the others; so do misses while the slot table is
+ * changing, in case this node's copy is behind.
+ *
+ * Saving an authorization whose slot is moving moves it: under a lock on its id in the
+ * owner, a copy still on the previous shard is brought over first (a code redemption
+ * updates the stored row conditionally), the new state is saved, and the previous copy
+ * is removed.
+ */
+public class ShardedOAuth2AuthorizationService implements OAuth2AuthorizationService {
+
+    private final AuthorizationShards shards;
+    private final SlotTable slotTable;
+    private final Counter untaggedFanOuts;
+    private final Counter missFanOuts;
+
+    public ShardedOAuth2AuthorizationService(
+            AuthorizationShards shards, SlotTable slotTable, MeterRegistry meterRegistry) {
+        this.shards = shards;
+        this.slotTable = slotTable;
+        this.untaggedFanOuts = fanOuts(meterRegistry, "untagged");
+        this.missFanOuts = fanOuts(meterRegistry, "miss");
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        SlotTable.Route route = slotTable.route(ShardSlots.slotOf(authorization));
+        AuthorizationShard owner = shards.get(route.shard());
+        if (route.previous() == null) {
+            owner.save(authorization);
+            return;
+        }
+        AuthorizationShard previous = shards.get(route.previous());
+        AuthorizationCodeReplayException replayed = owner.locked(authorization.getId(), () -> {
+            OAuth2Authorization stale = previous.findById(authorization.getId());
+            if (stale != null && owner.findById(authorization.getId()) == null) {
+                owner.save(stale);
+            }
+            try {
+                owner.save(authorization);
+            } catch (AuthorizationCodeReplayException e) {
+                // Commit the revocation it saved before reporting the replay
+                return e;
+            }
+            if (stale != null) {
+                previous.remove(stale);
+                shards.moved();
+            }
+            return null;
+        });
+        if (replayed != null) {
+            throw replayed;
+        }
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        SlotTable.Route route = slotTable.route(ShardSlots.slotOf(authorization));
+        shards.get(route.shard()).remove(authorization);
+        if (route.previous() != null) {
+            shards.get(route.previous()).remove(authorization);
+        }
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        SlotTable.Route route = slotTable.route(ShardSlots.slotOfId(id));
+        OAuth2Authorization authorization = shards.get(route.shard()).findById(id);
+        if (authorization == null && route.previous() != null) {
+            authorization = shards.get(route.previous()).findById(id);
+        }
+        for (AuthorizationShard shard : others(route, authorization)) {
+            authorization = shard.findById(id);
+            if (authorization != null) {
+                break;
+            }
+        }
+        return authorization;
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        int slot = ShardSlots.slotOfToken(token);
+        if (slot < 0) {
+            untaggedFanOuts.increment();
+            for (AuthorizationShard shard : shards.getShards()) {
+                OAuth2Authorization authorization = shard.findByToken(token, tokenType);
+                if (authorization != null) {
+                    return authorization;
+                }
+            }
+            return null;
+        }
+        SlotTable.Route route = slotTable.route(slot);
+        OAuth2Authorization authorization = shards.get(route.shard()).findByToken(token, tokenType);
+        if (authorization == null && route.previous() != null) {
+            authorization = shards.get(route.previous()).findByToken(token, tokenType);
+        }
+        if (authorization == null && !slotTable.isSettled()) {
+            missFanOuts.increment();
+            for (AuthorizationShard shard : others(route, null)) {
+                authorization = shard.findByToken(token, tokenType);
+                if (authorization != null) {
+                    break;
+                }
+            }
+        }
+        return authorization;
+    }
+
+    private List<AuthorizationShard> others(SlotTable.Route route, OAuth2Authorization found) {
+        if (found != null) {
+            return List.of();
+        }
+        return shards.getShards().stream()
+                .filter(shard -> !shard.getName().equals(route.shard()) && !shard.getName().equals(route.previous()))
+                .toList();
+    }
+
+    private static Counter fanOuts(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("oauth2.authorization.shard.fanouts")
+                .description("Lookups asked of every shard")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.demo.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Which shard owns each slot, as stored in oauth2_authorization_slot
+ *
+ * Every node keeps a copy refreshed at a fixed interval. While a slot moves, its row names
+ * the shard it moves from as previous_shard: reads try the owner and then the previous
+ * shard, and writes move the authorization to the owner (see ShardedOAuth2AuthorizationService).
+ */
+public class SlotTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlotTable.class);
+
+    static final String SELECT_SQL = "SELECT slot, shard, previous_shard FROM oauth2_authorization_slot";
+    static final String INSERT_SQL = "INSERT INTO oauth2_authorization_slot (slot, shard) VALUES (?, ?) "
+            + "ON CONFLICT (slot) DO NOTHING";
+    static final String BEGIN_MOVE_SQL = "UPDATE oauth2_authorization_slot SET previous_shard = shard, shard = ? "
+            + "WHERE slot = ? AND previous_shard IS NULL";
+    static final String FINISH_MOVE_SQL = "UPDATE oauth2_authorization_slot SET previous_shard = NULL "
+            + "WHERE slot = ? AND shard = ?";
+
+    private final JdbcOperations jdbcOperations;
+    private final long settleMillis;
+    private volatile Route[] routes;
+    private volatile long changedAt;
+
+    /**
+     * @param refreshInterval how often every node refreshes; a change is assumed seen by all
+     *                        nodes two intervals after this node sees it
+     */
+    public SlotTable(JdbcOperations jdbcOperations, Duration refreshInterval) {
+        this.jdbcOperations = jdbcOperations;
+        this.settleMillis = refreshInterval.toMillis() * 2;
+    }
+
+    /**
+     * Creates the slot rows on first start, all on {@code legacyShard} if given, otherwise
+     * spread by weight; existing rows are kept
+     */
+    public void initialize(Map<String, Integer> weights, String legacyShard) {
+        String[] owners = legacyShard != null ? null : assign(weights);
+        List<Object[]> rows = new ArrayList<>(ShardSlots.SLOTS);
+        for (int slot = 0; slot < ShardSlots.SLOTS; slot++) {
+            rows.add(new Object[] {slot, owners != null ? owners[slot] : legacyShard});
+        }
+        jdbcOperations.batchUpdate(INSERT_SQL, rows);
+        refresh();
+        for (Route route : routes) {
+            if (!weights.containsKey(route.shard())
+                    || (route.previous() != null && !weights.containsKey(route.previous()))) {
+                throw new IllegalStateException("oauth2_authorization_slot refers to shard "
+                        + route + " missing from authorization-shards.shards");
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "#{@authorizationShardProperties.slotRefreshInterval.toMillis()}",
+            initialDelayString = "#{@authorizationShardProperties.slotRefreshInterval.toMillis()}")
+    public void refresh() {
+        Route[] loaded = new Route[ShardSlots.SLOTS];
+        jdbcOperations.query(SELECT_SQL, rs -> {
+            int slot = rs.getInt(1);
+            if (slot >= 0 && slot < loaded.length) {
+                loaded[slot] = new Route(rs.getString(2), rs.getString(3));
+            }
+        });
+        for (int slot = 0; slot < loaded.length; slot++) {
+            if (loaded[slot] == null) {
+                throw new IllegalStateException("oauth2_authorization_slot has no row for slot " + slot);
+            }
+        }
+        Route[] current = routes;
+        if (current == null || !Arrays.equals(current, loaded)) {
+            if (current != null) {
+                logger.info("Slot table changed: {}", describe(loaded));
+            }
+            routes = loaded;
+            changedAt = System.currentTimeMillis();
+        }
+    }
+
+    public Route route(int slot) {
+        return routes[slot];
+    }
+
+    /**
+     * No slot is moving and every node has seen the latest change
+     */
+    public boolean isSettled() {
+        if (System.currentTimeMillis() - changedAt < settleMillis) {
+            return false;
+        }
+        for (Route route : routes) {
+            if (route.previous() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Time after a change until every node is assumed to have seen it
+     */
+    public Duration getSettleTime() {
+        return Duration.ofMillis(settleMillis);
+    }
+
+    /**
+     * Owned slots per shard
+     */
+    public Map<String, Integer> slotCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Route route : routes) {
+            counts.merge(route.shard(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Slots still moving, by slot
+     */
+    public Map<Integer, Route> moving() {
+        Map<Integer, Route> moving = new LinkedHashMap<>();
+        Route[] current = routes;
+        for (int slot = 0; slot < current.length; slot++) {
+            if (current[slot].previous() != null) {
+                moving.put(slot, current[slot]);
+            }
+        }
+        return moving;
+    }
+
+    /**
+     * Points each slot at its new shard, keeping the current one as previous_shard
+     */
+    public void beginMoves(Map<Integer, String> moves) {
+        List<Object[]> rows = new ArrayList<>(moves.size());
+        moves.forEach((slot, shard) -> rows.add(new Object[] {shard, slot}));
+        jdbcOperations.batchUpdate(BEGIN_MOVE_SQL, rows);
+        refresh();
+    }
+
+    public void finishMoves(Map<Integer, Route> moves) {
+        List<Object[]> rows = new ArrayList<>(moves.size());
+        moves.forEach((slot, route) -> rows.add(new Object[] {slot, route.shard()}));
+        jdbcOperations.batchUpdate(FINISH_MOVE_SQL, rows);
+        refresh();
+    }
+
+    /**
+     * Slots to move so each shard owns its weighted share, moving as few as possible
+     */
+    public Map<Integer, String> plan(Map<String, Integer> weights) {
+        int[] target = targetCounts(weights);
+        List<String> names = new ArrayList<>(weights.keySet());
+        int[] owned = new int[names.size()];
+        Route[] current = routes;
+        List<Integer> unplaced = new ArrayList<>();
+        for (int slot = 0; slot < current.length; slot++) {
+            int shard = names.indexOf(current[slot].shard());
+            if (shard >= 0 && owned[shard] < target[shard]) {
+                owned[shard]++;
+            } else {
+                unplaced.add(slot);
+            }
+        }
+        Map<Integer, String> moves = new LinkedHashMap<>();
+        int shard = 0;
+        for (int slot : unplaced) {
+            while (owned[shard] >= target[shard]) {
+                shard++;
+            }
+            owned[shard]++;
+            moves.put(slot, names.get(shard));
+        }
+        return moves;
+    }
+
+    /**
+     * Owner of every slot when spread by weight in contiguous ranges
+     */
+    static String[] assign(Map<String, Integer> weights) {
+        int[] target = targetCounts(weights);
+        List<String> names = new ArrayList<>(weights.keySet());
+        String[] owners = new String[ShardSlots.SLOTS];
+        int slot = 0;
+        for (int shard = 0; shard < target.length; shard++) {
+            for (int i = 0; i < target[shard]; i++) {
+                owners[slot++] = names.get(shard);
+            }
+        }
+        return owners;
+    }
+
+    private static int[] targetCounts(Map<String, Integer> weights) {
+        long total = weights.values().stream().mapToLong(Integer::longValue).sum();
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one shard needs a positive weight");
+        }
+        int[] target = new int[weights.size()];
+        int assigned = 0;
+        int i = 0;
+        for (int weight : weights.values()) {
+            target[i] = (int) (ShardSlots.SLOTS * Math.max(weight, 0) / total);
+            assigned += target[i++];
+        }
+        // Rounding leftovers go to the first shards that take slots at all
+        i = 0;
+        for (int weight : weights.values()) {
+            if (assigned < ShardSlots.SLOTS && weight > 0) {
+                target[i]++;
+                assigned++;
+            }
+            i++;
+        }
+        return target;
+    }
+
+    private static String describe(Route[] routes) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        int moving = 0;
+        for (Route route : routes) {
+            counts.merge(route.shard(), 1, Integer::sum);
+            if (route.previous() != null) {
+                moving++;
+            }
+        }
+        return counts + ", " + moving + " moving";
+    }
+
+    /**
+     * Owner of a slot and, while it moves, the shard it moves from
+     */
+    public record Route(String shard, String previous) {
+
+        public Route {
+            Objects.requireNonNull(shard);
+        }
+    }
+}
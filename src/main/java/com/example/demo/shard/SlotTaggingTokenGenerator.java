@@ -0,0 +1,96 @@
+package com.example.demo.shard;
+
+import com.example.demo.token.AuthorizationCodeGenerator;
+import com.example.demo.util.SecureIdGenerator;
+import org.springframework.security.oauth2.core.ClaimAccessor;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.token.JwtEncodingContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenCustomizer;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+
+import java.util.Map;
+
+/**
+ * Tags opaque tokens with the slot of the authorization they are issued for
+ *
+ * Refresh tokens and reference access tokens from the delegate get the slot prefix; JWT
+ * access tokens get it in their jti from {@link #jwtCustomizer()}, and authorization codes
+ * from {@link #authorizationCodes()}. The slot is that of the authorization in the token
+ * context, or a random one for the first token of a new authorization.
+ */
+public class SlotTaggingTokenGenerator implements OAuth2TokenGenerator<OAuth2Token> {
+
+    private final OAuth2TokenGenerator<? extends OAuth2Token> delegate;
+
+    public SlotTaggingTokenGenerator(OAuth2TokenGenerator<? extends OAuth2Token> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public OAuth2Token generate(OAuth2TokenContext context) {
+        OAuth2Token token = delegate.generate(context);
+        if (token instanceof OAuth2RefreshToken refreshToken) {
+            return new OAuth2RefreshToken(ShardSlots.tag(slotFor(context), refreshToken.getTokenValue()),
+                    refreshToken.getIssuedAt(), refreshToken.getExpiresAt());
+        }
+        if (token instanceof OAuth2AccessToken accessToken) {
+            return new TaggedAccessToken(accessToken, ShardSlots.tag(slotFor(context), accessToken.getTokenValue()));
+        }
+        return token;
+    }
+
+    /**
+     * Sets the jti of JWT access tokens
+     */
+    public static OAuth2TokenCustomizer<JwtEncodingContext> jwtCustomizer() {
+        return context -> {
+            if (OAuth2TokenType.ACCESS_TOKEN.equals(context.getTokenType())) {
+                context.getClaims().id(ShardSlots.tag(slotFor(context), SecureIdGenerator.newId()));
+            }
+        };
+    }
+
+    /**
+     * Authorization codes for the authorization and consent endpoints
+     */
+    public static OAuth2TokenGenerator<OAuth2AuthorizationCode> authorizationCodes() {
+        AuthorizationCodeGenerator codes = new AuthorizationCodeGenerator();
+        return context -> {
+            OAuth2AuthorizationCode code = codes.generate(context);
+            if (code == null) {
+                return null;
+            }
+            return new OAuth2AuthorizationCode(
+                    ShardSlots.tag(slotFor(context), code.getTokenValue()), code.getIssuedAt(), code.getExpiresAt());
+        };
+    }
+
+    static int slotFor(OAuth2TokenContext context) {
+        return context.getAuthorization() != null
+                ? ShardSlots.slotOf(context.getAuthorization())
+                : ShardSlots.randomSlot();
+    }
+
+    /**
+     * Keeps the claims of the delegate's token, which the token endpoint stores as metadata
+     */
+    private static final class TaggedAccessToken extends OAuth2AccessToken implements ClaimAccessor {
+
+        private final Map<String, Object> claims;
+
+        TaggedAccessToken(OAuth2AccessToken token, String tokenValue) {
+            super(token.getTokenType(), tokenValue, token.getIssuedAt(), token.getExpiresAt(), token.getScopes());
+            this.claims = token instanceof ClaimAccessor claimAccessor ? claimAccessor.getClaims() : Map.of();
+        }
+
+        @Override
+        public Map<String, Object> getClaims() {
+            return claims;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo.token;
+
+import com.example.demo.util.SecureIdGenerator;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+
+import java.time.Instant;
+
+/**
+ * Authorization codes for the authorization and consent endpoints
+ *
+ * Same lifetime as Spring Authorization Server's default generator, but the value is 256
+ * random bits from {@link SecureIdGenerator} instead of a shared SecureRandom.
+ */
+public class AuthorizationCodeGenerator implements OAuth2TokenGenerator<OAuth2AuthorizationCode> {
+
+    /** Random bytes per authorization code, as for reference access tokens */
+    static final int CODE_BYTES = 32;
+
+    @Override
+    public OAuth2AuthorizationCode generate(OAuth2TokenContext context) {
+        if (context.getTokenType() == null || !OAuth2ParameterNames.CODE.equals(context.getTokenType().getValue())) {
+            return null;
+        }
+        Instant issuedAt = Instant.now();
+        Instant expiresAt = issuedAt.plus(
+                context.getRegisteredClient().getTokenSettings().getAuthorizationCodeTimeToLive());
+        return new OAuth2AuthorizationCode(SecureIdGenerator.newId(CODE_BYTES), issuedAt, expiresAt);
+    }
+}
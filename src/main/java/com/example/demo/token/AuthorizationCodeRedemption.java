@@ -0,0 +1,105 @@
+package com.example.demo.token;
+
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+/**
+ * Recognizes the save that redeems an authorization code at /oauth2/token
+ *
+ * Spring Authorization Server's code provider looks the authorization up by code, then saves it
+ * with the code invalidated and the new tokens attached, on the same thread. The lookup of a
+ * code that was never redeemed is remembered here, so the JDBC services can write that save as
+ * one conditional statement (the code is only redeemed if no access token was attached in the
+ * meantime) instead of a read followed by a full-row update, and the caching layer knows that
+ * nothing about this authorization can be cached yet.
+ *
+ * {@link AuthorizationCodeRedemptionFilter} clears the lookup when the token request ends, so a
+ * request that fails between lookup and save leaves nothing behind on the pooled thread.
+ */
+final class AuthorizationCodeRedemption {
+
+    /**
+     * Token type the code provider looks authorizations up with
+     */
+    static final OAuth2TokenType CODE_TOKEN_TYPE = new OAuth2TokenType(OAuth2ParameterNames.CODE);
+
+    private static final ThreadLocal<String> PENDING = new ThreadLocal<>();
+
+    private AuthorizationCodeRedemption() {
+    }
+
+    /**
+     * Called with the result of every lookup by authorization code
+     */
+    static void codeLookedUp(OAuth2Authorization authorization) {
+        OAuth2Authorization.Token<OAuth2AuthorizationCode> code =
+                authorization != null ? authorization.getToken(OAuth2AuthorizationCode.class) : null;
+        if (code != null && code.isActive() && authorization.getAccessToken() == null) {
+            PENDING.set(authorization.getId());
+        } else {
+            PENDING.remove();
+        }
+    }
+
+    /**
+     * Is this the first save of tokens issued for a code looked up on this thread?
+     */
+    static boolean isRedemption(OAuth2Authorization authorization) {
+        if (!authorization.getId().equals(PENDING.get())
+                || !AuthorizationGrantType.AUTHORIZATION_CODE.equals(authorization.getAuthorizationGrantType())) {
+            return false;
+        }
+        OAuth2Authorization.Token<OAuth2AuthorizationCode> code = authorization.getToken(OAuth2AuthorizationCode.class);
+        return code != null && code.isInvalidated() && authorization.getAccessToken() != null;
+    }
+
+    /**
+     * Like {@link #isRedemption}, and ends the redemption either way, unless this saves the
+     * authorization still unredeemed (a shard move copies it before the redemption is saved)
+     */
+    static boolean take(OAuth2Authorization authorization) {
+        boolean redemption = isRedemption(authorization);
+        if (redemption || !authorization.getId().equals(PENDING.get()) || authorization.getAccessToken() != null) {
+            PENDING.remove();
+        }
+        return redemption;
+    }
+
+    /**
+     * Forgets any lookup left on this thread, e.g. by a token request that failed before its save
+     */
+    static void clear() {
+        PENDING.remove();
+    }
+
+    /**
+     * The conditional write found the code already redeemed by a concurrent request: invalidate
+     * what that redemption issued, as Spring Authorization Server does when a redeemed code is
+     * presented again, and answer this request with invalid_grant
+     */
+    static AuthorizationCodeReplayException replayed(OAuth2AuthorizationService service, String authorizationId) {
+        OAuth2Authorization current = service.findById(authorizationId);
+        OAuth2Authorization revoked = null;
+        if (current != null) {
+            OAuth2Authorization.Builder builder = OAuth2Authorization.from(current);
+            invalidate(builder, current.getToken(OAuth2AuthorizationCode.class));
+            invalidate(builder, current.getToken(OAuth2AccessToken.class));
+            invalidate(builder, current.getToken(OAuth2RefreshToken.class));
+            revoked = builder.build();
+            service.save(revoked);
+        }
+        return new AuthorizationCodeReplayException(revoked);
+    }
+
+    private static void invalidate(OAuth2Authorization.Builder builder, OAuth2Authorization.Token<?> token) {
+        if (token != null && !token.isInvalidated()) {
+            builder.token(token.getToken(), metadata -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.token;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Clears the code lookup remembered by {@link AuthorizationCodeRedemption} once a token request
+ * ends, however it ends
+ */
+public class AuthorizationCodeRedemptionFilter extends OncePerRequestFilter {
+
+    private final RequestMatcher matcher;
+
+    public AuthorizationCodeRedemptionFilter(RequestMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!matcher.matches(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            AuthorizationCodeRedemption.clear();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo.token;
+
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+
+/**
+ * An authorization code lost a concurrent redemption: answered as invalid_grant
+ */
+public class AuthorizationCodeReplayException extends OAuth2AuthenticationException {
+
+    private final transient OAuth2Authorization revokedAuthorization;
+
+    /**
+     * @param revokedAuthorization the winning redemption with its tokens invalidated, null if removed meanwhile
+     */
+    public AuthorizationCodeReplayException(OAuth2Authorization revokedAuthorization) {
+        super(new OAuth2Error(OAuth2ErrorCodes.INVALID_GRANT, "Authorization code was already redeemed", null));
+        this.revokedAuthorization = revokedAuthorization;
+    }
+
+    public OAuth2Authorization getRevokedAuthorization() {
+        return revokedAuthorization;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.token;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Cross-node authorization invalidation over PostgreSQL LISTEN/NOTIFY
+ *
+ * {@link #accept} sends the authorization id (and the revoked jti, if any) with pg_notify on
+ * the shared database, inside the caller's transaction if there is one, so the notification
+ * is only delivered once the change is committed. A background thread on every node holds
+ * a dedicated LISTEN connection (outside the pool) and hands each notification to the
+ * local listeners (introspection cache, revoked token filter).
+ *
+ * While that connection is down the node cannot learn about revocations, so the listeners
+ * are suspended until it is re-established and then resume from a fresh state.
+ */
+public class AuthorizationInvalidationChannel implements BiConsumer<String, String>, SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthorizationInvalidationChannel.class);
+
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 2000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final List<AuthorizationInvalidationListener> listeners;
+    private final String channel;
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public AuthorizationInvalidationChannel(
+            JdbcTemplate jdbcTemplate, List<AuthorizationInvalidationListener> listeners, String channel,
+            String url, String username, String password) {
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid notification channel name: " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.listeners = List.copyOf(listeners);
+        this.channel = channel;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Tell every node (including this one) that an authorization changed
+     *
+     * @param revokedJti jti of a self-contained access token that stopped being active, or null
+     */
+    @Override
+    public void accept(String authorizationId, String revokedJti) {
+        String payload = revokedJti != null ? authorizationId + ' ' + revokedJti : authorizationId;
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) rs -> null, channel, payload);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        // Trust nothing local until the LISTEN connection is up
+        listeners.forEach(AuthorizationInvalidationListener::invalidationsSuspended);
+        listenerThread = Thread.ofPlatform().daemon().name("authorization-invalidation-listener").start(this::listen);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                listeners.forEach(AuthorizationInvalidationListener::invalidationsResumed);
+                logger.info("Listening for authorization invalidations on channel {}", channel);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    logger.warn("Invalidation listener lost its connection, local token state disabled: {}",
+                            e.getMessage());
+                }
+            } finally {
+                listeners.forEach(AuthorizationInvalidationListener::invalidationsSuspended);
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(String payload) {
+        int separator = payload.indexOf(' ');
+        String authorizationId = separator < 0 ? payload : payload.substring(0, separator);
+        String revokedJti = separator < 0 ? null : payload.substring(separator + 1);
+        for (AuthorizationInvalidationListener listener : listeners) {
+            listener.authorizationInvalidated(authorizationId, revokedJti);
+        }
+    }
+}
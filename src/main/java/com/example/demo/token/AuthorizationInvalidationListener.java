@@ -0,0 +1,24 @@
+package com.example.demo.token;
+
+/**
+ * Node-local state that must follow authorization changes made on any node
+ */
+public interface AuthorizationInvalidationListener {
+
+    /**
+     * An authorization changed on some node
+     *
+     * @param revokedJti jti of a self-contained access token that stopped being active, or null
+     */
+    void authorizationInvalidated(String authorizationId, String revokedJti);
+
+    /**
+     * Invalidations can no longer be received: stop trusting local state
+     */
+    void invalidationsSuspended();
+
+    /**
+     * Invalidations are received again; anything sent in between was missed
+     */
+    void invalidationsResumed();
+}
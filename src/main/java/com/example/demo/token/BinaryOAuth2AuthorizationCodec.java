@@ -0,0 +1,459 @@
+package com.example.demo.token;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationResponseType;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact binary format for the map-valued columns of oauth2_authorization
+ *
+ * Layout (version 1):
+ * <pre>
+ * byte    MAGIC (never '{', so JSON rows written before are told apart by their first byte)
+ * byte    version
+ * map     varint size, then per entry: name, tagged value
+ * name    byte index into NAMES (1..), or 0 followed by a string
+ * string  varint UTF-8 length, bytes
+ * </pre>
+ * Values are tagged. Strings, numbers, booleans, Instant, Date, URL, lists, sets and string-keyed
+ * maps (token claims), the authorization request and the user principal have explicit
+ * serializers that reflect nothing and resolve no class names. Any other value is embedded as
+ * Jackson JSON through {@link JsonOAuth2AuthorizationCodec}, with its type allowlist.
+ *
+ * Rows that do not start with MAGIC are read with {@link JsonOAuth2AuthorizationCodec}, so the
+ * codec can be switched on over a table written by the default JdbcOAuth2AuthorizationService.
+ */
+public class BinaryOAuth2AuthorizationCodec implements OAuth2AuthorizationCodec {
+
+    static final byte MAGIC = (byte) 0xA7;
+    static final byte VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int TRUE = 2;
+    private static final int FALSE = 3;
+    private static final int INTEGER = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int INSTANT = 7;
+    private static final int DATE = 8;
+    private static final int URL = 9;
+    private static final int LIST = 10;
+    private static final int SET = 11;
+    private static final int MAP = 12;
+    private static final int AUTHORIZATION_REQUEST = 13;
+    private static final int USERNAME_PASSWORD_AUTHENTICATION = 14;
+    private static final int JSON = 15;
+
+    /**
+     * Names written as a single byte. Part of the format: only append, never reorder.
+     */
+    private static final String[] NAMES = {
+            Principal.class.getName(),
+            OAuth2AuthorizationRequest.class.getName(),
+            OAuth2ParameterNames.STATE,
+            OAuth2Authorization.Token.INVALIDATED_METADATA_NAME,
+            OAuth2Authorization.Token.CLAIMS_METADATA_NAME,
+            "iss", "sub", "aud", "exp", "nbf", "iat", "jti", "scope", "azp", "auth_time", "nonce", "sid",
+            "client_id", "at_hash", "c_hash", "continue",
+    };
+
+    private static final Map<String, Integer> NAME_INDEX = new HashMap<>();
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            NAME_INDEX.put(NAMES[i], i + 1);
+        }
+    }
+
+    private static final String JSON_VALUE = "value";
+
+    private final JsonOAuth2AuthorizationCodec json = new JsonOAuth2AuthorizationCodec();
+
+    @Override
+    public byte[] encode(Map<String, Object> value) {
+        Output out = new Output();
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeMap(out, value);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Map<String, Object> decode(byte[] data) {
+        if (data.length == 0 || data[0] != MAGIC) {
+            return json.decode(data);
+        }
+        Input in = new Input(data, 1);
+        int version = in.read();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported authorization codec version: " + version);
+        }
+        Map<String, Object> value = readMap(in);
+        if (in.remaining() != 0) {
+            throw new IllegalArgumentException("Trailing bytes after authorization map");
+        }
+        return value;
+    }
+
+    private void writeMap(Output out, Map<?, ?> map) {
+        out.writeVarLong(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeName(out, (String) entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private Map<String, Object> readMap(Input in) {
+        int size = in.readSize();
+        Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 4 / 3 + 1));
+        for (int i = 0; i < size; i++) {
+            String name = readName(in);
+            map.put(name, readValue(in));
+        }
+        return map;
+    }
+
+    private static void writeName(Output out, String name) {
+        Integer index = NAME_INDEX.get(name);
+        if (index != null) {
+            out.write(index);
+        } else {
+            out.write(0);
+            out.writeString(name);
+        }
+    }
+
+    private static String readName(Input in) {
+        int index = in.read();
+        if (index == 0) {
+            return in.readString();
+        }
+        if (index > NAMES.length) {
+            throw new IllegalArgumentException("Unknown name index: " + index);
+        }
+        return NAMES[index - 1];
+    }
+
+    private void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String string) {
+            out.write(STRING);
+            out.writeString(string);
+        } else if (value instanceof Boolean bool) {
+            out.write(bool ? TRUE : FALSE);
+        } else if (value instanceof Integer number) {
+            out.write(INTEGER);
+            out.writeVarLong(zigZag(number));
+        } else if (value instanceof Long number) {
+            out.write(LONG);
+            out.writeVarLong(zigZag(number));
+        } else if (value instanceof Double number) {
+            out.write(DOUBLE);
+            out.writeFixedLong(Double.doubleToRawLongBits(number));
+        } else if (value instanceof Instant instant) {
+            out.write(INSTANT);
+            out.writeVarLong(zigZag(instant.getEpochSecond()));
+            out.writeVarLong(instant.getNano());
+        } else if (value.getClass() == Date.class) {
+            out.write(DATE);
+            out.writeVarLong(zigZag(((Date) value).getTime()));
+        } else if (value instanceof URL url) {
+            out.write(URL);
+            out.writeString(url.toExternalForm());
+        } else if (value instanceof List<?> list) {
+            out.write(LIST);
+            writeElements(out, list);
+        } else if (value instanceof Set<?> set) {
+            out.write(SET);
+            writeElements(out, set);
+        } else if (value instanceof Map<?, ?> map && hasStringKeys(map)) {
+            out.write(MAP);
+            writeMap(out, map);
+        } else if (value instanceof OAuth2AuthorizationRequest request
+                && OAuth2AuthorizationResponseType.CODE.equals(request.getResponseType())) {
+            out.write(AUTHORIZATION_REQUEST);
+            writeAuthorizationRequest(out, request);
+        } else if (value instanceof UsernamePasswordAuthenticationToken authentication
+                && isPlainAuthentication(authentication)) {
+            out.write(USERNAME_PASSWORD_AUTHENTICATION);
+            writeAuthentication(out, authentication);
+        } else {
+            Map<String, Object> wrapper = new LinkedHashMap<>();
+            wrapper.put(JSON_VALUE, value);
+            out.write(JSON);
+            out.writeBytes(json.encode(wrapper));
+        }
+    }
+
+    private Object readValue(Input in) {
+        int tag = in.read();
+        return switch (tag) {
+            case NULL -> null;
+            case STRING -> in.readString();
+            case TRUE -> Boolean.TRUE;
+            case FALSE -> Boolean.FALSE;
+            case INTEGER -> (int) unZigZag(in.readVarLong());
+            case LONG -> unZigZag(in.readVarLong());
+            case DOUBLE -> Double.longBitsToDouble(in.readFixedLong());
+            case INSTANT -> Instant.ofEpochSecond(unZigZag(in.readVarLong()), in.readVarLong());
+            case DATE -> new Date(unZigZag(in.readVarLong()));
+            case URL -> toUrl(in.readString());
+            case LIST -> readElements(in, new ArrayList<>());
+            case SET -> readElements(in, new LinkedHashSet<>());
+            case MAP -> readMap(in);
+            case AUTHORIZATION_REQUEST -> readAuthorizationRequest(in);
+            case USERNAME_PASSWORD_AUTHENTICATION -> readAuthentication(in);
+            case JSON -> json.decode(in.readBytes()).get(JSON_VALUE);
+            default -> throw new IllegalArgumentException("Unknown value tag: " + tag);
+        };
+    }
+
+    private void writeElements(Output out, Collection<?> elements) {
+        out.writeVarLong(elements.size());
+        for (Object element : elements) {
+            writeValue(out, element);
+        }
+    }
+
+    private <C extends Collection<Object>> C readElements(Input in, C elements) {
+        int size = in.readSize();
+        for (int i = 0; i < size; i++) {
+            elements.add(readValue(in));
+        }
+        return elements;
+    }
+
+    private void writeAuthorizationRequest(Output out, OAuth2AuthorizationRequest request) {
+        out.writeString(request.getAuthorizationUri());
+        out.writeString(request.getClientId());
+        writeValue(out, request.getRedirectUri());
+        writeElements(out, request.getScopes());
+        writeValue(out, request.getState());
+        writeMap(out, request.getAdditionalParameters());
+        writeValue(out, request.getAuthorizationRequestUri());
+        writeMap(out, request.getAttributes());
+    }
+
+    @SuppressWarnings("unchecked")
+    private OAuth2AuthorizationRequest readAuthorizationRequest(Input in) {
+        OAuth2AuthorizationRequest.Builder builder = OAuth2AuthorizationRequest.authorizationCode()
+                .authorizationUri(in.readString())
+                .clientId(in.readString())
+                .redirectUri((String) readValue(in));
+        Set<String> scopes = (Set<String>) (Set<?>) readElements(in, new LinkedHashSet<>());
+        return builder.scopes(scopes)
+                .state((String) readValue(in))
+                .additionalParameters(readMap(in))
+                .authorizationRequestUri((String) readValue(in))
+                .attributes(readMap(in))
+                .build();
+    }
+
+    private void writeAuthentication(Output out, UsernamePasswordAuthenticationToken authentication) {
+        writeValue(out, authentication.getPrincipal());
+        writeValue(out, authentication.getCredentials());
+        out.write(authentication.isAuthenticated() ? TRUE : FALSE);
+        out.writeVarLong(authentication.getAuthorities().size());
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            out.writeString(authority.getAuthority());
+        }
+    }
+
+    private UsernamePasswordAuthenticationToken readAuthentication(Input in) {
+        Object principal = readValue(in);
+        Object credentials = readValue(in);
+        boolean authenticated = in.read() == TRUE;
+        int size = in.readSize();
+        List<GrantedAuthority> authorities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            authorities.add(new SimpleGrantedAuthority(in.readString()));
+        }
+        return authenticated
+                ? UsernamePasswordAuthenticationToken.authenticated(principal, credentials, authorities)
+                : UsernamePasswordAuthenticationToken.unauthenticated(principal, credentials);
+    }
+
+    /**
+     * Exactly the token the login callback creates: no details, plain authorities
+     */
+    private static boolean isPlainAuthentication(UsernamePasswordAuthenticationToken authentication) {
+        if (authentication.getClass() != UsernamePasswordAuthenticationToken.class || authentication.getDetails() != null) {
+            return false;
+        }
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (authority.getClass() != SimpleGrantedAuthority.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasStringKeys(Map<?, ?> map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static URL toUrl(String value) {
+        try {
+            return URI.create(value).toURL();
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid URL value: " + value, e);
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Growable buffer; unlike ByteArrayOutputStream, not synchronized
+     */
+    private static final class Output {
+
+        private byte[] buffer = new byte[256];
+        private int size;
+
+        void write(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeFixedLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * Bounds-checked cursor over an encoded value
+     */
+    private static final class Input {
+
+        private final byte[] data;
+        private int position;
+
+        Input(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        int remaining() {
+            return data.length - position;
+        }
+
+        int read() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated authorization data");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long readFixedLong() {
+            long result = 0;
+            for (int i = 0; i < 8; i++) {
+                result = (result << 8) | read();
+            }
+            return result;
+        }
+
+        /**
+         * Element count or byte length: every element takes at least one byte
+         */
+        int readSize() {
+            long size = readVarLong();
+            if (size < 0 || size > remaining()) {
+                throw new IllegalArgumentException("Invalid length: " + size);
+            }
+            return (int) size;
+        }
+
+        String readString() {
+            int length = readSize();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        byte[] readBytes() {
+            int length = readSize();
+            byte[] value = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.demo.token;
+
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Authorization service that answers access token lookups from an {@link IntrospectionCache}
+ *
+ * Token introspection and the userinfo endpoint look authorizations up by access token;
+ * after the first database hit, those lookups are served from memory. Every change that
+ * can make a cached access token stale (revocation, refresh, removal) evicts the entry
+ * locally and is published so the other nodes evict theirs.
+ *
+ * Issuing a client_credentials token creates a new authorization that nobody can have
+ * cached yet, so that save, the hot path of machine clients, publishes nothing. The same
+ * holds for redeeming an authorization code, which also skips reading the previous version:
+ * the code provider only gets there if no access token was issued for it yet.
+ *
+ * With a {@link RevokedTokenFilter}, every self-contained access token that stops being
+ * active before it expires (revoked, replaced by a refresh, authorization removed) is also
+ * recorded by jti, since local JWT introspection never reads the authorization. The jti is
+ * written before the authorization: if the save then fails, the token is only revoked
+ * early, whereas the other order could leave a revoked token active for local introspection.
+ */
+public class CachingOAuth2AuthorizationService implements OAuth2AuthorizationService {
+
+    private final OAuth2AuthorizationService delegate;
+    private final IntrospectionCache cache;
+    private final RevokedTokenFilter revokedTokens;
+    private final BiConsumer<String, String> invalidationPublisher;
+
+    /**
+     * @param revokedTokens         null when local JWT introspection is off
+     * @param invalidationPublisher tells other nodes an authorization id (and revoked jti) changed
+     */
+    public CachingOAuth2AuthorizationService(
+            OAuth2AuthorizationService delegate,
+            IntrospectionCache cache,
+            RevokedTokenFilter revokedTokens,
+            BiConsumer<String, String> invalidationPublisher) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.revokedTokens = revokedTokens;
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        if (AuthorizationCodeRedemption.isRedemption(authorization)) {
+            try {
+                delegate.save(authorization);
+            } catch (AuthorizationCodeReplayException e) {
+                // Lost to a concurrent redemption, whose tokens the delegate just invalidated
+                OAuth2Authorization revoked = e.getRevokedAuthorization();
+                if (revoked != null) {
+                    invalidate(revoked.getId(), recordRevoked(revoked.getAccessToken()));
+                }
+                throw e;
+            }
+            return;
+        }
+        if (!mayBeCached(authorization)) {
+            delegate.save(authorization);
+            return;
+        }
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+        OAuth2Authorization.Token<OAuth2AccessToken> noLongerActive = accessToken.isInvalidated() ? accessToken : null;
+        if (noLongerActive == null && revokedTokens != null) {
+            // A refresh replaces the access token; the previous one must not stay valid locally
+            OAuth2Authorization previous = delegate.findById(authorization.getId());
+            OAuth2Authorization.Token<OAuth2AccessToken> previousToken =
+                    previous != null ? previous.getAccessToken() : null;
+            if (previousToken != null && previousToken.isActive() && !previousToken.getToken().getTokenValue()
+                    .equals(accessToken.getToken().getTokenValue())) {
+                noLongerActive = previousToken;
+            }
+        }
+        String revokedJti = recordRevoked(noLongerActive);
+        delegate.save(authorization);
+        invalidate(authorization.getId(), revokedJti);
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+        String revokedJti = recordRevoked(accessToken != null && accessToken.isActive() ? accessToken : null);
+        delegate.remove(authorization);
+        invalidate(authorization.getId(), revokedJti);
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        boolean accessTokenLookup = tokenType == null || OAuth2TokenType.ACCESS_TOKEN.equals(tokenType);
+        if (!accessTokenLookup) {
+            return delegate.findByToken(token, tokenType);
+        }
+        OAuth2Authorization cached = cache.get(token);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = cache.generation();
+        OAuth2Authorization authorization = delegate.findByToken(token, tokenType);
+        if (authorization != null) {
+            OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+            // Only active access tokens: a state or code match must not be served for this value later
+            if (accessToken != null && accessToken.isActive() && token.equals(accessToken.getToken().getTokenValue())) {
+                cache.put(token, authorization, accessToken.getToken().getExpiresAt(), generation);
+            }
+        }
+        return authorization;
+    }
+
+    /**
+     * Record a self-contained access token that stops being active
+     *
+     * @return its jti, or null if nothing was recorded
+     */
+    private String recordRevoked(OAuth2Authorization.Token<OAuth2AccessToken> noLongerActive) {
+        String revokedJti = revokedTokens != null ? jwtId(noLongerActive) : null;
+        if (revokedJti != null) {
+            revokedTokens.revoke(revokedJti, noLongerActive.getToken().getExpiresAt());
+        }
+        return revokedJti;
+    }
+
+    private void invalidate(String authorizationId, String revokedJti) {
+        cache.evictAuthorization(authorizationId);
+        invalidationPublisher.accept(authorizationId, revokedJti);
+    }
+
+    /**
+     * Could an earlier version of this authorization sit in some node's cache?
+     */
+    private static boolean mayBeCached(OAuth2Authorization authorization) {
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+        if (accessToken == null) {
+            // Not yet issued (authorization request, code): never cached
+            return false;
+        }
+        return !AuthorizationGrantType.CLIENT_CREDENTIALS.equals(authorization.getAuthorizationGrantType())
+                || accessToken.isInvalidated();
+    }
+
+    /**
+     * jti of a self-contained (JWT) access token, null for reference tokens
+     */
+    private static String jwtId(OAuth2Authorization.Token<OAuth2AccessToken> accessToken) {
+        if (accessToken == null || !JwtIntrospectionAuthenticationProvider.isJwt(accessToken.getToken().getTokenValue())) {
+            return null;
+        }
+        Object jti = accessToken.getClaims() != null ? accessToken.getClaims().get(JwtClaimNames.JTI) : null;
+        return jti != null ? jti.toString() : null;
+    }
+}
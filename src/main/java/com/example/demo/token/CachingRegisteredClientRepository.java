@@ -0,0 +1,67 @@
+package com.example.demo.token;
+
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registered client lookups held in memory for a short TTL
+ *
+ * Every token and introspection request authenticates the calling client by client_id and
+ * resolves the token's client by id; both are primary or unique key reads of rows that
+ * almost never change. A few seconds of staleness after an update through another node
+ * is the price for taking them off the database.
+ */
+public class CachingRegisteredClientRepository implements RegisteredClientRepository {
+
+    private final RegisteredClientRepository delegate;
+    private final long ttlMillis;
+    private final Map<String, Cached> byId = new ConcurrentHashMap<>();
+    private final Map<String, Cached> byClientId = new ConcurrentHashMap<>();
+
+    public CachingRegisteredClientRepository(RegisteredClientRepository delegate, Duration ttl) {
+        this.delegate = delegate;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    @Override
+    public void save(RegisteredClient registeredClient) {
+        delegate.save(registeredClient);
+        byId.remove(registeredClient.getId());
+        byClientId.remove(registeredClient.getClientId());
+    }
+
+    @Override
+    public RegisteredClient findById(String id) {
+        long now = System.currentTimeMillis();
+        Cached cached = byId.get(id);
+        if (cached != null && cached.expiresAtMillis() > now) {
+            return cached.client();
+        }
+        RegisteredClient client = delegate.findById(id);
+        if (client != null) {
+            byId.put(id, new Cached(client, now + ttlMillis));
+        }
+        return client;
+    }
+
+    @Override
+    public RegisteredClient findByClientId(String clientId) {
+        long now = System.currentTimeMillis();
+        Cached cached = byClientId.get(clientId);
+        if (cached != null && cached.expiresAtMillis() > now) {
+            return cached.client();
+        }
+        RegisteredClient client = delegate.findByClientId(clientId);
+        if (client != null) {
+            byClientId.put(clientId, new Cached(client, now + ttlMillis));
+        }
+        return client;
+    }
+
+    private record Cached(RegisteredClient client, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.token;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+/**
+ * Answers lookups of unknown client_ids from {@link KnownClientIds}, without a query
+ *
+ * Scanners and credential stuffing send random client_ids to the authorization, token
+ * and external login endpoints; each used to cost a findByClientId that returned nothing.
+ * The callers treat the null answer as before (invalid_client, or an error page).
+ */
+public class ClientIdFilteringRegisteredClientRepository implements RegisteredClientRepository {
+
+    private final RegisteredClientRepository delegate;
+    private final KnownClientIds knownClientIds;
+    private final Counter rejected;
+
+    public ClientIdFilteringRegisteredClientRepository(
+            RegisteredClientRepository delegate, KnownClientIds knownClientIds, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.knownClientIds = knownClientIds;
+        this.rejected = Counter.builder("oauth2.client.lookups.rejected")
+                .description("client_id lookups answered without a query because the client_id is not registered")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void save(RegisteredClient registeredClient) {
+        delegate.save(registeredClient);
+        knownClientIds.add(registeredClient.getClientId());
+    }
+
+    @Override
+    public RegisteredClient findById(String id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public RegisteredClient findByClientId(String clientId) {
+        if (!knownClientIds.mightExist(clientId)) {
+            rejected.increment();
+            return null;
+        }
+        return delegate.findByClientId(clientId);
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.demo.token;
+
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.StringUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * JDBC authorization service whose attributes and *_metadata columns go through an
+ * {@link OAuth2AuthorizationCodec}
+ *
+ * Same table, SQL and column order as {@link JdbcOAuth2AuthorizationService}; only the
+ * row mapper and parameters mapper are replaced. With a codec the map-valued columns are
+ * BYTEA (see source/db/DDL-authorization-bytea.sql) and are read and written as raw bytes,
+ * without the LOB handling the default mappers apply to every column. Without one the
+ * inherited mappers are kept, on the TEXT columns of source/db/DDL.sql.
+ *
+ * Redeeming an authorization code skips the inherited save's existence check: the row is
+ * updated only if it still holds the code and no access token, so a concurrent redemption of
+ * the same code loses atomically instead of overwriting the tokens of the first one.
+ */
+public class CodecJdbcOAuth2AuthorizationService extends JdbcOAuth2AuthorizationService {
+
+    private static final String REDEEM_AUTHORIZATION_CODE_SQL = "UPDATE oauth2_authorization SET "
+            + "registered_client_id = ?, principal_name = ?, authorization_grant_type = ?, authorized_scopes = ?, "
+            + "attributes = ?, state = ?, authorization_code_value = ?, authorization_code_issued_at = ?, "
+            + "authorization_code_expires_at = ?, authorization_code_metadata = ?, access_token_value = ?, "
+            + "access_token_issued_at = ?, access_token_expires_at = ?, access_token_metadata = ?, "
+            + "access_token_type = ?, access_token_scopes = ?, oidc_id_token_value = ?, oidc_id_token_issued_at = ?, "
+            + "oidc_id_token_expires_at = ?, oidc_id_token_metadata = ?, refresh_token_value = ?, "
+            + "refresh_token_issued_at = ?, refresh_token_expires_at = ?, refresh_token_metadata = ?, "
+            + "user_code_value = ?, user_code_issued_at = ?, user_code_expires_at = ?, user_code_metadata = ?, "
+            + "device_code_value = ?, device_code_issued_at = ?, device_code_expires_at = ?, device_code_metadata = ? "
+            + "WHERE id = ? AND authorization_code_value = ? AND access_token_value IS NULL";
+
+    /**
+     * Spring Authorization Server's own column format (TEXT)
+     */
+    public CodecJdbcOAuth2AuthorizationService(
+            JdbcOperations jdbcOperations,
+            RegisteredClientRepository registeredClientRepository) {
+        super(jdbcOperations, registeredClientRepository);
+    }
+
+    public CodecJdbcOAuth2AuthorizationService(
+            JdbcOperations jdbcOperations,
+            RegisteredClientRepository registeredClientRepository,
+            OAuth2AuthorizationCodec codec) {
+        super(jdbcOperations, registeredClientRepository);
+        setAuthorizationRowMapper(new CodecAuthorizationRowMapper(registeredClientRepository, codec));
+        setAuthorizationParametersMapper(new CodecAuthorizationParametersMapper(codec));
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        if (!AuthorizationCodeRedemption.take(authorization)) {
+            super.save(authorization);
+            return;
+        }
+        // Parameters in INSERT order: id moves to the WHERE clause, followed by the code
+        List<SqlParameterValue> parameters = new ArrayList<>(getAuthorizationParametersMapper().apply(authorization));
+        parameters.add(parameters.remove(0));
+        parameters.add(new SqlParameterValue(Types.VARCHAR,
+                authorization.getToken(OAuth2AuthorizationCode.class).getToken().getTokenValue()));
+        if (getJdbcOperations().update(REDEEM_AUTHORIZATION_CODE_SQL, parameters.toArray()) == 0) {
+            throw AuthorizationCodeRedemption.replayed(this, authorization.getId());
+        }
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        OAuth2Authorization authorization = super.findByToken(token, tokenType);
+        if (AuthorizationCodeRedemption.CODE_TOKEN_TYPE.equals(tokenType)) {
+            AuthorizationCodeRedemption.codeLookedUp(authorization);
+        }
+        return authorization;
+    }
+
+    /**
+     * Reads a row; token value columns are plain text, map columns are decoded by the codec
+     */
+    public static class CodecAuthorizationRowMapper implements RowMapper<OAuth2Authorization> {
+
+        private final RegisteredClientRepository registeredClientRepository;
+        private final OAuth2AuthorizationCodec codec;
+
+        public CodecAuthorizationRowMapper(
+                RegisteredClientRepository registeredClientRepository, OAuth2AuthorizationCodec codec) {
+            this.registeredClientRepository = registeredClientRepository;
+            this.codec = codec;
+        }
+
+        @Override
+        public OAuth2Authorization mapRow(ResultSet rs, int rowNum) throws SQLException {
+            String registeredClientId = rs.getString("registered_client_id");
+            RegisteredClient registeredClient = registeredClientRepository.findById(registeredClientId);
+            if (registeredClient == null) {
+                throw new DataRetrievalFailureException("The RegisteredClient with id '" + registeredClientId
+                        + "' was not found in the RegisteredClientRepository.");
+            }
+
+            Map<String, Object> attributes = decode(rs, "attributes");
+            OAuth2Authorization.Builder builder = OAuth2Authorization.withRegisteredClient(registeredClient)
+                    .id(rs.getString("id"))
+                    .principalName(rs.getString("principal_name"))
+                    .authorizationGrantType(new AuthorizationGrantType(rs.getString("authorization_grant_type")))
+                    .authorizedScopes(scopes(rs.getString("authorized_scopes")))
+                    .attributes(attrs -> attrs.putAll(attributes));
+            String state = rs.getString("state");
+            if (StringUtils.hasText(state)) {
+                builder.attribute(OAuth2ParameterNames.STATE, state);
+            }
+
+            String authorizationCodeValue = rs.getString("authorization_code_value");
+            if (StringUtils.hasText(authorizationCodeValue)) {
+                Map<String, Object> metadata = decode(rs, "authorization_code_metadata");
+                builder.token(new OAuth2AuthorizationCode(authorizationCodeValue,
+                                instant(rs, "authorization_code_issued_at"), instant(rs, "authorization_code_expires_at")),
+                        md -> md.putAll(metadata));
+            }
+
+            String accessTokenValue = rs.getString("access_token_value");
+            if (StringUtils.hasText(accessTokenValue)) {
+                Map<String, Object> metadata = decode(rs, "access_token_metadata");
+                OAuth2AccessToken.TokenType tokenType = OAuth2AccessToken.TokenType.BEARER.getValue()
+                        .equalsIgnoreCase(rs.getString("access_token_type")) ? OAuth2AccessToken.TokenType.BEARER : null;
+                builder.token(new OAuth2AccessToken(tokenType, accessTokenValue,
+                                instant(rs, "access_token_issued_at"), instant(rs, "access_token_expires_at"),
+                                scopes(rs.getString("access_token_scopes"))),
+                        md -> md.putAll(metadata));
+            }
+
+            String oidcIdTokenValue = rs.getString("oidc_id_token_value");
+            if (StringUtils.hasText(oidcIdTokenValue)) {
+                Map<String, Object> metadata = decode(rs, "oidc_id_token_metadata");
+                @SuppressWarnings("unchecked")
+                Map<String, Object> claims = (Map<String, Object>) metadata.get(OAuth2Authorization.Token.CLAIMS_METADATA_NAME);
+                builder.token(new OidcIdToken(oidcIdTokenValue,
+                                instant(rs, "oidc_id_token_issued_at"), instant(rs, "oidc_id_token_expires_at"), claims),
+                        md -> md.putAll(metadata));
+            }
+
+            String refreshTokenValue = rs.getString("refresh_token_value");
+            if (StringUtils.hasText(refreshTokenValue)) {
+                Map<String, Object> metadata = decode(rs, "refresh_token_metadata");
+                builder.token(new OAuth2RefreshToken(refreshTokenValue,
+                                instant(rs, "refresh_token_issued_at"), instant(rs, "refresh_token_expires_at")),
+                        md -> md.putAll(metadata));
+            }
+
+            String userCodeValue = rs.getString("user_code_value");
+            if (StringUtils.hasText(userCodeValue)) {
+                Map<String, Object> metadata = decode(rs, "user_code_metadata");
+                builder.token(new OAuth2UserCode(userCodeValue,
+                                instant(rs, "user_code_issued_at"), instant(rs, "user_code_expires_at")),
+                        md -> md.putAll(metadata));
+            }
+
+            String deviceCodeValue = rs.getString("device_code_value");
+            if (StringUtils.hasText(deviceCodeValue)) {
+                Map<String, Object> metadata = decode(rs, "device_code_metadata");
+                builder.token(new OAuth2DeviceCode(deviceCodeValue,
+                                instant(rs, "device_code_issued_at"), instant(rs, "device_code_expires_at")),
+                        md -> md.putAll(metadata));
+            }
+            return builder.build();
+        }
+
+        private Map<String, Object> decode(ResultSet rs, String columnName) throws SQLException {
+            byte[] data = rs.getBytes(columnName);
+            return data != null ? codec.decode(data) : Map.of();
+        }
+
+        private static Instant instant(ResultSet rs, String columnName) throws SQLException {
+            Timestamp timestamp = rs.getTimestamp(columnName);
+            return timestamp != null ? timestamp.toInstant() : null;
+        }
+
+        private static Set<String> scopes(String value) {
+            return value != null ? StringUtils.commaDelimitedListToSet(value) : Set.of();
+        }
+    }
+
+    /**
+     * Parameters in the order of JdbcOAuth2AuthorizationService's INSERT statement
+     */
+    public static class CodecAuthorizationParametersMapper implements Function<OAuth2Authorization, List<SqlParameterValue>> {
+
+        private final OAuth2AuthorizationCodec codec;
+
+        public CodecAuthorizationParametersMapper(OAuth2AuthorizationCodec codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public List<SqlParameterValue> apply(OAuth2Authorization authorization) {
+            List<SqlParameterValue> parameters = new ArrayList<>(33);
+            parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getId()));
+            parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getRegisteredClientId()));
+            parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getPrincipalName()));
+            parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getAuthorizationGrantType().getValue()));
+            parameters.add(new SqlParameterValue(Types.VARCHAR, delimited(authorization.getAuthorizedScopes())));
+            parameters.add(new SqlParameterValue(Types.BINARY, codec.encode(authorization.getAttributes())));
+            String state = authorization.getAttribute(OAuth2ParameterNames.STATE);
+            parameters.add(new SqlParameterValue(Types.VARCHAR, StringUtils.hasText(state) ? state : null));
+
+            addToken(parameters, authorization.getToken(OAuth2AuthorizationCode.class));
+            OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getToken(OAuth2AccessToken.class);
+            addToken(parameters, accessToken);
+            parameters.add(new SqlParameterValue(Types.VARCHAR,
+                    accessToken != null ? accessToken.getToken().getTokenType().getValue() : null));
+            parameters.add(new SqlParameterValue(Types.VARCHAR,
+                    accessToken != null ? delimited(accessToken.getToken().getScopes()) : null));
+            addToken(parameters, authorization.getToken(OidcIdToken.class));
+            addToken(parameters, authorization.getRefreshToken());
+            addToken(parameters, authorization.getToken(OAuth2UserCode.class));
+            addToken(parameters, authorization.getToken(OAuth2DeviceCode.class));
+            return parameters;
+        }
+
+        private void addToken(List<SqlParameterValue> parameters, OAuth2Authorization.Token<? extends OAuth2Token> token) {
+            OAuth2Token value = token != null ? token.getToken() : null;
+            parameters.add(new SqlParameterValue(Types.VARCHAR, value != null ? value.getTokenValue() : null));
+            parameters.add(new SqlParameterValue(Types.TIMESTAMP, timestamp(value != null ? value.getIssuedAt() : null)));
+            parameters.add(new SqlParameterValue(Types.TIMESTAMP, timestamp(value != null ? value.getExpiresAt() : null)));
+            parameters.add(new SqlParameterValue(Types.BINARY, token != null ? codec.encode(token.getMetadata()) : null));
+        }
+
+        private static Timestamp timestamp(Instant instant) {
+            return instant != null ? Timestamp.from(instant) : null;
+        }
+
+        private static String delimited(Collection<String> values) {
+            return values == null || values.isEmpty() ? null : StringUtils.collectionToDelimitedString(values, ",");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.demo.token;
+
+import com.example.demo.admission.DeadlineExceededException;
+import com.example.demo.admission.RequestDeadline;
+import com.example.demo.service.RequestCoalescer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Authorization service that commits concurrent saves together
+ *
+ * Each save of the JDBC services is its own transaction, so at high token rates every
+ * request waits for its own WAL flush. Here saves arriving within a short window (or until
+ * the batch is full) run one after another in a single transaction on one connection, and
+ * each caller returns once that transaction has committed: the same durability, one flush
+ * per batch.
+ *
+ * If the batch transaction fails, its saves are retried one transaction each, so a failing
+ * save only fails its own caller. Code redemptions (their conditional write relies on the
+ * lookup made on the caller's thread) and saves inside a caller's transaction run directly.
+ * Lookups and removals are not batched.
+ *
+ * A caller with a {@link RequestDeadline} waits no longer than its remaining budget. The batch
+ * transaction runs under the earliest deadline of its callers, saves whose caller has already
+ * given up are left out, and the one-by-one retry runs each save under its own caller's deadline.
+ */
+public class GroupCommitOAuth2AuthorizationService implements OAuth2AuthorizationService, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitOAuth2AuthorizationService.class);
+
+    private final OAuth2AuthorizationService delegate;
+    private final TransactionOperations transactionOperations;
+    private final RequestCoalescer<PendingSave, RuntimeException> coalescer;
+    private final DistributionSummary batchSizes;
+
+    public GroupCommitOAuth2AuthorizationService(OAuth2AuthorizationService delegate,
+            TransactionOperations transactionOperations, Duration window, int maxBatchSize,
+            MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.transactionOperations = transactionOperations;
+        this.coalescer = new RequestCoalescer<>(this::saveBatch, window, maxBatchSize);
+        this.batchSizes = DistributionSummary.builder("oauth2.authorization.save.batch")
+                .description("Authorization saves committed per transaction")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        if (AuthorizationCodeRedemption.isRedemption(authorization)
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            delegate.save(authorization);
+            return;
+        }
+        // Ends a pending redemption as the delegate would on this thread
+        AuthorizationCodeRedemption.take(authorization);
+        RequestDeadline.checkpoint();
+        RequestDeadline deadline = RequestDeadline.current();
+        Future<RuntimeException> saved = coalescer.submit(new PendingSave(authorization, deadline));
+        RuntimeException failure;
+        try {
+            failure = deadline != null ? saved.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS) : saved.get();
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException(deadline.getEndpoint());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the authorization to be saved", e);
+        } catch (ExecutionException e) {
+            failure = e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        delegate.remove(authorization);
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        return delegate.findByToken(token, tokenType);
+    }
+
+    @Override
+    public void close() {
+        coalescer.close();
+    }
+
+    /**
+     * @return per save, null if it committed or the exception it failed with
+     */
+    private List<RuntimeException> saveBatch(List<PendingSave> saves) {
+        batchSizes.record(saves.size());
+        RuntimeException[] failures = new RuntimeException[saves.size()];
+        List<PendingSave> live = new ArrayList<>(saves.size());
+        RequestDeadline earliest = null;
+        for (int i = 0; i < saves.size(); i++) {
+            RequestDeadline deadline = saves.get(i).deadline();
+            if (deadline != null && deadline.isExpired()) {
+                // Its caller has stopped waiting and answered with a timeout
+                failures[i] = new DeadlineExceededException(deadline.getEndpoint());
+            } else {
+                live.add(saves.get(i));
+                earliest = RequestDeadline.earliest(earliest, deadline);
+            }
+        }
+        if (live.isEmpty()) {
+            return Arrays.asList(failures);
+        }
+        try {
+            RequestDeadline.runWithin(earliest, () -> transactionOperations.executeWithoutResult(
+                    status -> live.forEach(save -> delegate.save(save.authorization()))));
+            return Arrays.asList(failures);
+        } catch (RuntimeException e) {
+            if (live.size() == 1) {
+                // The batch was this one save: nothing to retry
+                for (int i = 0; i < failures.length; i++) {
+                    if (failures[i] == null) {
+                        failures[i] = e;
+                    }
+                }
+                return Arrays.asList(failures);
+            }
+            logger.debug("Batch of {} authorization saves failed, saving one by one: {}",
+                    live.size(), e.getMessage());
+        }
+        for (int i = 0; i < saves.size(); i++) {
+            if (failures[i] != null) {
+                continue;
+            }
+            PendingSave save = saves.get(i);
+            try {
+                RequestDeadline.runWithin(save.deadline(), () -> transactionOperations.executeWithoutResult(
+                        status -> delegate.save(save.authorization())));
+            } catch (RuntimeException e) {
+                failures[i] = e;
+            }
+        }
+        return Arrays.asList(failures);
+    }
+
+    /**
+     * A save and the deadline of the caller waiting for it, null if none
+     */
+    private record PendingSave(OAuth2Authorization authorization, RequestDeadline deadline) {
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.demo.token;
+
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sharded, bounded in-memory map from access token value to its authorization
+ *
+ * Each shard is an insertion-ordered map behind its own lock, so concurrent introspections
+ * rarely wait on each other, and drops its oldest entry once full. An entry lives until
+ * the token expires, capped by the maximum TTL, which bounds how long a missed
+ * invalidation could go unnoticed. A second index from authorization id to token lets a
+ * revocation, which only names the authorization, find the entry.
+ *
+ * Lookups race with invalidations: a reader may load an authorization from the database
+ * just before it is revoked and cache it just after. Callers therefore take
+ * {@link #generation()} before loading and pass it to {@link #put}, which refuses the
+ * entry if anything was invalidated in between.
+ */
+public class IntrospectionCache implements AuthorizationInvalidationListener {
+
+    private final Shard[] shards;
+    private final long maxTtlMillis;
+    private final Map<String, String> tokenByAuthorizationId = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile boolean available = true;
+
+    public IntrospectionCache(int shardCount, int maxEntries, Duration maxTtl) {
+        int count = 1;
+        while (count < shardCount) {
+            count <<= 1;
+        }
+        int perShard = Math.max(1, maxEntries / count);
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(perShard);
+        }
+        this.maxTtlMillis = maxTtl.toMillis();
+    }
+
+    /**
+     * @return the cached authorization for an access token, or null
+     */
+    public OAuth2Authorization get(String token) {
+        if (!available) {
+            return null;
+        }
+        OAuth2Authorization authorization = shard(token).get(token, System.currentTimeMillis());
+        (authorization != null ? hits : misses).increment();
+        return authorization;
+    }
+
+    /**
+     * Invalidation counter to read before loading what will be passed to {@link #put}
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Cache an authorization under its access token until {@code expiresAt} (capped by the max TTL)
+     *
+     * @param loadedAt {@link #generation()} taken before the authorization was loaded
+     */
+    public void put(String token, OAuth2Authorization authorization, Instant expiresAt, long loadedAt) {
+        long now = System.currentTimeMillis();
+        long expiry = Math.min(expiresAt != null ? expiresAt.toEpochMilli() : Long.MAX_VALUE, now + maxTtlMillis);
+        if (!available || expiry <= now) {
+            return;
+        }
+        String previous = tokenByAuthorizationId.put(authorization.getId(), token);
+        if (previous != null && !previous.equals(token)) {
+            shard(previous).remove(previous);
+        }
+        shard(token).put(token, new Entry(authorization, expiry));
+        if (generation.get() != loadedAt) {
+            // An invalidation ran while the caller was loading: it may have missed this entry
+            shard(token).remove(token);
+            tokenByAuthorizationId.remove(authorization.getId(), token);
+        }
+    }
+
+    /**
+     * Drop whatever is cached for an authorization (revoked, refreshed or removed)
+     */
+    public void evictAuthorization(String authorizationId) {
+        generation.incrementAndGet();
+        String token = tokenByAuthorizationId.remove(authorizationId);
+        if (token != null) {
+            shard(token).remove(token);
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+        tokenByAuthorizationId.clear();
+    }
+
+    /**
+     * Stop or resume serving entries, e.g. while invalidations cannot be received.
+     * Resuming starts from an empty cache since invalidations may have been missed.
+     */
+    public void setAvailable(boolean available) {
+        this.available = available;
+        clear();
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Override
+    public void authorizationInvalidated(String authorizationId, String revokedJti) {
+        evictAuthorization(authorizationId);
+    }
+
+    @Override
+    public void invalidationsSuspended() {
+        setAvailable(false);
+    }
+
+    @Override
+    public void invalidationsResumed() {
+        setAvailable(true);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Shard shard(String token) {
+        int hash = token.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (shards.length - 1)];
+    }
+
+    private record Entry(OAuth2Authorization authorization, long expiresAtMillis) {
+    }
+
+    /**
+     * One lock-guarded, bounded partition of the cache
+     */
+    private final class Shard {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Entry> entries;
+
+        Shard(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() <= capacity) {
+                        return false;
+                    }
+                    tokenByAuthorizationId.remove(eldest.getValue().authorization().getId(), eldest.getKey());
+                    return true;
+                }
+            };
+        }
+
+        OAuth2Authorization get(String token, long now) {
+            lock.lock();
+            try {
+                Entry entry = entries.get(token);
+                if (entry == null) {
+                    return null;
+                }
+                if (entry.expiresAtMillis() <= now) {
+                    entries.remove(token);
+                    tokenByAuthorizationId.remove(entry.authorization().getId(), token);
+                    return null;
+                }
+                return entry.authorization();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(String token, Entry entry) {
+            lock.lock();
+            try {
+                entries.put(token, entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(String token) {
+            lock.lock();
+            try {
+                entries.remove(token);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
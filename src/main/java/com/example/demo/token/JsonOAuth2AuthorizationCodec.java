@@ -0,0 +1,48 @@
+package com.example.demo.token;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.security.jackson2.SecurityJackson2Modules;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.jackson2.OAuth2AuthorizationServerJackson2Module;
+
+import java.util.Map;
+
+/**
+ * Spring Authorization Server's own column format: polymorphic Jackson JSON with @class type
+ * information, restricted to the Spring Security allowlist
+ *
+ * Configured exactly like JdbcOAuth2AuthorizationService's default mappers, so it reads every
+ * row the default service wrote.
+ */
+public class JsonOAuth2AuthorizationCodec implements OAuth2AuthorizationCodec {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public JsonOAuth2AuthorizationCodec() {
+        ClassLoader classLoader = JdbcOAuth2AuthorizationService.class.getClassLoader();
+        objectMapper.registerModules(SecurityJackson2Modules.getModules(classLoader));
+        objectMapper.registerModule(new OAuth2AuthorizationServerJackson2Module());
+    }
+
+    @Override
+    public byte[] encode(Map<String, Object> value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> decode(byte[] data) {
+        try {
+            return objectMapper.readValue(data, MAP_TYPE);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
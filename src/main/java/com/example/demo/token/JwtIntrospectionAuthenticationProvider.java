@@ -0,0 +1,155 @@
+package com.example.demo.token;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.core.converter.ClaimConversionService;
+import org.springframework.security.oauth2.core.oidc.IdTokenClaimNames;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenIntrospection;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2TokenIntrospectionAuthenticationToken;
+
+import java.net.URL;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers /oauth2/introspect for self-contained access tokens without touching the database
+ *
+ * Runs ahead of Spring Authorization Server's introspection provider. A JWT access token
+ * whose signature verifies against the in-memory JWK set, whose time window holds and whose
+ * jti is definitely not in the {@link RevokedTokenFilter} is active, with the claims the
+ * standard provider would return from the stored authorization. Everything else returns
+ * null, and the standard provider looks the token up as before: bloom filter hits (revoked
+ * or false positive), reference tokens, ID tokens, JWTs signed by another node's key, and
+ * any request while the revoked token filter is not in sync.
+ */
+public class JwtIntrospectionAuthenticationProvider implements AuthenticationProvider {
+
+    private static final TypeDescriptor OBJECT_TYPE = TypeDescriptor.valueOf(Object.class);
+    private static final TypeDescriptor STRING_LIST_TYPE =
+            TypeDescriptor.collection(List.class, TypeDescriptor.valueOf(String.class));
+
+    private final JwtDecoder jwtDecoder;
+    private final RevokedTokenFilter revokedTokens;
+    private final Counter active;
+    private final Counter inactive;
+    private final Counter fallback;
+
+    public JwtIntrospectionAuthenticationProvider(
+            JwtDecoder jwtDecoder, RevokedTokenFilter revokedTokens, MeterRegistry meterRegistry) {
+        this.jwtDecoder = jwtDecoder;
+        this.revokedTokens = revokedTokens;
+        this.active = counter(meterRegistry, "active");
+        this.inactive = counter(meterRegistry, "inactive");
+        this.fallback = counter(meterRegistry, "fallback");
+    }
+
+    /**
+     * Compact JWS serialization: three dot-separated parts (reference tokens have no dots)
+     */
+    static boolean isJwt(String token) {
+        int first = token.indexOf('.');
+        if (first <= 0) {
+            return false;
+        }
+        int second = token.indexOf('.', first + 1);
+        return second > first + 1 && second < token.length() - 1 && token.indexOf('.', second + 1) < 0;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        OAuth2TokenIntrospectionAuthenticationToken request = (OAuth2TokenIntrospectionAuthenticationToken) authentication;
+        // Unauthenticated clients get the standard provider's invalid_client error
+        if (!(request.getPrincipal() instanceof OAuth2ClientAuthenticationToken client) || !client.isAuthenticated()) {
+            return null;
+        }
+        String token = request.getToken();
+        if (!isJwt(token) || !revokedTokens.isAvailable()) {
+            return fallback();
+        }
+
+        Jwt jwt;
+        try {
+            jwt = jwtDecoder.decode(token);
+        } catch (JwtValidationException e) {
+            // Our signature, outside its time window
+            inactive.increment();
+            return new OAuth2TokenIntrospectionAuthenticationToken(token, client, OAuth2TokenIntrospection.builder().build());
+        } catch (JwtException e) {
+            return fallback();
+        }
+        if (jwt.getId() == null || jwt.hasClaim(IdTokenClaimNames.AZP) || jwt.getAudience() == null
+                || jwt.getAudience().isEmpty() || revokedTokens.mightBeRevoked(jwt.getId())) {
+            return fallback();
+        }
+        // The decoder allows clock skew, the stored authorization does not
+        Instant now = Instant.now();
+        if ((jwt.getExpiresAt() != null && !now.isBefore(jwt.getExpiresAt()))
+                || (jwt.getNotBefore() != null && now.isBefore(jwt.getNotBefore()))) {
+            inactive.increment();
+            return new OAuth2TokenIntrospectionAuthenticationToken(token, client, OAuth2TokenIntrospection.builder().build());
+        }
+
+        active.increment();
+        return new OAuth2TokenIntrospectionAuthenticationToken(token, client, activeTokenClaims(jwt));
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return OAuth2TokenIntrospectionAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    /**
+     * Same response as the standard provider builds from the stored token claims
+     */
+    private static OAuth2TokenIntrospection activeTokenClaims(Jwt jwt) {
+        Map<String, Object> claims = new HashMap<>(jwt.getClaims());
+        Object issuer = claims.get(JwtClaimNames.ISS);
+        if (issuer != null && !(issuer instanceof URL)) {
+            URL url = ClaimConversionService.getSharedInstance().convert(issuer, URL.class);
+            if (url != null) {
+                claims.put(JwtClaimNames.ISS, url);
+            }
+        }
+        Object scope = claims.get(OAuth2TokenIntrospectionClaimNames.SCOPE);
+        if (scope != null && !(scope instanceof List)) {
+            claims.put(OAuth2TokenIntrospectionClaimNames.SCOPE,
+                    ClaimConversionService.getSharedInstance().convert(scope, OBJECT_TYPE, STRING_LIST_TYPE));
+        }
+        OAuth2TokenIntrospection.Builder introspection = OAuth2TokenIntrospection.withClaims(claims)
+                .active(true)
+                // The access token audience is the client it was issued to
+                .clientId(jwt.getAudience().get(0))
+                .tokenType(OAuth2AccessToken.TokenType.BEARER.getValue());
+        if (jwt.getIssuedAt() != null) {
+            introspection.issuedAt(jwt.getIssuedAt());
+        }
+        if (jwt.getExpiresAt() != null) {
+            introspection.expiresAt(jwt.getExpiresAt());
+        }
+        return introspection.build();
+    }
+
+    private Authentication fallback() {
+        fallback.increment();
+        return null;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("oauth2.introspection.jwt")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
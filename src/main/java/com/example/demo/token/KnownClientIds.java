@@ -0,0 +1,73 @@
+package com.example.demo.token;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Node-local set of every registered client_id
+ *
+ * Loaded on start and periodically (clients registered through another node are known
+ * here after the next reload), and updated at once for clients saved on this node. Exact,
+ * so a registered client is never turned away and an unknown one never reaches the
+ * database. Until the first load succeeds, every client_id is let through.
+ *
+ * Reloads and local adds are serialized: an add either lands in the set a reload swaps
+ * in, or its row was committed before that reload's query started.
+ */
+public class KnownClientIds {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnownClientIds.class);
+
+    static final String SELECT_SQL = "SELECT client_id FROM oauth2_registered_client";
+
+    private final JdbcOperations jdbcOperations;
+    private volatile Set<String> clientIds;
+
+    public KnownClientIds(JdbcOperations jdbcOperations) {
+        this.jdbcOperations = jdbcOperations;
+    }
+
+    /**
+     * False only if no client with this client_id is registered
+     */
+    public boolean mightExist(String clientId) {
+        Set<String> known = clientIds;
+        return known == null || known.contains(clientId);
+    }
+
+    public synchronized void add(String clientId) {
+        Set<String> known = clientIds;
+        if (known != null && !known.contains(clientId)) {
+            Set<String> next = new HashSet<>(known);
+            next.add(clientId);
+            clientIds = Set.copyOf(next);
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "#{@clientIdFilterProperties.refreshInterval.toMillis()}",
+            fixedDelayString = "#{@clientIdFilterProperties.refreshInterval.toMillis()}")
+    public synchronized void reload() {
+        Set<String> loaded = new HashSet<>();
+        jdbcOperations.query(SELECT_SQL, rs -> {
+            loaded.add(rs.getString(1));
+        });
+        if (clientIds == null) {
+            logger.info("Loaded {} registered client_ids", loaded.size());
+        }
+        clientIds = Set.copyOf(loaded);
+    }
+
+    /**
+     * Number of known client_ids, -1 before the first load
+     */
+    public int size() {
+        Set<String> known = clientIds;
+        return known != null ? known.size() : -1;
+    }
+}
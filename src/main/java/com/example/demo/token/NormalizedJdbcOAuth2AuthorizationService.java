@@ -0,0 +1,346 @@
+package com.example.demo.token;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.StringUtils;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * JDBC authorization service over a normalized schema: a slim oauth2_authorization_header row
+ * plus one row per issued token in a table per token kind (see source/db/DDL.sql)
+ *
+ * In the single-row layout every save rewrites the whole ~30 column row, including the TOASTed
+ * values and metadata of tokens that did not change, as a new MVCC tuple. Here each table is
+ * upserted with ON CONFLICT ... DO UPDATE ... WHERE ... IS DISTINCT FROM, so a row whose
+ * content is unchanged is not rewritten: issuing an access token writes the header and the
+ * access token row, a refresh writes only the access and refresh token rows.
+ *
+ * A save is a single statement (data-modifying CTEs), so it is atomic and costs one round
+ * trip and one commit. Rows are read back with the same column names as the single-row
+ * table, so mapping is shared with {@link CodecJdbcOAuth2AuthorizationService}.
+ *
+ * Redeeming an authorization code is keyed on inserting the access token row: the other
+ * writes of the redemption (code metadata, refresh and ID token rows) only happen if that
+ * insert did, so a concurrent redemption of the same code loses atomically.
+ */
+public class NormalizedJdbcOAuth2AuthorizationService implements OAuth2AuthorizationService {
+
+    private static final String HEADER_TABLE = "oauth2_authorization_header";
+
+    private static final String UPSERT_HEADER_SQL =
+            "INSERT INTO " + HEADER_TABLE + " (id, registered_client_id, principal_name, "
+            + "authorization_grant_type, authorized_scopes, attributes, state) VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (id) DO UPDATE SET registered_client_id = EXCLUDED.registered_client_id, "
+            + "principal_name = EXCLUDED.principal_name, authorization_grant_type = EXCLUDED.authorization_grant_type, "
+            + "authorized_scopes = EXCLUDED.authorized_scopes, attributes = EXCLUDED.attributes, state = EXCLUDED.state "
+            + "WHERE (" + HEADER_TABLE + ".registered_client_id, " + HEADER_TABLE + ".principal_name, "
+            + HEADER_TABLE + ".authorization_grant_type, " + HEADER_TABLE + ".authorized_scopes, "
+            + HEADER_TABLE + ".attributes, " + HEADER_TABLE + ".state) IS DISTINCT FROM "
+            + "(EXCLUDED.registered_client_id, EXCLUDED.principal_name, EXCLUDED.authorization_grant_type, "
+            + "EXCLUDED.authorized_scopes, EXCLUDED.attributes, EXCLUDED.state)";
+
+    private static final String SELECT_SQL;
+    private static final String FIND_ANY_TOKEN_SQL;
+
+    static {
+        StringBuilder select = new StringBuilder("SELECT h.id, h.registered_client_id, h.principal_name, "
+                + "h.authorization_grant_type, h.authorized_scopes, h.attributes, h.state");
+        StringBuilder joins = new StringBuilder(" FROM " + HEADER_TABLE + " h");
+        StringJoiner anyToken = new StringJoiner(" UNION ALL ",
+                "h.id = (SELECT id FROM " + HEADER_TABLE + " WHERE state = ? UNION ALL ", " LIMIT 1)");
+        for (TokenTable table : TokenTable.values()) {
+            String alias = table.alias;
+            String prefix = table.columnPrefix;
+            select.append(", ").append(alias).append(".token_value AS ").append(prefix).append("_value, ")
+                    .append(alias).append(".issued_at AS ").append(prefix).append("_issued_at, ")
+                    .append(alias).append(".expires_at AS ").append(prefix).append("_expires_at, ")
+                    .append(alias).append(".metadata AS ").append(prefix).append("_metadata");
+            if (table == TokenTable.ACCESS_TOKEN) {
+                select.append(", a.token_type AS access_token_type, a.scopes AS access_token_scopes");
+            }
+            joins.append(" LEFT JOIN ").append(table.name).append(' ').append(alias)
+                    .append(" ON ").append(alias).append(".authorization_id = h.id");
+            anyToken.add("SELECT authorization_id FROM " + table.name + " WHERE token_value = ?");
+        }
+        SELECT_SQL = select.append(joins).append(" WHERE ").toString();
+        FIND_ANY_TOKEN_SQL = anyToken.toString();
+    }
+
+    private final JdbcOperations jdbcOperations;
+    private final CodecJdbcOAuth2AuthorizationService.CodecAuthorizationRowMapper rowMapper;
+    private final OAuth2AuthorizationCodec codec;
+
+    /**
+     * Save statement per combination of present token kinds, built on first use
+     */
+    private final AtomicReferenceArray<String> saveStatements =
+            new AtomicReferenceArray<>(1 << TokenTable.values().length);
+
+    /**
+     * Redemption statement per combination of issued ID and refresh tokens, built on first use
+     */
+    private final AtomicReferenceArray<String> redeemStatements = new AtomicReferenceArray<>(4);
+
+    public NormalizedJdbcOAuth2AuthorizationService(
+            JdbcOperations jdbcOperations,
+            RegisteredClientRepository registeredClientRepository,
+            OAuth2AuthorizationCodec codec) {
+        this.jdbcOperations = jdbcOperations;
+        this.rowMapper = new CodecJdbcOAuth2AuthorizationService.CodecAuthorizationRowMapper(
+                registeredClientRepository, codec);
+        this.codec = codec;
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        if (AuthorizationCodeRedemption.take(authorization)) {
+            redeem(authorization);
+            return;
+        }
+        List<SqlParameterValue> parameters = new ArrayList<>(24);
+        int present = 0;
+        for (TokenTable table : TokenTable.values()) {
+            OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(table.tokenClass);
+            if (token != null) {
+                present |= 1 << table.ordinal();
+                parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getId()));
+                addTokenParameters(parameters, table, token);
+            } else {
+                // Deleting a row that was never written (the usual case) writes no WAL
+                parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getId()));
+            }
+        }
+        addHeaderParameters(parameters, authorization);
+        jdbcOperations.update(saveStatement(present), parameters.toArray());
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        // Token rows go with the header (ON DELETE CASCADE)
+        jdbcOperations.update("DELETE FROM " + HEADER_TABLE + " WHERE id = ?", authorization.getId());
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return findBy("h.id = ?", id);
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        if (AuthorizationCodeRedemption.CODE_TOKEN_TYPE.equals(tokenType)) {
+            OAuth2Authorization authorization = findBy(
+                    "h.id = (SELECT authorization_id FROM " + TokenTable.AUTHORIZATION_CODE.name + " WHERE token_value = ?)", token);
+            AuthorizationCodeRedemption.codeLookedUp(authorization);
+            return authorization;
+        }
+        if (tokenType == null) {
+            Object[] parameters = new Object[TokenTable.values().length + 1];
+            Arrays.fill(parameters, token);
+            return findBy(FIND_ANY_TOKEN_SQL, parameters);
+        }
+        if (OAuth2ParameterNames.STATE.equals(tokenType.getValue())) {
+            return findBy("h.state = ?", token);
+        }
+        for (TokenTable table : TokenTable.values()) {
+            if (table.tokenType.equals(tokenType.getValue())) {
+                return findBy("h.id = (SELECT authorization_id FROM " + table.name + " WHERE token_value = ?)", token);
+            }
+        }
+        return null;
+    }
+
+    private OAuth2Authorization findBy(String filter, Object... parameters) {
+        List<OAuth2Authorization> result = jdbcOperations.query(SELECT_SQL + filter, rowMapper, parameters);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * The header is left alone: redeeming a code adds tokens and only changes the code's metadata
+     */
+    private void redeem(OAuth2Authorization authorization) {
+        OAuth2Authorization.Token<OidcIdToken> idToken = authorization.getToken(OidcIdToken.class);
+        OAuth2Authorization.Token<OAuth2RefreshToken> refreshToken = authorization.getRefreshToken();
+        List<SqlParameterValue> parameters = new ArrayList<>(16);
+        parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getId()));
+        addTokenParameters(parameters, TokenTable.ACCESS_TOKEN, authorization.getAccessToken());
+        parameters.add(new SqlParameterValue(Types.BINARY,
+                codec.encode(authorization.getToken(OAuth2AuthorizationCode.class).getMetadata())));
+        if (idToken != null) {
+            addTokenParameters(parameters, TokenTable.OIDC_ID_TOKEN, idToken);
+        }
+        if (refreshToken != null) {
+            addTokenParameters(parameters, TokenTable.REFRESH_TOKEN, refreshToken);
+        }
+        Long redeemed = jdbcOperations.queryForObject(
+                redeemStatement(idToken != null, refreshToken != null), Long.class, parameters.toArray());
+        if (redeemed == null || redeemed == 0) {
+            throw AuthorizationCodeRedemption.replayed(this, authorization.getId());
+        }
+    }
+
+    /**
+     * Everything after the access token insert reads its RETURNING rows, which are empty when
+     * another redemption already inserted one
+     */
+    private String redeemStatement(boolean idToken, boolean refreshToken) {
+        int index = (idToken ? 1 : 0) | (refreshToken ? 2 : 0);
+        String sql = redeemStatements.get(index);
+        if (sql == null) {
+            TokenTable access = TokenTable.ACCESS_TOKEN;
+            StringJoiner with = new StringJoiner(", ", "WITH ", " ");
+            with.add(access.alias + " AS (INSERT INTO " + access.name + " (authorization_id, " + access.columns
+                    + ") VALUES (?, " + access.placeholders + ") ON CONFLICT (authorization_id) DO NOTHING "
+                    + "RETURNING authorization_id)");
+            with.add(TokenTable.AUTHORIZATION_CODE.alias + " AS (UPDATE " + TokenTable.AUTHORIZATION_CODE.name
+                    + " SET metadata = ? WHERE authorization_id = (SELECT authorization_id FROM " + access.alias + "))");
+            if (idToken) {
+                with.add(TokenTable.OIDC_ID_TOKEN.insertIfRedeemedSql());
+            }
+            if (refreshToken) {
+                with.add(TokenTable.REFRESH_TOKEN.insertIfRedeemedSql());
+            }
+            sql = with + "SELECT count(*) FROM " + access.alias;
+            redeemStatements.set(index, sql);
+        }
+        return sql;
+    }
+
+    /**
+     * WITH token upserts and deletes, then the header upsert as the main statement.
+     * Foreign keys are checked at the end of the statement, after the header row exists.
+     */
+    private String saveStatement(int present) {
+        String sql = saveStatements.get(present);
+        if (sql == null) {
+            StringJoiner with = new StringJoiner(", ", "WITH ", " ");
+            for (TokenTable table : TokenTable.values()) {
+                boolean isPresent = (present & (1 << table.ordinal())) != 0;
+                with.add(table.alias + " AS (" + (isPresent ? table.upsertSql : table.deleteSql) + ")");
+            }
+            sql = with + UPSERT_HEADER_SQL;
+            saveStatements.set(present, sql);
+        }
+        return sql;
+    }
+
+    private void addHeaderParameters(List<SqlParameterValue> parameters, OAuth2Authorization authorization) {
+        parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getId()));
+        parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getRegisteredClientId()));
+        parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getPrincipalName()));
+        parameters.add(new SqlParameterValue(Types.VARCHAR, authorization.getAuthorizationGrantType().getValue()));
+        parameters.add(new SqlParameterValue(Types.VARCHAR, delimited(authorization.getAuthorizedScopes())));
+        parameters.add(new SqlParameterValue(Types.BINARY, codec.encode(authorization.getAttributes())));
+        String state = authorization.getAttribute(OAuth2ParameterNames.STATE);
+        parameters.add(new SqlParameterValue(Types.VARCHAR, StringUtils.hasText(state) ? state : null));
+    }
+
+    private void addTokenParameters(List<SqlParameterValue> parameters,
+            TokenTable table, OAuth2Authorization.Token<? extends OAuth2Token> token) {
+        OAuth2Token value = token.getToken();
+        parameters.add(new SqlParameterValue(Types.VARCHAR, value.getTokenValue()));
+        parameters.add(new SqlParameterValue(Types.TIMESTAMP, timestamp(value.getIssuedAt())));
+        parameters.add(new SqlParameterValue(Types.TIMESTAMP, timestamp(value.getExpiresAt())));
+        parameters.add(new SqlParameterValue(Types.BINARY, codec.encode(token.getMetadata())));
+        if (table == TokenTable.ACCESS_TOKEN) {
+            OAuth2AccessToken accessToken = (OAuth2AccessToken) value;
+            parameters.add(new SqlParameterValue(Types.VARCHAR, accessToken.getTokenType().getValue()));
+            parameters.add(new SqlParameterValue(Types.VARCHAR, delimited(accessToken.getScopes())));
+        }
+    }
+
+    private static Timestamp timestamp(Instant instant) {
+        return instant != null ? Timestamp.from(instant) : null;
+    }
+
+    private static String delimited(Collection<String> values) {
+        return values == null || values.isEmpty() ? null : StringUtils.collectionToDelimitedString(values, ",");
+    }
+
+    /**
+     * One table per token kind; columnPrefix matches the single-row table's column names
+     */
+    private enum TokenTable {
+
+        AUTHORIZATION_CODE("oauth2_authorization_code", "c", "authorization_code",
+                OAuth2ParameterNames.CODE, OAuth2AuthorizationCode.class),
+        ACCESS_TOKEN("oauth2_access_token", "a", "access_token",
+                OAuth2ParameterNames.ACCESS_TOKEN, OAuth2AccessToken.class, "token_type", "scopes"),
+        OIDC_ID_TOKEN("oauth2_oidc_id_token", "i", "oidc_id_token",
+                OidcParameterNames.ID_TOKEN, OidcIdToken.class),
+        REFRESH_TOKEN("oauth2_refresh_token", "r", "refresh_token",
+                OAuth2ParameterNames.REFRESH_TOKEN, OAuth2RefreshToken.class),
+        USER_CODE("oauth2_user_code", "u", "user_code",
+                OAuth2ParameterNames.USER_CODE, OAuth2UserCode.class),
+        DEVICE_CODE("oauth2_device_code", "d", "device_code",
+                OAuth2ParameterNames.DEVICE_CODE, OAuth2DeviceCode.class);
+
+        private final String name;
+        private final String alias;
+        private final String columnPrefix;
+        private final String tokenType;
+        private final Class<? extends OAuth2Token> tokenClass;
+        private final String columns;
+        private final String placeholders;
+        private final String upsertSql;
+        private final String deleteSql;
+
+        TokenTable(String name, String alias, String columnPrefix, String tokenType,
+                Class<? extends OAuth2Token> tokenClass, String... extraColumns) {
+            this.name = name;
+            this.alias = alias;
+            this.columnPrefix = columnPrefix;
+            this.tokenType = tokenType;
+            this.tokenClass = tokenClass;
+            List<String> columns = new ArrayList<>(List.of("token_value", "issued_at", "expires_at", "metadata"));
+            columns.addAll(List.of(extraColumns));
+            StringJoiner names = new StringJoiner(", ");
+            StringJoiner placeholders = new StringJoiner(", ");
+            StringJoiner assignments = new StringJoiner(", ");
+            StringJoiner current = new StringJoiner(", ", "(", ")");
+            StringJoiner excluded = new StringJoiner(", ", "(", ")");
+            for (String column : columns) {
+                names.add(column);
+                placeholders.add("?");
+                assignments.add(column + " = EXCLUDED." + column);
+                current.add(name + "." + column);
+                excluded.add("EXCLUDED." + column);
+            }
+            this.columns = names.toString();
+            this.placeholders = placeholders.toString();
+            this.upsertSql = "INSERT INTO " + name + " (authorization_id, " + names + ") VALUES (?, " + placeholders
+                    + ") ON CONFLICT (authorization_id) DO UPDATE SET " + assignments
+                    + " WHERE " + current + " IS DISTINCT FROM " + excluded;
+            this.deleteSql = "DELETE FROM " + name + " WHERE authorization_id = ?";
+        }
+
+        /**
+         * CTE inserting this token only for the authorization the access token CTE returned
+         */
+        private String insertIfRedeemedSql() {
+            return alias + " AS (INSERT INTO " + name + " (authorization_id, " + columns + ") SELECT authorization_id, "
+                    + placeholders + " FROM " + ACCESS_TOKEN.alias + ")";
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.token;
+
+import java.util.Map;
+
+/**
+ * Encodes the map-valued columns of oauth2_authorization (attributes and the *_metadata columns)
+ *
+ * Implementations must be thread-safe: a single instance is shared by all reads and writes.
+ */
+public interface OAuth2AuthorizationCodec {
+
+    byte[] encode(Map<String, Object> value);
+
+    /**
+     * @throws IllegalArgumentException if the data cannot be decoded
+     */
+    Map<String, Object> decode(byte[] data);
+}
@@ -0,0 +1,82 @@
+package com.example.demo.token;
+
+import com.example.demo.util.SecureIdGenerator;
+import org.springframework.security.oauth2.core.ClaimAccessor;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenClaimsSet;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Opaque access tokens for clients whose access-token-format is "reference"
+ *
+ * Same claims as Spring Authorization Server's OAuth2AccessTokenGenerator (they are stored
+ * with the authorization and returned by introspection), but the value is 256 random bits
+ * from {@link SecureIdGenerator} encoded in 43 characters instead of 128, which keeps the
+ * hash index and the introspection cache keys small. Nothing is signed: issuing one costs
+ * an array copy instead of an RSA signature.
+ */
+public class ReferenceAccessTokenGenerator implements OAuth2TokenGenerator<OAuth2AccessToken> {
+
+    /** Random bytes per reference token */
+    static final int TOKEN_BYTES = 32;
+
+    @Override
+    public OAuth2AccessToken generate(OAuth2TokenContext context) {
+        RegisteredClient registeredClient = context.getRegisteredClient();
+        if (!OAuth2TokenType.ACCESS_TOKEN.equals(context.getTokenType())
+                || !OAuth2TokenFormat.REFERENCE.equals(registeredClient.getTokenSettings().getAccessTokenFormat())) {
+            return null;
+        }
+
+        Instant issuedAt = Instant.now();
+        Instant expiresAt = issuedAt.plus(registeredClient.getTokenSettings().getAccessTokenTimeToLive());
+        OAuth2TokenClaimsSet.Builder claims = OAuth2TokenClaimsSet.builder();
+        if (context.getAuthorizationServerContext() != null
+                && StringUtils.hasText(context.getAuthorizationServerContext().getIssuer())) {
+            claims.issuer(context.getAuthorizationServerContext().getIssuer());
+        }
+        claims.subject(context.getPrincipal().getName())
+                .audience(List.of(registeredClient.getClientId()))
+                .issuedAt(issuedAt)
+                .expiresAt(expiresAt)
+                .notBefore(issuedAt)
+                .id(SecureIdGenerator.newId());
+        if (!CollectionUtils.isEmpty(context.getAuthorizedScopes())) {
+            claims.claim("scope", context.getAuthorizedScopes());
+        }
+        OAuth2TokenClaimsSet claimsSet = claims.build();
+
+        return new ReferenceAccessToken(SecureIdGenerator.newId(TOKEN_BYTES), issuedAt, expiresAt,
+                context.getAuthorizedScopes(), claimsSet.getClaims());
+    }
+
+    /**
+     * Access token carrying its claims, so the token endpoint stores them as token metadata
+     */
+    private static final class ReferenceAccessToken extends OAuth2AccessToken implements ClaimAccessor {
+
+        private final Map<String, Object> claims;
+
+        ReferenceAccessToken(
+                String tokenValue, Instant issuedAt, Instant expiresAt, Set<String> scopes, Map<String, Object> claims) {
+            super(TokenType.BEARER, tokenValue, issuedAt, expiresAt, scopes);
+            this.claims = claims;
+        }
+
+        @Override
+        public Map<String, Object> getClaims() {
+            return claims;
+        }
+    }
+}
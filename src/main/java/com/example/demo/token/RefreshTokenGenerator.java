@@ -0,0 +1,41 @@
+package com.example.demo.token;
+
+import com.example.demo.util.SecureIdGenerator;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+
+import java.time.Instant;
+
+/**
+ * Refresh tokens with 256 random bits from {@link SecureIdGenerator}
+ *
+ * Same rules as Spring Authorization Server's OAuth2RefreshTokenGenerator: none for public
+ * clients of the authorization code grant, lifetime from the client's token settings.
+ */
+public class RefreshTokenGenerator implements OAuth2TokenGenerator<OAuth2RefreshToken> {
+
+    /** Random bytes per refresh token */
+    static final int TOKEN_BYTES = 32;
+
+    @Override
+    public OAuth2RefreshToken generate(OAuth2TokenContext context) {
+        if (!OAuth2TokenType.REFRESH_TOKEN.equals(context.getTokenType()) || isPublicClient(context)) {
+            return null;
+        }
+        Instant issuedAt = Instant.now();
+        Instant expiresAt = issuedAt.plus(context.getRegisteredClient().getTokenSettings().getRefreshTokenTimeToLive());
+        return new OAuth2RefreshToken(SecureIdGenerator.newId(TOKEN_BYTES), issuedAt, expiresAt);
+    }
+
+    private static boolean isPublicClient(OAuth2TokenContext context) {
+        return AuthorizationGrantType.AUTHORIZATION_CODE.equals(context.getAuthorizationGrantType())
+                && context.getAuthorizationGrant() != null
+                && context.getAuthorizationGrant().getPrincipal() instanceof OAuth2ClientAuthenticationToken client
+                && ClientAuthenticationMethod.NONE.equals(client.getClientAuthenticationMethod());
+    }
+}
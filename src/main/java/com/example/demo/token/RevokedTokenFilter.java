@@ -0,0 +1,135 @@
+package com.example.demo.token;
+
+import com.example.demo.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Node-local bloom filter of revoked self-contained access tokens (by jti)
+ *
+ * A JWT that verifies and is not expired is active unless it was revoked; this filter
+ * answers "definitely not revoked" from memory. Revocations are stored in
+ * oauth2_revoked_token until the token would have expired anyway. Each node rebuilds its
+ * filter from that table on start, after missing invalidations and periodically (which
+ * also drops expired entries, since a bloom filter cannot forget), and adds revocations
+ * from other nodes as they are announced.
+ *
+ * A rebuild loads into a new filter while concurrent adds go to both, then swaps it in.
+ * An add that misses the new filter saw no rebuild in progress; its row was committed
+ * before the rebuild query started, so it gets loaded.
+ */
+public class RevokedTokenFilter implements AuthorizationInvalidationListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevokedTokenFilter.class);
+
+    private static final String INSERT_SQL = """
+            INSERT INTO poc_spring_authorization_server.oauth2_revoked_token (jti, expires_at)
+            VALUES (?, ?)
+            ON CONFLICT (jti) DO NOTHING
+            """;
+
+    private static final String SELECT_ACTIVE_SQL = """
+            SELECT jti FROM poc_spring_authorization_server.oauth2_revoked_token
+            WHERE expires_at > ?
+            """;
+
+    private static final String DELETE_EXPIRED_SQL = """
+            DELETE FROM poc_spring_authorization_server.oauth2_revoked_token
+            WHERE expires_at <= ?
+            """;
+
+    private final JdbcOperations jdbcOperations;
+    private final int expectedEntries;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building;
+    private volatile boolean available;
+
+    public RevokedTokenFilter(JdbcOperations jdbcOperations, int expectedEntries, double falsePositiveRate) {
+        this.jdbcOperations = jdbcOperations;
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedEntries, falsePositiveRate);
+    }
+
+    /**
+     * False only if the token was definitely not revoked; meaningless while unavailable
+     */
+    public boolean mightBeRevoked(String jti) {
+        return filter.mightContain(jti);
+    }
+
+    /**
+     * Whether the filter is complete: loaded and receiving revocations from other nodes
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Record a revocation made on this node
+     */
+    public void revoke(String jti, Instant expiresAt) {
+        jdbcOperations.update(INSERT_SQL, jti, Timestamp.from(expiresAt != null ? expiresAt : Instant.now()));
+        add(jti);
+    }
+
+    /**
+     * Reload from the revocation table and drop expired rows
+     */
+    @Scheduled(
+            initialDelayString = "#{@introspectionCacheProperties.revokedRebuildInterval.toMillis()}",
+            fixedDelayString = "#{@introspectionCacheProperties.revokedRebuildInterval.toMillis()}")
+    public synchronized void rebuild() {
+        BloomFilter next = new BloomFilter(expectedEntries, falsePositiveRate);
+        building = next;
+        try {
+            Timestamp now = Timestamp.from(Instant.now());
+            jdbcOperations.query(SELECT_ACTIVE_SQL, rs -> {
+                next.add(rs.getString(1));
+            }, now);
+            filter = next;
+            int deleted = jdbcOperations.update(DELETE_EXPIRED_SQL, now);
+            logger.debug("Revoked token filter rebuilt, {} expired revocations deleted", deleted);
+        } finally {
+            building = null;
+        }
+    }
+
+    @Override
+    public void authorizationInvalidated(String authorizationId, String revokedJti) {
+        if (revokedJti != null) {
+            add(revokedJti);
+        }
+    }
+
+    @Override
+    public void invalidationsSuspended() {
+        available = false;
+    }
+
+    @Override
+    public void invalidationsResumed() {
+        try {
+            rebuild();
+            available = true;
+        } catch (RuntimeException e) {
+            logger.warn("Could not load revoked tokens, local JWT introspection stays disabled: {}", e.getMessage());
+        }
+    }
+
+    private void add(String jti) {
+        // Read building first: if it is null here, the row was committed before any later rebuild query
+        BloomFilter next = building;
+        filter.add(jti);
+        if (next != null) {
+            next.add(jti);
+        }
+    }
+}
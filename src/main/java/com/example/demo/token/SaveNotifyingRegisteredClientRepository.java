@@ -0,0 +1,40 @@
+package com.example.demo.token;
+
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.util.function.Consumer;
+
+/**
+ * Tells a listener about every client saved through this node, after the save
+ *
+ * Lets state derived from client registrations (such as pre-rendered pages) be dropped
+ * as soon as the registration changes instead of when it expires.
+ */
+public class SaveNotifyingRegisteredClientRepository implements RegisteredClientRepository {
+
+    private final RegisteredClientRepository delegate;
+    private final Consumer<RegisteredClient> listener;
+
+    public SaveNotifyingRegisteredClientRepository(
+            RegisteredClientRepository delegate, Consumer<RegisteredClient> listener) {
+        this.delegate = delegate;
+        this.listener = listener;
+    }
+
+    @Override
+    public void save(RegisteredClient registeredClient) {
+        delegate.save(registeredClient);
+        listener.accept(registeredClient);
+    }
+
+    @Override
+    public RegisteredClient findById(String id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public RegisteredClient findByClientId(String clientId) {
+        return delegate.findByClientId(clientId);
+    }
+}
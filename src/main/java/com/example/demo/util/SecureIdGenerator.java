@@ -0,0 +1,141 @@
+package com.example.demo.util;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Random identifiers for sessions, flow states and tokens, without a shared lock
+ *
+ * {@code UUID.randomUUID()} and a shared {@code new SecureRandom()} serialize every caller on
+ * one generator (NativePRNG additionally funnels through a single global /dev/urandom
+ * reader). Here each platform thread owns a DRBG (NIST SP 800-90A Hash_DRBG, 256-bit
+ * security strength, seeded from the system entropy source) and draws from it in 512-byte
+ * blocks, so the hot path is an array copy. Virtual threads, which are too many and too
+ * short-lived to seed a generator each, share a small striped set of generators instead.
+ *
+ * Identifiers carry 128 random bits (a UUID has 122) and are encoded as 22 URL-safe
+ * Base64 characters without padding.
+ */
+public final class SecureIdGenerator {
+
+    /** Random bytes per identifier */
+    public static final int ID_BYTES = 16;
+
+    private static final int BUFFER_SIZE = 512;
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private static final ThreadLocal<Source> PER_THREAD = ThreadLocal.withInitial(Source::new);
+
+    private static final Source[] SHARED = newSharedSources();
+
+    private SecureIdGenerator() {
+    }
+
+    /**
+     * New 128-bit identifier, 22 URL-safe characters
+     */
+    public static String newId() {
+        return newId(ID_BYTES);
+    }
+
+    /**
+     * New identifier of {@code bytes} random bytes (e.g. 32 for a 256-bit reference token)
+     */
+    public static String newId(int bytes) {
+        byte[] random = new byte[bytes];
+        nextBytes(random);
+        return encode(random);
+    }
+
+    /**
+     * Fill {@code bytes} with cryptographically strong random bytes (nonces, IVs)
+     */
+    public static void nextBytes(byte[] bytes) {
+        Thread thread = Thread.currentThread();
+        if (!thread.isVirtual()) {
+            PER_THREAD.get().nextBytes(bytes);
+            return;
+        }
+        Source source = SHARED[(int) (thread.threadId() % SHARED.length)];
+        source.lock.lock();
+        try {
+            source.nextBytes(bytes);
+        } finally {
+            source.lock.unlock();
+        }
+    }
+
+    /**
+     * URL-safe Base64 without padding
+     */
+    static String encode(byte[] bytes) {
+        char[] out = new char[(bytes.length * 8 + 5) / 6];
+        int o = 0;
+        int i = 0;
+        for (; i + 3 <= bytes.length; i += 3) {
+            int block = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+            out[o++] = ALPHABET[block >>> 18];
+            out[o++] = ALPHABET[(block >>> 12) & 0x3f];
+            out[o++] = ALPHABET[(block >>> 6) & 0x3f];
+            out[o++] = ALPHABET[block & 0x3f];
+        }
+        int remaining = bytes.length - i;
+        if (remaining > 0) {
+            int block = (bytes[i] & 0xff) << 16 | (remaining == 2 ? (bytes[i + 1] & 0xff) << 8 : 0);
+            out[o++] = ALPHABET[block >>> 18];
+            out[o++] = ALPHABET[(block >>> 12) & 0x3f];
+            if (remaining == 2) {
+                out[o] = ALPHABET[(block >>> 6) & 0x3f];
+            }
+        }
+        return new String(out);
+    }
+
+    private static Source[] newSharedSources() {
+        Source[] sources = new Source[Runtime.getRuntime().availableProcessors() * 2];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = new Source();
+        }
+        return sources;
+    }
+
+    private static SecureRandom newDrbg() {
+        try {
+            return SecureRandom.getInstance("DRBG",
+                    DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("DRBG is not available", e);
+        }
+    }
+
+    /**
+     * One generator and its buffered output; confined to a thread or guarded by its lock
+     */
+    private static final class Source {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final SecureRandom random = newDrbg();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position = BUFFER_SIZE;
+
+        void nextBytes(byte[] bytes) {
+            if (bytes.length > BUFFER_SIZE) {
+                random.nextBytes(bytes);
+                return;
+            }
+            if (position + bytes.length > BUFFER_SIZE) {
+                random.nextBytes(buffer);
+                position = 0;
+            }
+            System.arraycopy(buffer, position, bytes, 0, bytes.length);
+            // Handed-out bytes are not kept around
+            Arrays.fill(buffer, position, position + bytes.length, (byte) 0);
+            position += bytes.length;
+        }
+    }
+}
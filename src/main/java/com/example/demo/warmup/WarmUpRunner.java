@@ -0,0 +1,327 @@
+package com.example.demo.warmup;
+
+import com.example.demo.admission.AdmissionBypass;
+import com.example.demo.config.WarmUpProperties;
+import com.example.demo.dto.ExternalAuthCallbackDto;
+import com.example.demo.exception.ErrorCode;
+import com.example.demo.service.ExternalAuthService;
+import com.example.demo.token.OAuth2AuthorizationCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClaimAccessor;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs synthetic in-process traffic before the application reports ready
+ *
+ * Spring Boot moves readiness to ACCEPTING_TRAFFIC only after every ApplicationRunner has
+ * returned, so a load balancer polling /actuator/health/readiness keeps a new node out of
+ * rotation until the classes of the first requests are loaded and their hot paths compiled:
+ * <ul>
+ *   <li>token: a JWT access token, a reference access token and a refresh token from the token
+ *       generator, and the JWT decoded again</li>
+ *   <li>callback: Base64 + JSON callback data and the session check</li>
+ *   <li>template: auth-home-page, terms and error rendered by the application's template engine</li>
+ *   <li>authorization: attributes and token metadata through the configured column codec</li>
+ *   <li>http: metadata, JWKS and an unauthenticated token request over loopback, through the
+ *       servlet container and the security filter chains; marked with {@link AdmissionBypass}, so
+ *       they do not feed load shedding, lanes or the client rate limit</li>
+ * </ul>
+ * Nothing is stored and nothing is sent to the external system. Each step runs
+ * warm-up.iterations times within warm-up.max-duration; a step that fails is logged and skipped.
+ */
+public class WarmUpRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmUpRunner.class);
+
+    private static final RegisteredClient CLIENT = RegisteredClient.withId("warm-up")
+            .clientId("warm-up")
+            .clientName("Warm-up")
+            .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+            .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+            .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+            .redirectUri("http://localhost:8080/callback")
+            .scope("message.read")
+            .build();
+
+    private static final RegisteredClient REFERENCE_CLIENT = RegisteredClient.from(CLIENT)
+            .id("warm-up-reference")
+            .clientId("warm-up-reference")
+            .tokenSettings(TokenSettings.builder().accessTokenFormat(OAuth2TokenFormat.REFERENCE).build())
+            .build();
+
+    private static final String CALLBACK_DATA = Base64.getEncoder().encodeToString(
+            "{\"statusCode\":\"0000\",\"statusDesc\":\"OK\",\"session\":\"warmup_warm-up\",\"token\":\"warm-up-token\"}"
+                    .getBytes(StandardCharsets.UTF_8));
+
+    private final OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator;
+    private final JwtDecoder jwtDecoder;
+    private final ExternalAuthService externalAuthService;
+    private final ITemplateEngine templateEngine;
+    private final OAuth2AuthorizationCodec authorizationCodec;
+    private final AuthorizationServerSettings authorizationServerSettings;
+    private final AuthorizationServerContext serverContext;
+    private final Environment environment;
+    private final WarmUpProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public WarmUpRunner(
+            OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator,
+            JwtDecoder jwtDecoder,
+            ExternalAuthService externalAuthService,
+            ITemplateEngine templateEngine,
+            OAuth2AuthorizationCodec authorizationCodec,
+            AuthorizationServerSettings authorizationServerSettings,
+            Environment environment,
+            WarmUpProperties properties,
+            MeterRegistry meterRegistry) {
+        this.tokenGenerator = tokenGenerator;
+        this.jwtDecoder = jwtDecoder;
+        this.externalAuthService = externalAuthService;
+        this.templateEngine = templateEngine;
+        this.authorizationCodec = authorizationCodec;
+        this.authorizationServerSettings = authorizationServerSettings;
+        this.serverContext = new AuthorizationServerContext() {
+            @Override
+            public String getIssuer() {
+                return authorizationServerSettings.getIssuer();
+            }
+
+            @Override
+            public AuthorizationServerSettings getAuthorizationServerSettings() {
+                return authorizationServerSettings;
+            }
+        };
+        this.environment = environment;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        warmUp();
+    }
+
+    /**
+     * Run every step, stopping when warm-up.max-duration is reached
+     */
+    public Report warmUp() {
+        long start = System.nanoTime();
+        long deadline = start + properties.getMaxDuration().toNanos();
+        Map<String, Integer> iterations = new LinkedHashMap<>();
+        String admissionBypass = AdmissionBypass.open();
+        try {
+            for (Step step : steps(admissionBypass)) {
+                iterations.put(step.name(), run(step, deadline));
+            }
+        } finally {
+            AdmissionBypass.close();
+        }
+        Report report = new Report(iterations, Duration.ofNanos(System.nanoTime() - start));
+        logger.info("Warm-up finished in {} ms, iterations per step: {}", report.elapsed().toMillis(), iterations);
+        return report;
+    }
+
+    private List<Step> steps(String admissionBypass) {
+        List<Step> steps = new ArrayList<>();
+        steps.add(new Step("token", this::mintTokens));
+        steps.add(new Step("callback", this::parseCallback));
+        steps.add(new Step("template", this::renderTemplates));
+        steps.add(new Step("authorization", this::mapAuthorization));
+        Integer port = environment.getProperty("local.server.port", Integer.class);
+        if (port != null) {
+            steps.add(new Step("http", new LoopbackRequests(port, admissionBypass)));
+        }
+        return steps;
+    }
+
+    private int run(Step step, long deadline) {
+        Timer timer = Timer.builder("startup.warmup")
+                .description("Time spent warming up before reporting ready")
+                .tag("step", step.name())
+                .register(meterRegistry);
+        long start = System.nanoTime();
+        int completed = 0;
+        try {
+            while (completed < properties.getIterations() && System.nanoTime() - deadline < 0) {
+                step.action().run();
+                completed++;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Warm-up step {} failed after {} iterations: {}", step.name(), completed, e.toString());
+        } finally {
+            timer.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+        return completed;
+    }
+
+    private void mintTokens() {
+        OAuth2Token accessToken = tokenGenerator.generate(tokenContext(CLIENT, OAuth2TokenType.ACCESS_TOKEN));
+        if (accessToken instanceof Jwt jwt) {
+            jwtDecoder.decode(jwt.getTokenValue());
+        }
+        tokenGenerator.generate(tokenContext(REFERENCE_CLIENT, OAuth2TokenType.ACCESS_TOKEN));
+        tokenGenerator.generate(tokenContext(CLIENT, OAuth2TokenType.REFRESH_TOKEN));
+    }
+
+    private OAuth2TokenContext tokenContext(RegisteredClient client, OAuth2TokenType tokenType) {
+        return DefaultOAuth2TokenContext.builder()
+                .registeredClient(client)
+                .principal(new OAuth2ClientAuthenticationToken(client, ClientAuthenticationMethod.CLIENT_SECRET_BASIC, null))
+                .authorizationServerContext(serverContext)
+                .authorizedScopes(client.getScopes())
+                .tokenType(tokenType)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .build();
+    }
+
+    private void parseCallback() {
+        ExternalAuthCallbackDto callback = externalAuthService.parseCallbackData(CALLBACK_DATA);
+        if (!externalAuthService.isSuccessStatusCode(callback.statusCode())
+                || !externalAuthService.validateSession(callback.session(), CLIENT.getClientId())) {
+            throw new IllegalStateException("Synthetic callback data was not accepted");
+        }
+    }
+
+    private void renderTemplates() {
+        Context home = new Context();
+        home.setVariable("clientName", CLIENT.getClientName());
+        home.setVariable("clientId", CLIENT.getClientId());
+        home.setVariable("externalSession", "warmup_warm-up");
+        home.setVariable("externalLoginUrl",
+                externalAuthService.buildExternalLoginUrl("warmup_warm-up", "http://localhost/oauth2/callback"));
+        templateEngine.process("auth-home-page", home);
+
+        Context terms = new Context();
+        terms.setVariable("clientId", CLIENT.getClientId());
+        terms.setVariable("clientName", CLIENT.getClientName());
+        terms.setVariable("state", "warm-up-state");
+        terms.setVariable("scopes", List.of("openid", "profile"));
+        terms.setVariable("customerId", "A123456789");
+        terms.setVariable("authorizationEndpoint", authorizationServerSettings.getAuthorizationEndpoint());
+        templateEngine.process("terms", terms);
+
+        Context error = new Context();
+        error.setVariable("error", ErrorCode.AUTH_FLOW_EXPIRED.getUserMessage());
+        templateEngine.process("error", error);
+    }
+
+    private void mapAuthorization() {
+        OAuth2AuthorizationRequest authorizationRequest = OAuth2AuthorizationRequest.authorizationCode()
+                .authorizationUri("http://localhost" + authorizationServerSettings.getAuthorizationEndpoint())
+                .clientId(CLIENT.getClientId())
+                .redirectUri("http://localhost:8080/callback")
+                .scopes(Set.of("openid", "profile"))
+                .state("warm-up-state")
+                .additionalParameters(Map.of("nonce", "warm-up-nonce"))
+                .build();
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(OAuth2AuthorizationRequest.class.getName(), authorizationRequest);
+        attributes.put(Principal.class.getName(),
+                UsernamePasswordAuthenticationToken.authenticated("A123456789", null, List.of()));
+        attributes.put("state", "warm-up-state");
+        authorizationCodec.decode(authorizationCodec.encode(attributes));
+
+        OAuth2Token accessToken = tokenGenerator.generate(tokenContext(CLIENT, OAuth2TokenType.ACCESS_TOKEN));
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        if (accessToken instanceof ClaimAccessor claims) {
+            metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claims.getClaims());
+        }
+        metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, false);
+        authorizationCodec.decode(authorizationCodec.encode(metadata));
+    }
+
+    /**
+     * Requests that create no session and store nothing: the responses are discarded
+     */
+    private final class LoopbackRequests implements Runnable {
+
+        private final HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(1))
+                .build();
+        private final List<HttpRequest> requests;
+
+        LoopbackRequests(int port, String admissionBypass) {
+            String base = "http://127.0.0.1:" + port + environment.getProperty("server.servlet.context-path", "");
+            this.requests = List.of(
+                    HttpRequest.newBuilder(URI.create(base + "/.well-known/oauth-authorization-server"))
+                            .timeout(Duration.ofSeconds(5))
+                            .header(AdmissionBypass.HEADER, admissionBypass)
+                            .build(),
+                    HttpRequest.newBuilder(URI.create(base + authorizationServerSettings.getJwkSetEndpoint()))
+                            .timeout(Duration.ofSeconds(5))
+                            .header(AdmissionBypass.HEADER, admissionBypass)
+                            .build(),
+                    HttpRequest.newBuilder(URI.create(base + authorizationServerSettings.getTokenEndpoint()))
+                            .timeout(Duration.ofSeconds(5))
+                            .header(AdmissionBypass.HEADER, admissionBypass)
+                            .header("Content-Type", "application/x-www-form-urlencoded")
+                            .POST(HttpRequest.BodyPublishers.ofString("grant_type=client_credentials"))
+                            .build());
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (HttpRequest request : requests) {
+                    client.send(request, HttpResponse.BodyHandlers.discarding());
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private record Step(String name, Runnable action) {
+    }
+
+    /**
+     * @param iterations Completed iterations per step, in the order the steps ran
+     * @param elapsed Time the whole warm-up took
+     */
+    public record Report(Map<String, Integer> iterations, Duration elapsed) {
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	void rejectsBeyondLimit() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0, 10 * MS, 0.5);
+
+		assertThat(limit.tryAcquire()).isTrue();
+		assertThat(limit.tryAcquire()).isTrue();
+		assertThat(limit.tryAcquire()).isFalse();
+		assertThat(limit.getInFlight()).isEqualTo(2);
+	}
+
+	@Test
+	void shrinksWhenLatencyRisesAndGrowsWhenFastUnderLoad() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 20, 2.0, 10 * MS, 0.5);
+		long now = System.nanoTime();
+
+		limit.tryAcquire();
+		limit.release(5 * MS, false, now);
+		limit.tryAcquire();
+		limit.release(500 * MS, false, now += 100 * MS);
+		assertThat(limit.getLimit()).isEqualTo(5);
+
+		for (int i = 0; i < 50; i++) {
+			for (int j = 0; j < 5; j++) {
+				limit.tryAcquire();
+			}
+			for (int j = 0; j < 5; j++) {
+				limit.release(5 * MS, false, now += MS);
+			}
+		}
+		assertThat(limit.getLimit()).isGreaterThan(5);
+	}
+
+	@Test
+	void fastFailuresDoNotLowerTheBaseline() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 20, 2.0, 10 * MS, 0.5);
+		long now = System.nanoTime();
+
+		// e.g. a 500 for an exhausted connection budget, answered in microseconds
+		limit.tryAcquire();
+		limit.release(MS / 100, true, now);
+		int afterFailure = limit.getLimit();
+
+		for (int i = 0; i < 20; i++) {
+			limit.tryAcquire();
+			limit.release(20 * MS, false, now += 100 * MS);
+		}
+		assertThat(limit.getLimit()).isGreaterThanOrEqualTo(afterFailure);
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.demo.admission;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeadlineAwareDataSourceTest {
+
+	@AfterEach
+	void unbind() {
+		RequestDeadline.unbind();
+	}
+
+	@Test
+	void statementsGetTheRemainingBudgetAsQueryTimeout() throws Exception {
+		PreparedStatement statement = mock(PreparedStatement.class);
+		Connection connection = mock(Connection.class);
+		when(connection.prepareStatement(anyString())).thenReturn(statement);
+		DataSource target = mock(DataSource.class);
+		when(target.getConnection()).thenReturn(connection);
+		DeadlineAwareDataSource dataSource = new DeadlineAwareDataSource(target);
+
+		dataSource.getConnection().prepareStatement("select 1");
+		verify(statement, never()).setQueryTimeout(anyInt());
+
+		RequestDeadline.bind(new RequestDeadline("token", System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2500)));
+		dataSource.getConnection().prepareStatement("select 1");
+		verify(statement).setQueryTimeout(3);
+	}
+
+	@Test
+	void expiredDeadlineFailsFast() throws Exception {
+		DataSource target = mock(DataSource.class);
+		DeadlineAwareDataSource dataSource = new DeadlineAwareDataSource(target);
+		RequestDeadline.bind(new RequestDeadline("callback", System.nanoTime() - 1));
+
+		assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTimeoutException.class);
+		assertThatThrownBy(() -> RequestDeadline.timeoutMillis(5000)).isInstanceOf(DeadlineExceededException.class);
+		verify(target, never()).getConnection();
+	}
+
+	@Test
+	void poolWaitIsCappedByTheRemainingBudget() throws Exception {
+		HikariPool pool = mock(HikariPool.class);
+		when(pool.getConnection(anyLong())).thenReturn(mock(Connection.class));
+		HikariDataSource hikari = mock(HikariDataSource.class);
+		when(hikari.getHikariPoolMXBean()).thenReturn(pool);
+		when(hikari.getConnectionTimeout()).thenReturn(30_000L);
+		DeadlineAwareDataSource dataSource = new DeadlineAwareDataSource(hikari);
+		RequestDeadline.bind(new RequestDeadline("token", System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(800)));
+
+		dataSource.getConnection();
+
+		verify(pool).getConnection(longThat(timeout -> timeout > 0 && timeout <= 800));
+		verify(hikari, never()).getConnection();
+	}
+
+	@Test
+	void httpTimeoutsAreCappedByTheRemainingBudget() {
+		assertThat(RequestDeadline.timeoutMillis(5000)).isEqualTo(5000);
+
+		RequestDeadline.bind(new RequestDeadline("callback", System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(800)));
+		assertThat(RequestDeadline.timeoutMillis(5000)).isBetween(700, 800);
+		assertThat(RequestDeadline.timeoutMillis(100)).isEqualTo(100);
+	}
+}
@@ -0,0 +1,58 @@
+package com.example.demo.admission;
+
+import com.example.demo.config.DeadlineProperties;
+import com.example.demo.exception.ErrorPageCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class DeadlineFilterTest {
+
+	private final DeadlineFilter filter = new DeadlineFilter(properties(), mock(ErrorPageCache.class));
+
+	@Test
+	void deadlineFailureInTheFilterChainBecomes503() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		filter.doFilter(request(), response, (request, servletResponse) -> {
+			throw new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection",
+					new SQLTimeoutException("Request deadline exceeded before JDBC access"));
+		});
+
+		assertThat(response.getStatus()).isEqualTo(503);
+		assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+		assertThat(response.getContentType()).isEqualTo("application/json");
+		assertThat(RequestDeadline.current()).isNull();
+	}
+
+	@Test
+	void otherFailuresPropagate() {
+		assertThatThrownBy(() -> filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> {
+			throw new IllegalStateException("boom");
+		})).isInstanceOf(IllegalStateException.class);
+	}
+
+	private static MockHttpServletRequest request() {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/oauth2/token");
+		request.setServletPath("/oauth2/token");
+		return request;
+	}
+
+	private static DeadlineProperties properties() {
+		DeadlineProperties.Endpoint token = new DeadlineProperties.Endpoint();
+		token.setPaths(List.of("/oauth2/token"));
+		token.setBudget(Duration.ofSeconds(2));
+		DeadlineProperties properties = new DeadlineProperties();
+		properties.getEndpoints().put("token", token);
+		return properties;
+	}
+}
@@ -0,0 +1,67 @@
+package com.example.demo.admission;
+
+import com.example.demo.config.LaneProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LaneAwareDataSourceTest {
+
+	@AfterEach
+	void unbind() {
+		ExecutionLane.unbind();
+	}
+
+	@Test
+	void laneCannotExceedItsConnectionBudget() throws Exception {
+		DataSource target = mock(DataSource.class);
+		when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+		LaneAwareDataSource dataSource = new LaneAwareDataSource(target);
+
+		LaneProperties.Lane config = new LaneProperties.Lane();
+		config.setDbConnections(1);
+		config.setMaxWait(Duration.ZERO);
+		ExecutionLane lane = new ExecutionLane("browser", config);
+		lane.bindMetrics(new SimpleMeterRegistry());
+		ExecutionLane.bind(lane);
+
+		Connection first = dataSource.getConnection();
+		assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+
+		first.close();
+		first.close();
+		dataSource.getConnection().close();
+
+		ExecutionLane.unbind();
+		dataSource.getConnection();
+		dataSource.getConnection();
+	}
+
+	@Test
+	void workersBeyondMaxWaitingAreRejectedAtOnce() throws Exception {
+		LaneProperties.Lane config = new LaneProperties.Lane();
+		config.setMaxConcurrent(1);
+		config.setMaxWaiting(0);
+		config.setMaxWait(Duration.ofSeconds(10));
+		ExecutionLane lane = new ExecutionLane("browser", config);
+		lane.bindMetrics(new SimpleMeterRegistry());
+
+		assertThat(lane.acquireWorker()).isTrue();
+		long start = System.nanoTime();
+		assertThat(lane.acquireWorker()).isFalse();
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+
+		lane.releaseWorker();
+		assertThat(lane.acquireWorker()).isTrue();
+	}
+}
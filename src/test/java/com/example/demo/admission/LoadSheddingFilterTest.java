@@ -0,0 +1,119 @@
+package com.example.demo.admission;
+
+import com.example.demo.config.LoadSheddingProperties;
+import com.example.demo.exception.ErrorCode;
+import com.example.demo.exception.ErrorPageCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LoadSheddingFilterTest {
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final ErrorPageCache errorPageCache = mock(ErrorPageCache.class);
+
+	@Test
+	void fastClientErrorsDoNotLowerTheBaseline() throws Exception {
+		LoadSheddingFilter filter = filter(10);
+
+		for (int i = 0; i < 100; i++) {
+			filter.doFilter(request(), new MockHttpServletResponse(),
+					(request, response) -> ((MockHttpServletResponse) response).setStatus(401));
+		}
+		filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> sleep(30));
+
+		assertThat(limit()).isEqualTo(10);
+	}
+
+	@Test
+	void browserGetsTheErrorPageWhenShed() throws Exception {
+		when(errorPageCache.page(ErrorCode.SERVER_BUSY)).thenReturn("<html>busy</html>".getBytes(StandardCharsets.UTF_8));
+		LoadSheddingFilter filter = filter(1);
+		MockHttpServletResponse browser = new MockHttpServletResponse();
+		MockHttpServletResponse machine = new MockHttpServletResponse();
+
+		// The only slot is held while the nested requests arrive
+		filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> {
+			MockHttpServletRequest page = request();
+			page.addHeader("Accept", "text/html,application/xhtml+xml,*/*;q=0.8");
+			filter.doFilter(page, browser, (nestedRequest, nestedResponse) -> { });
+			filter.doFilter(request(), machine, (nestedRequest, nestedResponse) -> { });
+		});
+
+		assertThat(browser.getStatus()).isEqualTo(503);
+		assertThat(browser.getContentType()).startsWith("text/html");
+		assertThat(browser.getContentAsString(StandardCharsets.UTF_8)).isEqualTo("<html>busy</html>");
+		assertThat(browser.getHeader("Retry-After")).isEqualTo("1");
+		assertThat(machine.getStatus()).isEqualTo(503);
+		assertThat(machine.getContentType()).isEqualTo("application/json");
+	}
+
+	@Test
+	void warmUpRequestsBypassTheLimitOnlyWhileWarmUpRuns() throws Exception {
+		LoadSheddingFilter filter = filter(1);
+		MockHttpServletResponse warmUp = new MockHttpServletResponse();
+		MockHttpServletResponse afterWarmUp = new MockHttpServletResponse();
+
+		String bypass = AdmissionBypass.open();
+		try {
+			filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> {
+				MockHttpServletRequest marked = request();
+				marked.addHeader(AdmissionBypass.HEADER, bypass);
+				filter.doFilter(marked, warmUp, (nestedRequest, nestedResponse) -> { });
+			});
+		} finally {
+			AdmissionBypass.close();
+		}
+		LoadSheddingFilter ready = filter(1);
+		ready.doFilter(request(), new MockHttpServletResponse(), (request, response) -> {
+			MockHttpServletRequest marked = request();
+			marked.addHeader(AdmissionBypass.HEADER, bypass);
+			ready.doFilter(marked, afterWarmUp, (nestedRequest, nestedResponse) -> { });
+		});
+
+		assertThat(warmUp.getStatus()).isEqualTo(200);
+		assertThat(afterWarmUp.getStatus()).isEqualTo(503);
+		assertThat(meterRegistry.get("http.server.load_shedding").tag("outcome", "accepted").counter().count())
+				.isEqualTo(2);
+	}
+
+	private LoadSheddingFilter filter(int initialLimit) {
+		LoadSheddingProperties.Group group = new LoadSheddingProperties.Group();
+		group.setPaths(List.of("/oauth2/callback"));
+		group.setInitialLimit(initialLimit);
+		group.setMinLimit(1);
+		group.setLatencySlack(Duration.ofMillis(10));
+		LoadSheddingProperties properties = new LoadSheddingProperties();
+		properties.setGroups(Map.of("callback", group));
+		return new LoadSheddingFilter(properties, meterRegistry, errorPageCache);
+	}
+
+	private int limit() {
+		return (int) meterRegistry.get("http.server.load_shedding.limit").gauge().value();
+	}
+
+	private static MockHttpServletRequest request() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/oauth2/callback");
+		request.setServletPath("/oauth2/callback");
+		return request;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
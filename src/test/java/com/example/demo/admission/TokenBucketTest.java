@@ -0,0 +1,44 @@
+package com.example.demo.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenBucketTest {
+
+	@Test
+	void admitsBurstThenRejectsUntilRefill() {
+		TokenBucket bucket = new TokenBucket(10, 5, 1);
+		long now = 1_000_000_000L;
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(bucket.tryAcquire(now)).isZero();
+		}
+		long wait = bucket.tryAcquire(now);
+
+		assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+		assertThat(bucket.tryAcquire(now + wait)).isZero();
+		assertThat(bucket.tryAcquire(now + wait)).isPositive();
+	}
+
+	@Test
+	void stripedBucketKeepsTheFullBurst() {
+		// 6 tokens over 4 stripes: 1.5 tokens per stripe, emission interval 400 ms per stripe
+		TokenBucket bucket = new TokenBucket(10, 6, 4);
+		long now = 1_000_000_000L;
+
+		assertThat(bucket.tryAcquire(now)).isZero();
+		long wait = bucket.tryAcquire(now);
+
+		// The remaining half token is due after half an emission interval
+		assertThat(wait).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+	}
+
+	@Test
+	void rejectsZeroRate() {
+		assertThatThrownBy(() -> new TokenBucket(0, 5, 1)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
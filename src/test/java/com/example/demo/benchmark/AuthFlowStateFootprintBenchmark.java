@@ -0,0 +1,100 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.session.AuthFlowState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memory footprint benchmark: bytes per concurrent login, before and after AuthFlowState.
+ *
+ * "Before" models the eight former session attributes (oauth2_client_id, oauth2_redirect_uri,
+ * oauth2_scope, oauth2_state, oauth2_external_session, customer_id, auth_time, external_token);
+ * "after" is the single AuthFlowState attribute.
+ *
+ * Reports the replication payload (each attribute JDK-serialized on its own, as session stores do)
+ * and the retained heap per login, measured over many simulated concurrent sessions.
+ *
+ * Run: ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.example.demo.benchmark.AuthFlowStateFootprintBenchmark
+ */
+public class AuthFlowStateFootprintBenchmark {
+
+    private static final int SESSIONS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : SESSIONS;
+
+        System.out.printf("Serialized payload per login (authenticated, before consent)%n");
+        System.out.printf("  before: %5d bytes%n", serializedSize(legacyAttributes(0)));
+        System.out.printf("  after : %5d bytes%n", serializedSize(flowStateAttributes(0)));
+
+        System.out.printf("Retained heap per login (%d concurrent sessions)%n", sessions);
+        System.out.printf("  before: %5d bytes%n", heapPerSession(sessions, true));
+        System.out.printf("  after : %5d bytes%n", heapPerSession(sessions, false));
+    }
+
+    private static Map<String, Object> legacyAttributes(int i) {
+        String clientId = "client-web";
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("oauth2_client_id", clientId);
+        attributes.put("oauth2_redirect_uri", "http://localhost:8080/callback");
+        attributes.put("oauth2_scope", "profile email");
+        attributes.put("oauth2_state", "state-" + i);
+        attributes.put("oauth2_external_session", UUID.randomUUID() + "_" + clientId);
+        attributes.put("customer_id", "A" + (100000000 + i));
+        attributes.put("auth_time", Instant.now());
+        attributes.put("external_token", UUID.randomUUID().toString());
+        return attributes;
+    }
+
+    private static Map<String, Object> flowStateAttributes(int i) {
+        AuthFlowState flowState = AuthFlowState
+                .started("client-web", "http://localhost:8080/callback", "profile email", "state-" + i,
+                        UUID.randomUUID() + "_client-web")
+                .authenticated("A" + (100000000 + i), Instant.now());
+        return Map.of("oauth2_auth_flow_state", flowState);
+    }
+
+    private static int serializedSize(Map<String, Object> attributes) throws IOException {
+        int total = 0;
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject((Serializable) entry.getValue());
+            }
+            total += entry.getKey().length() + bytes.size();
+        }
+        return total;
+    }
+
+    private static long heapPerSession(int sessions, boolean legacy) {
+        List<Map<String, Object>> retained = new ArrayList<>(sessions);
+        long before = usedHeap();
+        for (int i = 0; i < sessions; i++) {
+            // Session attribute maps are concurrent maps in Tomcat's StandardSession
+            retained.add(new ConcurrentHashMap<>(legacy ? legacyAttributes(i) : flowStateAttributes(i)));
+        }
+        long after = usedHeap();
+        long perSession = (after - before) / sessions;
+        retained.clear();
+        return perSession;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
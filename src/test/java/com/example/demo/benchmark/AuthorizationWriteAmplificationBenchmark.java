@@ -0,0 +1,240 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.token.BinaryOAuth2AuthorizationCodec;
+import com.example.demo.token.CodecJdbcOAuth2AuthorizationService;
+import com.example.demo.token.NormalizedJdbcOAuth2AuthorizationService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.security.Principal;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write amplification benchmark: WAL bytes per save, single-row oauth2_authorization vs the
+ * normalized layout (oauth2_authorization_header plus one table per token kind).
+ *
+ * Both services use the binary codec, so only the table layout differs. Phases:
+ * <ul>
+ *   <li>client_credentials: issue an access token (new authorization)</li>
+ *   <li>code: store the authorization request and code</li>
+ *   <li>redeem: invalidate the code, issue access, refresh and ID tokens</li>
+ *   <li>refresh: replace the access and refresh tokens</li>
+ * </ul>
+ * WAL is measured with pg_current_wal_insert_lsn() around each phase on a database with the
+ * DDL.sql tables. Run it against an otherwise idle instance: WAL from other sessions is
+ * counted too. A CHECKPOINT before each phase (needs superuser) keeps full-page images
+ * comparable between layouts. Rows it writes are deleted at the end.
+ *
+ * Run: ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.example.demo.benchmark.AuthorizationWriteAmplificationBenchmark
+ *      -Dexec.args="jdbc:postgresql://127.0.0.1:5432/authserver?currentSchema=poc_spring_authorization_server postgres secret 2000"
+ */
+public class AuthorizationWriteAmplificationBenchmark {
+
+    private static final int AUTHORIZATIONS = 2_000;
+    private static final String ID_PREFIX = "wal-bench-";
+
+    private static final RegisteredClient CLIENT = RegisteredClient.withId("wal-bench-client")
+            .clientId("wal-bench-client")
+            .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+            .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+            .redirectUri("http://localhost:8080/callback")
+            .scope("openid")
+            .scope("profile")
+            .build();
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    public static void main(String[] args) {
+        String url = args.length > 0 ? args[0]
+                : "jdbc:postgresql://127.0.0.1:5432/authserver?currentSchema=poc_spring_authorization_server";
+        String username = args.length > 1 ? args[1] : "postgres";
+        String password = args.length > 2 ? args[2] : System.getenv("PGPASSWORD");
+        int authorizations = args.length > 3 ? Integer.parseInt(args[3]) : AUTHORIZATIONS;
+
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(url, username, password, true);
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            RegisteredClientRepository clients = new InMemoryRegisteredClientRepository(CLIENT);
+            BinaryOAuth2AuthorizationCodec codec = new BinaryOAuth2AuthorizationCodec();
+
+            Map<String, long[]> results = new LinkedHashMap<>();
+            results.put("single-row", run(jdbcTemplate,
+                    new CodecJdbcOAuth2AuthorizationService(jdbcTemplate, clients, codec), authorizations));
+            results.put("normalized", run(jdbcTemplate,
+                    new NormalizedJdbcOAuth2AuthorizationService(jdbcTemplate, clients, codec), authorizations));
+
+            System.out.printf("%nWAL bytes per save (%d authorizations)%n", authorizations);
+            System.out.printf("%-12s %18s %10s %10s %10s%n", "layout", "client_credentials", "code", "redeem", "refresh");
+            results.forEach((layout, bytes) -> System.out.printf("%-12s %18d %10d %10d %10d%n",
+                    layout, bytes[0] / authorizations, bytes[1] / authorizations,
+                    bytes[2] / authorizations, bytes[3] / authorizations));
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static long[] run(JdbcTemplate jdbcTemplate, OAuth2AuthorizationService service, int authorizations) {
+        List<OAuth2Authorization> pending = new ArrayList<>(authorizations);
+        List<OAuth2Authorization> redeemed = new ArrayList<>(authorizations);
+        try {
+            long clientCredentials = walBytes(jdbcTemplate, () -> {
+                for (int i = 0; i < authorizations; i++) {
+                    service.save(clientCredentials(ID_PREFIX + "cc-" + i));
+                }
+            });
+            long code = walBytes(jdbcTemplate, () -> {
+                for (int i = 0; i < authorizations; i++) {
+                    OAuth2Authorization authorization = authorizationCode(ID_PREFIX + "ac-" + i);
+                    service.save(authorization);
+                    pending.add(authorization);
+                }
+            });
+            long redeem = walBytes(jdbcTemplate, () -> pending.forEach(authorization -> {
+                OAuth2Authorization next = redeem(authorization);
+                service.save(next);
+                redeemed.add(next);
+            }));
+            long refresh = walBytes(jdbcTemplate, () -> redeemed.forEach(authorization -> service.save(refresh(authorization))));
+            return new long[] {clientCredentials, code, redeem, refresh};
+        } finally {
+            for (int i = 0; i < authorizations; i++) {
+                remove(service, ID_PREFIX + "cc-" + i);
+                remove(service, ID_PREFIX + "ac-" + i);
+            }
+        }
+    }
+
+    private static long walBytes(JdbcTemplate jdbcTemplate, Runnable phase) {
+        try {
+            jdbcTemplate.execute("CHECKPOINT");
+        } catch (RuntimeException e) {
+            // Not a superuser: measure without resetting full-page images
+        }
+        String before = jdbcTemplate.queryForObject("SELECT pg_current_wal_insert_lsn()::text", String.class);
+        phase.run();
+        Long bytes = jdbcTemplate.queryForObject(
+                "SELECT pg_wal_lsn_diff(pg_current_wal_insert_lsn(), ?::pg_lsn)::bigint", Long.class, before);
+        return bytes != null ? bytes : 0;
+    }
+
+    private static OAuth2Authorization clientCredentials(String id) {
+        Instant now = Instant.now();
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER,
+                jwtLikeValue(), now, now.plusSeconds(300), Set.of("profile"));
+        return OAuth2Authorization.withRegisteredClient(CLIENT)
+                .id(id)
+                .principalName(CLIENT.getClientId())
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .authorizedScopes(Set.of("profile"))
+                .token(accessToken, metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME,
+                        claims(CLIENT.getClientId(), now)))
+                .build();
+    }
+
+    private static OAuth2Authorization authorizationCode(String id) {
+        Instant now = Instant.now();
+        OAuth2AuthorizationRequest request = OAuth2AuthorizationRequest.authorizationCode()
+                .authorizationUri("http://localhost:9000/oauth2/authorize")
+                .clientId(CLIENT.getClientId())
+                .redirectUri("http://localhost:8080/callback")
+                .scopes(Set.of("openid", "profile"))
+                .state(randomValue(16))
+                .build();
+        return OAuth2Authorization.withRegisteredClient(CLIENT)
+                .id(id)
+                .principalName("A123456789")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .authorizedScopes(Set.of("openid", "profile"))
+                .attribute(Principal.class.getName(),
+                        UsernamePasswordAuthenticationToken.authenticated("A123456789", null, List.of()))
+                .attribute(OAuth2AuthorizationRequest.class.getName(), request)
+                .token(new OAuth2AuthorizationCode(randomValue(48), now, now.plusSeconds(300)))
+                .build();
+    }
+
+    private static OAuth2Authorization redeem(OAuth2Authorization authorization) {
+        Instant now = Instant.now();
+        OAuth2Authorization.Builder builder = OAuth2Authorization.from(authorization);
+        builder.token(authorization.getToken(OAuth2AuthorizationCode.class).getToken(),
+                metadata -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true));
+        issueTokens(builder, authorization.getPrincipalName(), now);
+        Map<String, Object> idClaims = claims(authorization.getPrincipalName(), now);
+        idClaims.put("auth_time", now);
+        return builder
+                .token(new OidcIdToken(jwtLikeValue(), now, now.plusSeconds(1800), idClaims),
+                        metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, idClaims))
+                .build();
+    }
+
+    private static OAuth2Authorization refresh(OAuth2Authorization authorization) {
+        OAuth2Authorization.Builder builder = OAuth2Authorization.from(authorization);
+        issueTokens(builder, authorization.getPrincipalName(), Instant.now());
+        return builder.build();
+    }
+
+    private static void issueTokens(OAuth2Authorization.Builder builder, String subject, Instant now) {
+        Map<String, Object> claims = claims(subject, now);
+        builder.token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, jwtLikeValue(), now,
+                        now.plusSeconds(300), Set.of("openid", "profile")),
+                        metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claims))
+                .refreshToken(new OAuth2RefreshToken(randomValue(96), now, now.plusSeconds(3600)));
+    }
+
+    private static Map<String, Object> claims(String subject, Instant now) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", subject);
+        claims.put("aud", Collections.singletonList(CLIENT.getClientId()));
+        claims.put("nbf", now);
+        claims.put("scope", new LinkedHashSet<>(List.of("openid", "profile")));
+        claims.put("iss", "http://localhost:9000");
+        claims.put("exp", now.plusSeconds(300));
+        claims.put("iat", now);
+        claims.put("jti", randomValue(16));
+        return claims;
+    }
+
+    /**
+     * Same length as an RS256 access token with the claims above
+     */
+    private static String jwtLikeValue() {
+        return randomValue(36) + "." + randomValue(220) + "." + randomValue(256);
+    }
+
+    private static String randomValue(int bytes) {
+        byte[] value = new byte[bytes];
+        RANDOM.nextBytes(value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+    }
+
+    private static void remove(OAuth2AuthorizationService service, String id) {
+        OAuth2Authorization authorization = service.findById(id);
+        if (authorization != null) {
+            service.remove(authorization);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.token.BinaryOAuth2AuthorizationCodec;
+import com.example.demo.token.JsonOAuth2AuthorizationCodec;
+import com.example.demo.token.OAuth2AuthorizationCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and allocation benchmark: oauth2_authorization column codecs, JSON (Spring
+ * Authorization Server's Jackson mapping) vs binary.
+ *
+ * Models what code redemption does with the map-valued columns: read the attributes and code
+ * metadata of the pending authorization, then write attributes, code metadata (invalidated),
+ * and the access, refresh and ID token metadata with their claims.
+ *
+ * Run with the GC profiler to compare bytes allocated per operation:
+ *      ./mvnw test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *      -Dexec.args="-cp %classpath com.example.demo.benchmark.OAuth2AuthorizationCodecBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OAuth2AuthorizationCodecBenchmark {
+
+    @Param({"json", "binary"})
+    public String codecName;
+
+    private OAuth2AuthorizationCodec codec;
+    private Map<String, Object> attributes;
+    private Map<String, Object> codeMetadata;
+    private Map<String, Object> accessTokenMetadata;
+    private Map<String, Object> idTokenMetadata;
+    private byte[] storedAttributes;
+    private byte[] storedCodeMetadata;
+
+    @Setup
+    public void setUp() {
+        codec = "json".equals(codecName) ? new JsonOAuth2AuthorizationCodec() : new BinaryOAuth2AuthorizationCodec();
+
+        OAuth2AuthorizationRequest request = OAuth2AuthorizationRequest.authorizationCode()
+                .authorizationUri("http://localhost:9000/oauth2/authorize")
+                .clientId("client-web")
+                .redirectUri("http://localhost:8080/callback")
+                .scopes(Set.of("openid", "profile"))
+                .state("Yq8Vw3tK0xN5bR2m")
+                .additionalParameters(Map.of("nonce", "n-0S6_WzA2Mj"))
+                .build();
+        attributes = new LinkedHashMap<>();
+        attributes.put(Principal.class.getName(),
+                UsernamePasswordAuthenticationToken.authenticated("A123456789", null, List.of()));
+        attributes.put(OAuth2AuthorizationRequest.class.getName(), request);
+
+        // Mutable maps, as OAuth2Authorization holds them: JSON typing skips final classes such as Map.of()
+        codeMetadata = new LinkedHashMap<>();
+        codeMetadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true);
+
+        Instant now = Instant.now();
+        Map<String, Object> accessClaims = new LinkedHashMap<>();
+        accessClaims.put("sub", "A123456789");
+        // Collection types as JwtGenerator builds them
+        accessClaims.put("aud", Collections.singletonList("client-web"));
+        accessClaims.put("nbf", now);
+        accessClaims.put("scope", Collections.unmodifiableSet(new LinkedHashSet<>(List.of("openid", "profile"))));
+        accessClaims.put("iss", "http://localhost:9000");
+        accessClaims.put("exp", now.plusSeconds(300));
+        accessClaims.put("iat", now);
+        accessClaims.put("jti", "1f0c2b2e-6f0a-4d8e-9a57-3c1d2a4b5e6f");
+        accessTokenMetadata = metadata(accessClaims);
+
+        Map<String, Object> idClaims = new LinkedHashMap<>(accessClaims);
+        idClaims.remove("nbf");
+        idClaims.remove("scope");
+        idClaims.put("azp", "client-web");
+        idClaims.put("auth_time", new Date());
+        idClaims.put("nonce", "n-0S6_WzA2Mj");
+        idClaims.put("sid", "Lb0N3Xq2Q7q8lJ1mX9S3Zx5n7c9e1g3i");
+        idTokenMetadata = metadata(idClaims);
+
+        storedAttributes = codec.encode(attributes);
+        storedCodeMetadata = codec.encode(new LinkedHashMap<>(Map.of(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, false)));
+    }
+
+    @Benchmark
+    public void redeemCode(Blackhole blackhole) {
+        blackhole.consume(codec.decode(storedAttributes));
+        blackhole.consume(codec.decode(storedCodeMetadata));
+        blackhole.consume(codec.encode(attributes));
+        blackhole.consume(codec.encode(codeMetadata));
+        blackhole.consume(codec.encode(accessTokenMetadata));
+        blackhole.consume(codec.encode(new LinkedHashMap<>()));
+        blackhole.consume(codec.encode(idTokenMetadata));
+    }
+
+    @Benchmark
+    public Map<String, Object> readAccessTokenMetadata(AccessTokenRow row) {
+        return codec.decode(row.stored);
+    }
+
+    /**
+     * Access token metadata as stored, read by introspection cache misses and userinfo
+     */
+    @State(Scope.Benchmark)
+    public static class AccessTokenRow {
+
+        byte[] stored;
+
+        @Setup
+        public void setUp(OAuth2AuthorizationCodecBenchmark benchmark) {
+            stored = benchmark.codec.encode(benchmark.accessTokenMetadata);
+        }
+    }
+
+    private static Map<String, Object> metadata(Map<String, Object> claims) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claims);
+        metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, false);
+        return metadata;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(OAuth2AuthorizationCodecBenchmark.class.getName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.util.SecureIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput benchmark: UUID.randomUUID() vs SecureIdGenerator.newId() from 1 to 64 threads.
+ *
+ * UUID.randomUUID() shares one SecureRandom across all threads; SecureIdGenerator gives each
+ * thread its own buffered DRBG, so its throughput should scale with the thread count while
+ * UUID's flattens.
+ *
+ * Run: ./mvnw test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *      -Dexec.args="-cp %classpath com.example.demo.benchmark.SecureIdGeneratorBenchmark"
+ *      (optional thread counts as extra arguments, default 1 2 4 8 16 32 64)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecureIdGeneratorBenchmark {
+
+    @Benchmark
+    public String uuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String secureId() {
+        return SecureIdGenerator.newId();
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> threadCounts = new ArrayList<>();
+        for (String arg : args) {
+            threadCounts.add(Integer.parseInt(arg));
+        }
+        if (threadCounts.isEmpty()) {
+            threadCounts = List.of(1, 2, 4, 8, 16, 32, 64);
+        }
+
+        StringBuilder summary = new StringBuilder(String.format("%n%8s %18s %18s%n", "threads", "uuid (ops/us)", "secureId (ops/us)"));
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .include(SecureIdGeneratorBenchmark.class.getName())
+                    .threads(threads)
+                    .build();
+            Collection<RunResult> results = new Runner(options).run();
+            double uuid = 0;
+            double secureId = 0;
+            for (RunResult result : results) {
+                double score = result.getPrimaryResult().getScore();
+                if (result.getParams().getBenchmark().endsWith(".uuid")) {
+                    uuid = score;
+                } else {
+                    secureId = score;
+                }
+            }
+            summary.append(String.format("%8d %18.2f %18.2f%n", threads, uuid, secureId));
+        }
+        System.out.print(summary);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Startup benchmark: time from process launch to the first access token issued.
+ *
+ * Launches the server, polls POST /oauth2/token (client_credentials, messaging-client) until it
+ * answers 200, then stops the process. Compares two launches of the same build:
+ * <ul>
+ *   <li>jar: java -jar target/demo-0.0.1-SNAPSHOT.jar</li>
+ *   <li>production: the extracted jar with Spring AOT and the CDS archive of the training run
+ *       (target/app, built with ./mvnw -Pproduction package)</li>
+ * </ul>
+ * Time to first token includes key generation, the first database connections and JIT warm-up
+ * of the token path, so it is what a new node added under load actually costs. Needs the
+ * database the server is configured with (SPRING_DATASOURCE_* are passed through) and a free
+ * port 9000.
+ *
+ * Run: ./mvnw -Pproduction package -DskipTests
+ *      ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.example.demo.benchmark.TimeToFirstTokenBenchmark
+ *      -Dexec.args="http://localhost:9000 5"
+ */
+public class TimeToFirstTokenBenchmark {
+
+    private static final int RUNS = 5;
+    private static final String JAR = "demo-0.0.1-SNAPSHOT.jar";
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:9000";
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : RUNS;
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        Path jar = Path.of("target", JAR);
+        Path app = Path.of("target", "app");
+        if (Files.exists(jar)) {
+            report("jar", runs, baseUrl, List.of(java, "-jar", jar.toString()));
+        } else {
+            System.out.printf("jar: %s not found, run ./mvnw package first%n", jar);
+        }
+        if (Files.exists(app.resolve("app.jsa"))) {
+            report("production", runs, baseUrl, List.of(java,
+                    "-XX:SharedArchiveFile=" + app.resolve("app.jsa"),
+                    "-Dspring.aot.enabled=true",
+                    "-jar", app.resolve(JAR).toString()));
+        } else {
+            System.out.printf("production: %s not found, run ./mvnw -Pproduction package first%n", app);
+        }
+    }
+
+    private static void report(String name, int runs, String baseUrl, List<String> command) throws Exception {
+        List<Long> millis = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            millis.add(timeToFirstToken(baseUrl, command).toMillis());
+        }
+        millis.sort(null);
+        System.out.printf("%-10s first token: min %5d ms, median %5d ms, max %5d ms (%d runs)%n",
+                name, millis.get(0), millis.get(millis.size() / 2), millis.get(millis.size() - 1), runs);
+    }
+
+    private static Duration timeToFirstToken(String baseUrl, List<String> command) throws Exception {
+        HttpRequest tokenRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/oauth2/token"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("Authorization", "Basic " + Base64.getEncoder()
+                        .encodeToString("messaging-client:secret".getBytes(StandardCharsets.UTF_8)))
+                .POST(HttpRequest.BodyPublishers.ofString("grant_type=client_credentials&scope=message.read"))
+                .build();
+
+        long start = System.nanoTime();
+        Process server = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(new File(System.getProperty("java.io.tmpdir"), "time-to-first-token.log"))
+                .start();
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                if (!server.isAlive()) {
+                    throw new IllegalStateException("Server exited with " + server.exitValue()
+                            + ", see time-to-first-token.log in " + System.getProperty("java.io.tmpdir"));
+                }
+                try {
+                    HttpResponse<Void> response = HTTP.send(tokenRequest, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() == 200) {
+                        return Duration.ofNanos(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+            throw new IllegalStateException("No token within " + TIMEOUT);
+        } finally {
+            server.destroy();
+            server.waitFor();
+        }
+    }
+}
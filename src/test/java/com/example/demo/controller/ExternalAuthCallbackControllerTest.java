@@ -0,0 +1,87 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.AuthFlowProperties;
+import com.example.demo.config.ExternalAuthProperties;
+import com.example.demo.exception.AuthException;
+import com.example.demo.exception.ErrorCode;
+import com.example.demo.service.ExternalAuthService;
+import com.example.demo.session.AuthFlowCompletionHandler;
+import com.example.demo.session.AuthFlowState;
+import com.example.demo.session.AuthFlowStateSealer;
+import com.example.demo.session.AuthFlowStateStore;
+import com.example.demo.session.AuthorizationRequestResumer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.web.savedrequest.HttpSessionRequestCache;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExternalAuthCallbackControllerTest {
+
+	private final ExternalAuthService externalAuthService =
+			new ExternalAuthService(new RestTemplate(), new ObjectMapper(), new ExternalAuthProperties());
+	private final AuthFlowProperties authFlowProperties = new AuthFlowProperties();
+	private final AuthFlowStateStore flowStateStore =
+			new AuthFlowStateStore(authFlowProperties, new AuthFlowStateSealer(authFlowProperties));
+	private final ExternalAuthCallbackController controller = new ExternalAuthCallbackController(
+			externalAuthService,
+			new HttpSessionRequestCache(),
+			flowStateStore,
+			new AuthorizationRequestResumer(AuthorizationServerSettings.builder().build(),
+					new AuthFlowCompletionHandler(flowStateStore)),
+			authFlowProperties);
+
+	@Test
+	void junkCallbacksCreateNoSession() {
+		MockHttpServletRequest request = callbackRequest();
+
+		assertThatThrownBy(() -> controller.handleCallback("<script>", request, new MockHttpServletResponse()))
+				.isSameAs(AuthException.rejected(ErrorCode.CALLBACK_PARSE_FAILED));
+		assertThatThrownBy(() -> controller.handleCallback(
+				data("9999", "denied\r\nforged log line", "abc_client-web", null), request, new MockHttpServletResponse()))
+				.isSameAs(AuthException.rejected(ErrorCode.AUTH_FLOW_EXPIRED));
+		assertThatThrownBy(() -> controller.handleCallback(
+				data("0000", "OK", "abc_client-web", " "), request, new MockHttpServletResponse()))
+				.isSameAs(AuthException.rejected(ErrorCode.EXTERNAL_AUTH_FAILED));
+		assertThat(request.getSession(false)).isNull();
+	}
+
+	@Test
+	void failedExternalAuthIsRejectedOnceTheSessionMatches() {
+		MockHttpServletRequest request = callbackRequest();
+		MockHttpSession session = new MockHttpSession();
+		request.setSession(session);
+		flowStateStore.save(session, AuthFlowState.started(
+				"client-web", "http://localhost:8080/callback", "openid", "state-1", "abc_client-web"));
+
+		assertThatThrownBy(() -> controller.handleCallback(
+				data("9999", "x".repeat(500), "abc_client-web", null), request, new MockHttpServletResponse()))
+				.isSameAs(AuthException.rejected(ErrorCode.EXTERNAL_AUTH_FAILED));
+		assertThatThrownBy(() -> controller.handleCallback(
+				data("9999", "denied", "other_client-web", null), request, new MockHttpServletResponse()))
+				.isSameAs(AuthException.rejected(ErrorCode.SESSION_VALIDATION_FAILED));
+		assertThat(request.getSession(false)).isSameAs(session);
+	}
+
+	private static MockHttpServletRequest callbackRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/oauth2/callback");
+		request.setServletPath("/oauth2/callback");
+		return request;
+	}
+
+	private static String data(String statusCode, String statusDesc, String session, String token) {
+		String json = "{\"statusCode\":\"" + statusCode + "\",\"statusDesc\":\"" + statusDesc.replace("\r", "\\r")
+				.replace("\n", "\\n") + "\",\"session\":\"" + session + "\""
+				+ (token != null ? ",\"token\":\"" + token + "\"" : "") + "}";
+		return Base64.getEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
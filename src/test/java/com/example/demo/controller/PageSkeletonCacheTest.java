@@ -0,0 +1,109 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.PageCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageSkeletonCacheTest {
+
+	private final SpringTemplateEngine templateEngine = templateEngine();
+	private final PageCacheProperties properties = new PageCacheProperties();
+	private final PageSkeletonCache cache = new PageSkeletonCache(templateEngine, properties, new SimpleMeterRegistry());
+
+	@Test
+	void filledSkeletonMatchesAFullRender() {
+		PageSkeletonCache.Key key = cache.key("terms", "client-web", "openid profile", Locale.TAIWAN, true);
+		Map<String, Object> variables = new HashMap<>();
+		variables.put("clientId", "client-web");
+		variables.put("clientName", "Web <App>");
+		variables.put("scopes", List.of("openid", "profile"));
+		variables.put("authorizationEndpoint", "/oauth2/authorize");
+		variables.put("_csrf", new DefaultCsrfToken("X-CSRF-TOKEN", cache.marker("csrfParameter"), cache.marker("csrfToken")));
+		PageSkeleton skeleton = cache.compile(key, variables, Set.of("state", "customerId", "csrfParameter", "csrfToken"));
+
+		String page = skeleton.fill(Map.of("state", "s&\"1'<", "customerId", "A123456789",
+				"csrfParameter", "_csrf", "csrfToken", "token-1"));
+
+		Map<String, Object> full = new HashMap<>(variables);
+		full.put("state", "s&\"1'<");
+		full.put("customerId", "A123456789");
+		full.put("_csrf", new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", "token-1"));
+		assertThat(page).isEqualTo(templateEngine.process("terms", new Context(Locale.TAIWAN, full)))
+				.contains("value=\"s&amp;&quot;1&#39;&lt;\"");
+	}
+
+	@Test
+	void skeletonsAreKeptPerKeyUntilTheirClientIsSaved() {
+		PageSkeletonCache.Key web = cache.key("auth-home-page", "client-web", null, Locale.TAIWAN, false);
+		PageSkeletonCache.Key api = cache.key("auth-home-page", "api-client", null, Locale.TAIWAN, false);
+		PageSkeleton skeleton = cache.compile(web, Map.of("clientName", "Web"), Set.of("externalLoginUrl"));
+		cache.put(web, skeleton);
+		cache.put(api, cache.compile(api, Map.of("clientName", "API"), Set.of("externalLoginUrl")));
+
+		assertThat(cache.get(web)).isSameAs(skeleton);
+		assertThat(cache.get(cache.key("auth-home-page", "other-client", null, Locale.TAIWAN, false))).isNull();
+		assertThat(skeleton.fill(Map.of("externalLoginUrl", "http://localhost:8888/login?a=1&b=2")))
+				.contains("href=\"http://localhost:8888/login?a=1&amp;b=2\"");
+
+		cache.evictClient("client-web");
+		assertThat(cache.get(web)).isNull();
+		assertThat(cache.get(api)).isNotNull();
+
+		properties.setMaxEntries(1);
+		cache.put(web, skeleton);
+		assertThat(cache.get(web)).isSameAs(skeleton);
+		assertThat(cache.get(api)).isNull();
+	}
+
+	@Test
+	void keysNormalizeScopesAndLocale() {
+		properties.setLocales(List.of(Locale.TAIWAN, Locale.ENGLISH));
+		PageSkeletonCache.Key key = cache.key("terms", "client-web", "profile openid", Locale.US, true);
+
+		assertThat(key.scopes()).containsExactly("openid", "profile");
+		assertThat(key.locale()).isEqualTo(Locale.ENGLISH);
+		assertThat(cache.key("terms", "client-web", " openid  profile openid ", Locale.forLanguageTag("en-GB"), true))
+				.isEqualTo(key);
+		assertThat(cache.key("terms", "client-web", "openid", Locale.forLanguageTag("x-junk-1234"), true).locale())
+				.isEqualTo(Locale.TAIWAN);
+	}
+
+	@Test
+	void leastRecentlyUsedPageIsDroppedWhenFull() {
+		properties.setMaxEntries(2);
+		PageSkeletonCache.Key first = cache.key("auth-home-page", "client-1", null, Locale.TAIWAN, false);
+		PageSkeletonCache.Key second = cache.key("auth-home-page", "client-2", null, Locale.TAIWAN, false);
+		PageSkeletonCache.Key third = cache.key("auth-home-page", "client-3", null, Locale.TAIWAN, false);
+		PageSkeleton skeleton = cache.compile(first, Map.of("clientName", "Web"), Set.of("externalLoginUrl"));
+		cache.put(first, skeleton);
+		cache.put(second, skeleton);
+		cache.get(first);
+
+		cache.put(third, skeleton);
+
+		assertThat(cache.get(first)).isSameAs(skeleton);
+		assertThat(cache.get(second)).isNull();
+		assertThat(cache.get(third)).isSameAs(skeleton);
+	}
+
+	private static SpringTemplateEngine templateEngine() {
+		ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
+		templateResolver.setPrefix("templates/");
+		templateResolver.setSuffix(".html");
+		SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+		templateEngine.setTemplateResolver(templateResolver);
+		return templateEngine;
+	}
+}
@@ -0,0 +1,80 @@
+package com.example.demo.datasource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaReadOAuth2AuthorizationServiceTest {
+
+	private static final RegisteredClient CLIENT = RegisteredClient.withId("client-1")
+			.clientId("messaging-client")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+			.build();
+
+	private final RecentAuthorizationChanges recentChanges = new RecentAuthorizationChanges(Duration.ZERO);
+	private final OAuth2AuthorizationService delegate = mock(OAuth2AuthorizationService.class);
+	private final ReplicaReadOAuth2AuthorizationService service =
+			new ReplicaReadOAuth2AuthorizationService(delegate, recentChanges);
+
+	private final OAuth2Authorization stale = authorization("a1", "stale");
+	private final OAuth2Authorization current = authorization("a1", "current");
+
+	ReplicaReadOAuth2AuthorizationServiceTest() {
+		// The delegate answers from wherever the current thread is routed
+		when(delegate.findByToken(eq("token-1"), any()))
+				.thenAnswer(invocation -> ReplicaReads.isPreferred() ? stale : current);
+		recentChanges.invalidationsResumed();
+	}
+
+	@Test
+	void settledAuthorizationsAreReadFromTheReplica() {
+		assertThat(ReplicaReads.replica(() -> service.findByToken("token-1", null))).isSameAs(stale);
+	}
+
+	@Test
+	void recentlyChangedAuthorizationsAreReadFromThePrimary() throws InterruptedException {
+		RecentAuthorizationChanges window = new RecentAuthorizationChanges(Duration.ofMillis(200));
+		ReplicaReadOAuth2AuthorizationService service = new ReplicaReadOAuth2AuthorizationService(delegate, window);
+		window.invalidationsResumed();
+		assertThat(ReplicaReads.replica(() -> service.findByToken("token-1", null)))
+				.as("changes may have been missed before receiving").isSameAs(current);
+
+		Thread.sleep(250);
+		assertThat(ReplicaReads.replica(() -> service.findByToken("token-1", null))).isSameAs(stale);
+		window.authorizationInvalidated("a1", null);
+		assertThat(ReplicaReads.replica(() -> service.findByToken("token-1", null))).isSameAs(current);
+	}
+
+	@Test
+	void missesAndLookupsOutsideAReplicaScopeUseThePrimary() {
+		when(delegate.findByToken(eq("token-2"), any()))
+				.thenAnswer(invocation -> ReplicaReads.isPreferred() ? null : current);
+
+		assertThat(ReplicaReads.replica(() -> service.findByToken("token-2", OAuth2TokenType.ACCESS_TOKEN)))
+				.isSameAs(current);
+		assertThat(service.findByToken("token-1", null)).isSameAs(current);
+		recentChanges.invalidationsSuspended();
+		assertThat(ReplicaReads.replica(() -> service.findByToken("token-1", null))).isSameAs(current);
+	}
+
+	private static OAuth2Authorization authorization(String id, String principalName) {
+		return OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id(id)
+				.principalName(principalName)
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.build();
+	}
+}
@@ -0,0 +1,38 @@
+package com.example.demo.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+	@Test
+	void readOnlyWorkWithExplicitCredentialsFallsBackToThePrimary() throws SQLException {
+		DataSource primary = mock(DataSource.class);
+		DataSource replica = mock(DataSource.class);
+		Connection connection = mock(Connection.class);
+		// The proxy reads the default auto-commit and isolation from a first primary connection
+		when(primary.getConnection()).thenReturn(mock(Connection.class));
+		when(primary.getConnection("report", "secret")).thenReturn(connection);
+		ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary,
+				new ReplicaSet(List.of(new ReplicaSet.Replica("replica-0", replica)), Duration.ofSeconds(1)));
+
+		try (Connection proxy = dataSource.getConnection("report", "secret")) {
+			proxy.setReadOnly(true);
+			proxy.createStatement();
+		}
+
+		verify(primary).getConnection("report", "secret");
+		verify(connection).setReadOnly(true);
+		verify(replica, never()).getConnection();
+	}
+}
@@ -0,0 +1,78 @@
+package com.example.demo.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaSetTest {
+
+	@Test
+	void replicasServeReadsOnlyWithinTheLagThreshold() throws SQLException {
+		Connection fresh = replicaConnection(20L);
+		Connection lagging = replicaConnection(5_000L);
+		ReplicaSet replicas = new ReplicaSet(List.of(
+				new ReplicaSet.Replica("replica-0", dataSource(fresh)),
+				new ReplicaSet.Replica("replica-1", dataSource(lagging))), Duration.ofSeconds(1));
+
+		// Not sampled yet: nothing is trusted
+		assertThat(replicas.getConnection()).isNull();
+
+		replicas.checkLag();
+
+		assertThat(replicas.getReplicas()).extracting(ReplicaSet.Replica::isHealthy).containsExactly(true, false);
+		assertThat(replicas.getReplicas().get(1).getLagMillis()).isEqualTo(5_000L);
+		for (int i = 0; i < 4; i++) {
+			assertThat(replicas.getConnection()).isSameAs(fresh);
+		}
+		assertThat(replicas.getFallbacks()).isEqualTo(1);
+	}
+
+	@Test
+	void unreachableOrPromotedReplicasFallBackToThePrimary() throws SQLException {
+		DataSource unreachable = mock(DataSource.class);
+		Connection promoted = replicaConnection(null);
+		ReplicaSet replicas = new ReplicaSet(List.of(
+				new ReplicaSet.Replica("replica-0", unreachable),
+				new ReplicaSet.Replica("replica-1", dataSource(promoted))), Duration.ofSeconds(1));
+		Connection healthy = replicaConnection(0L);
+		when(unreachable.getConnection()).thenReturn(healthy).thenThrow(new SQLException("connection refused"));
+
+		replicas.checkLag();
+		assertThat(replicas.getReplicas()).extracting(ReplicaSet.Replica::isHealthy).containsExactly(true, false);
+
+		// The failed connection attempt takes the replica out until the next sample
+		assertThat(replicas.getConnection()).isNull();
+		assertThat(replicas.getReplicas().get(0).isHealthy()).isFalse();
+	}
+
+	private static DataSource dataSource(Connection connection) throws SQLException {
+		DataSource dataSource = mock(DataSource.class);
+		when(dataSource.getConnection()).thenReturn(connection);
+		return dataSource;
+	}
+
+	/**
+	 * @param lagMillis result of the lag query, null on a server that is not in recovery
+	 */
+	private static Connection replicaConnection(Long lagMillis) throws SQLException {
+		Connection connection = mock(Connection.class);
+		Statement statement = mock(Statement.class);
+		ResultSet rs = mock(ResultSet.class);
+		when(connection.createStatement()).thenReturn(statement);
+		when(statement.executeQuery(ReplicaSet.LAG_SQL)).thenReturn(rs);
+		when(rs.next()).thenReturn(true);
+		when(rs.getLong(1)).thenReturn(lagMillis != null ? lagMillis : 0L);
+		when(rs.wasNull()).thenReturn(lagMillis == null);
+		return connection;
+	}
+}
@@ -0,0 +1,41 @@
+package com.example.demo.service;
+
+import com.example.demo.config.ExternalAuthProperties;
+import com.example.demo.exception.AuthException;
+import com.example.demo.exception.ErrorCode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CallbackDataRejectionTest {
+
+	private final ExternalAuthService service =
+			new ExternalAuthService(new RestTemplate(), new ObjectMapper(), new ExternalAuthProperties());
+
+	@Test
+	void shapeCheckRejectsJunkBeforeDecoding() {
+		assertThat(ExternalAuthService.isWellFormedBase64("eyJhIjoxfQ==", 16)).isTrue();
+		assertThat(ExternalAuthService.isWellFormedBase64(null, 16)).isFalse();
+		assertThat(ExternalAuthService.isWellFormedBase64("", 16)).isFalse();
+		assertThat(ExternalAuthService.isWellFormedBase64("====", 16)).isFalse();
+		assertThat(ExternalAuthService.isWellFormedBase64("eyJh%20", 16)).isFalse();
+		assertThat(ExternalAuthService.isWellFormedBase64("a".repeat(17), 16)).isFalse();
+	}
+
+	@Test
+	void rejectionsAreSharedAndStackless() {
+		String notJson = Base64.getEncoder().encodeToString("not json".getBytes(StandardCharsets.UTF_8));
+
+		assertThatThrownBy(() -> service.parseCallbackData(notJson))
+				.isSameAs(AuthException.rejected(ErrorCode.CALLBACK_PARSE_FAILED));
+		assertThatThrownBy(() -> service.parseCallbackData("<script>"))
+				.isSameAs(AuthException.rejected(ErrorCode.CALLBACK_PARSE_FAILED));
+		assertThat(AuthException.rejected(ErrorCode.CALLBACK_PARSE_FAILED).getStackTrace()).isEmpty();
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExternalEndpointSelectorTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	void prefersTheFasterEndpoint() {
+		ExternalEndpointSelector selector = new ExternalEndpointSelector(List.of("fast", "slow"), 3, 1000, 5);
+		ExternalEndpointSelector.Endpoint fast = selector.choose(null);
+		ExternalEndpointSelector.Endpoint slow = selector.choose(fast);
+		fast.start();
+		selector.record(fast, 10 * MS, true);
+		slow.start();
+		selector.record(slow, 400 * MS, true);
+
+		for (int i = 0; i < 20; i++) {
+			assertThat(selector.choose(null)).isSameAs(fast);
+		}
+		assertThat(selector.choose(fast)).isSameAs(slow);
+	}
+
+	@Test
+	void failingEndpointLeavesRotationUntilCooldownEnds() {
+		ExternalEndpointSelector selector = new ExternalEndpointSelector(List.of("a", "b"), 2, 1000, 5);
+		ExternalEndpointSelector.Endpoint failing = selector.choose(null);
+		long now = System.nanoTime();
+		for (int i = 0; i < 2; i++) {
+			failing.start();
+			selector.record(failing, MS, false, now);
+		}
+
+		for (int i = 0; i < 20; i++) {
+			assertThat(selector.choose(null, now)).isNotSameAs(failing);
+		}
+		assertThat(failing.isAvailable(now + 1001 * MS)).isTrue();
+	}
+
+	@Test
+	void hedgeDelayFollowsRecentP95() {
+		ExternalEndpointSelector selector = new ExternalEndpointSelector(List.of("a", "b"), 3, 1000, 5);
+		ExternalEndpointSelector.Endpoint endpoint = selector.choose(null);
+		assertThat(selector.hedgeDelayNanos()).isEqualTo(5 * MS);
+
+		for (int i = 1; i <= 128; i++) {
+			endpoint.start();
+			selector.record(endpoint, i * MS, true);
+		}
+		assertThat(selector.hedgeDelayNanos()).isBetween(115 * MS, 128 * MS);
+	}
+
+	@Test
+	void fastFailuresDoNotLowerTheLatencyEstimate() {
+		ExternalEndpointSelector selector = new ExternalEndpointSelector(List.of("broken", "healthy"), 100, 1000, 5);
+		ExternalEndpointSelector.Endpoint broken = selector.choose(null);
+		ExternalEndpointSelector.Endpoint healthy = selector.choose(broken);
+		broken.start();
+		selector.record(broken, 50 * MS, true);
+		healthy.start();
+		selector.record(healthy, 40 * MS, true);
+		for (int i = 0; i < 10; i++) {
+			broken.start();
+			selector.record(broken, MS, false);
+		}
+
+		assertThat(selector.choose(null)).isSameAs(healthy);
+	}
+
+	@Test
+	void sampleWindowKeepsWorkingPastItsCapacity() {
+		ExternalEndpointSelector selector = new ExternalEndpointSelector(List.of("a"), 3, 1000, 5);
+		ExternalEndpointSelector.Endpoint endpoint = selector.choose(null);
+
+		for (int i = 0; i < 1000; i++) {
+			endpoint.start();
+			selector.record(endpoint, (i < 744 ? 1000 : 10) * MS, true);
+		}
+		assertThat(selector.hedgeDelayNanos()).isEqualTo(10 * MS);
+	}
+}
@@ -0,0 +1,51 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestCoalescerTest {
+
+	@Test
+	void concurrentRequestsShareOneBatchAndGetTheirOwnResult() throws Exception {
+		List<List<String>> batches = new CopyOnWriteArrayList<>();
+		try (RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(keys -> {
+			batches.add(keys);
+			return keys.stream().map(String::toUpperCase).toList();
+		}, Duration.ofMillis(50), 3)) {
+			List<CompletableFuture<String>> results = new ArrayList<>();
+			for (String key : List.of("a", "b", "c", "d")) {
+				results.add(coalescer.submit(key));
+			}
+
+			for (int i = 0; i < results.size(); i++) {
+				assertThat(results.get(i).get(1, TimeUnit.SECONDS)).isEqualTo(List.of("A", "B", "C", "D").get(i));
+			}
+			assertThat(batches).containsExactly(List.of("a", "b", "c"), List.of("d"));
+		}
+	}
+
+	@Test
+	void batchFailureIsPropagatedToEveryCaller() {
+		try (RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(keys -> {
+			throw new IllegalStateException("down");
+		}, Duration.ofMillis(5), 10)) {
+			CompletableFuture<String> first = coalescer.submit("a");
+			CompletableFuture<String> second = coalescer.submit("b");
+
+			assertThatThrownBy(() -> first.get(1, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+					.hasCauseInstanceOf(IllegalStateException.class);
+			assertThatThrownBy(() -> second.get(1, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+					.hasCauseInstanceOf(IllegalStateException.class);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.example.demo.session;
+
+import com.example.demo.config.AuthFlowProperties;
+import com.example.demo.exception.AuthException;
+import com.example.demo.exception.ErrorCode;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AuthFlowStateSealerTest {
+
+	private static final AuthFlowState FLOW = AuthFlowState.started(
+			"client-web", "http://localhost:8080/callback", "profile email", "xyz123", null);
+	private static final String BINDING = "browser-binding";
+
+	@Test
+	void sealedTokenOpensOnAnotherNodeWithSharedKey() {
+		AuthFlowProperties properties = properties(Duration.ofMinutes(10));
+
+		String token = new AuthFlowStateSealer(properties).seal(FLOW, BINDING);
+
+		assertThat(new AuthFlowStateSealer(properties).unseal(token, BINDING)).isEqualTo(FLOW);
+		assertThat(token).doesNotContain("client-web");
+	}
+
+	@Test
+	void tamperedTokenIsRejected() {
+		AuthFlowStateSealer sealer = new AuthFlowStateSealer(properties(Duration.ofMinutes(10)));
+		char[] token = sealer.seal(FLOW, BINDING).toCharArray();
+		token[token.length / 2] = token[token.length / 2] == 'A' ? 'B' : 'A';
+
+		assertThatThrownBy(() -> sealer.unseal(new String(token), BINDING))
+				.isInstanceOf(AuthException.class)
+				.extracting(e -> ((AuthException) e).getErrorCode())
+				.isEqualTo(ErrorCode.SESSION_VALIDATION_FAILED);
+	}
+
+	@Test
+	void expiredTokenIsRejected() {
+		AuthFlowStateSealer sealer = new AuthFlowStateSealer(properties(Duration.ofSeconds(-5)));
+
+		assertThatThrownBy(() -> sealer.unseal(sealer.seal(FLOW, BINDING), BINDING))
+				.isInstanceOf(AuthException.class)
+				.extracting(e -> ((AuthException) e).getErrorCode())
+				.isEqualTo(ErrorCode.AUTH_FLOW_EXPIRED);
+	}
+
+	@Test
+	void tokenOpensOnlyInTheBrowserThatStartedTheFlow() {
+		AuthFlowStateSealer sealer = new AuthFlowStateSealer(properties(Duration.ofMinutes(10)));
+		String token = sealer.seal(FLOW, BINDING);
+
+		assertThatThrownBy(() -> sealer.unseal(token, "attacker-binding"))
+				.isInstanceOf(AuthException.class)
+				.extracting(e -> ((AuthException) e).getErrorCode())
+				.isEqualTo(ErrorCode.SESSION_VALIDATION_FAILED);
+		assertThatThrownBy(() -> sealer.unseal(token, null))
+				.isInstanceOf(AuthException.class)
+				.extracting(e -> ((AuthException) e).getErrorCode())
+				.isEqualTo(ErrorCode.SESSION_VALIDATION_FAILED);
+	}
+
+	@Test
+	void replayedTokenIsRejected() {
+		AuthFlowStateSealer sealer = new AuthFlowStateSealer(properties(Duration.ofMinutes(10)));
+		String token = sealer.seal(FLOW, BINDING);
+		sealer.unseal(token, BINDING);
+
+		assertThatThrownBy(() -> sealer.unseal(token, BINDING))
+				.isInstanceOf(AuthException.class)
+				.extracting(e -> ((AuthException) e).getErrorCode())
+				.isEqualTo(ErrorCode.SESSION_VALIDATION_FAILED);
+	}
+
+	@Test
+	void statelessModeRequiresASharedKey() {
+		AuthFlowProperties properties = properties(Duration.ofMinutes(10));
+		properties.setStateTokenKey(null);
+
+		assertThatThrownBy(() -> new AuthFlowStateSealer(properties))
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+	private static AuthFlowProperties properties(Duration ttl) {
+		AuthFlowProperties properties = new AuthFlowProperties();
+		properties.setStateless(true);
+		properties.setStateTokenKey(Base64.getEncoder().encodeToString(new byte[32]));
+		properties.setStateTokenTtl(ttl);
+		return properties;
+	}
+}
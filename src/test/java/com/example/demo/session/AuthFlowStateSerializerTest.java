@@ -0,0 +1,51 @@
+package com.example.demo.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthFlowStateSerializerTest {
+
+	private static final AuthFlowState STARTED = AuthFlowState.started(
+			"client-web", "http://localhost:8080/callback", "profile email", "xyz123",
+			"3f1c2a4e-8b7d-4f6a-9c21-0d5e6f7a8b9c_client-web");
+
+	@Test
+	void roundTripStartedFlow() {
+		byte[] bytes = AuthFlowStateSerializer.serialize(STARTED);
+
+		assertThat(AuthFlowStateSerializer.deserialize(bytes)).isEqualTo(STARTED);
+		assertThat(bytes.length).isLessThan(200);
+	}
+
+	@Test
+	void roundTripAuthenticatedFlow() {
+		AuthFlowState authenticated = STARTED.authenticated("A123456789", Instant.ofEpochMilli(1_700_000_000_123L));
+
+		AuthFlowState restored = AuthFlowStateSerializer.deserialize(AuthFlowStateSerializer.serialize(authenticated));
+
+		assertThat(restored).isEqualTo(authenticated);
+		assertThat(restored.externalSession()).isNull();
+		assertThat(restored.isAuthenticated()).isTrue();
+	}
+
+	@Test
+	void javaSerializationUsesCompactForm() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(STARTED);
+		}
+
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			assertThat(in.readObject()).isEqualTo(STARTED);
+		}
+		// Stream header + proxy class descriptor + compact payload, no per-field descriptors
+		assertThat(bytes.size()).isLessThan(300);
+	}
+}
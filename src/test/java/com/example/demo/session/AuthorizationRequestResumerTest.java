@@ -0,0 +1,269 @@
+package com.example.demo.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.apache.tomcat.util.http.Parameters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.security.core.session.SessionRegistryImpl;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.oidc.OidcScopes;
+import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationConsentService;
+import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationCodeRequestAuthenticationProvider;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationCodeRequestAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationConsentAuthenticationProvider;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContextHolder;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
+import org.springframework.security.oauth2.server.authorization.web.OAuth2AuthorizationEndpointFilter;
+import org.springframework.security.web.savedrequest.SavedRequest;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the resumed request against what OAuth2AuthorizationEndpointFilter answers for the
+ * same saved query, with the same providers
+ */
+class AuthorizationRequestResumerTest {
+
+	private static final String REDIRECT_URI = "http://localhost:8080/callback";
+
+	private static final RegisteredClient CONSENT_CLIENT = client("consent-client", true);
+	private static final RegisteredClient TRUSTED_CLIENT = client("trusted-client", false);
+
+	private final AuthorizationServerSettings settings = AuthorizationServerSettings.builder()
+			.issuer("http://localhost:9000")
+			.build();
+	private final OAuth2AuthorizationService authorizationService = new InMemoryOAuth2AuthorizationService();
+	private final List<Authentication> converted = new ArrayList<>();
+	private final AuthFlowStateStore flowStateStore = mock(AuthFlowStateStore.class);
+	private final SessionRegistry sessionRegistry = new SessionRegistryImpl();
+	private AuthenticationManager authenticationManager;
+	private AuthorizationRequestResumer resumer;
+
+	@BeforeEach
+	void setUp() {
+		InMemoryRegisteredClientRepository clients = new InMemoryRegisteredClientRepository(CONSENT_CLIENT, TRUSTED_CLIENT);
+		InMemoryOAuth2AuthorizationConsentService consents = new InMemoryOAuth2AuthorizationConsentService();
+		ProviderManager providers = new ProviderManager(
+				new OAuth2AuthorizationCodeRequestAuthenticationProvider(clients, authorizationService, consents),
+				new OAuth2AuthorizationConsentAuthenticationProvider(clients, authorizationService, consents));
+		// Records what each side converted the request into
+		authenticationManager = authentication -> {
+			converted.add(authentication);
+			return providers.authenticate(authentication);
+		};
+		resumer = new AuthorizationRequestResumer(settings, new AuthFlowCompletionHandler(flowStateStore));
+		resumer.bind(authenticationManager, sessionRegistry);
+		signIn(UsernamePasswordAuthenticationToken.authenticated("A123456789", null, AuthorityUtils.NO_AUTHORITIES));
+	}
+
+	@AfterEach
+	void tearDown() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void consentRequiredRedirectsToTheTermsPageLikeTheEndpoint() throws Exception {
+		String query = "response_type=code&client_id=consent-client&redirect_uri=" + REDIRECT_URI
+				+ "&scope=openid+profile&state=client-state";
+		MockHttpServletRequest callback = callbackRequest();
+
+		UriComponents resumed = UriComponentsBuilder.fromUriString(resumer.resume(callback, new MockHttpServletResponse(),
+				savedRequest("/oauth2/authorize?" + query))).build();
+		UriComponents endpoint = UriComponentsBuilder.fromUriString(endpointRedirect(query)).build();
+
+		assertThat(resumed.getPath()).isEqualTo("/terms").isEqualTo(endpoint.getPath());
+		assertThat(scopes(resumed)).isEqualTo(scopes(endpoint)).containsExactlyInAnyOrder("openid", "profile");
+		assertThat(param(resumed, "client_id")).isEqualTo(param(endpoint, "client_id")).isEqualTo("consent-client");
+		// Each side starts its own consent: both states belong to a stored authorization
+		assertThat(authorizationService.findByToken(param(resumed, "state"), new OAuth2TokenType("state"))).isNotNull();
+		assertThat(authorizationService.findByToken(param(endpoint, "state"), new OAuth2TokenType("state"))).isNotNull();
+		verify(flowStateStore, never()).clear(any());
+	}
+
+	@Test
+	void issuedCodeCompletesTheFlowAndRegistersTheOidcSession() throws Exception {
+		String query = "response_type=code&client_id=trusted-client&redirect_uri=" + REDIRECT_URI
+				+ "&scope=openid+profile&state=client-state";
+		MockHttpServletRequest callback = callbackRequest();
+		HttpSession session = callback.getSession();
+
+		UriComponents resumed = UriComponentsBuilder.fromUriString(resumer.resume(callback, new MockHttpServletResponse(),
+				savedRequest("/oauth2/authorize?" + query))).build();
+		UriComponents endpoint = UriComponentsBuilder.fromUriString(endpointRedirect(query)).build();
+
+		assertThat(resumed.toUriString()).startsWith(REDIRECT_URI + "?code=");
+		assertThat(UriComponentsBuilder.fromUriString(resumed.toUriString()).replaceQueryParam("code").build())
+				.isEqualTo(UriComponentsBuilder.fromUriString(endpoint.toUriString()).replaceQueryParam("code").build());
+		assertThat(authorizationService.findByToken(param(resumed, "code"), new OAuth2TokenType("code"))).isNotNull();
+		verify(flowStateStore).clear(session);
+		assertThat(sessionRegistry.getSessionInformation(session.getId())).isNotNull();
+	}
+
+	@Test
+	void issuedCodeWithoutOpenidRegistersNoSession() {
+		String query = "response_type=code&client_id=trusted-client&redirect_uri=" + REDIRECT_URI + "&scope=profile";
+		MockHttpServletRequest callback = callbackRequest();
+
+		assertThat(resumer.resume(callback, new MockHttpServletResponse(), savedRequest("/oauth2/authorize?" + query)))
+				.startsWith(REDIRECT_URI + "?code=");
+		assertThat(sessionRegistry.getSessionInformation(callback.getSession().getId())).isNull();
+	}
+
+	@Test
+	void requestsTheEndpointWouldNotRedirectFallBack() {
+		String valid = "response_type=code&client_id=trusted-client&redirect_uri=" + REDIRECT_URI + "&scope=profile";
+
+		assertThat(resume("/oauth2/authorize?" + valid.replace(REDIRECT_URI, "http://evil.example/callback"))).isNull();
+		assertThat(resume("/oauth2/authorize?" + valid.replace("scope=profile", "scope=admin"))).isNull();
+		assertThat(resume("/other?" + valid)).isNull();
+		assertThat(resumer.resume(callbackRequest(), new MockHttpServletResponse(), null)).isNull();
+
+		signIn(new AnonymousAuthenticationToken("key", "anonymousUser",
+				AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+		assertThat(resume("/oauth2/authorize?" + valid)).isNull();
+
+		SecurityContextHolder.clearContext();
+		assertThat(resume("/oauth2/authorize?" + valid)).isNull();
+		verify(flowStateStore, never()).clear(any());
+	}
+
+	@Test
+	void savedQueryDecodesLikeTheServletContainer() throws Exception {
+		String query = "response_type=code&client_id=trusted-client&redirect_uri=" + UriUtils.encode(REDIRECT_URI,
+				StandardCharsets.UTF_8) + "&scope=openid+profile&state=a%2Bb+c%26d%3D&x_note=caf%C3%A9+au+lait&nonce=n%20";
+
+		resume("/oauth2/authorize?" + query);
+		endpointRedirect(query);
+
+		assertThat(converted).hasSize(2);
+		OAuth2AuthorizationCodeRequestAuthenticationToken resumed =
+				(OAuth2AuthorizationCodeRequestAuthenticationToken) converted.get(0);
+		OAuth2AuthorizationCodeRequestAuthenticationToken endpoint =
+				(OAuth2AuthorizationCodeRequestAuthenticationToken) converted.get(1);
+		assertThat(resumed.getState()).isEqualTo(endpoint.getState()).isEqualTo("a+b c&d=");
+		assertThat(resumed.getRedirectUri()).isEqualTo(endpoint.getRedirectUri()).isEqualTo(REDIRECT_URI);
+		assertThat(resumed.getScopes()).isEqualTo(endpoint.getScopes()).containsExactlyInAnyOrder("openid", "profile");
+		assertThat(resumed.getAdditionalParameters()).isEqualTo(endpoint.getAdditionalParameters())
+				.containsEntry("x_note", "café au lait")
+				.containsEntry("nonce", "n ");
+	}
+
+	private String resume(String savedPathAndQuery) {
+		return resumer.resume(callbackRequest(), new MockHttpServletResponse(), savedRequest(savedPathAndQuery));
+	}
+
+	/**
+	 * The redirect the authorization endpoint sends for the query, parameters parsed by Tomcat
+	 */
+	private String endpointRedirect(String query) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", settings.getAuthorizationEndpoint());
+		request.setServletPath(settings.getAuthorizationEndpoint());
+		request.setQueryString(query);
+		Parameters parameters = new Parameters();
+		parameters.setCharset(StandardCharsets.UTF_8);
+		byte[] bytes = query.getBytes(StandardCharsets.ISO_8859_1);
+		parameters.processParameters(bytes, 0, bytes.length);
+		for (String name : Collections.list(parameters.getParameterNames())) {
+			request.addParameter(name, parameters.getParameterValues(name));
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		OAuth2AuthorizationEndpointFilter filter =
+				new OAuth2AuthorizationEndpointFilter(authenticationManager, settings.getAuthorizationEndpoint());
+		filter.setConsentPage("/terms");
+
+		AuthorizationServerContextHolder.setContext(new AuthorizationServerContext() {
+			@Override
+			public String getIssuer() {
+				return settings.getIssuer();
+			}
+
+			@Override
+			public AuthorizationServerSettings getAuthorizationServerSettings() {
+				return settings;
+			}
+		});
+		try {
+			filter.doFilter(request, response, new MockFilterChain());
+		} finally {
+			AuthorizationServerContextHolder.resetContext();
+		}
+		return response.getRedirectedUrl();
+	}
+
+	private static MockHttpServletRequest callbackRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/oauth2/callback");
+		request.setServletPath("/oauth2/callback");
+		request.getSession();
+		return request;
+	}
+
+	private static SavedRequest savedRequest(String pathAndQuery) {
+		SavedRequest savedRequest = mock(SavedRequest.class);
+		when(savedRequest.getRedirectUrl()).thenReturn("http://localhost:9000" + pathAndQuery);
+		return savedRequest;
+	}
+
+	private static void signIn(Authentication authentication) {
+		SecurityContextHolder.getContext().setAuthentication(authentication);
+	}
+
+	private static Set<String> scopes(UriComponents uri) {
+		return new HashSet<>(Arrays.asList(param(uri, "scope").split(" ")));
+	}
+
+	private static String param(UriComponents uri, String name) {
+		MultiValueMap<String, String> params = uri.getQueryParams();
+		String value = params.getFirst(name);
+		return value != null ? UriUtils.decode(value, StandardCharsets.UTF_8) : null;
+	}
+
+	private static RegisteredClient client(String clientId, boolean requireConsent) {
+		return RegisteredClient.withId(clientId)
+				.clientId(clientId)
+				.clientSecret("{noop}" + clientId + "-secret")
+				.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.redirectUri(REDIRECT_URI)
+				.scope(OidcScopes.OPENID)
+				.scope(OidcScopes.PROFILE)
+				.clientSettings(ClientSettings.builder().requireAuthorizationConsent(requireConsent).build())
+				.build();
+	}
+}
@@ -0,0 +1,122 @@
+package com.example.demo.session;
+
+import com.example.demo.config.SessionStoreProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JdbcSessionRepositoryTest {
+
+	private static final String SESSION_TABLE = "poc_spring_authorization_server.http_session ";
+	private static final String ATTRIBUTE_TABLE = "poc_spring_authorization_server.http_session_attribute ";
+
+	private final JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+	private JdbcSessionRepository repository;
+	private String sessionId;
+
+	@BeforeEach
+	void setUp() {
+		SessionStoreProperties properties = new SessionStoreProperties();
+		// Serve from the near-cache without version probes
+		properties.getNearCache().setTrustWindow(Duration.ofMinutes(1));
+		repository = new JdbcSessionRepository(jdbcOperations, TransactionOperations.withoutTransaction(), properties);
+		when(jdbcOperations.update(anyString(), any(Object[].class))).thenReturn(1);
+
+		JdbcSessionRepository.JdbcSession session = repository.createSession();
+		session.setAttribute("items", new ArrayList<>(List.of("a")));
+		session.setAttribute("flag", "on");
+		repository.save(session);
+		sessionId = session.getId();
+		clearInvocations(jdbcOperations);
+	}
+
+	@Test
+	void cachedSessionsDoNotShareAttributeObjects() {
+		List<String> first = repository.findById(sessionId).getAttribute("items");
+		first.add("b");
+
+		List<String> second = repository.findById(sessionId).getAttribute("items");
+
+		assertThat(second).containsExactly("a");
+		assertThat(second).isNotSameAs(first);
+	}
+
+	@Test
+	void inPlaceChangeOfAReadAttributeIsWritten() {
+		JdbcSessionRepository.JdbcSession session = repository.findById(sessionId);
+		List<String> items = session.getAttribute("items");
+		items.add("b");
+
+		repository.save(session);
+
+		List<Object[]> upserts = captureBatch("INSERT INTO " + ATTRIBUTE_TABLE);
+		assertThat(upserts).hasSize(1);
+		assertThat(upserts.get(0)[1]).isEqualTo("items");
+		assertThat(upserts.get(0)[2]).isEqualTo(new SerializingConverter().convert(new ArrayList<>(List.of("a", "b"))));
+		assertThat(repository.findById(sessionId).<List<String>>getAttribute("items")).containsExactly("a", "b");
+	}
+
+	@Test
+	void removedAttributeIsDeleted() {
+		JdbcSessionRepository.JdbcSession session = repository.findById(sessionId);
+		session.removeAttribute("flag");
+
+		repository.save(session);
+
+		List<Object[]> deletes = captureBatch("DELETE FROM " + ATTRIBUTE_TABLE);
+		assertThat(deletes).hasSize(1);
+		assertThat(deletes.get(0)[1]).isEqualTo("flag");
+		verify(jdbcOperations).update(startsWith("UPDATE " + SESSION_TABLE), any(Object[].class));
+		assertThat(repository.findById(sessionId).getAttributeNames()).containsExactly("items");
+	}
+
+	@Test
+	void maxInactiveIntervalChangeIsWritten() {
+		JdbcSessionRepository.JdbcSession session = repository.findById(sessionId);
+		session.setMaxInactiveInterval(Duration.ofMinutes(5));
+
+		repository.save(session);
+
+		ArgumentCaptor<Object[]> parameters = ArgumentCaptor.forClass(Object[].class);
+		verify(jdbcOperations).update(startsWith("UPDATE " + SESSION_TABLE + "SET session_id"), parameters.capture());
+		assertThat(parameters.getValue()[2]).isEqualTo(300);
+		assertThat(repository.findById(sessionId).getMaxInactiveInterval()).isEqualTo(Duration.ofMinutes(5));
+	}
+
+	@Test
+	void unchangedReadsWriteNothing() {
+		JdbcSessionRepository.JdbcSession session = repository.findById(sessionId);
+		session.getAttribute("items");
+		session.getAttribute("flag");
+
+		repository.save(session);
+
+		verify(jdbcOperations, never()).update(startsWith("UPDATE " + SESSION_TABLE + "SET session_id"), any(Object[].class));
+		verify(jdbcOperations, never()).batchUpdate(anyString(), anyList());
+	}
+
+	private List<Object[]> captureBatch(String sqlPrefix) {
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+		verify(jdbcOperations).batchUpdate(startsWith(sqlPrefix), batch.capture());
+		return batch.getValue();
+	}
+}
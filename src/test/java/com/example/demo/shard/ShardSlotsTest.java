@@ -0,0 +1,77 @@
+package com.example.demo.shard;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardSlotsTest {
+
+	private static final RegisteredClient CLIENT = RegisteredClient.withId("client-1")
+			.clientId("messaging-client")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.redirectUri("http://localhost:8080/callback")
+			.build();
+
+	@Test
+	void tokensCarryTheirSlot() {
+		assertThat(ShardSlots.slotOfToken(ShardSlots.tag(0, "abc"))).isZero();
+		assertThat(ShardSlots.slotOfToken(ShardSlots.tag(1023, "abc"))).isEqualTo(1023);
+		assertThat(ShardSlots.tag(5, "abc")).isEqualTo("05~abc");
+		// Base64url values never contain '~': tokens issued before sharding carry no slot
+		assertThat(ShardSlots.slotOfToken("q4ZnT0x-_aLz9kXW2mRb")).isEqualTo(-1);
+		assertThat(ShardSlots.slotOfToken("zz~abc")).isEqualTo(-1);
+
+		String payload = "{\"sub\":\"A123456789\",\"aud\":[\"client\"],\"jti\":\"" + ShardSlots.tag(700, "id-1") + "\"}";
+		String jwt = "eyJhbGciOiJSUzI1NiJ9."
+				+ Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+				+ ".c2lnbmF0dXJl";
+		assertThat(ShardSlots.slotOfToken(jwt)).isEqualTo(700);
+		assertThat(ShardSlots.slotOfToken("a.b.c")).isEqualTo(-1);
+	}
+
+	@Test
+	void authorizationKeepsTheSlotOfItsFirstTaggedToken() {
+		Instant now = Instant.now();
+		OAuth2Authorization pending = OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id("a1")
+				.principalName("A123456789")
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.attribute("state", "state-1")
+				.build();
+		assertThat(ShardSlots.slotOf(pending)).isEqualTo(ShardSlots.slotOfId("a1"));
+
+		int slot = (ShardSlots.slotOfId("a1") + 1) % ShardSlots.SLOTS;
+		OAuth2Authorization redeemed = OAuth2Authorization.from(pending)
+				.token(new OAuth2AuthorizationCode(ShardSlots.tag(slot, "code"), now, now.plusSeconds(300)))
+				.token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "jwt", now, now.plusSeconds(300),
+						Set.of("openid")), metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME,
+						Map.of("jti", ShardSlots.tag(slot, "id-1"))))
+				.refreshToken(new OAuth2RefreshToken(ShardSlots.tag(slot, "refresh"), now, now.plusSeconds(3600)))
+				.build();
+		assertThat(ShardSlots.slotOf(redeemed)).isEqualTo(slot);
+
+		OAuth2Authorization clientCredentials = OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id("a2")
+				.principalName("messaging-client")
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "jwt", now, now.plusSeconds(300),
+						Set.of("message.read")), metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME,
+						Map.of("jti", ShardSlots.tag(42, "id-2"))))
+				.build();
+		assertThat(ShardSlots.slotOf(clientCredentials)).isEqualTo(42);
+	}
+}
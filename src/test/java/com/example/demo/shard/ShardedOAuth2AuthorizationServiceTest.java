@@ -0,0 +1,111 @@
+package com.example.demo.shard;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShardedOAuth2AuthorizationServiceTest {
+
+	private static final RegisteredClient CLIENT = RegisteredClient.withId("client-1")
+			.clientId("messaging-client")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+			.redirectUri("http://localhost:8080/callback")
+			.build();
+
+	private final AuthorizationShard s1 = shard("s1");
+	private final AuthorizationShard s2 = shard("s2");
+	private final AuthorizationShard s3 = shard("s3");
+	private final SlotTable slotTable = mock(SlotTable.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private ShardedOAuth2AuthorizationService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new ShardedOAuth2AuthorizationService(
+				new AuthorizationShards(List.of(s1, s2, s3), List.of(), meterRegistry), slotTable, meterRegistry);
+		when(slotTable.route(anyInt())).thenReturn(new SlotTable.Route("s2", null));
+		when(slotTable.isSettled()).thenReturn(true);
+	}
+
+	@Test
+	void taggedTokensAreLookedUpOnTheirShardOnly() {
+		String refreshToken = ShardSlots.tag(9, "refresh");
+		OAuth2Authorization authorization = authorization("a1", refreshToken);
+		when(s2.findByToken(refreshToken, OAuth2TokenType.REFRESH_TOKEN)).thenReturn(authorization);
+
+		assertThat(service.findByToken(refreshToken, OAuth2TokenType.REFRESH_TOKEN)).isSameAs(authorization);
+		assertThat(service.findByToken(ShardSlots.tag(9, "unknown"), null)).isNull();
+		verify(slotTable, times(2)).route(9);
+		verify(s1, never()).findByToken(anyString(), any());
+		verify(s3, never()).findByToken(anyString(), any());
+
+		assertThat(service.findByToken("legacy-token", null)).isNull();
+		verify(s1).findByToken("legacy-token", null);
+		verify(s3).findByToken("legacy-token", null);
+		assertThat(meterRegistry.counter("oauth2.authorization.shard.fanouts", "reason", "untagged").count())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void savingAMovingAuthorizationMovesIt() {
+		when(slotTable.route(anyInt())).thenReturn(new SlotTable.Route("s2", "s1"));
+		OAuth2Authorization stored = authorization("a1", ShardSlots.tag(9, "refresh-1"));
+		OAuth2Authorization updated = authorization("a1", ShardSlots.tag(9, "refresh-2"));
+		when(s1.findById("a1")).thenReturn(stored);
+
+		service.save(updated);
+
+		var order = inOrder(s1, s2);
+		order.verify(s2).locked(any(), any());
+		order.verify(s2).save(stored);
+		order.verify(s2).save(updated);
+		order.verify(s1).remove(stored);
+		assertThat(meterRegistry.counter("oauth2.authorization.shard.moved").count()).isEqualTo(1);
+
+		// Lookups fall back to the shard the slot moves from
+		when(s1.findByToken("09~refresh-1", OAuth2TokenType.REFRESH_TOKEN)).thenReturn(stored);
+		assertThat(service.findByToken("09~refresh-1", OAuth2TokenType.REFRESH_TOKEN)).isSameAs(stored);
+		verify(s3, never()).findByToken(anyString(), any());
+	}
+
+	private static OAuth2Authorization authorization(String id, String refreshToken) {
+		Instant now = Instant.now();
+		return OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id(id)
+				.principalName("A123456789")
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.refreshToken(new OAuth2RefreshToken(refreshToken, now, now.plusSeconds(3600)))
+				.build();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static AuthorizationShard shard(String name) {
+		AuthorizationShard shard = mock(AuthorizationShard.class);
+		when(shard.getName()).thenReturn(name);
+		when(shard.locked(anyString(), any())).thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(1)).get());
+		return shard;
+	}
+}
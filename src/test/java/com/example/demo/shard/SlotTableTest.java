@@ -0,0 +1,53 @@
+package com.example.demo.shard;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SlotTableTest {
+
+	@Test
+	void planMovesOnlyTheSlotsNeededForTheWeights() throws Exception {
+		JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+		// Every slot on the legacy shard
+		doAnswer(invocation -> {
+			RowCallbackHandler handler = invocation.getArgument(1);
+			ResultSet rs = mock(ResultSet.class);
+			for (int slot = 0; slot < ShardSlots.SLOTS; slot++) {
+				when(rs.getInt(1)).thenReturn(slot);
+				when(rs.getString(2)).thenReturn("main");
+				handler.processRow(rs);
+			}
+			return null;
+		}).when(jdbcOperations).query(eq(SlotTable.SELECT_SQL), any(RowCallbackHandler.class));
+		SlotTable slotTable = new SlotTable(jdbcOperations, Duration.ofSeconds(5));
+		slotTable.refresh();
+
+		Map<String, Integer> weights = new LinkedHashMap<>();
+		weights.put("main", 1);
+		weights.put("s1", 1);
+		weights.put("s2", 2);
+		Map<Integer, String> plan = slotTable.plan(weights);
+
+		assertThat(plan).hasSize(768);
+		assertThat(plan.values().stream().filter("s1"::equals).count()).isEqualTo(256);
+		assertThat(plan.values().stream().filter("s2"::equals).count()).isEqualTo(512);
+		assertThat(plan).doesNotContainValue("main");
+
+		weights.put("main", 0);
+		assertThat(slotTable.plan(weights)).hasSize(ShardSlots.SLOTS);
+		assertThat(SlotTable.assign(weights)).doesNotContain("main").contains("s1", "s2");
+	}
+}
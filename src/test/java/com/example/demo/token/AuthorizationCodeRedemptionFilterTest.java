@@ -0,0 +1,64 @@
+package com.example.demo.token;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AuthorizationCodeRedemptionFilterTest {
+
+	private static final RegisteredClient CLIENT = RegisteredClient.withId("client-1")
+			.clientId("web-client")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.redirectUri("http://localhost:8080/callback")
+			.build();
+
+	private final AuthorizationCodeRedemptionFilter filter =
+			new AuthorizationCodeRedemptionFilter(new AntPathRequestMatcher("/oauth2/token", "POST"));
+
+	@Test
+	void lookupOfAFailedTokenRequestIsCleared() {
+		Instant now = Instant.now();
+		OAuth2Authorization issued = OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id("a1")
+				.principalName("A123456789")
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.token(new OAuth2AuthorizationCode("code-1", now, now.plusSeconds(300)))
+				.build();
+
+		assertThatThrownBy(() -> filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> {
+			AuthorizationCodeRedemption.codeLookedUp(issued);
+			throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_CLIENT);
+		})).isInstanceOf(OAuth2AuthenticationException.class);
+
+		// A later save of the same authorization on this thread is an ordinary save
+		OAuth2Authorization redeemed = OAuth2Authorization.from(issued)
+				.token(issued.getToken(OAuth2AuthorizationCode.class).getToken(),
+						metadata -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true))
+				.accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "token-1", now,
+						now.plusSeconds(300), Set.of("openid")))
+				.build();
+		assertThat(AuthorizationCodeRedemption.isRedemption(redeemed)).isFalse();
+	}
+
+	private static MockHttpServletRequest request() {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/oauth2/token");
+		request.setServletPath("/oauth2/token");
+		return request;
+	}
+}
@@ -0,0 +1,115 @@
+package com.example.demo.token;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.net.URI;
+import java.security.Principal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryOAuth2AuthorizationCodecTest {
+
+	private final BinaryOAuth2AuthorizationCodec codec = new BinaryOAuth2AuthorizationCodec();
+	private final JsonOAuth2AuthorizationCodec json = new JsonOAuth2AuthorizationCodec();
+
+	@Test
+	void authorizationCodeAttributesRoundTrip() {
+		Map<String, Object> attributes = authorizationCodeAttributes();
+
+		byte[] encoded = codec.encode(attributes);
+		Map<String, Object> decoded = codec.decode(encoded);
+
+		assertThat(encoded.length).isLessThan(json.encode(attributes).length / 3);
+		OAuth2AuthorizationRequest request = (OAuth2AuthorizationRequest) decoded.get(OAuth2AuthorizationRequest.class.getName());
+		OAuth2AuthorizationRequest original = (OAuth2AuthorizationRequest) attributes.get(OAuth2AuthorizationRequest.class.getName());
+		assertThat(request.getAuthorizationRequestUri()).isEqualTo(original.getAuthorizationRequestUri());
+		assertThat(request.getScopes()).isEqualTo(original.getScopes());
+		assertThat(request.getAdditionalParameters()).isEqualTo(original.getAdditionalParameters());
+		assertThat(decoded.get(Principal.class.getName())).isEqualTo(attributes.get(Principal.class.getName()));
+		assertThat(decoded.get("state")).isEqualTo("state-1");
+	}
+
+	@Test
+	void tokenClaimsRoundTrip() throws Exception {
+		Map<String, Object> claims = new LinkedHashMap<>();
+		claims.put("iss", URI.create("http://localhost:9000").toURL());
+		claims.put("sub", "A123456789");
+		claims.put("aud", List.of("client-web"));
+		claims.put("iat", Instant.parse("2026-10-19T01:02:03.123456789Z"));
+		claims.put("scope", Set.of("openid", "profile"));
+		claims.put("auth_time", new Date(1_760_000_000_000L));
+		claims.put("count", 3);
+		claims.put("big", Long.MAX_VALUE);
+		claims.put("ratio", -0.5);
+		claims.put("custom", Map.of("nested", true));
+		Map<String, Object> metadata = new LinkedHashMap<>();
+		metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claims);
+		metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, false);
+
+		assertThat(codec.decode(codec.encode(metadata))).isEqualTo(metadata);
+	}
+
+	@Test
+	void typesWithoutSerializerAreEmbeddedAsJson() {
+		UsernamePasswordAuthenticationToken principal =
+				UsernamePasswordAuthenticationToken.authenticated("A123456789", null, List.of());
+		principal.setDetails(new WebAuthenticationDetails("127.0.0.1", "session-1"));
+		Map<String, Object> attributes = Map.of(Principal.class.getName(), principal);
+
+		Map<String, Object> decoded = codec.decode(codec.encode(attributes));
+
+		assertThat(((UsernamePasswordAuthenticationToken) decoded.get(Principal.class.getName())).getDetails())
+				.isEqualTo(principal.getDetails());
+	}
+
+	@Test
+	void readsRowsWrittenAsJson() {
+		Map<String, Object> attributes = authorizationCodeAttributes();
+
+		Map<String, Object> decoded = codec.decode(json.encode(attributes));
+
+		assertThat(decoded.get(Principal.class.getName())).isEqualTo(attributes.get(Principal.class.getName()));
+		assertThat(decoded).containsEntry("state", "state-1");
+	}
+
+	@Test
+	void rejectsTruncatedAndUnknownVersions() {
+		byte[] encoded = codec.encode(authorizationCodeAttributes());
+		byte[] truncated = Arrays.copyOf(encoded, encoded.length - 5);
+		byte[] futureVersion = encoded.clone();
+		futureVersion[1] = 99;
+
+		assertThatThrownBy(() -> codec.decode(truncated)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> codec.decode(futureVersion)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	static Map<String, Object> authorizationCodeAttributes() {
+		OAuth2AuthorizationRequest request = OAuth2AuthorizationRequest.authorizationCode()
+				.authorizationUri("http://localhost:9000/oauth2/authorize")
+				.clientId("client-web")
+				.redirectUri("http://localhost:8080/callback")
+				.scopes(Set.of("openid", "profile"))
+				.state("state-1")
+				.additionalParameters(Map.of("continue", ""))
+				.build();
+		Map<String, Object> attributes = new LinkedHashMap<>();
+		attributes.put(Principal.class.getName(), UsernamePasswordAuthenticationToken.authenticated(
+				"A123456789", null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+		attributes.put(OAuth2AuthorizationRequest.class.getName(), request);
+		attributes.put("state", "state-1");
+		return attributes;
+	}
+}
@@ -0,0 +1,162 @@
+package com.example.demo.token;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class CachingOAuth2AuthorizationServiceTest {
+
+	private static final RegisteredClient CLIENT = RegisteredClient.withId("client-1")
+			.clientId("messaging-client")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+			.build();
+
+	private final CountingAuthorizationService database = new CountingAuthorizationService();
+	private final List<String> published = new ArrayList<>();
+	private final IntrospectionCache cache = new IntrospectionCache(4, 100, Duration.ofMinutes(5));
+	private final CachingOAuth2AuthorizationService service =
+			new CachingOAuth2AuthorizationService(database, cache, null, (id, jti) -> published.add(id));
+
+	@Test
+	void repeatedIntrospectionIsServedFromMemory() {
+		OAuth2Authorization authorization = authorization("a1", "token-1");
+		service.save(authorization);
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(service.findByToken("token-1", null)).isSameAs(authorization);
+		}
+		assertThat(database.lookups.get()).isEqualTo(1);
+		assertThat(cache.getHits()).isEqualTo(4);
+		// Issuing a client_credentials token cannot make anything stale
+		assertThat(published).isEmpty();
+	}
+
+	@Test
+	void revocationEvictsAndPublishes() {
+		OAuth2Authorization authorization = authorization("a1", "token-1");
+		service.save(authorization);
+		service.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN);
+
+		service.save(OAuth2Authorization.from(authorization)
+				.token(authorization.getAccessToken().getToken(),
+						metadata -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true))
+				.build());
+
+		assertThat(published).containsExactly("a1");
+		OAuth2Authorization reloaded = service.findByToken("token-1", null);
+		assertThat(reloaded.getAccessToken().isActive()).isFalse();
+		assertThat(database.lookups.get()).isEqualTo(2);
+	}
+
+	@Test
+	void revokedJtiIsRecordedBeforeTheAuthorizationIsSaved() {
+		JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+		OAuth2AuthorizationService failing = mock(OAuth2AuthorizationService.class);
+		doThrow(new IllegalStateException("database down")).when(failing).save(any());
+		CachingOAuth2AuthorizationService revoking = new CachingOAuth2AuthorizationService(
+				failing, cache, new RevokedTokenFilter(jdbcOperations, 100, 0.01), (id, jti) -> published.add(id));
+		Instant issuedAt = Instant.now();
+		OAuth2Authorization authorization = OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id("a1")
+				.principalName(CLIENT.getClientId())
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "header.payload.signature",
+								issuedAt, issuedAt.plusSeconds(300), Set.of("message.read")),
+						metadata -> {
+							metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, Map.of("jti", "jti-1"));
+							metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true);
+						})
+				.build();
+
+		assertThatThrownBy(() -> revoking.save(authorization)).isInstanceOf(IllegalStateException.class);
+
+		verify(jdbcOperations).update(anyString(), eq("jti-1"), any(Timestamp.class));
+		assertThat(published).isEmpty();
+	}
+
+	@Test
+	void entryLoadedBeforeAnInvalidationIsNotCached() {
+		OAuth2Authorization authorization = authorization("a1", "token-1");
+		long loadedAt = cache.generation();
+		cache.evictAuthorization("a1");
+
+		cache.put("token-1", authorization, Instant.now().plusSeconds(60), loadedAt);
+
+		assertThat(cache.get("token-1")).isNull();
+	}
+
+	@Test
+	void cacheStaysWithinItsBound() {
+		for (int i = 0; i < 1000; i++) {
+			OAuth2Authorization authorization = authorization("a" + i, "token-" + i);
+			service.save(authorization);
+			service.findByToken("token-" + i, null);
+		}
+
+		assertThat(cache.size()).isLessThanOrEqualTo(100);
+	}
+
+	private static OAuth2Authorization authorization(String id, String tokenValue) {
+		Instant issuedAt = Instant.now();
+		return OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id(id)
+				.principalName(CLIENT.getClientId())
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, tokenValue,
+						issuedAt, issuedAt.plusSeconds(300), Set.of("message.read")))
+				.build();
+	}
+
+	private static final class CountingAuthorizationService implements OAuth2AuthorizationService {
+
+		private final InMemoryOAuth2AuthorizationService delegate = new InMemoryOAuth2AuthorizationService();
+		private final AtomicInteger lookups = new AtomicInteger();
+
+		@Override
+		public void save(OAuth2Authorization authorization) {
+			delegate.save(authorization);
+		}
+
+		@Override
+		public void remove(OAuth2Authorization authorization) {
+			delegate.remove(authorization);
+		}
+
+		@Override
+		public OAuth2Authorization findById(String id) {
+			return delegate.findById(id);
+		}
+
+		@Override
+		public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+			lookups.incrementAndGet();
+			return delegate.findByToken(token, tokenType);
+		}
+	}
+}
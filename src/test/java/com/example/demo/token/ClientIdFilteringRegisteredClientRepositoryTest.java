@@ -0,0 +1,72 @@
+package com.example.demo.token;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.sql.ResultSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ClientIdFilteringRegisteredClientRepositoryTest {
+
+	private static final RegisteredClient CLIENT = client("messaging-client");
+
+	private final JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+	private final RegisteredClientRepository delegate = mock(RegisteredClientRepository.class);
+	private final KnownClientIds knownClientIds = new KnownClientIds(jdbcOperations);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final ClientIdFilteringRegisteredClientRepository repository =
+			new ClientIdFilteringRegisteredClientRepository(delegate, knownClientIds, meterRegistry);
+
+	@Test
+	void unknownClientIdsAreNotLookedUp() throws Exception {
+		doAnswer(invocation -> {
+			ResultSet rs = mock(ResultSet.class);
+			when(rs.getString(1)).thenReturn("messaging-client");
+			invocation.<RowCallbackHandler>getArgument(1).processRow(rs);
+			return null;
+		}).when(jdbcOperations).query(eq(KnownClientIds.SELECT_SQL), any(RowCallbackHandler.class));
+		knownClientIds.reload();
+		when(delegate.findByClientId("messaging-client")).thenReturn(CLIENT);
+
+		assertThat(repository.findByClientId("random-8f3a")).isNull();
+		assertThat(repository.findByClientId("messaging-client")).isSameAs(CLIENT);
+		verify(delegate, never()).findByClientId("random-8f3a");
+		assertThat(meterRegistry.counter("oauth2.client.lookups.rejected").count()).isEqualTo(1);
+
+		repository.save(client("new-client"));
+		repository.findByClientId("new-client");
+		verify(delegate).findByClientId("new-client");
+		assertThat(knownClientIds.size()).isEqualTo(2);
+	}
+
+	@Test
+	void everyClientIdIsLookedUpUntilLoaded() {
+		repository.findByClientId("random-8f3a");
+
+		verify(delegate).findByClientId(anyString());
+		assertThat(knownClientIds.size()).isEqualTo(-1);
+	}
+
+	private static RegisteredClient client(String clientId) {
+		return RegisteredClient.withId(clientId + "-id")
+				.clientId(clientId)
+				.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.build();
+	}
+}
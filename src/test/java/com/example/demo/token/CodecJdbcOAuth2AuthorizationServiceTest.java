@@ -0,0 +1,141 @@
+package com.example.demo.token;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CodecJdbcOAuth2AuthorizationServiceTest {
+
+	private static final RegisteredClient CLIENT = RegisteredClient.withId("client-1")
+			.clientId("client-web")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.redirectUri("http://localhost:8080/callback")
+			.build();
+
+	private final JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+	private final CodecJdbcOAuth2AuthorizationService service = new CodecJdbcOAuth2AuthorizationService(
+			jdbcOperations, new InMemoryRegisteredClientRepository(CLIENT), new BinaryOAuth2AuthorizationCodec());
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void redemptionIsOneConditionalUpdate() {
+		OAuth2Authorization issued = codeIssued();
+		when(jdbcOperations.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+				.thenReturn(List.of(issued));
+		when(jdbcOperations.update(anyString(), any(Object[].class))).thenReturn(1);
+
+		service.save(redeem(service.findByToken("code-1", new OAuth2TokenType("code"))));
+
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<Object[]> parameters = ArgumentCaptor.forClass(Object[].class);
+		verify(jdbcOperations).update(sql.capture(), parameters.capture());
+		assertThat(sql.getValue()).endsWith("WHERE id = ? AND authorization_code_value = ? AND access_token_value IS NULL");
+		assertThat(parameters.getValue()).hasSize((int) sql.getValue().chars().filter(c -> c == '?').count());
+		// Only the lookup by code: no existence check before the write
+		verify(jdbcOperations, times(1)).query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void losingAConcurrentRedemptionRevokesTheWinnersTokens() {
+		OAuth2Authorization issued = codeIssued();
+		OAuth2Authorization winner = redeem(issued);
+		when(jdbcOperations.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+				.thenReturn(List.of(issued), List.of(winner), List.of(winner));
+		when(jdbcOperations.update(anyString(), any(Object[].class))).thenReturn(0);
+
+		OAuth2Authorization loser = redeem(service.findByToken("code-1", new OAuth2TokenType("code")));
+
+		assertThatThrownBy(() -> service.save(loser))
+				.isInstanceOfSatisfying(AuthorizationCodeReplayException.class, e -> {
+					assertThat(e.getError().getErrorCode()).isEqualTo("invalid_grant");
+					OAuth2Authorization revoked = e.getRevokedAuthorization();
+					assertThat(revoked.getAccessToken().getToken().getTokenValue()).isEqualTo("access-1");
+					assertThat(revoked.getAccessToken().isInvalidated()).isTrue();
+					assertThat(revoked.getRefreshToken().isInvalidated()).isTrue();
+				});
+		// The revocation is an ordinary save
+		verify(jdbcOperations).update(anyString(), any(PreparedStatementSetter.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void otherSavesKeepTheInheritedPath() {
+		when(jdbcOperations.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+				.thenReturn(List.of());
+
+		service.save(codeIssued());
+
+		verify(jdbcOperations).update(anyString(), any(PreparedStatementSetter.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void withoutACodecRedemptionWritesTheInheritedJsonFormat() {
+		CodecJdbcOAuth2AuthorizationService textService =
+				new CodecJdbcOAuth2AuthorizationService(jdbcOperations, new InMemoryRegisteredClientRepository(CLIENT));
+		when(jdbcOperations.update(anyString(), any(Object[].class))).thenReturn(1);
+		AuthorizationCodeRedemption.codeLookedUp(codeIssued());
+
+		textService.save(redeem(codeIssued()));
+
+		ArgumentCaptor<Object[]> parameters = ArgumentCaptor.forClass(Object[].class);
+		verify(jdbcOperations).update(endsWith("access_token_value IS NULL"), parameters.capture());
+		Object attributes = ((SqlParameterValue) parameters.getValue()[4]).getValue();
+		String json = attributes instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : (String) attributes;
+		assertThat(json).startsWith("{");
+	}
+
+	private static OAuth2Authorization codeIssued() {
+		Instant now = Instant.now();
+		return OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id("a1")
+				.principalName("A123456789")
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.authorizedScopes(Set.of("openid"))
+				.token(new OAuth2AuthorizationCode("code-1", now, now.plusSeconds(300)))
+				.build();
+	}
+
+	/**
+	 * What the code provider saves
+	 */
+	private static OAuth2Authorization redeem(OAuth2Authorization authorization) {
+		Instant now = Instant.now();
+		return OAuth2Authorization.from(authorization)
+				.token(authorization.getToken(OAuth2AuthorizationCode.class).getToken(),
+						metadata -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true))
+				.accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-1", now,
+						now.plusSeconds(300), Set.of("openid")))
+				.refreshToken(new OAuth2RefreshToken("refresh-1", now, now.plusSeconds(3600)))
+				.build();
+	}
+}
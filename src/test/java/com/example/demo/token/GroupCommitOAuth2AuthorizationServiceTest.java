@@ -0,0 +1,140 @@
+package com.example.demo.token;
+
+import com.example.demo.admission.DeadlineExceededException;
+import com.example.demo.admission.RequestDeadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class GroupCommitOAuth2AuthorizationServiceTest {
+
+	private static final RegisteredClient CLIENT = RegisteredClient.withId("client-1")
+			.clientId("messaging-client")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+			.build();
+
+	private final AtomicInteger transactions = new AtomicInteger();
+	private final TransactionOperations transactionOperations = new TransactionOperations() {
+		@Override
+		public <T> T execute(TransactionCallback<T> action) {
+			transactions.incrementAndGet();
+			return action.doInTransaction(new SimpleTransactionStatus());
+		}
+	};
+	private final OAuth2AuthorizationService store = mock(OAuth2AuthorizationService.class);
+	private final GroupCommitOAuth2AuthorizationService service = new GroupCommitOAuth2AuthorizationService(
+			store, transactionOperations, Duration.ofSeconds(5), 4, new SimpleMeterRegistry());
+
+	@BeforeEach
+	void setUp() {
+		doThrow(new IllegalArgumentException("rejected"))
+				.when(store).save(argThat(authorization -> authorization.getId().startsWith("bad")));
+	}
+
+	@AfterEach
+	void tearDown() {
+		service.close();
+	}
+
+	@Test
+	void concurrentSavesShareOneTransaction() {
+		List<CompletableFuture<Void>> saves = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			OAuth2Authorization authorization = authorization("a" + i);
+			saves.add(CompletableFuture.runAsync(() -> service.save(authorization)));
+		}
+		CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new)).join();
+
+		assertThat(transactions).hasValue(1);
+		verify(store, times(4)).save(any());
+	}
+
+	@Test
+	void aFailingSaveOnlyFailsItsCaller() {
+		List<CompletableFuture<Void>> saves = new ArrayList<>();
+		for (String id : List.of("a1", "bad", "a2", "a3")) {
+			OAuth2Authorization authorization = authorization(id);
+			saves.add(CompletableFuture.runAsync(() -> service.save(authorization)));
+		}
+
+		assertThatThrownBy(() -> saves.get(1).join()).hasCauseInstanceOf(IllegalArgumentException.class);
+		saves.get(0).join();
+		saves.get(2).join();
+		saves.get(3).join();
+		// The batch, then one transaction per save
+		assertThat(transactions).hasValue(5);
+		// Saves ahead of the failing one in the batch were rolled back and run again
+		verify(store, atLeastOnce()).save(argThat(authorization -> authorization.getId().equals("a2")));
+	}
+
+	@Test
+	void batchRunsUnderTheEarliestDeadlineOfItsCallers() {
+		List<RequestDeadline> applied = new CopyOnWriteArrayList<>();
+		doAnswer(invocation -> applied.add(RequestDeadline.current()))
+				.when(store).save(argThat(authorization -> authorization.getId().startsWith("d")));
+		RequestDeadline earliest = RequestDeadline.after("token", Duration.ofSeconds(3));
+		List<RequestDeadline> deadlines = List.of(
+				RequestDeadline.after("token", Duration.ofSeconds(10)), earliest,
+				RequestDeadline.after("callback", Duration.ofSeconds(20)));
+
+		List<CompletableFuture<Void>> saves = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			OAuth2Authorization authorization = authorization("d" + i);
+			RequestDeadline deadline = i < deadlines.size() ? deadlines.get(i) : null;
+			saves.add(CompletableFuture.runAsync(
+					() -> RequestDeadline.runWithin(deadline, () -> service.save(authorization))));
+		}
+		CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new)).join();
+
+		assertThat(applied).hasSize(4).containsOnly(earliest);
+	}
+
+	@Test
+	void callerWaitsNoLongerThanItsDeadline() {
+		RequestDeadline deadline = RequestDeadline.after("token", Duration.ofMillis(100));
+
+		// The batch window (5 s) outlasts the deadline
+		assertThatThrownBy(() -> RequestDeadline.runWithin(deadline, () -> service.save(authorization("late"))))
+				.isInstanceOf(DeadlineExceededException.class);
+		assertThat(RequestDeadline.current()).isNull();
+		service.close();
+		verify(store, never()).save(any());
+	}
+
+	private static OAuth2Authorization authorization(String id) {
+		return OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id(id)
+				.principalName("messaging-client")
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.build();
+	}
+}
@@ -0,0 +1,123 @@
+package com.example.demo.token;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2TokenIntrospectionAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class JwtIntrospectionAuthenticationProviderTest {
+
+	private static final RegisteredClient CLIENT = RegisteredClient.withId("client-2")
+			.clientId("api-client")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+			.build();
+
+	private static RSAKey signingKey;
+	private static RSAKey otherNodeKey;
+
+	private final JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+	private final RevokedTokenFilter revokedTokens = new RevokedTokenFilter(jdbcOperations, 1000, 0.001);
+	private final JwtIntrospectionAuthenticationProvider provider = new JwtIntrospectionAuthenticationProvider(
+			OAuth2AuthorizationServerConfiguration.jwtDecoder(new ImmutableJWKSet<>(new JWKSet(signingKey))),
+			revokedTokens, new SimpleMeterRegistry());
+
+	@BeforeAll
+	static void generateKeys() throws Exception {
+		signingKey = new RSAKeyGenerator(2048).keyID("node-a").generate();
+		otherNodeKey = new RSAKeyGenerator(2048).keyID("node-b").generate();
+	}
+
+	@Test
+	void activeTokenIsAnsweredFromTheJwt() {
+		revokedTokens.invalidationsResumed();
+		String token = accessToken(signingKey, "jti-1", Instant.now().plusSeconds(300));
+
+		OAuth2TokenIntrospectionAuthenticationToken result = introspect(token);
+
+		assertThat(result).isNotNull();
+		Map<String, Object> claims = result.getTokenClaims().getClaims();
+		assertThat(claims).containsEntry(OAuth2TokenIntrospectionClaimNames.ACTIVE, true)
+				.containsEntry(OAuth2TokenIntrospectionClaimNames.CLIENT_ID, "api-client")
+				.containsEntry(OAuth2TokenIntrospectionClaimNames.TOKEN_TYPE, "Bearer")
+				.containsEntry(OAuth2TokenIntrospectionClaimNames.SCOPE, List.of("api.read"));
+	}
+
+	@Test
+	void revokedTokenFallsBackToTheDatabase() {
+		revokedTokens.invalidationsResumed();
+		revokedTokens.authorizationInvalidated("authorization-1", "jti-1");
+
+		assertThat(introspect(accessToken(signingKey, "jti-1", Instant.now().plusSeconds(300)))).isNull();
+		assertThat(introspect(accessToken(signingKey, "jti-2", Instant.now().plusSeconds(300)))).isNotNull();
+	}
+
+	@Test
+	void expiredTokenIsInactive() {
+		revokedTokens.invalidationsResumed();
+
+		OAuth2TokenIntrospectionAuthenticationToken result =
+				introspect(accessToken(signingKey, "jti-1", Instant.now().minusSeconds(600)));
+
+		assertThat(result.getTokenClaims().isActive()).isFalse();
+	}
+
+	@Test
+	void unverifiableOrUnsyncedTokensFallBack() {
+		String token = accessToken(signingKey, "jti-1", Instant.now().plusSeconds(300));
+		// Revoked token filter not loaded yet
+		assertThat(introspect(token)).isNull();
+
+		revokedTokens.invalidationsResumed();
+		assertThat(introspect(accessToken(otherNodeKey, "jti-2", Instant.now().plusSeconds(300)))).isNull();
+		assertThat(introspect("reference-token-without-dots")).isNull();
+	}
+
+	private OAuth2TokenIntrospectionAuthenticationToken introspect(String token) {
+		OAuth2ClientAuthenticationToken client = new OAuth2ClientAuthenticationToken(
+				CLIENT, ClientAuthenticationMethod.CLIENT_SECRET_BASIC, null);
+		return (OAuth2TokenIntrospectionAuthenticationToken) provider.authenticate(
+				new OAuth2TokenIntrospectionAuthenticationToken(token, client, null, Map.of()));
+	}
+
+	private static String accessToken(RSAKey key, String jti, Instant expiresAt) {
+		Instant issuedAt = expiresAt.minusSeconds(300);
+		JwtClaimsSet claims = JwtClaimsSet.builder()
+				.issuer("http://localhost:9000")
+				.subject("api-client")
+				.audience(List.of("api-client"))
+				.issuedAt(issuedAt)
+				.notBefore(issuedAt)
+				.expiresAt(expiresAt)
+				.id(jti)
+				.claim("scope", Set.of("api.read"))
+				.build();
+		return new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(key)))
+				.encode(JwtEncoderParameters.from(JwsHeader.with(SignatureAlgorithm.RS256).build(), claims))
+				.getTokenValue();
+	}
+}
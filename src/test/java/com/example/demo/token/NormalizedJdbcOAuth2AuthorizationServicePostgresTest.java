@@ -0,0 +1,169 @@
+package com.example.demo.token;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Round trips through the normalized tables of source/db/DDL.sql; skipped without Docker
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class NormalizedJdbcOAuth2AuthorizationServicePostgresTest {
+
+	private static final String SCHEMA = "poc_spring_authorization_server";
+
+	private static final RegisteredClient CLIENT = RegisteredClient.withId("client-1")
+			.clientId("messaging-client")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+			.redirectUri("http://localhost:8080/callback")
+			.build();
+
+	@Container
+	private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+	private static final ExecutorService OTHER_REQUEST = Executors.newSingleThreadExecutor();
+
+	private static NormalizedJdbcOAuth2AuthorizationService service;
+
+	@BeforeAll
+	static void createSchema() {
+		// The service uses unqualified table names, as the application does through its search_path
+		String url = POSTGRES.getJdbcUrl();
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				url + (url.contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA,
+				POSTGRES.getUsername(), POSTGRES.getPassword());
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + SCHEMA);
+		ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new FileSystemResource("source/db/DDL.sql"));
+		populator.setSqlScriptEncoding("UTF-8");
+		populator.execute(dataSource);
+
+		service = new NormalizedJdbcOAuth2AuthorizationService(
+				jdbcTemplate, new InMemoryRegisteredClientRepository(CLIENT), new BinaryOAuth2AuthorizationCodec());
+	}
+
+	@AfterAll
+	static void stopOtherRequest() {
+		OTHER_REQUEST.shutdownNow();
+	}
+
+	@Test
+	void savedTokensAreFoundAndReplacedAndRemoved() {
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		OAuth2Authorization authorization = OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id("round-trip")
+				.principalName("messaging-client")
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.authorizedScopes(Set.of("message.read"))
+				.attribute("note", "kept")
+				.token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "rt-access-1", now, now.plusSeconds(300),
+						Set.of("message.read")))
+				.refreshToken(new OAuth2RefreshToken("rt-refresh-1", now, now.plusSeconds(3600)))
+				.build();
+
+		service.save(authorization);
+
+		OAuth2Authorization found = service.findById("round-trip");
+		assertThat(found).isNotNull();
+		assertThat(found.getPrincipalName()).isEqualTo("messaging-client");
+		assertThat(found.getAuthorizedScopes()).containsExactly("message.read");
+		assertThat(found.<String>getAttribute("note")).isEqualTo("kept");
+		assertThat(found.getAccessToken().getToken().getTokenValue()).isEqualTo("rt-access-1");
+		assertThat(found.getAccessToken().getToken().getExpiresAt()).isEqualTo(now.plusSeconds(300));
+		assertThat(found.getAccessToken().getToken().getScopes()).containsExactly("message.read");
+		assertThat(found.getRefreshToken().getToken().getTokenValue()).isEqualTo("rt-refresh-1");
+		assertThat(service.findByToken("rt-access-1", OAuth2TokenType.ACCESS_TOKEN).getId()).isEqualTo("round-trip");
+		assertThat(service.findByToken("rt-refresh-1", OAuth2TokenType.REFRESH_TOKEN).getId()).isEqualTo("round-trip");
+		assertThat(service.findByToken("rt-refresh-1", null).getId()).isEqualTo("round-trip");
+		assertThat(service.findByToken("rt-refresh-1", OAuth2TokenType.ACCESS_TOKEN)).isNull();
+
+		service.save(OAuth2Authorization.from(found)
+				.accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "rt-access-2", now,
+						now.plusSeconds(300), Set.of("message.read")))
+				.refreshToken(new OAuth2RefreshToken("rt-refresh-2", now, now.plusSeconds(3600)))
+				.build());
+
+		assertThat(service.findByToken("rt-refresh-1", OAuth2TokenType.REFRESH_TOKEN)).isNull();
+		assertThat(service.findByToken("rt-access-2", OAuth2TokenType.ACCESS_TOKEN).getRefreshToken().getToken()
+				.getTokenValue()).isEqualTo("rt-refresh-2");
+
+		service.remove(found);
+
+		assertThat(service.findById("round-trip")).isNull();
+		assertThat(service.findByToken("rt-access-2", null)).isNull();
+	}
+
+	@Test
+	void concurrentRedemptionOfOneCodeIssuesTokensOnce() throws Exception {
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		service.save(OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id("redemption")
+				.principalName("A123456789")
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.authorizedScopes(Set.of("openid"))
+				.token(new OAuth2AuthorizationCode("code-1", now, now.plusSeconds(300)))
+				.build());
+
+		// Both requests look the code up before either saves its redemption
+		OAuth2Authorization other = OTHER_REQUEST.submit(() -> lookUpCode()).get();
+		service.save(redeemed(lookUpCode(), "first", now));
+
+		assertThatThrownBy(() -> redeemOnOtherRequest(other, now))
+				.isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(AuthorizationCodeReplayException.class);
+
+		OAuth2Authorization stored = service.findById("redemption");
+		assertThat(stored.getAccessToken().getToken().getTokenValue()).isEqualTo("first-access");
+		assertThat(stored.getAccessToken().isInvalidated()).isTrue();
+		assertThat(stored.getRefreshToken().isInvalidated()).isTrue();
+		assertThat(stored.getToken(OAuth2AuthorizationCode.class).isInvalidated()).isTrue();
+		assertThat(service.findByToken("second-access", OAuth2TokenType.ACCESS_TOKEN)).isNull();
+	}
+
+	private static OAuth2Authorization lookUpCode() {
+		return service.findByToken("code-1", AuthorizationCodeRedemption.CODE_TOKEN_TYPE);
+	}
+
+	private static void redeemOnOtherRequest(OAuth2Authorization other, Instant now) throws Exception {
+		OTHER_REQUEST.submit(() -> service.save(redeemed(other, "second", now))).get();
+	}
+
+	private static OAuth2Authorization redeemed(OAuth2Authorization authorization, String prefix, Instant now) {
+		return OAuth2Authorization.from(authorization)
+				.token(authorization.getToken(OAuth2AuthorizationCode.class).getToken(),
+						metadata -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true))
+				.accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, prefix + "-access", now,
+						now.plusSeconds(300), Set.of("openid")))
+				.refreshToken(new OAuth2RefreshToken(prefix + "-refresh", now, now.plusSeconds(3600)))
+				.build();
+	}
+}
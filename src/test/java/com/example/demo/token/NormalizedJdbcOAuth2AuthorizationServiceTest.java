@@ -0,0 +1,125 @@
+package com.example.demo.token;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NormalizedJdbcOAuth2AuthorizationServiceTest {
+
+	private static final RegisteredClient CLIENT = RegisteredClient.withId("client-1")
+			.clientId("messaging-client")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+			.redirectUri("http://localhost:8080/callback")
+			.build();
+
+	private static final String HEADER = "oauth2_authorization_header";
+
+	private final JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+	private final NormalizedJdbcOAuth2AuthorizationService service = new NormalizedJdbcOAuth2AuthorizationService(
+			jdbcOperations, new InMemoryRegisteredClientRepository(CLIENT), new BinaryOAuth2AuthorizationCodec());
+
+	@Test
+	void saveIsOneStatementWithAParameterPerPlaceholder() {
+		Instant now = Instant.now();
+		OAuth2Authorization authorization = OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id("a1")
+				.principalName("messaging-client")
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "token-1", now, now.plusSeconds(300),
+						Set.of("message.read")))
+				.build();
+
+		service.save(authorization);
+		String sql = assertSaved();
+		assertThat(sql).contains("INSERT INTO oauth2_access_token", "DELETE FROM oauth2_refresh_token");
+
+		service.save(OAuth2Authorization.from(authorization)
+				.refreshToken(new OAuth2RefreshToken("refresh-1", now, now.plusSeconds(3600)))
+				.build());
+		assertThat(assertSaved()).contains("INSERT INTO oauth2_refresh_token");
+	}
+
+	@Test
+	void lookupsSelectTheSingleRowColumnNames() {
+		service.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN);
+
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		verify(jdbcOperations).query(sql.capture(), ArgumentMatchers.<RowMapper<OAuth2Authorization>>any(), any(Object[].class));
+		assertThat(sql.getValue())
+				.contains("AS access_token_value", "AS access_token_metadata", "AS access_token_type",
+						"AS refresh_token_expires_at", "AS oidc_id_token_metadata", "AS device_code_value")
+				.endsWith("h.id = (SELECT authorization_id FROM oauth2_access_token WHERE token_value = ?)");
+	}
+
+	@Test
+	void redemptionWritesOnlyIfTheAccessTokenRowIsNew() {
+		Instant now = Instant.now();
+		OAuth2Authorization issued = OAuth2Authorization.withRegisteredClient(CLIENT)
+				.id("a2")
+				.principalName("A123456789")
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.token(new OAuth2AuthorizationCode("code-1", now, now.plusSeconds(300)))
+				.build();
+		when(jdbcOperations.query(anyString(), ArgumentMatchers.<RowMapper<OAuth2Authorization>>any(), any(Object[].class))).thenReturn(List.of(issued));
+		when(jdbcOperations.queryForObject(anyString(), eq(Long.class), any(Object[].class))).thenReturn(1L);
+
+		OAuth2Authorization found = service.findByToken("code-1", new OAuth2TokenType("code"));
+		service.save(OAuth2Authorization.from(found)
+				.token(found.getToken(OAuth2AuthorizationCode.class).getToken(),
+						metadata -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true))
+				.accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "token-2", now,
+						now.plusSeconds(300), Set.of("openid")))
+				.refreshToken(new OAuth2RefreshToken("refresh-2", now, now.plusSeconds(3600)))
+				.build());
+
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<Object[]> parameters = ArgumentCaptor.forClass(Object[].class);
+		verify(jdbcOperations).queryForObject(sql.capture(), eq(Long.class), parameters.capture());
+		assertThat(sql.getValue())
+				.contains("ON CONFLICT (authorization_id) DO NOTHING RETURNING authorization_id",
+						"INSERT INTO oauth2_refresh_token", "FROM a)")
+				.doesNotContain(HEADER, "oauth2_oidc_id_token")
+				.endsWith("SELECT count(*) FROM a");
+		assertThat(parameters.getValue()).hasSize((int) sql.getValue().chars().filter(c -> c == '?').count());
+		verify(jdbcOperations, never()).update(anyString(), any(Object[].class));
+	}
+
+	private String assertSaved() {
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<Object[]> parameters = ArgumentCaptor.forClass(Object[].class);
+		verify(jdbcOperations, atLeastOnce()).update(sql.capture(), parameters.capture());
+		String statement = sql.getValue();
+		long placeholders = statement.chars().filter(c -> c == '?').count();
+		assertThat(parameters.getValue()).hasSize((int) placeholders);
+		assertThat(statement).startsWith("WITH ").contains("INSERT INTO oauth2_authorization_header");
+		return statement;
+	}
+}
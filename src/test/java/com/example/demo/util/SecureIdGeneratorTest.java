@@ -0,0 +1,44 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecureIdGeneratorTest {
+
+	@Test
+	void encodingMatchesUrlSafeBase64WithoutPadding() {
+		byte[] bytes = new byte[20];
+		for (int length = 0; length <= bytes.length; length++) {
+			byte[] input = Arrays.copyOf(bytes, length);
+			SecureIdGenerator.nextBytes(input);
+			assertThat(SecureIdGenerator.encode(input))
+					.isEqualTo(Base64.getUrlEncoder().withoutPadding().encodeToString(input));
+		}
+	}
+
+	@Test
+	void idsAreUniqueOnPlatformAndVirtualThreads() throws Exception {
+		Set<String> ids = ConcurrentHashMap.newKeySet();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < 10_000; i++) {
+				executor.submit(() -> ids.add(SecureIdGenerator.newId()));
+			}
+		}
+		Set<String> platform = new HashSet<>();
+		for (int i = 0; i < 10_000; i++) {
+			platform.add(SecureIdGenerator.newId());
+		}
+		ids.addAll(platform);
+
+		assertThat(ids).hasSize(20_000).allSatisfy(id -> assertThat(id).hasSize(22).matches("[A-Za-z0-9_-]+"));
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.demo.warmup;
+
+import com.example.demo.config.ExternalAuthProperties;
+import com.example.demo.config.WarmUpProperties;
+import com.example.demo.service.ExternalAuthService;
+import com.example.demo.token.BinaryOAuth2AuthorizationCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.token.DelegatingOAuth2TokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.JwtGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2RefreshTokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+import org.springframework.web.client.RestTemplate;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WarmUpRunnerTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final WarmUpProperties properties = new WarmUpProperties();
+
+	@Test
+	void everyStepRunsTheIterationBudget() throws Exception {
+		RSAKey key = new RSAKeyGenerator(2048).keyID("warm-up").generate();
+		OAuth2TokenGenerator<OAuth2Token> tokenGenerator = new DelegatingOAuth2TokenGenerator(
+				new JwtGenerator(new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(key)))),
+				new OAuth2RefreshTokenGenerator());
+		properties.setIterations(5);
+
+		WarmUpRunner.Report report = runner(tokenGenerator, NimbusJwtDecoder.withPublicKey(key.toRSAPublicKey()).build())
+				.warmUp();
+
+		// No local.server.port outside a web server: the loopback step is left out
+		assertThat(report.iterations()).containsExactly(
+				entry("token", 5), entry("callback", 5), entry("template", 5), entry("authorization", 5));
+		assertThat(meterRegistry.get("startup.warmup").tag("step", "template").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void aFailingStepIsSkippedAndTheBudgetIsABound() {
+		JwtDecoder jwtDecoder = mock(JwtDecoder.class);
+		@SuppressWarnings("unchecked")
+		OAuth2TokenGenerator<OAuth2Token> tokenGenerator = mock(OAuth2TokenGenerator.class);
+		when(tokenGenerator.generate(any())).thenThrow(new IllegalStateException("no key"));
+		when(jwtDecoder.decode(anyString())).thenThrow(new IllegalStateException("no key"));
+		properties.setIterations(3);
+
+		WarmUpRunner.Report report = runner(tokenGenerator, jwtDecoder).warmUp();
+		assertThat(report.iterations()).containsEntry("token", 0).containsEntry("callback", 3).containsEntry("template", 3);
+
+		properties.setMaxDuration(Duration.ZERO);
+		assertThat(runner(tokenGenerator, jwtDecoder).warmUp().iterations().values()).containsOnly(0);
+	}
+
+	private WarmUpRunner runner(OAuth2TokenGenerator<OAuth2Token> tokenGenerator, JwtDecoder jwtDecoder) {
+		ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
+		templateResolver.setPrefix("templates/");
+		templateResolver.setSuffix(".html");
+		SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+		templateEngine.setTemplateResolver(templateResolver);
+		return new WarmUpRunner(tokenGenerator, jwtDecoder,
+				new ExternalAuthService(new RestTemplate(), new ObjectMapper(), new ExternalAuthProperties()),
+				templateEngine, new BinaryOAuth2AuthorizationCodec(),
+				AuthorizationServerSettings.builder().issuer("http://localhost:9000").build(),
+				new MockEnvironment(), properties, meterRegistry);
+	}
+}